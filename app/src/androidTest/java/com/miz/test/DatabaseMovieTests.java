@@ -15,14 +15,32 @@ package com.miz.test;/*
  */
 
 import android.content.Context;
+import android.net.Uri;
 import android.test.InstrumentationTestCase;
 
+import com.miz.db.DbAdapterActors;
 import com.miz.db.DbAdapterCollections;
+import com.miz.db.DbAdapterFacetCounts;
+import com.miz.db.DbAdapterLibraryVersion;
 import com.miz.db.DbAdapterMovieMappings;
 import com.miz.db.DbAdapterMovies;
+import com.miz.db.DbAdapterOfflineCopies;
+import com.miz.db.DbAdapterSwatches;
+import com.miz.functions.Actor;
+import com.miz.functions.FileSource;
+import com.miz.functions.MizLib;
+import com.miz.functions.PaletteCache;
+import com.miz.loader.MovieLibraryType;
+import com.miz.loader.MovieLibrarySnapshot;
 import com.miz.mizuu.MizuuApplication;
 import com.miz.utils.MovieDatabaseUtils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Tests various movie database queries.
  * Do not use this on a non-debug build, as
@@ -146,6 +164,24 @@ public class DatabaseMovieTests extends InstrumentationTestCase {
         assertEquals(0, db.count());
     }
 
+    /**
+     * Tests if it's possible to update several movies at once.
+     */
+    public void testUpdateMoviesSingleItem() {
+        DbAdapterMovies db = getAndResetDatabase();
+
+        // Create two test movies, where one is on the watchlist
+        createTwoTestMovies(db);
+        assertEquals(1, db.countWatchlist());
+
+        // Put both movies on the watchlist - the unknown ID should be ignored
+        int updated = db.updateMoviesSingleItem(Arrays.asList("1234", "12345", "99999"), DbAdapterMovies.KEY_TO_WATCH, "1");
+
+        // Only the two existing movies should have been updated
+        assertEquals(2, updated);
+        assertEquals(2, db.countWatchlist());
+    }
+
     /**
      * Tests if it's possible to create a movie collection.
      */
@@ -942,6 +978,230 @@ public class DatabaseMovieTests extends InstrumentationTestCase {
         assertEquals("1234", dbMovieMappings.getIdForFilepath("/test/lulz.mkv"));
     }
 
+    /**
+     * Tests if the cast of a movie is cached in billing order,
+     * and removed along with the movie.
+     */
+    public void testMovieCast() {
+        DbAdapterMovies db = getAndResetDatabase();
+        DbAdapterActors dbActors = MizuuApplication.getActorAdapter();
+
+        // Create test movie
+        createTestMovie(db);
+
+        // There's no cached cast to begin with
+        assertEquals(0, dbActors.getCast("1234", MizLib.TYPE_MOVIE).size());
+        assertEquals(0, dbActors.getCastUpdated("1234", MizLib.TYPE_MOVIE));
+
+        dbActors.setCast("1234", MizLib.TYPE_MOVIE, Arrays.asList(
+                new Actor("Actor 1", "Character 1", "1", "http://image.tmdb.org/1.jpg"),
+                new Actor("Actor 2", "Character 2", "2", "http://image.tmdb.org/2.jpg"),
+                new Actor("Actor 1", "Character 3", "1", "http://image.tmdb.org/1.jpg")));
+
+        // Duplicate actors are only cached once
+        List<Actor> cast = dbActors.getCast("1234", MizLib.TYPE_MOVIE);
+        assertEquals(2, cast.size());
+        assertEquals("Actor 1", cast.get(0).getName());
+        assertEquals("Character 1", cast.get(0).getCharacter());
+        assertEquals("2", cast.get(1).getId());
+        assertEquals("http://image.tmdb.org/2.jpg", cast.get(1).getUrl());
+        assertTrue(dbActors.getCastUpdated("1234", MizLib.TYPE_MOVIE) > 0);
+
+        // The cast is only cached for movies
+        assertEquals(0, dbActors.getCast("1234", MizLib.TYPE_SHOWS).size());
+
+        // Replacing the cast keeps the cached actor details
+        dbActors.setActorDetails("2", "Actor 2", "{\"id\":2}");
+        dbActors.setCast("1234", MizLib.TYPE_MOVIE, Arrays.asList(new Actor("Actor 2", "Character 2", "2", "http://image.tmdb.org/2.jpg")));
+        assertEquals(1, dbActors.getCast("1234", MizLib.TYPE_MOVIE).size());
+        assertEquals("{\"id\":2}", dbActors.getActorDetails("2"));
+
+        // Delete the test movie
+        MovieDatabaseUtils.deleteMovie(mContext, "1234");
+
+        // The cast should be gone along with the movie
+        assertEquals(0, dbActors.getCast("1234", MizLib.TYPE_MOVIE).size());
+    }
+
+    /**
+     * Tests if offline copies are registered and can be
+     * looked up for movies.
+     */
+    public void testOfflineCopies() {
+        DbAdapterMovies db = getAndResetDatabase();
+        DbAdapterMovieMappings dbMovieMappings = MizuuApplication.getMovieMappingAdapter();
+        DbAdapterOfflineCopies dbOfflineCopies = MizuuApplication.getOfflineCopiesAdapter();
+
+        // Start out with an empty registry
+        dbOfflineCopies.setOfflineCopies(new ArrayList<String>());
+        assertEquals(0, dbOfflineCopies.count());
+
+        // Create test movies
+        createTwoTestMovies(db);
+        dbMovieMappings.createFilepathMapping("smb://server/share/movie.mkv", "1234");
+        dbMovieMappings.createFilepathMapping("smb://server/share/movie2.mkv", "12345");
+
+        // No movies have offline copies yet
+        assertFalse(dbOfflineCopies.hasOfflineCopy("smb://server/share/movie.mkv"));
+        assertEquals(0, dbOfflineCopies.getMoviesWithOfflineCopies().size());
+
+        dbOfflineCopies.addOfflineCopy("smb://server/share/movie.mkv");
+        dbOfflineCopies.addOfflineCopy("smb://server/share/not_in_library.mkv");
+
+        assertTrue(dbOfflineCopies.hasOfflineCopy("smb://server/share/movie.mkv"));
+        assertEquals(2, dbOfflineCopies.count());
+
+        // Only the movie with an offline copy should be returned
+        Set<String> movies = dbOfflineCopies.getMoviesWithOfflineCopies();
+        assertEquals(1, movies.size());
+        assertTrue(movies.contains("1234"));
+
+        // Remove the offline copy again
+        dbOfflineCopies.removeOfflineCopy("smb://server/share/movie.mkv");
+        assertFalse(dbOfflineCopies.hasOfflineCopy("smb://server/share/movie.mkv"));
+        assertEquals(0, dbOfflineCopies.getMoviesWithOfflineCopies().size());
+
+        // Replacing the registry should only keep the given file paths
+        dbOfflineCopies.setOfflineCopies(Arrays.asList("smb://server/share/movie.mkv", "smb://server/share/not_in_library.mkv"));
+        dbOfflineCopies.setOfflineCopies(Arrays.asList("smb://server/share/movie.mkv", "smb://server/share/movie2.mkv"));
+        assertEquals(2, dbOfflineCopies.count());
+        assertTrue(dbOfflineCopies.hasOfflineCopy("smb://server/share/movie2.mkv"));
+        assertFalse(dbOfflineCopies.hasOfflineCopy("smb://server/share/not_in_library.mkv"));
+        assertEquals(2, dbOfflineCopies.getMoviesWithOfflineCopies().size());
+
+        // Clean up
+        dbOfflineCopies.setOfflineCopies(new ArrayList<String>());
+    }
+
+    /**
+     * Tests if swatch colours are stored and keyed by the image file path.
+     */
+    public void testSwatches() {
+        DbAdapterSwatches dbSwatches = MizuuApplication.getSwatchesAdapter();
+        PaletteCache paletteCache = MizuuApplication.getPaletteCache();
+
+        String key = PaletteCache.getKey(Uri.parse("file:///sdcard/Mizuu/movie-thumbs/1234.jpg"));
+
+        // Local images should have the same key, no matter how the URI was created
+        assertEquals("/sdcard/Mizuu/movie-thumbs/1234.jpg", key);
+        assertEquals(key, PaletteCache.getKey(Uri.parse("/sdcard/Mizuu/movie-thumbs/1234.jpg")));
+
+        paletteCache.remove(key);
+        assertNull(paletteCache.get(key));
+
+        int count = dbSwatches.count();
+
+        paletteCache.put(key, 0xFF123456);
+        assertEquals(count + 1, dbSwatches.count());
+        assertEquals(Integer.valueOf(0xFF123456), paletteCache.get(key));
+        assertEquals(Integer.valueOf(0xFF123456), dbSwatches.getSwatch(key));
+
+        // Replacing the swatch shouldn't create a new row
+        paletteCache.put(key, 0xFF654321);
+        assertEquals(count + 1, dbSwatches.count());
+        assertEquals(Integer.valueOf(0xFF654321), paletteCache.get(key));
+
+        paletteCache.remove(key);
+        assertNull(paletteCache.get(key));
+        assertEquals(count, dbSwatches.count());
+    }
+
+    /**
+     * Tests that the movie library version is bumped by changes
+     * to the library, and that the shared snapshot follows it.
+     */
+    public void testLibraryVersion() {
+        DbAdapterMovies db = getAndResetDatabase();
+        DbAdapterLibraryVersion dbVersion = MizuuApplication.getLibraryVersionAdapter();
+
+        long movieVersion = dbVersion.getVersion(MizLib.TYPE_MOVIE);
+        long showVersion = dbVersion.getVersion(MizLib.TYPE_SHOWS);
+
+        MovieLibrarySnapshot snapshot = MovieLibrarySnapshot.get();
+        assertEquals(0, snapshot.getMovies(MovieLibraryType.ALL_MOVIES).size());
+
+        // The snapshot should be re-used as long as nothing has changed
+        assertSame(snapshot, MovieLibrarySnapshot.get());
+
+        createTestMovie(db);
+
+        assertTrue(dbVersion.getVersion(MizLib.TYPE_MOVIE) > movieVersion);
+        assertEquals(showVersion, dbVersion.getVersion(MizLib.TYPE_SHOWS));
+
+        snapshot = MovieLibrarySnapshot.get();
+        assertEquals(1, snapshot.getMovies(MovieLibraryType.ALL_MOVIES).size());
+        assertEquals(1, snapshot.getMovies(MovieLibraryType.FAVORITES).size());
+        assertEquals(1, snapshot.getMovies(MovieLibraryType.WATCHED).size());
+        assertEquals(0, snapshot.getMovies(MovieLibraryType.UNWATCHED).size());
+        assertEquals(0, snapshot.getMovies(MovieLibraryType.WATCHLIST).size());
+        assertEquals(0, snapshot.getMovies(MovieLibraryType.NEW_RELEASES).size());
+
+        movieVersion = dbVersion.getVersion(MizLib.TYPE_MOVIE);
+
+        db.updateMovieSingleItem("1234", DbAdapterMovies.KEY_HAS_WATCHED, "0");
+
+        assertTrue(dbVersion.getVersion(MizLib.TYPE_MOVIE) > movieVersion);
+        assertEquals(1, MovieLibrarySnapshot.get().getMovies(MovieLibraryType.UNWATCHED).size());
+    }
+
+    /**
+     * Tests that the facet counts follow inserts, updates
+     * and deletes of movies and filepath mappings.
+     */
+    public void testFacetCounts() {
+        DbAdapterMovies db = getAndResetDatabase();
+        DbAdapterFacetCounts dbFacets = MizuuApplication.getFacetCountsAdapter();
+
+        assertEquals(0, dbFacets.getLibraryCount(MizLib.TYPE_MOVIE));
+        assertEquals(0, dbFacets.getCounts(MizLib.TYPE_MOVIE, DbAdapterFacetCounts.FACET_GENRE).size());
+
+        db.createMovie("1234", "title", "plot", "tt1234567", "7.9", "tagline", "1970-01-01", "PG-13", "90", "http://youtube.com", "Action, Drama", "1", "actors", "collection", "collectionId", "0", "1", "123456789");
+        db.createMovie("12345", "title", "plot", "tt1234567", "7.9", "tagline", "2014", " R ", "90", "http://youtube.com", "Drama", "1", "actors", "collection2", "collectionId2", "1", "1", "123456789");
+
+        DbAdapterMovieMappings dbMovieMappings = MizuuApplication.getMovieMappingAdapter();
+        dbMovieMappings.createFilepathMapping("/test/movie.mkv", "1234");
+        dbMovieMappings.createFilepathMapping("smb://server/movie.mkv", "12345");
+
+        assertEquals(2, dbFacets.getLibraryCount(MizLib.TYPE_MOVIE));
+
+        Map<String, Integer> genres = dbFacets.getCounts(MizLib.TYPE_MOVIE, DbAdapterFacetCounts.FACET_GENRE);
+        assertEquals(2, genres.size());
+        assertEquals(1, (int) genres.get("Action"));
+        assertEquals(2, (int) genres.get("Drama"));
+
+        Map<String, Integer> certifications = dbFacets.getCounts(MizLib.TYPE_MOVIE, DbAdapterFacetCounts.FACET_CERTIFICATION);
+        assertEquals(1, (int) certifications.get("PG-13"));
+        assertEquals(1, (int) certifications.get("R"));
+
+        Map<String, Integer> years = dbFacets.getCounts(MizLib.TYPE_MOVIE, DbAdapterFacetCounts.FACET_RELEASE_YEAR);
+        assertEquals(1, (int) years.get("1970"));
+        assertEquals(1, (int) years.get("2014"));
+
+        Map<String, Integer> fileSources = dbFacets.getCounts(MizLib.TYPE_MOVIE, DbAdapterFacetCounts.FACET_FILE_SOURCE);
+        assertEquals(1, (int) fileSources.get(String.valueOf(FileSource.FILE)));
+        assertEquals(1, (int) fileSources.get(String.valueOf(FileSource.SMB)));
+
+        // Update the genres of the second movie
+        db.updateMovieSingleItem("12345", DbAdapterMovies.KEY_GENRES, "Comedy");
+
+        genres = dbFacets.getCounts(MizLib.TYPE_MOVIE, DbAdapterFacetCounts.FACET_GENRE);
+        assertEquals(3, genres.size());
+        assertEquals(1, (int) genres.get("Drama"));
+        assertEquals(1, (int) genres.get("Comedy"));
+
+        // Delete the first movie
+        MovieDatabaseUtils.deleteMovie(mContext, "1234");
+
+        assertEquals(1, dbFacets.getLibraryCount(MizLib.TYPE_MOVIE));
+
+        genres = dbFacets.getCounts(MizLib.TYPE_MOVIE, DbAdapterFacetCounts.FACET_GENRE);
+        assertEquals(1, genres.size());
+        assertEquals(1, (int) genres.get("Comedy"));
+
+        fileSources = dbFacets.getCounts(MizLib.TYPE_MOVIE, DbAdapterFacetCounts.FACET_FILE_SOURCE);
+        assertFalse(fileSources.containsKey(String.valueOf(FileSource.FILE)));
+    }
+
     /**
      * Get a database instance and reset it before the test begins.
      * @return
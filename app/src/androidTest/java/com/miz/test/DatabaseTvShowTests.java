@@ -21,9 +21,13 @@ import android.test.InstrumentationTestCase;
 import com.miz.db.DbAdapterTvShowEpisodeMappings;
 import com.miz.db.DbAdapterTvShowEpisodes;
 import com.miz.db.DbAdapterTvShows;
+import com.miz.functions.EpisodeCounter;
 import com.miz.mizuu.MizuuApplication;
 import com.miz.utils.TvShowDatabaseUtils;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+
 /**
  * Tests various TV show database queries.
  * Do not use this on a non-debug build, as
@@ -535,6 +539,33 @@ public class DatabaseTvShowTests extends InstrumentationTestCase {
         assertEquals(2, dbEpisodes.getSeasons("1234").size());
     }
 
+    public void testGetSeasonCounters() {
+        getAndResetDatabase();
+
+        DbAdapterTvShowEpisodes dbEpisodes = MizuuApplication.getTvEpisodeDbAdapter();
+
+        dbEpisodes.createEpisode("/test/lulz.mkv", "05",  "15", "1234", "episode title", "episode plot",
+                "1980-06-07", "7.6", "director", "writer", "guest stars", "1", "1");
+
+        dbEpisodes.createEpisode("/test/lulz2.mkv", "05",  "16", "1234", "episode title", "episode plot",
+                "1980-06-07", "7.6", "director", "writer", "guest stars", "0", "1");
+
+        dbEpisodes.createEpisode("/test/lulaz.mkv", "06",  "15", "1234", "episode title", "episode plot",
+                "1980-06-07", "7.6", "director", "writer", "guest stars", "1", "1");
+
+        MizuuApplication.getSeasonCoversAdapter().setSeasonCover("1234", "06");
+
+        HashMap<String, EpisodeCounter> seasons = dbEpisodes.getSeasons("1234");
+
+        assertEquals(2, seasons.get("05").getEpisodeCount());
+        assertEquals(1, seasons.get("05").getWatchedCount());
+        assertFalse(seasons.get("05").hasCover());
+
+        assertEquals(1, seasons.get("06").getEpisodeCount());
+        assertEquals(1, seasons.get("06").getWatchedCount());
+        assertTrue(seasons.get("06").hasCover());
+    }
+
     public void testGetEpisodesInSeason() {
         getAndResetDatabase();
 
@@ -629,6 +660,29 @@ public class DatabaseTvShowTests extends InstrumentationTestCase {
         assertEquals("1", dbEpisodes.getSingleItem("1234", "05", "16", DbAdapterTvShowEpisodes.KEY_HAS_WATCHED));
     }
 
+    public void testUpdateEpisodes() {
+        getAndResetDatabase();
+
+        DbAdapterTvShowEpisodes dbEpisodes = MizuuApplication.getTvEpisodeDbAdapter();
+
+        dbEpisodes.createEpisode("/test/lulz.mkv", "05",  "15", "1234", "episode title", "episode plot",
+                "1980-06-07", "7.6", "director", "writer", "guest stars", "0", "1");
+
+        dbEpisodes.createEpisode("/test/lulz.mkv", "05",  "16", "1234", "episode title", "episode plot",
+                "1980-06-07", "7.6", "director", "writer", "guest stars", "0", "1");
+
+        ArrayList<String[]> episodes = new ArrayList<String[]>();
+        episodes.add(new String[]{"1234", "05", "15"});
+        episodes.add(new String[]{"1234", "05", "16"});
+        episodes.add(new String[]{"1234", "05", "17"});
+
+        // Only the two existing episodes should be updated
+        assertEquals(2, dbEpisodes.updateEpisodes(episodes, DbAdapterTvShowEpisodes.KEY_HAS_WATCHED, "1"));
+
+        assertEquals("1", dbEpisodes.getSingleItem("1234", "05", "15", DbAdapterTvShowEpisodes.KEY_HAS_WATCHED));
+        assertEquals("1", dbEpisodes.getSingleItem("1234", "05", "16", DbAdapterTvShowEpisodes.KEY_HAS_WATCHED));
+    }
+
     public void testUpdateEpisode() {
         getAndResetDatabase();
 
@@ -928,6 +982,33 @@ public class DatabaseTvShowTests extends InstrumentationTestCase {
         assertEquals(3, dbMappings.getAllIgnoredFilepaths().getCount());
     }
 
+    public void testDeleteRemovedEpisodes() {
+        getAndResetDatabase();
+
+        DbAdapterTvShowEpisodes dbEpisodes = MizuuApplication.getTvEpisodeDbAdapter();
+        DbAdapterTvShowEpisodeMappings dbMappings = MizuuApplication.getTvShowEpisodeMappingsDbAdapter();
+
+        dbEpisodes.createEpisode("/test/lulz.mkv", "05",  "15", "1234", "episode title", "episode plot",
+                "1980-06-07", "7.6", "director", "writer", "guest stars", "1", "1");
+        dbEpisodes.createEpisode("/test/lulzfs.mkv", "05",  "16", "1234", "episode title", "episode plot",
+                "1980-06-07", "7.6", "director", "writer", "guest stars", "1", "1");
+        dbEpisodes.createEpisode("/test/lulzfs2.mkv", "06",  "16", "1234", "episode title", "episode plot",
+                "1980-06-07", "7.6", "director", "writer", "guest stars", "1", "1");
+
+        // Nothing to remove yet
+        assertEquals(0, dbEpisodes.deleteRemovedEpisodes());
+        assertEquals(3, dbEpisodes.getEpisodeCount("1234"));
+
+        dbMappings.ignoreFilepath("/test/lulz.mkv");
+        dbMappings.deleteFilepath("/test/lulzfs2.mkv");
+
+        // The ignored and unmapped episodes are gone, but the ignored filepath is kept
+        assertEquals(2, dbEpisodes.deleteRemovedEpisodes());
+        assertEquals(1, dbEpisodes.getEpisodeCount("1234"));
+        assertEquals(1, dbEpisodes.getSeasonCount("1234"));
+        assertEquals(1, dbMappings.getAllIgnoredFilepaths().getCount());
+    }
+
     /**
      * Creates a test TV show in the database.
      * @param db
@@ -196,7 +196,7 @@ public abstract class MediumBaseMovie extends BaseMovie {
 	}
 	
 	public boolean hasOfflineCopy(Filepath path) {
-		return getOfflineCopyFile(path).exists();
+		return FileUtils.hasOfflineCopy(mContext, path);
 	}
 	
 	public String getOfflineCopyUri(Filepath path) {
@@ -17,8 +17,10 @@
 package com.miz.apis.thetvdb;
 
 import com.miz.db.DbAdapterTvShows;
+import com.miz.functions.Actor;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class TvShow {
 
@@ -37,6 +39,7 @@ public class TvShow {
 			mImdbId = "";
 	private ArrayList<Episode> mEpisodes = new ArrayList<Episode>();
 	private ArrayList<Season> mSeasons = new ArrayList<Season>();
+	private List<Actor> mActorList = new ArrayList<Actor>();
 
 	public TvShow() {}
 
@@ -80,6 +83,14 @@ public class TvShow {
 		mActors = actors;
 	}
 
+	public List<Actor> getActorList() {
+		return mActorList;
+	}
+
+	public void setActorList(List<Actor> actors) {
+		mActorList = actors;
+	}
+
 	public String getGenres() {
 		return mGenres;
 	}
@@ -212,6 +212,7 @@ public class TMDbMovieService extends MovieApiService {
 				}
 
 				movie.setCast(cast.toString());
+				movie.setActors(getActors(array));
 			} catch (Exception e) {}
 
 			try {
@@ -333,24 +334,7 @@ public class TMDbMovieService extends MovieApiService {
 			} catch (Exception e) {}
 
 			try {
-				ArrayList<Actor> actors = new ArrayList<Actor>();
-
-				JSONArray array = jObject.getJSONObject("credits").getJSONArray("cast");
-				Set<String> actorIds = new HashSet<String>();
-
-				for (int i = 0; i < array.length(); i++) {
-					if (!actorIds.contains(array.getJSONObject(i).getString("id"))) {
-						actorIds.add(array.getJSONObject(i).getString("id"));
-
-						actors.add(new Actor(
-								array.getJSONObject(i).getString("name"),
-								array.getJSONObject(i).getString("character"),
-								array.getJSONObject(i).getString("id"),
-								baseUrl + MizLib.getActorUrlSize(mContext) + array.getJSONObject(i).getString("profile_path")));
-					}
-				}
-
-				movie.setActors(actors);
+				movie.setActors(getActors(jObject.getJSONObject("credits").getJSONArray("cast")));
 			} catch (Exception e) {}
 
 			try {
@@ -469,14 +453,26 @@ public class TMDbMovieService extends MovieApiService {
 
 	@Override
 	public List<Actor> getActors(String id) {
+		try {
+			JSONObject jObject = MizLib.getJSONObject(mContext, "https://api.themoviedb.org/3/movie/" + id + "/credits?api_key=" + mTmdbApiKey);	
+			return getActors(jObject.getJSONArray("cast"));
+		} catch (Exception ignored) {}
+
+		return new ArrayList<Actor>();
+	}
+
+	/**
+	 * Get a {@link List} of actors from a TMDb cast array. Actors appearing
+	 * more than once are only included the first time.
+	 * @param jArray
+	 * @return
+	 */
+	private List<Actor> getActors(JSONArray jArray) {
 		ArrayList<Actor> results = new ArrayList<Actor>();
 
 		String baseUrl = MizLib.getTmdbImageBaseUrl(mContext);
 
 		try {
-			JSONObject jObject = MizLib.getJSONObject(mContext, "https://api.themoviedb.org/3/movie/" + id + "/credits?api_key=" + mTmdbApiKey);	
-			JSONArray jArray = jObject.getJSONArray("cast");
-
 			Set<String> actorIds = new HashSet<String>();
 
 			for (int i = 0; i < jArray.length(); i++) {
@@ -520,7 +516,26 @@ public class TMDbMovieService extends MovieApiService {
 	}
 
 	public CompleteActor getCompleteActorDetails(final String actorId) {
-		JSONObject json = MizLib.getJSONObject(mContext, "https://api.themoviedb.org/3/person/" + actorId + "?api_key=" + mTmdbApiKey + "&append_to_response=movie_credits,tv_credits,images,tagged_images");
+		return getCompleteActorDetails(actorId, getActorDetailsJSON(actorId));
+	}
+
+	/**
+	 * Get the raw TMDb person response for an actor, including
+	 * movie and TV show credits, photos and tagged photos.
+	 * @param actorId
+	 * @return
+	 */
+	public JSONObject getActorDetailsJSON(final String actorId) {
+		return MizLib.getJSONObject(mContext, "https://api.themoviedb.org/3/person/" + actorId + "?api_key=" + mTmdbApiKey + "&append_to_response=movie_credits,tv_credits,images,tagged_images");
+	}
+
+	/**
+	 * Get actor details from a TMDb person response.
+	 * @param actorId
+	 * @param json Response from {@link #getActorDetailsJSON(String)}
+	 * @return
+	 */
+	public CompleteActor getCompleteActorDetails(final String actorId, JSONObject json) {
 		String baseUrl = MizLib.getTmdbImageBaseUrl(mContext);
 		boolean includeAdult = PreferenceManager.getDefaultSharedPreferences(mContext).getBoolean(INCLUDE_ADULT_CONTENT, false);
 
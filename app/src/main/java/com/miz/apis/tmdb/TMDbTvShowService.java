@@ -132,6 +132,7 @@ public class TMDbTvShowService extends TvShowApiService {
 			}
 
 			show.setActors(actors.toString());
+			show.setActorList(getActors(array));
 		} catch (Exception e) {}
 
 		// Set genres
@@ -342,14 +343,26 @@ public class TMDbTvShowService extends TvShowApiService {
 
 	@Override
 	public List<Actor> getActors(String id) {
+		try {
+			JSONObject jObject = MizLib.getJSONObject(mContext, "https://api.themoviedb.org/3/tv/" + id + "/credits?api_key=" + mTmdbApiKey);
+			return getActors(jObject.getJSONArray("cast"));
+		} catch (Exception ignored) {}
+
+		return new ArrayList<Actor>();
+	}
+
+	/**
+	 * Get a {@link List} of actors from a TMDb cast array. Actors appearing
+	 * more than once are only included the first time.
+	 * @param jArray
+	 * @return
+	 */
+	private List<Actor> getActors(JSONArray jArray) {
 		ArrayList<Actor> results = new ArrayList<Actor>();
 
 		String baseUrl = MizLib.getTmdbImageBaseUrl(mContext);
 
 		try {
-			JSONObject jObject = MizLib.getJSONObject(mContext, "https://api.themoviedb.org/3/tv/" + id + "/credits?api_key=" + mTmdbApiKey);
-			JSONArray jArray = jObject.getJSONArray("cast");
-
 			Set<String> actorIds = new HashSet<String>();
 
 			for (int i = 0; i < jArray.length(); i++) {
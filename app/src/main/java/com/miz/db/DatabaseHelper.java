@@ -21,7 +21,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 	protected static final String TAG = "Mizuu";
 
 	public static final String DATABASE_NAME = "mizuu_data";
-	protected static final int DATABASE_VERSION = 5;
+	protected static final int DATABASE_VERSION = 12;
 
 	/**
 	 * Create movie table SQL statement
@@ -60,7 +60,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 	private static final String DATABASE_CREATE_TV_SHOWS_EPISODES = "create table tvshow_episodes (season TEXT, episode TEXT, show_id TEXT," +
 			"episode_title TEXT, episode_description TEXT, episode_airdate TEXT, episode_rating TEXT, episode_director TEXT, episode_writer TEXT," +
 			"episode_gueststars TEXT, date_added TEXT, to_watch TEXT, has_watched TEXT, favourite TEXT);";
-	private static final String DATABASE_CREATE_EPISODE_SHOW_ID_INDEX = "create index episode_show_id_index on tvshow_episodes(show_id);";
+	private static final String DATABASE_CREATE_EPISODE_INDEX = "create index if not exists episode_index on tvshow_episodes(show_id, season, episode);";
 
 	/**
 	 * Create TV show episodes filepath table SQL statements
@@ -69,6 +69,14 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 			DbAdapterTvShowEpisodeMappings.KEY_FILEPATH + " TEXT, " + DbAdapterTvShowEpisodeMappings.KEY_SHOW_ID + " TEXT, " +
 			DbAdapterTvShowEpisodeMappings.KEY_SEASON + " TEXT, " + DbAdapterTvShowEpisodeMappings.KEY_EPISODE + " TEXT, " +
 			DbAdapterTvShowEpisodeMappings.KEY_IGNORED + " INTEGER);";
+	private static final String DATABASE_CREATE_EPISODE_MAPPING_INDEX = "create index if not exists episode_map_index on " +
+			DbAdapterTvShowEpisodeMappings.DATABASE_TABLE + " (" + DbAdapterTvShowEpisodeMappings.KEY_SHOW_ID + ", " +
+			DbAdapterTvShowEpisodeMappings.KEY_SEASON + ", " + DbAdapterTvShowEpisodeMappings.KEY_EPISODE + ");";
+
+	/**
+	 * Title that older versions gave to removed episodes instead of deleting them
+	 */
+	private static final String REMOVED_EPISODE_TITLE = "MIZ_REMOVED_EPISODE";
 
 	/**
 	 * Create file sources table SQL statement
@@ -76,6 +84,45 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 	private static final String DATABASE_CREATE_FILESOURCES = "create table sources (_id INTEGER PRIMARY KEY AUTOINCREMENT, filepath TEXT," +
 			"type TEXT, is_smb INTEGER, user TEXT, password TEXT, domain TEXT);";
 
+	/**
+	 * Create actor and cast tables SQL statements
+	 */
+	private static final String DATABASE_CREATE_ACTORS = "create table " + DbAdapterActors.DATABASE_TABLE_ACTORS + " (" +
+			DbAdapterActors.KEY_ACTOR_ID + " TEXT PRIMARY KEY, " + DbAdapterActors.KEY_NAME + " TEXT, " +
+			DbAdapterActors.KEY_PROFILE_URL + " TEXT, " + DbAdapterActors.KEY_DETAILS + " TEXT, " +
+			DbAdapterActors.KEY_DETAILS_UPDATED + " INTEGER);";
+	private static final String DATABASE_CREATE_CAST = "create table " + DbAdapterActors.DATABASE_TABLE_CAST + " (" +
+			DbAdapterActors.KEY_CONTENT_ID + " TEXT, " + DbAdapterActors.KEY_CONTENT_TYPE + " INTEGER, " +
+			DbAdapterActors.KEY_ACTOR_ID + " TEXT, " + DbAdapterActors.KEY_CHARACTER + " TEXT, " +
+			DbAdapterActors.KEY_CAST_ORDER + " INTEGER, " + DbAdapterActors.KEY_UPDATED + " INTEGER);";
+	private static final String DATABASE_CREATE_CAST_CONTENT_INDEX = "create index cast_content_index on " + DbAdapterActors.DATABASE_TABLE_CAST +
+			" (" + DbAdapterActors.KEY_CONTENT_TYPE + ", " + DbAdapterActors.KEY_CONTENT_ID + ");";
+
+	/**
+	 * Create offline copies table SQL statement
+	 */
+	private static final String DATABASE_CREATE_OFFLINE_COPIES = "create table " + DbAdapterOfflineCopies.DATABASE_TABLE + " (" +
+			DbAdapterOfflineCopies.KEY_FILEPATH + " TEXT PRIMARY KEY, " + DbAdapterOfflineCopies.KEY_DATE_ADDED + " INTEGER);";
+
+	/**
+	 * Create swatches table SQL statement
+	 */
+	private static final String DATABASE_CREATE_SWATCHES = "create table " + DbAdapterSwatches.DATABASE_TABLE + " (" +
+			DbAdapterSwatches.KEY_IMAGE + " TEXT PRIMARY KEY, " + DbAdapterSwatches.KEY_COLOR + " INTEGER);";
+
+	/**
+	 * Create season covers table SQL statement
+	 */
+	private static final String DATABASE_CREATE_SEASON_COVERS = "create table " + DbAdapterSeasonCovers.DATABASE_TABLE + " (" +
+			DbAdapterSeasonCovers.KEY_SHOW_ID + " TEXT, " + DbAdapterSeasonCovers.KEY_SEASON + " TEXT, primary key (" +
+			DbAdapterSeasonCovers.KEY_SHOW_ID + ", " + DbAdapterSeasonCovers.KEY_SEASON + "));";
+
+	/**
+	 * Create library version table SQL statement
+	 */
+	private static final String DATABASE_CREATE_LIBRARY_VERSION = "create table " + DbAdapterLibraryVersion.DATABASE_TABLE + " (" +
+			DbAdapterLibraryVersion.KEY_CONTENT_TYPE + " INTEGER PRIMARY KEY, " + DbAdapterLibraryVersion.KEY_VERSION + " INTEGER);";
+
 	private static DatabaseHelper mInstance;
 
 	private DatabaseHelper(Context context) {
@@ -107,13 +154,31 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
 		// TV show episode table and index
 		database.execSQL(DATABASE_CREATE_TV_SHOWS_EPISODES);
-		database.execSQL(DATABASE_CREATE_EPISODE_SHOW_ID_INDEX);
+		database.execSQL(DATABASE_CREATE_EPISODE_INDEX);
 
-		// TV show episode filepath table
+		// TV show episode filepath table and index
 		database.execSQL(DATABASE_CREATE_TV_SHOWS_EPISODES_MAPPING);
+		database.execSQL(DATABASE_CREATE_EPISODE_MAPPING_INDEX);
 
 		// File source table
 		database.execSQL(DATABASE_CREATE_FILESOURCES);
+
+		// Actor and cast tables
+		createActorTables(database);
+
+		// Offline copies table
+		database.execSQL(DATABASE_CREATE_OFFLINE_COPIES);
+
+		// Swatches table
+		database.execSQL(DATABASE_CREATE_SWATCHES);
+
+		// Season covers table
+		database.execSQL(DATABASE_CREATE_SEASON_COVERS);
+
+		// Library version table and triggers
+		createLibraryVersion(database);
+		// Facet counts tables and triggers
+		FacetCountTriggers.create(database);
 	}
 
 	@Override
@@ -130,12 +195,112 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
 			// Move file sources database to mizuu_data database
 			moveFileSourcesDb(MizuuApplication.getContext(), database);
-		} else {
+		} else if (oldVersion < 4) {
 			database.execSQL("DROP TABLE IF EXISTS movie");
 			onCreate(database);
+			return;
+		}
+
+		if (oldVersion < 6) // Actor and cast cache
+			createActorTables(database);
+
+		if (oldVersion < 7) // Offline copy registry
+			database.execSQL(DATABASE_CREATE_OFFLINE_COPIES);
+
+		if (oldVersion < 8) // Image swatches
+			database.execSQL(DATABASE_CREATE_SWATCHES);
+
+		if (oldVersion < 9) // Library change counters
+			createLibraryVersion(database);
+
+		if (oldVersion < 10) // Facet counts
+			FacetCountTriggers.create(database);
+
+		if (oldVersion < 11) // Episode indexes and removed episodes
+			removeEpisodeTombstones(database);
+
+		if (oldVersion < 12) // Season covers
+			createSeasonCovers(MizuuApplication.getContext(), database);
+	}
+
+	/**
+	 * Creates the season covers table and records the season covers
+	 * that have already been downloaded.
+	 */
+	private void createSeasonCovers(Context context, SQLiteDatabase database) {
+		database.execSQL(DATABASE_CREATE_SEASON_COVERS);
+
+		File[] covers = MizuuApplication.getTvShowSeasonFolder(context).listFiles();
+		if (covers == null)
+			return;
+
+		// Season covers are named [show ID]_S[season].jpg
+		for (File cover : covers) {
+			String name = cover.getName();
+			int index = name.lastIndexOf("_S");
+			if (index <= 0 || !name.endsWith(".jpg"))
+				continue;
+
+			ContentValues values = new ContentValues();
+			values.put(DbAdapterSeasonCovers.KEY_SHOW_ID, name.substring(0, index));
+			values.put(DbAdapterSeasonCovers.KEY_SEASON, name.substring(index + 2, name.length() - 4));
+			database.insertWithOnConflict(DbAdapterSeasonCovers.DATABASE_TABLE, null, values, SQLiteDatabase.CONFLICT_IGNORE);
 		}
 	}
 
+	/**
+	 * Older versions kept removed episodes as rows with a placeholder title,
+	 * which every episode query had to filter out. The filepaths of those
+	 * episodes are marked as ignored in the mapping table instead, so they
+	 * aren't added again, and the placeholder rows are deleted.
+	 */
+	private void removeEpisodeTombstones(SQLiteDatabase database) {
+		database.execSQL("update " + DbAdapterTvShowEpisodeMappings.DATABASE_TABLE + " set " + DbAdapterTvShowEpisodeMappings.KEY_IGNORED +
+				" = 1 where exists (select 1 from " + DbAdapterTvShowEpisodes.DATABASE_TABLE + " e where e." + DbAdapterTvShowEpisodes.KEY_SHOW_ID +
+				" = " + DbAdapterTvShowEpisodeMappings.DATABASE_TABLE + "." + DbAdapterTvShowEpisodeMappings.KEY_SHOW_ID + " and e." +
+				DbAdapterTvShowEpisodes.KEY_SEASON + " = " + DbAdapterTvShowEpisodeMappings.DATABASE_TABLE + "." + DbAdapterTvShowEpisodeMappings.KEY_SEASON +
+				" and e." + DbAdapterTvShowEpisodes.KEY_EPISODE + " = " + DbAdapterTvShowEpisodeMappings.DATABASE_TABLE + "." +
+				DbAdapterTvShowEpisodeMappings.KEY_EPISODE + " and e." + DbAdapterTvShowEpisodes.KEY_EPISODE_TITLE + " = '" + REMOVED_EPISODE_TITLE + "');");
+		database.execSQL("delete from " + DbAdapterTvShowEpisodes.DATABASE_TABLE + " where " + DbAdapterTvShowEpisodes.KEY_EPISODE_TITLE +
+				" = '" + REMOVED_EPISODE_TITLE + "';");
+
+		// Season and episode queries filter on all three columns
+		database.execSQL("drop index if exists episode_show_id_index;");
+		database.execSQL(DATABASE_CREATE_EPISODE_INDEX);
+		database.execSQL(DATABASE_CREATE_EPISODE_MAPPING_INDEX);
+	}
+
+	private void createActorTables(SQLiteDatabase database) {
+		database.execSQL(DATABASE_CREATE_ACTORS);
+		database.execSQL(DATABASE_CREATE_CAST);
+		database.execSQL(DATABASE_CREATE_CAST_CONTENT_INDEX);
+	}
+
+	/**
+	 * Creates the library version table, and triggers that bump the version
+	 * of the movie or TV show library whenever one of its tables is changed.
+	 */
+	private void createLibraryVersion(SQLiteDatabase database) {
+		database.execSQL(DATABASE_CREATE_LIBRARY_VERSION);
+
+		createLibraryVersionTriggers(database, MizLib.TYPE_MOVIE, DbAdapterMovies.DATABASE_TABLE,
+				DbAdapterMovieMappings.DATABASE_TABLE, DbAdapterCollections.DATABASE_TABLE);
+		createLibraryVersionTriggers(database, MizLib.TYPE_SHOWS, DbAdapterTvShows.DATABASE_TABLE,
+				DbAdapterTvShowEpisodes.DATABASE_TABLE, DbAdapterTvShowEpisodeMappings.DATABASE_TABLE);
+	}
+
+	private void createLibraryVersionTriggers(SQLiteDatabase database, int contentType, String... tables) {
+		database.execSQL("insert into " + DbAdapterLibraryVersion.DATABASE_TABLE + " values (" + contentType + ", 0);");
+
+		String bump = "update " + DbAdapterLibraryVersion.DATABASE_TABLE + " set " + DbAdapterLibraryVersion.KEY_VERSION + " = " +
+				DbAdapterLibraryVersion.KEY_VERSION + " + 1 where " + DbAdapterLibraryVersion.KEY_CONTENT_TYPE + " = " + contentType + ";";
+
+		for (String table : tables)
+			for (String operation : new String[]{"insert", "update", "delete"})
+				database.execSQL("create trigger " + table + "_" + operation + "_version after " + operation + " on " + table +
+						" begin " + bump + " end;");
+	}
+
 	private void upgradeMovieTable(SQLiteDatabase database) {
 		// ArrayList to store the old database values
 		ArrayList<ContentValues> mOldValues = new ArrayList<ContentValues>();
@@ -351,10 +516,11 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 			database.execSQL(DATABASE_CREATE_TV_SHOWS_EPISODES);
 
 			// ... and the index
-			database.execSQL(DATABASE_CREATE_EPISODE_SHOW_ID_INDEX);
+			database.execSQL(DATABASE_CREATE_EPISODE_INDEX);
 			
-			// ... and the file mapping table
+			// ... and the file mapping table and index
 			database.execSQL(DATABASE_CREATE_TV_SHOWS_EPISODES_MAPPING);
+			database.execSQL(DATABASE_CREATE_EPISODE_MAPPING_INDEX);
 
 			String KEY_FILEPATH = "filepath";
 			String KEY_SEASON = "season";
@@ -399,7 +565,10 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 					cv.put(KEY_EPISODE_WRITER, c.getString(c.getColumnIndex(KEY_EPISODE_WRITER)));
 					cv.put(KEY_EPISODE_GUESTSTARS, c.getString(c.getColumnIndex(KEY_EPISODE_GUESTSTARS)));
 
-					database.insert(DbAdapterTvShowEpisodes.DATABASE_TABLE, null, cv);
+					// Removed episodes only keep their filepaths, which are ignored
+					boolean removed = REMOVED_EPISODE_TITLE.equals(c.getString(c.getColumnIndex(KEY_EPISODE_TITLE)));
+					if (!removed)
+						database.insert(DbAdapterTvShowEpisodes.DATABASE_TABLE, null, cv);
 
 					// We don't want duplicates :-)
 					if (!fileSet.contains(c.getString(c.getColumnIndex(KEY_FILEPATH)))) {
@@ -408,7 +577,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 						cv.put(DbAdapterTvShowEpisodeMappings.KEY_FILEPATH, c.getString(c.getColumnIndex(KEY_FILEPATH)));
 						cv.put(DbAdapterTvShowEpisodeMappings.KEY_SEASON, c.getString(c.getColumnIndex(KEY_SEASON)));
 						cv.put(DbAdapterTvShowEpisodeMappings.KEY_EPISODE, c.getString(c.getColumnIndex(KEY_EPISODE)));
-						cv.put(DbAdapterTvShowEpisodeMappings.KEY_IGNORED, c.getString(c.getColumnIndex(KEY_EPISODE_TITLE)).equals("KEY_EPISODE_TITLE") ? 1 : 0);
+						cv.put(DbAdapterTvShowEpisodeMappings.KEY_IGNORED, removed ? 1 : 0);
 						
 						database.insert(DbAdapterTvShowEpisodeMappings.DATABASE_TABLE, null, cv);
 						fileSet.add(c.getString(c.getColumnIndex(KEY_FILEPATH)));
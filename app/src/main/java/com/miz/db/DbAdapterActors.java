@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.db;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+import com.miz.functions.Actor;
+import com.miz.functions.ColumnIndexCache;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Local cache of actors and the cast of movies and TV shows. Actors are
+ * keyed by their TMDb person ID, and the cast of a movie or TV show is
+ * keyed by its TMDb ID and content type, i.e. {@link com.miz.functions.MizLib#TYPE_MOVIE}.
+ */
+public class DbAdapterActors extends AbstractDbAdapter {
+
+	// Actor table
+	public static final String KEY_ACTOR_ID = "actor_id";
+	public static final String KEY_NAME = "name";
+	public static final String KEY_PROFILE_URL = "profile_url";
+	public static final String KEY_DETAILS = "details";
+	public static final String KEY_DETAILS_UPDATED = "details_updated";
+
+	// Cast table
+	public static final String KEY_CONTENT_ID = "content_id";
+	public static final String KEY_CONTENT_TYPE = "content_type";
+	public static final String KEY_CHARACTER = "character";
+	public static final String KEY_CAST_ORDER = "cast_order";
+	public static final String KEY_UPDATED = "updated";
+
+	public static final String DATABASE_TABLE_ACTORS = "actors";
+	public static final String DATABASE_TABLE_CAST = "actor_cast";
+
+	public DbAdapterActors(Context context) {
+		super(context);
+	}
+
+	/**
+	 * Replaces the cast of a movie or TV show. Actor names and profile
+	 * images are updated as well, but any cached actor details are kept.
+	 * @param contentId TMDb ID of the movie or TV show
+	 * @param contentType {@link com.miz.functions.MizLib#TYPE_MOVIE} or {@link com.miz.functions.MizLib#TYPE_SHOWS}
+	 * @param actors Cast in billing order
+	 */
+	public void setCast(String contentId, int contentType, List<Actor> actors) {
+		long now = System.currentTimeMillis();
+
+		SQLiteStatement updateActor = mDatabase.compileStatement("UPDATE " + DATABASE_TABLE_ACTORS + " SET " + KEY_NAME + " = ?, " +
+				KEY_PROFILE_URL + " = ? WHERE " + KEY_ACTOR_ID + " = ?");
+		SQLiteStatement insertActor = mDatabase.compileStatement("INSERT OR IGNORE INTO " + DATABASE_TABLE_ACTORS + " (" + KEY_NAME + ", " +
+				KEY_PROFILE_URL + ", " + KEY_ACTOR_ID + ") VALUES (?, ?, ?)");
+		SQLiteStatement insertCast = mDatabase.compileStatement("INSERT INTO " + DATABASE_TABLE_CAST + " (" + KEY_CONTENT_ID + ", " +
+				KEY_CONTENT_TYPE + ", " + KEY_ACTOR_ID + ", " + KEY_CHARACTER + ", " + KEY_CAST_ORDER + ", " + KEY_UPDATED + ") VALUES (?, ?, ?, ?, ?, ?)");
+
+		mDatabase.beginTransaction();
+		try {
+			mDatabase.delete(DATABASE_TABLE_CAST, KEY_CONTENT_ID + " = ? AND " + KEY_CONTENT_TYPE + " = ?",
+					new String[]{contentId, String.valueOf(contentType)});
+
+			HashSet<String> actorIds = new HashSet<String>();
+			for (int i = 0; i < actors.size(); i++) {
+				Actor actor = actors.get(i);
+				if (!actorIds.add(actor.getId()))
+					continue;
+
+				updateActor.clearBindings();
+				updateActor.bindString(1, actor.getName());
+				updateActor.bindString(2, actor.getUrl());
+				updateActor.bindString(3, actor.getId());
+
+				if (updateActor.executeUpdateDelete() == 0) {
+					insertActor.clearBindings();
+					insertActor.bindString(1, actor.getName());
+					insertActor.bindString(2, actor.getUrl());
+					insertActor.bindString(3, actor.getId());
+					insertActor.executeInsert();
+				}
+
+				insertCast.clearBindings();
+				insertCast.bindString(1, contentId);
+				insertCast.bindLong(2, contentType);
+				insertCast.bindString(3, actor.getId());
+				insertCast.bindString(4, actor.getCharacter());
+				insertCast.bindLong(5, i);
+				insertCast.bindLong(6, now);
+				insertCast.executeInsert();
+			}
+
+			mDatabase.setTransactionSuccessful();
+		} finally {
+			mDatabase.endTransaction();
+			updateActor.close();
+			insertActor.close();
+			insertCast.close();
+		}
+	}
+
+	/**
+	 * Returns the cached cast of a movie or TV show in billing order.
+	 * The list is empty if the cast hasn't been cached.
+	 */
+	public List<Actor> getCast(String contentId, int contentType) {
+		ArrayList<Actor> actors = new ArrayList<Actor>();
+
+		Cursor cursor = mDatabase.rawQuery("SELECT a." + KEY_NAME + ", c." + KEY_CHARACTER + ", c." + KEY_ACTOR_ID + ", a." + KEY_PROFILE_URL +
+				" FROM " + DATABASE_TABLE_CAST + " c JOIN " + DATABASE_TABLE_ACTORS + " a ON c." + KEY_ACTOR_ID + " = a." + KEY_ACTOR_ID +
+				" WHERE c." + KEY_CONTENT_ID + " = ? AND c." + KEY_CONTENT_TYPE + " = ? ORDER BY c." + KEY_CAST_ORDER,
+				new String[]{contentId, String.valueOf(contentType)});
+
+		ColumnIndexCache cache = new ColumnIndexCache();
+
+		if (cursor != null) {
+			try {
+				while (cursor.moveToNext()) {
+					actors.add(new Actor(
+							cursor.getString(cache.getColumnIndex(cursor, KEY_NAME)),
+							cursor.getString(cache.getColumnIndex(cursor, KEY_CHARACTER)),
+							cursor.getString(cache.getColumnIndex(cursor, KEY_ACTOR_ID)),
+							cursor.getString(cache.getColumnIndex(cursor, KEY_PROFILE_URL))));
+				}
+			} catch (Exception e) {
+			} finally {
+				cursor.close();
+			}
+		}
+
+		return actors;
+	}
+
+	/**
+	 * Returns the time at which the cast of a movie or TV show was cached, or 0 if it hasn't been.
+	 */
+	public long getCastUpdated(String contentId, int contentType) {
+		long updated = 0;
+
+		Cursor cursor = mDatabase.query(DATABASE_TABLE_CAST, new String[]{"MIN(" + KEY_UPDATED + ")"},
+				KEY_CONTENT_ID + " = ? AND " + KEY_CONTENT_TYPE + " = ?", new String[]{contentId, String.valueOf(contentType)}, null, null, null);
+
+		if (cursor != null) {
+			try {
+				if (cursor.moveToFirst())
+					updated = cursor.getLong(0);
+			} catch (Exception e) {
+			} finally {
+				cursor.close();
+			}
+		}
+
+		return updated;
+	}
+
+	public boolean deleteCast(String contentId, int contentType) {
+		return mDatabase.delete(DATABASE_TABLE_CAST, KEY_CONTENT_ID + " = ? AND " + KEY_CONTENT_TYPE + " = ?",
+				new String[]{contentId, String.valueOf(contentType)}) > 0;
+	}
+
+	public boolean deleteAllCast(int contentType) {
+		return mDatabase.delete(DATABASE_TABLE_CAST, KEY_CONTENT_TYPE + " = ?", new String[]{String.valueOf(contentType)}) > 0;
+	}
+
+	/**
+	 * Stores the full actor details, i.e. the raw TMDb person response.
+	 */
+	public void setActorDetails(String actorId, String name, String details) {
+		ContentValues values = new ContentValues();
+		values.put(KEY_NAME, name);
+		values.put(KEY_DETAILS, details);
+		values.put(KEY_DETAILS_UPDATED, System.currentTimeMillis());
+
+		if (mDatabase.update(DATABASE_TABLE_ACTORS, values, KEY_ACTOR_ID + " = ?", new String[]{actorId}) == 0) {
+			values.put(KEY_ACTOR_ID, actorId);
+			mDatabase.insert(DATABASE_TABLE_ACTORS, null, values);
+		}
+	}
+
+	/**
+	 * Returns the cached actor details, or null if they haven't been cached.
+	 */
+	public String getActorDetails(String actorId) {
+		String details = null;
+
+		Cursor cursor = mDatabase.query(DATABASE_TABLE_ACTORS, new String[]{KEY_DETAILS}, KEY_ACTOR_ID + " = ?", new String[]{actorId}, null, null, null);
+
+		if (cursor != null) {
+			try {
+				if (cursor.moveToFirst())
+					details = cursor.getString(0);
+			} catch (Exception e) {
+			} finally {
+				cursor.close();
+			}
+		}
+
+		return details;
+	}
+
+	/**
+	 * Returns the time at which the actor details were cached, or 0 if they haven't been.
+	 */
+	public long getActorDetailsUpdated(String actorId) {
+		long updated = 0;
+
+		Cursor cursor = mDatabase.query(DATABASE_TABLE_ACTORS, new String[]{KEY_DETAILS_UPDATED}, KEY_ACTOR_ID + " = ?", new String[]{actorId}, null, null, null);
+
+		if (cursor != null) {
+			try {
+				if (cursor.moveToFirst())
+					updated = cursor.getLong(0);
+			} catch (Exception e) {
+			} finally {
+				cursor.close();
+			}
+		}
+
+		return updated;
+	}
+
+	/**
+	 * Removes actors that are no longer part of any cached cast
+	 * and have no cached details.
+	 * @return Number of removed actors
+	 */
+	public int deleteUnusedActors() {
+		return mDatabase.delete(DATABASE_TABLE_ACTORS, KEY_DETAILS + " IS NULL AND " + KEY_ACTOR_ID + " NOT IN (SELECT " + KEY_ACTOR_ID +
+				" FROM " + DATABASE_TABLE_CAST + ")", null);
+	}
+
+	/**
+	 * Used for unit testing.
+	 * @return
+	 */
+	public int countActors() {
+		Cursor c = mDatabase.query(DATABASE_TABLE_ACTORS, new String[]{KEY_ACTOR_ID}, null, null, null, null, null);
+		int count = c.getCount();
+		c.close();
+		return count;
+	}
+}
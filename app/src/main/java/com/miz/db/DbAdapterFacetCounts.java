@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.db;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import java.util.TreeMap;
+
+/**
+ * Number of movies and TV shows per genre, certification, release year
+ * and file source, as well as the size of each library. The counts are
+ * kept up to date by database triggers, i.e. within the same transaction
+ * as the change to the library, so they can be read with a single query
+ * instead of walking the entire library.
+ */
+public class DbAdapterFacetCounts extends AbstractDbAdapter {
+
+	public static final String KEY_CONTENT_TYPE = "content_type";
+	public static final String KEY_FACET = "facet";
+	public static final String KEY_VALUE = "value";
+	public static final String KEY_COUNT = "count";
+	public static final String KEY_POSITION = "position";
+
+	public static final String DATABASE_TABLE = "facet_counts";
+	public static final String DATABASE_TABLE_POSITIONS = "facet_positions";
+
+	/**
+	 * Number of movies or TV shows in the library. Stored with an empty value.
+	 */
+	public static final String FACET_LIBRARY = "library";
+
+	/**
+	 * Number of movies or TV shows per genre.
+	 */
+	public static final String FACET_GENRE = "genre";
+
+	/**
+	 * Number of movies or TV shows per certification.
+	 */
+	public static final String FACET_CERTIFICATION = "certification";
+
+	/**
+	 * Number of movies or TV shows per release year. Movies and TV
+	 * shows with an unknown release year are stored with an empty value.
+	 */
+	public static final String FACET_RELEASE_YEAR = "release_year";
+
+	/**
+	 * Number of files per file source, i.e. {@link com.miz.functions.FileSource#SMB}.
+	 */
+	public static final String FACET_FILE_SOURCE = "file_source";
+
+	public DbAdapterFacetCounts(Context context) {
+		super(context);
+	}
+
+	/**
+	 * Returns the counts of a facet.
+	 * @param contentType {@link com.miz.functions.MizLib#TYPE_MOVIE} or {@link com.miz.functions.MizLib#TYPE_SHOWS}
+	 * @param facet One of the facets, i.e. {@link #FACET_GENRE}
+	 * @return Map of facet values to their count, sorted by value
+	 */
+	public TreeMap<String, Integer> getCounts(int contentType, String facet) {
+		TreeMap<String, Integer> counts = new TreeMap<String, Integer>();
+
+		Cursor cursor = mDatabase.query(DATABASE_TABLE, new String[]{KEY_VALUE, KEY_COUNT}, KEY_CONTENT_TYPE + " = ? AND " + KEY_FACET + " = ?",
+				new String[]{String.valueOf(contentType), facet}, null, null, null);
+
+		if (cursor != null) {
+			try {
+				while (cursor.moveToNext())
+					counts.put(cursor.getString(0), cursor.getInt(1));
+			} catch (Exception e) {
+			} finally {
+				cursor.close();
+			}
+		}
+
+		return counts;
+	}
+
+	/**
+	 * Returns the number of movies or TV shows in the library.
+	 * @param contentType {@link com.miz.functions.MizLib#TYPE_MOVIE} or {@link com.miz.functions.MizLib#TYPE_SHOWS}
+	 */
+	public int getLibraryCount(int contentType) {
+		Integer count = getCounts(contentType, FACET_LIBRARY).get("");
+		return count != null ? count : 0;
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.db;
+
+import android.content.Context;
+import android.database.Cursor;
+
+/**
+ * Change counters of the movie and TV show libraries. The counters are
+ * bumped by database triggers whenever a movie, collection, TV show,
+ * episode or file mapping is added, updated or removed, so cached views
+ * of a library can tell whether they're still up to date with a single query.
+ */
+public class DbAdapterLibraryVersion extends AbstractDbAdapter {
+
+	public static final String KEY_CONTENT_TYPE = "content_type";
+	public static final String KEY_VERSION = "version";
+
+	public static final String DATABASE_TABLE = "library_version";
+
+	public DbAdapterLibraryVersion(Context context) {
+		super(context);
+	}
+
+	/**
+	 * Returns the current version of a library.
+	 * @param contentType {@link com.miz.functions.MizLib#TYPE_MOVIE} or {@link com.miz.functions.MizLib#TYPE_SHOWS}
+	 * @return Version of the library, or -1 if it couldn't be read
+	 */
+	public long getVersion(int contentType) {
+		long version = -1;
+
+		Cursor cursor = mDatabase.query(DATABASE_TABLE, new String[]{KEY_VERSION}, KEY_CONTENT_TYPE + " = ?",
+				new String[]{String.valueOf(contentType)}, null, null, null);
+
+		if (cursor != null) {
+			try {
+				if (cursor.moveToFirst())
+					version = cursor.getLong(0);
+			} catch (Exception e) {
+			} finally {
+				cursor.close();
+			}
+		}
+
+		return version;
+	}
+}
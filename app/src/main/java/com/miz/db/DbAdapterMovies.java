@@ -21,11 +21,13 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
 import android.text.TextUtils;
 
 import com.miz.mizuu.MizuuApplication;
 
 import java.util.ArrayList;
+import java.util.Collection;
 
 public class DbAdapterMovies extends AbstractDbAdapter {
 
@@ -113,6 +115,35 @@ public class DbAdapterMovies extends AbstractDbAdapter {
         return mDatabase.update(DATABASE_TABLE, values, KEY_TMDB_ID + " = ?", new String[]{tmdbId}) > 0;
     }
 
+    /**
+     * Sets the same column value for a whole set of movies. All updates
+     * are done in a single transaction using one compiled statement.
+     * @return Number of updated rows
+     */
+    public int updateMoviesSingleItem(Collection<String> tmdbIds, String column, String value) {
+        if (tmdbIds == null || tmdbIds.isEmpty())
+            return 0;
+
+        int count = 0;
+        SQLiteStatement statement = mDatabase.compileStatement("UPDATE " + DATABASE_TABLE + " SET " + column + " = ? WHERE " + KEY_TMDB_ID + " = ?");
+
+        mDatabase.beginTransaction();
+        try {
+            for (String tmdbId : tmdbIds) {
+                statement.clearBindings();
+                statement.bindString(1, value);
+                statement.bindString(2, tmdbId);
+                count += statement.executeUpdateDelete();
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+            statement.close();
+        }
+
+        return count;
+    }
+
     public String getSingleItem(String tmdbId, String column) {
         if (TextUtils.isEmpty(tmdbId))
             return "";
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.db;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Registry of the video files that have an offline copy on the device.
+ * The registry is mirrored in memory, so checking a single file path
+ * doesn't touch the disk or the database.
+ */
+public class DbAdapterOfflineCopies extends AbstractDbAdapter {
+
+	public static final String KEY_FILEPATH = "filepath";
+	public static final String KEY_DATE_ADDED = "date_added";
+
+	public static final String DATABASE_TABLE = "offline_copies";
+
+	private HashSet<String> mFilepaths;
+
+	public DbAdapterOfflineCopies(Context context) {
+		super(context);
+	}
+
+	/**
+	 * Registers an offline copy of the given file path.
+	 */
+	public synchronized void addOfflineCopy(String filepath) {
+		ContentValues values = new ContentValues();
+		values.put(KEY_FILEPATH, filepath);
+		values.put(KEY_DATE_ADDED, System.currentTimeMillis());
+
+		mDatabase.insertWithOnConflict(DATABASE_TABLE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+		getFilepaths().add(filepath);
+	}
+
+	/**
+	 * Unregisters the offline copy of the given file path.
+	 */
+	public synchronized boolean removeOfflineCopy(String filepath) {
+		getFilepaths().remove(filepath);
+		return mDatabase.delete(DATABASE_TABLE, KEY_FILEPATH + " = ?", new String[]{filepath}) > 0;
+	}
+
+	public synchronized boolean hasOfflineCopy(String filepath) {
+		return getFilepaths().contains(filepath);
+	}
+
+	/**
+	 * Replaces the registry with the given file paths, i.e. after
+	 * comparing the registry to the contents of the offline folder.
+	 * Only the file paths that differ are inserted or deleted, in a
+	 * single transaction. Callers should hold the lock of the adapter
+	 * while they look for the offline copies, so copies that are added
+	 * or removed meanwhile aren't overwritten.
+	 */
+	public synchronized void setOfflineCopies(Collection<String> filepaths) {
+		HashSet<String> wanted = new HashSet<String>(filepaths);
+
+		SQLiteStatement insert = mDatabase.compileStatement("INSERT OR REPLACE INTO " + DATABASE_TABLE + " (" +
+				KEY_FILEPATH + ", " + KEY_DATE_ADDED + ") VALUES (?, ?)");
+		SQLiteStatement delete = mDatabase.compileStatement("DELETE FROM " + DATABASE_TABLE + " WHERE " + KEY_FILEPATH + " = ?");
+
+		long now = System.currentTimeMillis();
+
+		mDatabase.beginTransaction();
+		try {
+			Set<String> existing = getIds("SELECT " + KEY_FILEPATH + " FROM " + DATABASE_TABLE);
+
+			for (String filepath : existing) {
+				if (wanted.contains(filepath))
+					continue;
+
+				delete.clearBindings();
+				delete.bindString(1, filepath);
+				delete.executeUpdateDelete();
+			}
+
+			for (String filepath : wanted) {
+				if (existing.contains(filepath))
+					continue;
+
+				insert.clearBindings();
+				insert.bindString(1, filepath);
+				insert.bindLong(2, now);
+				insert.executeInsert();
+			}
+
+			mDatabase.setTransactionSuccessful();
+		} finally {
+			mDatabase.endTransaction();
+			insert.close();
+			delete.close();
+		}
+
+		mFilepaths = wanted;
+	}
+
+	/**
+	 * Returns the TMDb IDs of all movies with at least one offline copy.
+	 */
+	public Set<String> getMoviesWithOfflineCopies() {
+		return getIds("SELECT DISTINCT m." + DbAdapterMovieMappings.KEY_TMDB_ID + " FROM " + DATABASE_TABLE + " o JOIN " +
+				DbAdapterMovieMappings.DATABASE_TABLE + " m ON m." + DbAdapterMovieMappings.KEY_FILEPATH + " = o." + KEY_FILEPATH);
+	}
+
+	/**
+	 * Returns the IDs of all TV shows with at least one offline copy of an episode.
+	 */
+	public Set<String> getShowsWithOfflineCopies() {
+		return getIds("SELECT DISTINCT e." + DbAdapterTvShowEpisodeMappings.KEY_SHOW_ID + " FROM " + DATABASE_TABLE + " o JOIN " +
+				DbAdapterTvShowEpisodeMappings.DATABASE_TABLE + " e ON e." + DbAdapterTvShowEpisodeMappings.KEY_FILEPATH + " = o." + KEY_FILEPATH);
+	}
+
+	/**
+	 * Returns the file paths of all movies and TV show episodes in the library.
+	 */
+	public Set<String> getLibraryFilepaths() {
+		return getIds("SELECT " + DbAdapterMovieMappings.KEY_FILEPATH + " FROM " + DbAdapterMovieMappings.DATABASE_TABLE +
+				" UNION SELECT " + DbAdapterTvShowEpisodeMappings.KEY_FILEPATH + " FROM " + DbAdapterTvShowEpisodeMappings.DATABASE_TABLE);
+	}
+
+	private Set<String> getIds(String sql) {
+		HashSet<String> ids = new HashSet<String>();
+
+		Cursor cursor = mDatabase.rawQuery(sql, null);
+		if (cursor != null) {
+			try {
+				while (cursor.moveToNext())
+					ids.add(cursor.getString(0));
+			} catch (Exception e) {
+			} finally {
+				cursor.close();
+			}
+		}
+
+		return ids;
+	}
+
+	private HashSet<String> getFilepaths() {
+		if (mFilepaths == null) {
+			mFilepaths = new HashSet<String>();
+
+			Cursor cursor = mDatabase.query(DATABASE_TABLE, new String[]{KEY_FILEPATH}, null, null, null, null, null);
+			if (cursor != null) {
+				try {
+					while (cursor.moveToNext())
+						mFilepaths.add(cursor.getString(0));
+				} catch (Exception e) {
+				} finally {
+					cursor.close();
+				}
+			}
+		}
+
+		return mFilepaths;
+	}
+
+	/**
+	 * Used for unit testing.
+	 * @return
+	 */
+	public int count() {
+		Cursor c = mDatabase.query(DATABASE_TABLE, new String[]{KEY_FILEPATH}, null, null, null, null, null);
+		int count = c.getCount();
+		c.close();
+		return count;
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.db;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Seasons that have a downloaded cover image. The covers are recorded
+ * when they're downloaded, so season lists don't have to check the file
+ * system for each season.
+ */
+public class DbAdapterSeasonCovers extends AbstractDbAdapter {
+
+	public static final String KEY_SHOW_ID = "show_id";
+	public static final String KEY_SEASON = "season";
+
+	public static final String DATABASE_TABLE = "season_covers";
+
+	public DbAdapterSeasonCovers(Context context) {
+		super(context);
+	}
+
+	/**
+	 * @param season Season with index zero added, i.e. "01"
+	 */
+	public void setSeasonCover(String showId, String season) {
+		ContentValues values = new ContentValues();
+		values.put(KEY_SHOW_ID, showId);
+		values.put(KEY_SEASON, season);
+
+		mDatabase.insertWithOnConflict(DATABASE_TABLE, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+	}
+
+	public boolean deleteSeasonCover(String showId, String season) {
+		return mDatabase.delete(DATABASE_TABLE, KEY_SHOW_ID + " = ? AND " + KEY_SEASON + " = ?", new String[]{showId, season}) > 0;
+	}
+
+	public boolean deleteSeasonCovers(String showId) {
+		return mDatabase.delete(DATABASE_TABLE, KEY_SHOW_ID + " = ?", new String[]{showId}) > 0;
+	}
+
+	public boolean deleteAllSeasonCovers() {
+		return mDatabase.delete(DATABASE_TABLE, null, null) > 0;
+	}
+
+	/**
+	 * Used for unit testing.
+	 * @return
+	 */
+	public int count() {
+		Cursor c = mDatabase.query(DATABASE_TABLE, new String[]{KEY_SHOW_ID}, null, null, null, null, null);
+		int count = c.getCount();
+		c.close();
+		return count;
+	}
+}
@@ -20,6 +20,8 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 
+import com.miz.mizuu.MizuuApplication;
+
 public class DbAdapterSources extends AbstractDbAdapter {
 
 	public static final String KEY_ROWID = "_id";
@@ -52,7 +54,9 @@ public class DbAdapterSources extends AbstractDbAdapter {
 	 * @return rowId of the newly created source
 	 */
 	public long createSource(String filepath, String type, int isSmb, String user, String password, String domain) {
-		return mDatabase.insert(DATABASE_TABLE, null, createContentValues(filepath, type, isSmb, user, password, domain));
+		long rowId = mDatabase.insert(DATABASE_TABLE, null, createContentValues(filepath, type, isSmb, user, password, domain));
+		MizuuApplication.getSmbSessionManager().invalidate();
+		return rowId;
 	}
 
 	/**
@@ -61,7 +65,9 @@ public class DbAdapterSources extends AbstractDbAdapter {
 	 * @return Boolean whether it was successful or not
 	 */
 	public boolean deleteSource(long rowId) {
-		return mDatabase.delete(DATABASE_TABLE, KEY_ROWID + "='" + rowId + "'", null) > 0;
+		boolean deleted = mDatabase.delete(DATABASE_TABLE, KEY_ROWID + "='" + rowId + "'", null) > 0;
+		MizuuApplication.getSmbSessionManager().invalidate();
+		return deleted;
 	}
 	
 	/**
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.db;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Swatch colours of cover art, poster and episode images, keyed by the
+ * path of the image file (or the URL of remote images).
+ */
+public class DbAdapterSwatches extends AbstractDbAdapter {
+
+	public static final String KEY_IMAGE = "image";
+	public static final String KEY_COLOR = "color";
+
+	public static final String DATABASE_TABLE = "swatches";
+
+	public DbAdapterSwatches(Context context) {
+		super(context);
+	}
+
+	public void setSwatch(String image, int color) {
+		ContentValues values = new ContentValues();
+		values.put(KEY_IMAGE, image);
+		values.put(KEY_COLOR, color);
+
+		mDatabase.insertWithOnConflict(DATABASE_TABLE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+	}
+
+	/**
+	 * Returns the swatch colour of the image, or null if it hasn't been stored.
+	 */
+	public Integer getSwatch(String image) {
+		Integer color = null;
+
+		Cursor cursor = mDatabase.query(DATABASE_TABLE, new String[]{KEY_COLOR}, KEY_IMAGE + " = ?", new String[]{image}, null, null, null);
+
+		if (cursor != null) {
+			try {
+				if (cursor.moveToFirst())
+					color = cursor.getInt(0);
+			} catch (Exception e) {
+			} finally {
+				cursor.close();
+			}
+		}
+
+		return color;
+	}
+
+	public boolean deleteSwatch(String image) {
+		return mDatabase.delete(DATABASE_TABLE, KEY_IMAGE + " = ?", new String[]{image}) > 0;
+	}
+
+	/**
+	 * Used for unit testing.
+	 * @return
+	 */
+	public int count() {
+		Cursor c = mDatabase.query(DATABASE_TABLE, new String[]{KEY_IMAGE}, null, null, null, null, null);
+		int count = c.getCount();
+		c.close();
+		return count;
+	}
+}
@@ -152,6 +152,27 @@ public class DbAdapterTvShowEpisodeMappings extends AbstractDbAdapter {
 		return mDatabase.query(DATABASE_TABLE, ALL_COLUMNS, KEY_SHOW_ID + " = ?", new String[]{showId}, null, null, null);
 	}
 
+	public Cursor getAllIgnoredFilepaths() {
+		return mDatabase.query(DATABASE_TABLE, ALL_COLUMNS, KEY_IGNORED + " = 1", null, null, null, null);
+	}
+
+	/**
+	 * Marks a filepath as ignored. It stays in the table, so the file isn't
+	 * added again, but its episode is removed by {@link DbAdapterTvShowEpisodes#deleteRemovedEpisodes()}.
+	 */
+	public boolean ignoreFilepath(String filepath) {
+		ContentValues values = new ContentValues();
+		values.put(KEY_IGNORED, 1);
+		return mDatabase.update(DATABASE_TABLE, values, KEY_FILEPATH + " = ?", new String[]{filepath}) > 0;
+	}
+
+	public boolean ignoreSeason(String showId, int season) {
+		ContentValues values = new ContentValues();
+		values.put(KEY_IGNORED, 1);
+		return mDatabase.update(DATABASE_TABLE, values, KEY_SHOW_ID + " = ? AND " + KEY_SEASON + " = ?",
+				new String[]{showId, MizLib.addIndexZero(season)}) > 0;
+	}
+
 	public boolean deleteFilepath(String filepath) {
 		String[] selectionArgs = new String[]{filepath};
 		return mDatabase.delete(DATABASE_TABLE, KEY_FILEPATH + " = ?", selectionArgs) > 0;
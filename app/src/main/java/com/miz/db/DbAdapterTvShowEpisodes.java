@@ -20,6 +20,7 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.SQLException;
+import android.database.sqlite.SQLiteStatement;
 
 import com.miz.functions.ColumnIndexCache;
 import com.miz.functions.EpisodeCounter;
@@ -30,7 +31,9 @@ import com.miz.utils.FileUtils;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 
 public class DbAdapterTvShowEpisodes extends AbstractDbAdapter {
@@ -85,18 +88,51 @@ public class DbAdapterTvShowEpisodes extends AbstractDbAdapter {
 				new String[]{showId, season, episode}) > 0;
 	}
 
+	/**
+	 * Sets the same column value for a whole set of episodes. All updates
+	 * are done in a single transaction using one compiled statement.
+	 * @param episodes Episodes as {show ID, season, episode} triples, with index zero added to season and episode
+	 * @return Number of updated rows
+	 */
+	public int updateEpisodes(Collection<String[]> episodes, String column, String value) {
+		if (episodes == null || episodes.isEmpty())
+			return 0;
+
+		int count = 0;
+		SQLiteStatement statement = mDatabase.compileStatement("UPDATE " + DATABASE_TABLE + " SET " + column + " = ? WHERE " +
+				KEY_SHOW_ID + " = ? AND " + KEY_SEASON + " = ? AND " + KEY_EPISODE + " = ?");
+
+		mDatabase.beginTransaction();
+		try {
+			for (String[] episode : episodes) {
+				statement.clearBindings();
+				statement.bindString(1, value);
+				statement.bindString(2, episode[0]);
+				statement.bindString(3, episode[1]);
+				statement.bindString(4, episode[2]);
+				count += statement.executeUpdateDelete();
+			}
+			mDatabase.setTransactionSuccessful();
+		} finally {
+			mDatabase.endTransaction();
+			statement.close();
+		}
+
+		return count;
+	}
+
 	public Cursor getEpisode(String showId, int season, int episode) {
 		return mDatabase.query(DATABASE_TABLE, ALL_COLUMNS, KEY_SHOW_ID + " = ? AND " + KEY_SEASON + " = ? AND " + KEY_EPISODE + " = ?",
 				new String[]{showId, MizLib.addIndexZero(season), MizLib.addIndexZero(episode)}, null, null, null);
 	}
 
 	public Cursor getEpisodes(String showId) {
-		return mDatabase.query(DATABASE_TABLE, ALL_COLUMNS, KEY_SHOW_ID + " = ? AND NOT(" + KEY_EPISODE_TITLE +
-                " = 'MIZ_REMOVED_EPISODE')", new String[]{showId}, KEY_SEASON + "," + KEY_EPISODE, null, KEY_SEASON + " asc, " + KEY_EPISODE + " asc");
+		return mDatabase.query(DATABASE_TABLE, ALL_COLUMNS, KEY_SHOW_ID + " = ?",
+				new String[]{showId}, KEY_SEASON + "," + KEY_EPISODE, null, KEY_SEASON + " asc, " + KEY_EPISODE + " asc");
 	}
 
 	public Cursor getAllEpisodes() {
-		return mDatabase.query(DATABASE_TABLE, ALL_COLUMNS, "NOT(" + KEY_EPISODE_TITLE + " = 'MIZ_REMOVED_EPISODE')", null, null, null, null);
+		return mDatabase.query(DATABASE_TABLE, ALL_COLUMNS, null, null, null, null, null);
 	}
 
 	public boolean deleteEpisode(String showId, int season, int episode) {
@@ -117,8 +153,23 @@ public class DbAdapterTvShowEpisodes extends AbstractDbAdapter {
 		return mDatabase.delete(DATABASE_TABLE, null, null) > 0;
 	}
 
+	/**
+	 * Deletes episodes that no longer have any filepaths mapped to them,
+	 * other than ignored ones. The ignored filepaths are kept, so the
+	 * files aren't added to the library again on the next update.
+	 * @return Number of deleted episodes
+	 */
+	public int deleteRemovedEpisodes() {
+		String mappings = DbAdapterTvShowEpisodeMappings.DATABASE_TABLE;
+		return mDatabase.delete(DATABASE_TABLE, "NOT EXISTS (SELECT 1 FROM " + mappings + " WHERE " +
+				mappings + "." + DbAdapterTvShowEpisodeMappings.KEY_SHOW_ID + " = " + DATABASE_TABLE + "." + KEY_SHOW_ID + " AND " +
+				mappings + "." + DbAdapterTvShowEpisodeMappings.KEY_SEASON + " = " + DATABASE_TABLE + "." + KEY_SEASON + " AND " +
+				mappings + "." + DbAdapterTvShowEpisodeMappings.KEY_EPISODE + " = " + DATABASE_TABLE + "." + KEY_EPISODE + " AND " +
+				mappings + "." + DbAdapterTvShowEpisodeMappings.KEY_IGNORED + " IS NOT 1)", null);
+	}
+
 	public int getEpisodeCount(String showId) {
-		Cursor c = mDatabase.query(DATABASE_TABLE, ALL_COLUMNS, KEY_SHOW_ID + " = ? AND NOT(" + KEY_EPISODE_TITLE + " = 'MIZ_REMOVED_EPISODE')",
+		Cursor c = mDatabase.query(DATABASE_TABLE, ALL_COLUMNS, KEY_SHOW_ID + " = ?",
 				new String[]{showId}, KEY_SEASON + "," + KEY_EPISODE, null, KEY_SEASON + " asc, " + KEY_EPISODE + " asc");
 		int count = c.getCount();
 		c.close();
@@ -126,7 +177,7 @@ public class DbAdapterTvShowEpisodes extends AbstractDbAdapter {
 	}
 	
 	public int getEpisodeCountForSeason(String showId, String season) {
-		Cursor c = mDatabase.query(DATABASE_TABLE, ALL_COLUMNS, KEY_SHOW_ID + " = ? AND " + KEY_SEASON + " = ? AND NOT(" + KEY_EPISODE_TITLE + " = 'MIZ_REMOVED_EPISODE')",
+		Cursor c = mDatabase.query(DATABASE_TABLE, ALL_COLUMNS, KEY_SHOW_ID + " = ? AND " + KEY_SEASON + " = ?",
 				new String[]{showId, season}, KEY_SEASON + "," + KEY_EPISODE, null, KEY_SEASON + " asc, " + KEY_EPISODE + " asc");
 		int count = c.getCount();
 		c.close();
@@ -134,40 +185,35 @@ public class DbAdapterTvShowEpisodes extends AbstractDbAdapter {
 	}
 
 	public int getSeasonCount(String showId) {
-		Cursor c = mDatabase.query(DATABASE_TABLE, ALL_COLUMNS, KEY_SHOW_ID + " = ? AND NOT(" + KEY_EPISODE_TITLE + " = 'MIZ_REMOVED_EPISODE')",
+		Cursor c = mDatabase.query(DATABASE_TABLE, ALL_COLUMNS, KEY_SHOW_ID + " = ?",
 				new String[]{showId}, KEY_SEASON, null, KEY_SEASON);
 		int count = c.getCount();
 		c.close();
 		return count;
 	}
 
+	/**
+	 * Counts the episodes and watched episodes of each season in a single
+	 * query, and tells if a cover has been downloaded for the season.
+	 * @return Map of seasons, with index zero added, to their episode counts
+	 */
 	public HashMap<String, EpisodeCounter> getSeasons(String showId) {
 		HashMap<String, EpisodeCounter> results = new HashMap<String, EpisodeCounter>();
 
-		ColumnIndexCache cache = new ColumnIndexCache();
-		Cursor c = null;
-		try {
-			c = mDatabase.query(DATABASE_TABLE, new String[]{KEY_SHOW_ID, KEY_EPISODE_TITLE, KEY_SEASON, KEY_HAS_WATCHED}, KEY_SHOW_ID + " = ? AND NOT(" + KEY_EPISODE_TITLE + " = 'MIZ_REMOVED_EPISODE')", new String[]{showId}, KEY_SEASON + "," + KEY_EPISODE, null, KEY_SEASON + " asc");
-			while (c.moveToNext()) {
-				String season = c.getString(cache.getColumnIndex(c, KEY_SEASON));
-
-				EpisodeCounter counter = results.get(season);
-				if (counter == null)
-					counter = new EpisodeCounter();
-
-				// Increment the episode count
-				counter.incrementEpisodeCount();
-
-				// Increment watched counter if the episode has been watched
-				if (c.getString(cache.getColumnIndex(c, KEY_HAS_WATCHED)).equals("1"))
-					counter.incrementWatchedCount();
-
-				results.put(season, counter);
-			}
-		} catch (Exception e) {
-		} finally {
-			if (c != null)
+		String covers = DbAdapterSeasonCovers.DATABASE_TABLE;
+		Cursor c = mDatabase.rawQuery("SELECT e." + KEY_SEASON + ", COUNT(*), SUM(e." + KEY_HAS_WATCHED + " = '1'), MAX(c." +
+				DbAdapterSeasonCovers.KEY_SEASON + " IS NOT NULL) FROM " + DATABASE_TABLE + " e LEFT JOIN " + covers + " c ON c." +
+				DbAdapterSeasonCovers.KEY_SHOW_ID + " = e." + KEY_SHOW_ID + " AND c." + DbAdapterSeasonCovers.KEY_SEASON + " = e." + KEY_SEASON +
+				" WHERE e." + KEY_SHOW_ID + " = ? GROUP BY e." + KEY_SEASON, new String[]{showId});
+
+		if (c != null) {
+			try {
+				while (c.moveToNext())
+					results.put(c.getString(0), new EpisodeCounter(c.getInt(1), c.getInt(2), c.getInt(3) == 1));
+			} catch (Exception e) {
+			} finally {
 				c.close();
+			}
 		}
 
 		return results;
@@ -239,6 +285,49 @@ public class DbAdapterTvShowEpisodes extends AbstractDbAdapter {
 		return c.getCount() > 0;
 	}
 
+	/**
+	 * Same as {@link #getLatestEpisodeAirdate(String)}, but for all TV shows in a single query.
+	 * @return Map of TV show IDs to the air date of their latest episode
+	 */
+	public HashMap<String, String> getLatestEpisodeAirdates() {
+		HashMap<String, String> airdates = new HashMap<String, String>();
+
+		Cursor c = mDatabase.query(DATABASE_TABLE, new String[]{KEY_SHOW_ID, "MAX(" + KEY_EPISODE_AIRDATE + ")"},
+				KEY_EPISODE_AIRDATE + " LIKE '%-%'", null, KEY_SHOW_ID, null, null);
+		if (c != null) {
+			try {
+				while (c.moveToNext())
+					airdates.put(c.getString(0), c.getString(1));
+			} catch (Exception e) {
+			} finally {
+				c.close();
+			}
+		}
+
+		return airdates;
+	}
+
+	/**
+	 * Same as {@link #hasUnwatchedEpisodes(String)}, but for all TV shows in a single query.
+	 * @return IDs of all TV shows with at least one unwatched episode
+	 */
+	public HashSet<String> getShowsWithUnwatchedEpisodes() {
+		HashSet<String> showIds = new HashSet<String>();
+
+		Cursor c = mDatabase.query(true, DATABASE_TABLE, new String[]{KEY_SHOW_ID}, KEY_HAS_WATCHED + " = '0'", null, null, null, null, null);
+		if (c != null) {
+			try {
+				while (c.moveToNext())
+					showIds.add(c.getString(0));
+			} catch (Exception e) {
+			} finally {
+				c.close();
+			}
+		}
+
+		return showIds;
+	}
+
     public boolean setShowWatchStatus(String showId, boolean watched) {
         ContentValues values = new ContentValues();
         values.put(KEY_HAS_WATCHED, watched ? "1" : "0");
@@ -298,7 +387,7 @@ public class DbAdapterTvShowEpisodes extends AbstractDbAdapter {
      * @return
      */
     public int count() {
-        Cursor c = mDatabase.query(DATABASE_TABLE, ALL_COLUMNS, "NOT(" + KEY_EPISODE_TITLE + " = 'MIZ_REMOVED_EPISODE')",
+        Cursor c = mDatabase.query(DATABASE_TABLE, ALL_COLUMNS, null,
                 null, KEY_SEASON + "," + KEY_EPISODE, null, null);
         int count = c.getCount();
         c.close();
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.db;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.miz.functions.FileSource;
+import com.miz.functions.MizLib;
+
+import static com.miz.db.DbAdapterFacetCounts.DATABASE_TABLE;
+import static com.miz.db.DbAdapterFacetCounts.DATABASE_TABLE_POSITIONS;
+import static com.miz.db.DbAdapterFacetCounts.FACET_CERTIFICATION;
+import static com.miz.db.DbAdapterFacetCounts.FACET_FILE_SOURCE;
+import static com.miz.db.DbAdapterFacetCounts.FACET_GENRE;
+import static com.miz.db.DbAdapterFacetCounts.FACET_LIBRARY;
+import static com.miz.db.DbAdapterFacetCounts.FACET_RELEASE_YEAR;
+import static com.miz.db.DbAdapterFacetCounts.KEY_CONTENT_TYPE;
+import static com.miz.db.DbAdapterFacetCounts.KEY_COUNT;
+import static com.miz.db.DbAdapterFacetCounts.KEY_FACET;
+import static com.miz.db.DbAdapterFacetCounts.KEY_POSITION;
+import static com.miz.db.DbAdapterFacetCounts.KEY_VALUE;
+
+/**
+ * Creates the facet counts table and the triggers that maintain it.
+ * <p>
+ * Facets are defined as SQL expressions on a row of a library table,
+ * where "$" refers to the row. Every insert, update and delete of a row
+ * subtracts the counts of the old row and adds the counts of the new one.
+ * Comma-separated genres are split by joining them with a table of
+ * character positions, as SQLite on older devices has no string search function.
+ * <p>
+ * Note that rows replaced by "insert or replace" don't fire the delete
+ * triggers, so the library tables must be changed with plain inserts and updates.
+ */
+final class FacetCountTriggers {
+
+	/**
+	 * Maximum length of the genres of a movie or TV show. Anything beyond it isn't counted.
+	 */
+	private static final int MAX_GENRES_LENGTH = 512;
+
+	private static final String CREATE_FACET_COUNTS = "create table " + DATABASE_TABLE + " (" + KEY_CONTENT_TYPE + " INTEGER, " +
+			KEY_FACET + " TEXT, " + KEY_VALUE + " TEXT, " + KEY_COUNT + " INTEGER, PRIMARY KEY (" + KEY_CONTENT_TYPE + ", " +
+			KEY_FACET + ", " + KEY_VALUE + "));";
+	private static final String CREATE_FACET_POSITIONS = "create table " + DATABASE_TABLE_POSITIONS + " (" + KEY_POSITION + " INTEGER PRIMARY KEY);";
+
+	private FacetCountTriggers() {} // No instantiation
+
+	/**
+	 * Creates the tables, counts the current libraries and creates the triggers.
+	 */
+	static void create(SQLiteDatabase database) {
+		database.execSQL(CREATE_FACET_COUNTS);
+		database.execSQL(CREATE_FACET_POSITIONS);
+
+		for (int i = 0; i < MAX_GENRES_LENGTH; i++)
+			database.execSQL("insert into " + DATABASE_TABLE_POSITIONS + " values (" + i + ");");
+
+		String movie = "not ($." + DbAdapterMovies.KEY_TMDB_ID + " = '" + DbAdapterMovies.UNIDENTIFIED_ID + "')";
+		String show = "not ($." + DbAdapterTvShows.KEY_SHOW_ID + " = '" + DbAdapterTvShows.UNIDENTIFIED_ID + "')";
+
+		create(database, DbAdapterMovies.DATABASE_TABLE, new String[]{DbAdapterMovies.KEY_TMDB_ID, DbAdapterMovies.KEY_GENRES,
+						DbAdapterMovies.KEY_CERTIFICATION, DbAdapterMovies.KEY_RELEASEDATE},
+				new Facet(MizLib.TYPE_MOVIE, FACET_LIBRARY, "''", movie),
+				new Facet(MizLib.TYPE_MOVIE, FACET_GENRE, "$." + DbAdapterMovies.KEY_GENRES, movie, true),
+				new Facet(MizLib.TYPE_MOVIE, FACET_CERTIFICATION, "trim($." + DbAdapterMovies.KEY_CERTIFICATION + ")",
+						movie + " and $." + DbAdapterMovies.KEY_CERTIFICATION + " != ''"),
+				new Facet(MizLib.TYPE_MOVIE, FACET_RELEASE_YEAR, releaseYear("$." + DbAdapterMovies.KEY_RELEASEDATE), movie));
+
+		create(database, DbAdapterMovieMappings.DATABASE_TABLE, new String[]{DbAdapterMovieMappings.KEY_FILEPATH,
+						DbAdapterMovieMappings.KEY_TMDB_ID, DbAdapterMovieMappings.KEY_IGNORED},
+				new Facet(MizLib.TYPE_MOVIE, FACET_FILE_SOURCE, fileSource("$." + DbAdapterMovieMappings.KEY_FILEPATH),
+						movie + " and $." + DbAdapterMovieMappings.KEY_IGNORED + " is not 1"));
+
+		create(database, DbAdapterTvShows.DATABASE_TABLE, new String[]{DbAdapterTvShows.KEY_SHOW_ID, DbAdapterTvShows.KEY_SHOW_TITLE,
+						DbAdapterTvShows.KEY_SHOW_GENRES, DbAdapterTvShows.KEY_SHOW_CERTIFICATION, DbAdapterTvShows.KEY_SHOW_FIRST_AIRDATE},
+				new Facet(MizLib.TYPE_SHOWS, FACET_LIBRARY, "''", show + " and not ($." + DbAdapterTvShows.KEY_SHOW_ID + " = '') and not ($." +
+						DbAdapterTvShows.KEY_SHOW_TITLE + " like '%MizUnidentified%')"),
+				new Facet(MizLib.TYPE_SHOWS, FACET_GENRE, "$." + DbAdapterTvShows.KEY_SHOW_GENRES, show, true),
+				new Facet(MizLib.TYPE_SHOWS, FACET_CERTIFICATION, "trim($." + DbAdapterTvShows.KEY_SHOW_CERTIFICATION + ")",
+						show + " and $." + DbAdapterTvShows.KEY_SHOW_CERTIFICATION + " != ''"),
+				new Facet(MizLib.TYPE_SHOWS, FACET_RELEASE_YEAR, releaseYear("$." + DbAdapterTvShows.KEY_SHOW_FIRST_AIRDATE), show));
+
+		create(database, DbAdapterTvShowEpisodeMappings.DATABASE_TABLE, new String[]{DbAdapterTvShowEpisodeMappings.KEY_FILEPATH,
+						DbAdapterTvShowEpisodeMappings.KEY_SHOW_ID, DbAdapterTvShowEpisodeMappings.KEY_IGNORED},
+				new Facet(MizLib.TYPE_SHOWS, FACET_FILE_SOURCE, fileSource("$." + DbAdapterTvShowEpisodeMappings.KEY_FILEPATH),
+						show + " and $." + DbAdapterTvShowEpisodeMappings.KEY_IGNORED + " is not 1"));
+	}
+
+	private static void create(SQLiteDatabase database, String table, String[] columns, Facet... facets) {
+		StringBuilder insert = new StringBuilder(), update = new StringBuilder(), delete = new StringBuilder();
+
+		for (Facet facet : facets) {
+			database.execSQL("insert into " + DATABASE_TABLE + " select " + facet.mContentType + ", '" + facet.mName + "', " + KEY_VALUE +
+					", count(*) from (" + facet.select(table, "x") + ") group by " + KEY_VALUE + ";");
+
+			insert.append(facet.add("new"));
+			update.append(facet.remove("old")).append(facet.add("new"));
+			delete.append(facet.remove("old"));
+		}
+
+		database.execSQL("create trigger " + table + "_insert_facets after insert on " + table + " begin " + insert + "end;");
+		database.execSQL("create trigger " + table + "_update_facets after update of " + join(columns) + " on " + table +
+				" begin " + update + "end;");
+		database.execSQL("create trigger " + table + "_delete_facets after delete on " + table + " begin " + delete + "end;");
+	}
+
+	/**
+	 * Mirrors the release year of movies and TV shows, i.e. the first four
+	 * characters of a yyyy-MM-dd date, or a year on its own. Empty if unknown.
+	 */
+	private static String releaseYear(String date) {
+		String trimmed = "trim(" + date + ")";
+		return "(case when substr(" + trimmed + ", 5, 1) = '-' and substr(" + trimmed + ", 8, 1) = '-' then substr(" + trimmed +
+				", 1, 4) when length(" + trimmed + ") = 4 then " + trimmed + " else '' end)";
+	}
+
+	/**
+	 * Mirrors {@link com.miz.functions.Filepath#getType()}.
+	 */
+	private static String fileSource(String filepath) {
+		return "(case when " + filepath + " glob '*smb://*' then " + FileSource.SMB + " when " + filepath + " glob '*http://*' then " +
+				FileSource.UPNP + " else " + FileSource.FILE + " end)";
+	}
+
+	private static String join(String[] columns) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < columns.length; i++)
+			sb.append(i > 0 ? ", " : "").append(columns[i]);
+		return sb.toString();
+	}
+
+	private static class Facet {
+
+		private final int mContentType;
+		private final String mName, mValue, mCondition;
+		private final boolean mSplit;
+
+		public Facet(int contentType, String name, String value, String condition) {
+			this(contentType, name, value, condition, false);
+		}
+
+		/**
+		 * @param split True if the value is a comma-separated list, which is counted once per item
+		 */
+		public Facet(int contentType, String name, String value, String condition, boolean split) {
+			mContentType = contentType;
+			mName = name;
+			mValue = value;
+			mCondition = condition;
+			mSplit = split;
+		}
+
+		/**
+		 * Returns a query of the facet values of a row. If a table is given,
+		 * the query returns the values of all rows of the table instead.
+		 */
+		private String select(String table, String row) {
+			String value = mValue.replace("$", row), condition = mCondition.replace("$", row);
+
+			if (!mSplit)
+				return "select " + value + " as " + KEY_VALUE + (table != null ? " from " + table + " " + row : "") + " where " + condition;
+
+			// Every item starts at the beginning of the list or after a comma,
+			// and its length is the number of characters until the next comma
+			String list = value + " || ','";
+			return "select " + KEY_VALUE + " from (select distinct id, trim(substr(r, 1, length(r) - length(ltrim(r, replace(r, ',', ''))))) as " +
+					KEY_VALUE + " from (select " + (table != null ? row + ".rowid" : "0") + " as id, substr(" + list + ", p." + KEY_POSITION +
+					" + 1) as r from " + (table != null ? table + " " + row + ", " : "") + DATABASE_TABLE_POSITIONS + " p where " + condition +
+					" and p." + KEY_POSITION + " <= length(" + value + ") and (p." + KEY_POSITION + " = 0 or substr(" + value + ", p." +
+					KEY_POSITION + ", 1) = ','))) where " + KEY_VALUE + " != ''";
+		}
+
+		private String add(String row) {
+			String values = select(null, row);
+			return "insert or ignore into " + DATABASE_TABLE + " select " + mContentType + ", '" + mName + "', " + KEY_VALUE + ", 0 from (" +
+					values + "); " + "update " + DATABASE_TABLE + " set " + KEY_COUNT + " = " + KEY_COUNT + " + 1 where " + where() +
+					" and " + KEY_VALUE + " in (" + values + "); ";
+		}
+
+		private String remove(String row) {
+			return "update " + DATABASE_TABLE + " set " + KEY_COUNT + " = " + KEY_COUNT + " - 1 where " + where() + " and " + KEY_VALUE +
+					" in (" + select(null, row) + "); delete from " + DATABASE_TABLE + " where " + where() + " and " + KEY_COUNT + " <= 0; ";
+		}
+
+		private String where() {
+			return KEY_CONTENT_TYPE + " = " + mContentType + " and " + KEY_FACET + " = '" + mName + "'";
+		}
+	}
+}
@@ -28,6 +28,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
 
+import jcifs.smb.NtlmPasswordAuthentication;
 import jcifs.smb.SmbFile;
 
 public class BrowserSmb extends AbstractFileSourceBrowser<SmbFile> {
@@ -79,7 +80,8 @@ public class BrowserSmb extends AbstractFileSourceBrowser<SmbFile> {
 			temp.clear();
 			orderedArray.clear();
 
-			setParentFolder(new SmbFile(folder.getParent()));
+			// Reuse the authentication of the current folder, so jcifs can keep using the same session
+			setParentFolder(new SmbFile(folder.getParent(), (NtlmPasswordAuthentication) folder.getPrincipal()));
 			setCurrentFolder(folder);
 			setCurrentFiles(listFiles);
 
@@ -25,6 +25,7 @@ import com.miz.functions.ColumnIndexCache;
 import com.miz.functions.DbMovie;
 import com.miz.functions.FileSource;
 import com.miz.functions.MizLib;
+import com.miz.functions.SmbSessionManager;
 import com.miz.mizuu.MizuuApplication;
 import com.miz.utils.MovieDatabaseUtils;
 
@@ -33,6 +34,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.TreeSet;
 
 import jcifs.smb.SmbException;
@@ -51,90 +53,61 @@ public class SmbMovie extends MovieFileSource<SmbFile> {
 	public void removeUnidentifiedFiles() {
 		List<DbMovie> dbMovies = getDbMovies();
 
-		ArrayList<FileSource> filesources = MizLib.getFileSources(MizLib.TYPE_MOVIE, true);
+		SmbSessionManager sessionManager = MizuuApplication.getSmbSessionManager();
 
-		FileSource source;
-		SmbFile temp;
-		int count = dbMovies.size();
 		if (MizLib.isWifiConnected(getContext())) {
-			for (int i = 0; i < count; i++) {
-				if (dbMovies.get(i).isNetworkFile()) {
-					try {
-						source = null;
-
-						for (int j = 0; j < filesources.size(); j++)
-							if (dbMovies.get(i).getFilepath().contains(filesources.get(j).getFilepath())) {
-								source = filesources.get(j);
-								break;
-							}
+			List<DbMovie> probedMovies = new ArrayList<DbMovie>();
+			List<String> filepaths = new ArrayList<String>();
 
-						if (source == null) {
-							if (dbMovies.get(i).isUnidentified())
-								MovieDatabaseUtils.deleteMovie(mContext, dbMovies.get(i).getTmdbId());
-							continue;
-						}
+			int count = dbMovies.size();
+			for (int i = 0; i < count; i++) {
+				if (dbMovies.get(i).isNetworkFile() && dbMovies.get(i).isUnidentified()) {
+					if (sessionManager.getSession(MizLib.TYPE_MOVIE, dbMovies.get(i).getFilepath()) == null) {
+						MovieDatabaseUtils.deleteMovie(mContext, dbMovies.get(i).getTmdbId());
+						continue;
+					}
 
-						temp = new SmbFile(
-								MizLib.createSmbLoginString(
-										source.getDomain(),
-										source.getUser(),
-										source.getPassword(),
-										dbMovies.get(i).getFilepath(),
-										false
-								));
-
-						if (temp.exists() && dbMovies.get(i).isUnidentified())
-							MovieDatabaseUtils.deleteMovie(mContext, dbMovies.get(i).getTmdbId());
-					} catch (Exception e) {}  // Do nothing - the file isn't available (either MalformedURLException or SmbException)
+					probedMovies.add(dbMovies.get(i));
+					filepaths.add(dbMovies.get(i).getFilepath());
 				}
 			}
+
+			// Check all files concurrently - files that couldn't be checked are left alone
+			Map<String, Boolean> availability = MizuuApplication.getAvailabilityProber().probe(MizLib.TYPE_MOVIE, filepaths);
+			for (DbMovie movie : probedMovies)
+				if (Boolean.TRUE.equals(availability.get(movie.getFilepath())))
+					MovieDatabaseUtils.deleteMovie(mContext, movie.getTmdbId());
 		}
 	}
 
 	@Override
 	public void removeUnavailableFiles() {
 		List<DbMovie> dbMovies = getDbMovies();
-		ArrayList<FileSource> filesources = MizLib.getFileSources(MizLib.TYPE_MOVIE, true);
+		SmbSessionManager sessionManager = MizuuApplication.getSmbSessionManager();
 
-		FileSource source;
-		SmbFile temp;
-		int count = dbMovies.size();
 		if (MizLib.isWifiConnected(getContext())) {
+			List<DbMovie> probedMovies = new ArrayList<DbMovie>();
+			List<String> filepaths = new ArrayList<String>();
+
+			int count = dbMovies.size();
 			for (int i = 0; i < count; i++) {
 				if (dbMovies.get(i).isNetworkFile() && !dbMovies.get(i).hasOfflineCopy()) {
-					try {
-						source = null;
-
-						for (int j = 0; j < filesources.size(); j++)
-							if (dbMovies.get(i).getFilepath().contains(filesources.get(j).getFilepath())) {
-								source = filesources.get(j);
-								break;
-							}
-
-						if (source == null) {
-							MovieDatabaseUtils.deleteMovie(mContext, dbMovies.get(i).getTmdbId());
-							continue;
-						}
+					if (sessionManager.getSession(MizLib.TYPE_MOVIE, dbMovies.get(i).getFilepath()) == null) {
+						MovieDatabaseUtils.deleteMovie(mContext, dbMovies.get(i).getTmdbId());
+						continue;
+					}
 
-						temp = new SmbFile(
-								MizLib.createSmbLoginString(
-										source.getDomain(),
-										source.getUser(),
-										source.getPassword(),
-										dbMovies.get(i).getFilepath(),
-										false
-								));
-
-						if (!temp.exists()) {
-							MovieDatabaseUtils.deleteMovie(mContext, dbMovies.get(i).getTmdbId());
-						}
-					} catch (Exception e) {}  // Do nothing - the file isn't available (either MalformedURLException or SmbException)
+					probedMovies.add(dbMovies.get(i));
+					filepaths.add(dbMovies.get(i).getFilepath());
 				}
 			}
-		}
 
-		// Clean up
-		filesources.clear();
+			// Check all files concurrently - files that couldn't be checked are left alone
+			Map<String, Boolean> availability = MizuuApplication.getAvailabilityProber().probe(MizLib.TYPE_MOVIE, filepaths);
+			for (DbMovie movie : probedMovies)
+				if (Boolean.FALSE.equals(availability.get(movie.getFilepath())))
+					MovieDatabaseUtils.deleteMovie(mContext, movie.getTmdbId());
+		}
 	}
 
 	@Override
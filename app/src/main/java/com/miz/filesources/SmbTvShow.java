@@ -27,6 +27,7 @@ import com.miz.functions.ColumnIndexCache;
 import com.miz.functions.DbEpisode;
 import com.miz.functions.FileSource;
 import com.miz.functions.MizLib;
+import com.miz.functions.SmbSessionManager;
 import com.miz.mizuu.MizuuApplication;
 
 import java.io.File;
@@ -34,6 +35,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
 
 import jcifs.smb.SmbException;
@@ -53,41 +55,26 @@ public class SmbTvShow extends TvShowFileSource<SmbFile> {
         DbAdapterTvShowEpisodes db = MizuuApplication.getTvEpisodeDbAdapter();
         List<DbEpisode> dbEpisodes = getDbEpisodes();
 
-        ArrayList<FileSource> filesources = MizLib.getFileSources(MizLib.TYPE_SHOWS, true);
+        SmbSessionManager sessionManager = MizuuApplication.getSmbSessionManager();
 
-        FileSource source;
-        SmbFile tempFile;
-        int count = dbEpisodes.size();
         if (MizLib.isWifiConnected(getContext())) {
-            for (int i = 0; i < count; i++) {
-                if (dbEpisodes.get(i).isUnidentified()) {
-                    source = null;
-
-                    for (int j = 0; j < filesources.size(); j++) {
-                        if (dbEpisodes.get(i).getFilepath().contains(filesources.get(j).getFilepath())) {
-                            source = filesources.get(j);
-                            break;
-                        }
-                    }
+            List<DbEpisode> probedEpisodes = new ArrayList<DbEpisode>();
+            List<String> filepaths = new ArrayList<String>();
 
-                    if (source != null) {
-                        try {
-                            tempFile = new SmbFile(
-                                    MizLib.createSmbLoginString(
-                                            source.getDomain(),
-                                            source.getUser(),
-                                            source.getPassword(),
-                                            dbEpisodes.get(i).getFilepath(),
-                                            false
-                                    ));
-
-                            if (tempFile.exists())
-                                db.deleteEpisode(dbEpisodes.get(i).getShowId(), MizLib.getInteger(dbEpisodes.get(i).getSeason()), MizLib.getInteger(dbEpisodes.get(i).getEpisode()));
-
-                        } catch (Exception e) {}
-                    }
+            int count = dbEpisodes.size();
+            for (int i = 0; i < count; i++) {
+                if (dbEpisodes.get(i).isUnidentified() &&
+                        sessionManager.getSession(MizLib.TYPE_SHOWS, dbEpisodes.get(i).getFilepath()) != null) {
+                    probedEpisodes.add(dbEpisodes.get(i));
+                    filepaths.add(dbEpisodes.get(i).getFilepath());
                 }
             }
+
+            // Check all files concurrently
+            Map<String, Boolean> availability = MizuuApplication.getAvailabilityProber().probe(MizLib.TYPE_SHOWS, filepaths);
+            for (DbEpisode episode : probedEpisodes)
+                if (Boolean.TRUE.equals(availability.get(episode.getFilepath())))
+                    db.deleteEpisode(episode.getShowId(), MizLib.getInteger(episode.getSeason()), MizLib.getInteger(episode.getEpisode()));
         }
     }
 
@@ -118,46 +105,32 @@ public class SmbTvShow extends TvShowFileSource<SmbFile> {
             cache.clear();
         }
 
-        ArrayList<FileSource> filesources = MizLib.getFileSources(MizLib.TYPE_SHOWS, true);
+        SmbSessionManager sessionManager = MizuuApplication.getSmbSessionManager();
 
-        SmbFile tempFile;
         int count = dbEpisodes.size();
         if (MizLib.isWifiConnected(getContext())) {
-            for (int i = 0; i < dbEpisodes.size(); i++) {
-                FileSource source = null;
-
-                for (int j = 0; j < filesources.size(); j++)
-                    if (dbEpisodes.get(i).getFilepath().contains(filesources.get(j).getFilepath())) {
-                        source = filesources.get(j);
-                        break;
-                    }
+            List<DbEpisode> probedEpisodes = new ArrayList<DbEpisode>();
+            List<String> filepaths = new ArrayList<String>();
 
-                if (source == null) {
+            for (int i = 0; i < count; i++) {
+                if (sessionManager.getSession(MizLib.TYPE_SHOWS, dbEpisodes.get(i).getFilepath()) == null) {
                     boolean deleted = db.deleteEpisode(dbEpisodes.get(i).getShowId(), MizLib.getInteger(dbEpisodes.get(i).getSeason()), MizLib.getInteger(dbEpisodes.get(i).getEpisode()));
                     if (deleted)
                         removedEpisodes.add(dbEpisodes.get(i));
                     continue;
                 }
 
-                try {
-                    tempFile = new SmbFile(
-                            MizLib.createSmbLoginString(
-                                    source.getDomain(),
-                                    source.getUser(),
-                                    source.getPassword(),
-                                    dbEpisodes.get(i).getFilepath(),
-                                    false
-                            ));
-
-                    if (!tempFile.exists()) {
-                        boolean deleted = db.deleteEpisode(dbEpisodes.get(i).getShowId(), MizLib.getInteger(dbEpisodes.get(i).getSeason()), MizLib.getInteger(dbEpisodes.get(i).getEpisode()));
-                        if (deleted)
-                            removedEpisodes.add(dbEpisodes.get(i));
-                    }
-                } catch (Exception e) {
-                    boolean deleted = db.deleteEpisode(dbEpisodes.get(i).getShowId(), MizLib.getInteger(dbEpisodes.get(i).getSeason()), MizLib.getInteger(dbEpisodes.get(i).getEpisode()));
+                probedEpisodes.add(dbEpisodes.get(i));
+                filepaths.add(dbEpisodes.get(i).getFilepath());
+            }
+
+            // Check all files concurrently - files that couldn't be checked are left alone
+            Map<String, Boolean> availability = MizuuApplication.getAvailabilityProber().probe(MizLib.TYPE_SHOWS, filepaths);
+            for (DbEpisode episode : probedEpisodes) {
+                if (Boolean.FALSE.equals(availability.get(episode.getFilepath()))) {
+                    boolean deleted = db.deleteEpisode(episode.getShowId(), MizLib.getInteger(episode.getSeason()), MizLib.getInteger(episode.getEpisode()));
                     if (deleted)
-                        removedEpisodes.add(dbEpisodes.get(i));
+                        removedEpisodes.add(episode);
                 }
             }
         }
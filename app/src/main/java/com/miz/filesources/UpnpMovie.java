@@ -26,46 +26,47 @@ import android.text.TextUtils;
 
 import com.miz.abstractclasses.MovieFileSource;
 import com.miz.db.DbAdapterMovieMappings;
+import com.miz.functions.ClingContentDirectory;
 import com.miz.functions.ColumnIndexCache;
 import com.miz.functions.DbMovie;
 import com.miz.functions.FileSource;
 import com.miz.functions.MizLib;
+import com.miz.functions.UpnpCrawler;
 import com.miz.mizuu.MizuuApplication;
 import com.miz.service.WireUpnpService;
 import com.miz.utils.MovieDatabaseUtils;
 
 import org.teleal.cling.android.AndroidUpnpService;
-import org.teleal.cling.model.action.ActionInvocation;
-import org.teleal.cling.model.message.UpnpResponse;
-import org.teleal.cling.model.meta.Device;
-import org.teleal.cling.model.meta.LocalDevice;
-import org.teleal.cling.model.meta.RemoteDevice;
 import org.teleal.cling.model.meta.Service;
-import org.teleal.cling.model.types.UDAServiceType;
-import org.teleal.cling.registry.DefaultRegistryListener;
-import org.teleal.cling.registry.Registry;
-import org.teleal.cling.support.contentdirectory.callback.Browse;
-import org.teleal.cling.support.model.BrowseFlag;
-import org.teleal.cling.support.model.DIDLContent;
-import org.teleal.cling.support.model.SortCriterion;
-import org.teleal.cling.support.model.container.Container;
-import org.teleal.cling.support.model.item.Item;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.TreeSet;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 public class UpnpMovie extends MovieFileSource<String> {
 
+	/**
+	 * Time to wait for the UPnP service and the media server, in seconds.
+	 */
+	private static final int DISCOVERY_TIMEOUT = 60;
+
+	/**
+	 * Maximum duration of the crawl, in minutes.
+	 */
+	private static final int CRAWL_TIMEOUT = 10;
+
 	private TreeSet<String> results = new TreeSet<String>();
 	private HashMap<String, String> existingMovies = new HashMap<String, String>();
-	private CountDownLatch mLatch = new CountDownLatch(1);
-	private AndroidUpnpService mUpnpService;
+	private CountDownLatch mServiceLatch = new CountDownLatch(1);
+	private volatile AndroidUpnpService mUpnpService;
+	private UpnpCrawler.Result mCrawlResult;
+	private boolean mCrawled;
 
 	public UpnpMovie(Context context, FileSource fileSource, boolean clearLibrary) {
 		super(context, fileSource, clearLibrary);
@@ -73,25 +74,53 @@ public class UpnpMovie extends MovieFileSource<String> {
 
 	@Override
 	public void removeUnidentifiedFiles() {
-		List<DbMovie> dbMovies = getDbMovies();
+		List<DbMovie> probedMovies = new ArrayList<DbMovie>();
+		List<String> filepaths = new ArrayList<String>();
 
-		int count = dbMovies.size();
-		for (int i = 0; i < count; i++) {
-			if (dbMovies.get(i).isUpnpFile() && dbMovies.get(i).isUnidentified() && MizLib.exists(dbMovies.get(i).getFilepath()))
-                MovieDatabaseUtils.deleteMovie(mContext, dbMovies.get(i).getTmdbId());
+		for (DbMovie movie : getDbMovies()) {
+			if (movie.isUpnpFile() && movie.isUnidentified()) {
+				probedMovies.add(movie);
+				filepaths.add(movie.getFilepath());
+			}
 		}
+
+		// Check all files at once - files that couldn't be checked are left alone
+		Map<String, Boolean> availability = probe(filepaths);
+		for (DbMovie movie : probedMovies)
+			if (Boolean.TRUE.equals(availability.get(movie.getFilepath())))
+				MovieDatabaseUtils.deleteMovie(mContext, movie.getTmdbId());
 	}
 
 	@Override
 	public void removeUnavailableFiles() {
-		List<DbMovie> dbMovies = getDbMovies();
+		List<DbMovie> probedMovies = new ArrayList<DbMovie>();
+		List<String> filepaths = new ArrayList<String>();
 
-		int count = dbMovies.size();
-		for (int i = 0; i < count; i++) {
-			if (dbMovies.get(i).isUpnpFile() && !MizLib.exists(dbMovies.get(i).getFilepath())) {
-                MovieDatabaseUtils.deleteMovie(mContext, dbMovies.get(i).getTmdbId());
+		for (DbMovie movie : getDbMovies()) {
+			if (movie.isUpnpFile()) {
+				probedMovies.add(movie);
+				filepaths.add(movie.getFilepath());
 			}
 		}
+
+		// Check all files at once - files that couldn't be checked are left alone
+		Map<String, Boolean> availability = probe(filepaths);
+		for (DbMovie movie : probedMovies)
+			if (Boolean.FALSE.equals(availability.get(movie.getFilepath())))
+				MovieDatabaseUtils.deleteMovie(mContext, movie.getTmdbId());
+	}
+
+	/**
+	 * Checks the availability of files. The media server is crawled first,
+	 * so files in its listing don't need to be requested one by one.
+	 */
+	private Map<String, Boolean> probe(List<String> filepaths) {
+		if (filepaths.isEmpty())
+			return new HashMap<String, Boolean>();
+
+		crawl();
+
+		return MizuuApplication.getAvailabilityProber().probe(MizLib.TYPE_MOVIE, filepaths);
 	}
 
 	@Override
@@ -124,13 +153,52 @@ public class UpnpMovie extends MovieFileSource<String> {
 
 	@Override
 	public void recursiveSearch(String folder, TreeSet<String> results) {
-		mContext.getApplicationContext().bindService(new Intent(mContext, WireUpnpService.class), serviceConnection, Context.BIND_AUTO_CREATE);
+		UpnpCrawler.Result result = crawl();
+		if (result == null)
+			return;
+
+		for (UpnpCrawler.Entry item : result.getItems())
+			addToResults(item.getFolder() + "/" + item.getTitle() + "<MiZ>" + item.getUrl(), item.getSize(), results);
+	}
+
+	/**
+	 * Crawls the media server. The crawl happens once per library update,
+	 * and its listing is used both to check existing files and to find new ones.
+	 * @return The crawl result, or null if the media server couldn't be found
+	 */
+	private UpnpCrawler.Result crawl() {
+		if (mCrawled)
+			return mCrawlResult;
+		mCrawled = true;
+
+		Context context = mContext.getApplicationContext();
+		context.bindService(new Intent(context, WireUpnpService.class), serviceConnection, Context.BIND_AUTO_CREATE);
 
 		try {
-			mLatch.await(10, TimeUnit.MINUTES);
+			if (!mServiceLatch.await(DISCOVERY_TIMEOUT, TimeUnit.SECONDS))
+				return null;
+
+			// Resolved from the registry or the last known location of the server if possible
+			AndroidUpnpService upnpService = mUpnpService;
+			Service<?, ?> contentDirectory = MizuuApplication.getUpnpDeviceResolver().resolve(upnpService.get(),
+					mFileSource.getUpnpSerialNumber(), TimeUnit.SECONDS.toMillis(DISCOVERY_TIMEOUT));
+			if (contentDirectory == null)
+				return null;
+
+			UpnpCrawler crawler = new UpnpCrawler(new ClingContentDirectory(upnpService.getControlPoint(), contentDirectory));
+			mCrawlResult = crawler.crawl(getRootFolder(), getRootTitle(), TimeUnit.MINUTES.toMillis(CRAWL_TIMEOUT));
+
+			List<String> urls = new ArrayList<String>();
+			for (UpnpCrawler.Entry item : mCrawlResult.getItems())
+				urls.add(item.getUrl());
+			MizuuApplication.getUpnpAvailabilityChecker().putListing(urls);
 		} catch (InterruptedException e) {
 			e.printStackTrace();
+		} finally {
+			context.unbindService(serviceConnection);
 		}
+
+		return mCrawlResult;
 	}
 
 	public void addToResults(String file, long size, TreeSet<String> results) {
@@ -162,146 +230,21 @@ public class UpnpMovie extends MovieFileSource<String> {
 	private ServiceConnection serviceConnection = new ServiceConnection() {
 		public void onServiceConnected(ComponentName className, IBinder service) {
 			mUpnpService = (AndroidUpnpService) service;
-
-			boolean found = false;
-
-			for (Device<?, ?, ?> device : mUpnpService.getRegistry().getDevices()) {
-				try {
-					if (!TextUtils.isEmpty(device.getDetails().getSerialNumber())) {
-						if (device.getDetails().getSerialNumber().equals(mFileSource.getUpnpSerialNumber())) {
-							startBrowse(device);
-							found = true;
-						}
-					} else {
-						if (device.getIdentity().getUdn().toString().equals(mFileSource.getUpnpSerialNumber())) {
-							startBrowse(device);
-							found = true;
-						}
-					}
-				} catch (Exception e) {}
-			}
-
-			if (!found) {
-				mUpnpService.getRegistry().addListener(new DeviceListRegistryListener());
-				mUpnpService.getControlPoint().search();
-			}
+			mServiceLatch.countDown();
 		}
 
 		public void onServiceDisconnected(ComponentName className) {
 			mUpnpService = null;
 		}
-
-		private void startBrowse(Device<?, ?, ?> device) {
-			Service<?, ?> service = device.findService(new UDAServiceType("ContentDirectory"));
-			browse(service, getRootFolder(), mFileSource.getUpnpName());
-		}
 	};
 
-	private int mFolderCount = 0, mScannedCount = 0;
-
-	private class BrowseCallback extends Browse {
-
-		private Service<?, ?> mService;
-		private String mPrefix;
-
-		public BrowseCallback(String prefix, Service<?, ?> service, String containerId) {  
-			super(service, containerId, BrowseFlag.DIRECT_CHILDREN, "*", 0, null, new SortCriterion(true, "dc:title"));
-			mService = service;
-			mPrefix = prefix;
-		}
-
-		@SuppressWarnings("rawtypes")
-		@Override
-		public void received(ActionInvocation arg0, DIDLContent didl) {
-			try {
-				for (Container childContainer : didl.getContainers()) {
-					mFolderCount++;
-					mUpnpService.getControlPoint().execute(new BrowseCallback(mPrefix + "/" + childContainer.getTitle(), mService, childContainer.getId()));
-				}
-
-				for (Item childItem : didl.getItems()) {
-					addToResults(mPrefix + "/" + childItem.getTitle() + "<MiZ>" + childItem.getFirstResource().getValue(), childItem.getFirstResource().getSize(), results);
-				}
-
-				mScannedCount++;
-
-				if (mFolderCount == mScannedCount) {
-					mLatch.countDown();
-					mContext.unbindService(serviceConnection);
-				}
-
-			} catch (Exception e) {}
-		}
-
-		@Override
-		public void updateStatus(Status arg0) {}
-
-		@SuppressWarnings("rawtypes")
-		@Override
-		public void failure(ActionInvocation arg0, UpnpResponse arg1, String arg2) {}
-	}
-
-	public class DeviceListRegistryListener extends DefaultRegistryListener {
-
-		private boolean found = false;
-
-		@Override
-		public void remoteDeviceAdded(Registry registry, RemoteDevice device) {
-			if (device.getType().getNamespace().equals("schemas-upnp-org")
-					&& device.getType().getType().equals("MediaServer")) {
-				if (!found) {
-					try {
-						if (!TextUtils.isEmpty(device.getDetails().getSerialNumber())) {
-							if (device.getDetails().getSerialNumber().equals(mFileSource.getUpnpSerialNumber())) {
-								startBrowse(device);
-								found = true;
-							}
-						} else {
-							if (device.getIdentity().getUdn().toString().equals(mFileSource.getUpnpSerialNumber())) {
-								startBrowse(device);
-								found = true;
-							}
-						}
-					} catch (Exception e) {}
-				}
-			}
-		}
-
-		@Override
-		public void remoteDeviceRemoved(Registry registry, RemoteDevice device) {}
-
-		@Override
-		public void localDeviceAdded(Registry registry, LocalDevice device) {
-			if (!found) {
-				try {
-					if (!TextUtils.isEmpty(device.getDetails().getSerialNumber())) {
-						if (device.getDetails().getSerialNumber().equals(mFileSource.getUpnpSerialNumber())) {
-							startBrowse(device);
-							found = true;
-						}
-					} else {
-						if (device.getIdentity().getUdn().toString().equals(mFileSource.getUpnpSerialNumber())) {
-							startBrowse(device);
-							found = true;
-						}
-					}
-				} catch (Exception e) {}
-			}
-		}
-
-		@Override
-		public void localDeviceRemoved(Registry registry, LocalDevice device) {}
-
-		private void startBrowse(Device<?, ?, ?> device) {
-			mFolderCount++;
-
-			Service<?, ?> service = device.findService(new UDAServiceType("ContentDirectory"));
-			browse(service, getRootFolder(), mFileSource.getFilepath().substring(mFileSource.getFilepath().lastIndexOf("/") + 1, mFileSource.getFilepath().length()));
-		}
-	}
-
-	private void browse(Service<?, ?> service, String containerId, String title) {		
-		mUpnpService.getControlPoint().execute(new BrowseCallback(title, service, containerId));
+	/**
+	 * Folder name of the root container, used as the first part of all file paths.
+	 */
+	private String getRootTitle() {
+		if (!TextUtils.isEmpty(mFileSource.getUpnpName()))
+			return mFileSource.getUpnpName();
+		return mFileSource.getFilepath().substring(mFileSource.getFilepath().lastIndexOf("/") + 1, mFileSource.getFilepath().length());
 	}
 
 	@Override
@@ -28,45 +28,46 @@ import com.miz.abstractclasses.TvShowFileSource;
 import com.miz.db.DbAdapterTvShowEpisodeMappings;
 import com.miz.db.DbAdapterTvShowEpisodes;
 import com.miz.db.DbAdapterTvShows;
+import com.miz.functions.ClingContentDirectory;
 import com.miz.functions.ColumnIndexCache;
 import com.miz.functions.DbEpisode;
 import com.miz.functions.FileSource;
 import com.miz.functions.MizLib;
+import com.miz.functions.UpnpCrawler;
 import com.miz.mizuu.MizuuApplication;
 import com.miz.service.WireUpnpService;
 
 import org.teleal.cling.android.AndroidUpnpService;
-import org.teleal.cling.model.action.ActionInvocation;
-import org.teleal.cling.model.message.UpnpResponse;
-import org.teleal.cling.model.meta.Device;
-import org.teleal.cling.model.meta.LocalDevice;
-import org.teleal.cling.model.meta.RemoteDevice;
 import org.teleal.cling.model.meta.Service;
-import org.teleal.cling.model.types.UDAServiceType;
-import org.teleal.cling.registry.DefaultRegistryListener;
-import org.teleal.cling.registry.Registry;
-import org.teleal.cling.support.contentdirectory.callback.Browse;
-import org.teleal.cling.support.model.BrowseFlag;
-import org.teleal.cling.support.model.DIDLContent;
-import org.teleal.cling.support.model.SortCriterion;
-import org.teleal.cling.support.model.container.Container;
-import org.teleal.cling.support.model.item.Item;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 public class UpnpTvShow extends TvShowFileSource<String> {
 
+    /**
+     * Time to wait for the UPnP service and the media server, in seconds.
+     */
+    private static final int DISCOVERY_TIMEOUT = 60;
+
+    /**
+     * Maximum duration of the crawl, in minutes.
+     */
+    private static final int CRAWL_TIMEOUT = 10;
+
     private TreeSet<String> results = new TreeSet<String>();
     private HashMap<String, String> existingEpisodes = new HashMap<String, String>();
-    private CountDownLatch mLatch = new CountDownLatch(1);
-    private AndroidUpnpService mUpnpService;
+    private CountDownLatch mServiceLatch = new CountDownLatch(1);
+    private volatile AndroidUpnpService mUpnpService;
+    private UpnpCrawler.Result mCrawlResult;
+    private boolean mCrawled;
 
     public UpnpTvShow(Context context, FileSource fileSource, boolean clearLibrary) {
         super(context, fileSource, clearLibrary);
@@ -77,12 +78,22 @@ public class UpnpTvShow extends TvShowFileSource<String> {
         DbAdapterTvShowEpisodes db = MizuuApplication.getTvEpisodeDbAdapter();
         List<DbEpisode> dbEpisodes = getDbEpisodes();
 
+        List<DbEpisode> probedEpisodes = new ArrayList<DbEpisode>();
+        List<String> filepaths = new ArrayList<String>();
+
         int count = dbEpisodes.size();
         for (int i = 0; i < count; i++) {
-            if (dbEpisodes.get(i).isUpnpFile() && dbEpisodes.get(i).isUnidentified() && MizLib.exists(dbEpisodes.get(i).getFilepath())) {
-                db.deleteEpisode(dbEpisodes.get(i).getShowId(), MizLib.getInteger(dbEpisodes.get(i).getSeason()), MizLib.getInteger(dbEpisodes.get(i).getEpisode()));
+            if (dbEpisodes.get(i).isUpnpFile() && dbEpisodes.get(i).isUnidentified()) {
+                probedEpisodes.add(dbEpisodes.get(i));
+                filepaths.add(dbEpisodes.get(i).getFilepath());
             }
         }
+
+        // Check all files at once - files that couldn't be checked are left alone
+        Map<String, Boolean> availability = probe(filepaths);
+        for (DbEpisode episode : probedEpisodes)
+            if (Boolean.TRUE.equals(availability.get(episode.getFilepath())))
+                db.deleteEpisode(episode.getShowId(), MizLib.getInteger(episode.getSeason()), MizLib.getInteger(episode.getEpisode()));
     }
 
     @Override
@@ -112,12 +123,24 @@ public class UpnpTvShow extends TvShowFileSource<String> {
             cache.clear();
         }
 
+        List<DbEpisode> probedEpisodes = new ArrayList<DbEpisode>();
+        List<String> filepaths = new ArrayList<String>();
+
         int count = dbEpisodes.size();
-        for (int i = 0; i < dbEpisodes.size(); i++) {
-            if (dbEpisodes.get(i).isUpnpFile() && !MizLib.exists(dbEpisodes.get(i).getFilepath())) {
-                boolean deleted = db.deleteEpisode(dbEpisodes.get(i).getShowId(), MizLib.getInteger(dbEpisodes.get(i).getSeason()), MizLib.getInteger(dbEpisodes.get(i).getEpisode()));
+        for (int i = 0; i < count; i++) {
+            if (dbEpisodes.get(i).isUpnpFile()) {
+                probedEpisodes.add(dbEpisodes.get(i));
+                filepaths.add(dbEpisodes.get(i).getFilepath());
+            }
+        }
+
+        // Check all files at once - files that couldn't be checked are left alone
+        Map<String, Boolean> availability = probe(filepaths);
+        for (DbEpisode episode : probedEpisodes) {
+            if (Boolean.FALSE.equals(availability.get(episode.getFilepath()))) {
+                boolean deleted = db.deleteEpisode(episode.getShowId(), MizLib.getInteger(episode.getSeason()), MizLib.getInteger(episode.getEpisode()));
                 if (deleted)
-                    removedEpisodes.add(dbEpisodes.get(i));
+                    removedEpisodes.add(episode);
             }
         }
 
@@ -141,6 +164,19 @@ public class UpnpTvShow extends TvShowFileSource<String> {
         removedEpisodes.clear();
     }
 
+    /**
+     * Checks the availability of files. The media server is crawled first,
+     * so files in its listing don't need to be requested one by one.
+     */
+    private Map<String, Boolean> probe(List<String> filepaths) {
+        if (filepaths.isEmpty())
+            return new HashMap<String, Boolean>();
+
+        crawl();
+
+        return MizuuApplication.getAvailabilityProber().probe(MizLib.TYPE_SHOWS, filepaths);
+    }
+
     @Override
     public List<String> searchFolder() {
         Cursor cursor = MizuuApplication.getTvShowEpisodeMappingsDbAdapter().getAllFilepaths();
@@ -169,13 +205,52 @@ public class UpnpTvShow extends TvShowFileSource<String> {
 
     @Override
     public void recursiveSearch(String folder, TreeSet<String> results) {
+        UpnpCrawler.Result result = crawl();
+        if (result == null)
+            return;
+
+        // Items in sub folders have always been stored with a leading slash
+        for (UpnpCrawler.Entry item : result.getItems())
+            addToResults((item.getDepth() > 0 ? "/" : "") + item.getFolder() + "/" + item.getTitle() + "<MiZ>" + item.getUrl(), item.getSize(), results);
+    }
+
+    /**
+     * Crawls the media server. The crawl happens once per library update,
+     * and its listing is used both to check existing files and to find new ones.
+     * @return The crawl result, or null if the media server couldn't be found
+     */
+    private UpnpCrawler.Result crawl() {
+        if (mCrawled)
+            return mCrawlResult;
+        mCrawled = true;
+
         mContext.bindService(new Intent(mContext, WireUpnpService.class), serviceConnection, Context.BIND_AUTO_CREATE);
 
         try {
-            mLatch.await(10, TimeUnit.MINUTES);
+            if (!mServiceLatch.await(DISCOVERY_TIMEOUT, TimeUnit.SECONDS))
+                return null;
+
+            // Resolved from the registry or the last known location of the server if possible
+            AndroidUpnpService upnpService = mUpnpService;
+            Service<?, ?> contentDirectory = MizuuApplication.getUpnpDeviceResolver().resolve(upnpService.get(),
+                    mFileSource.getUpnpSerialNumber(), TimeUnit.SECONDS.toMillis(DISCOVERY_TIMEOUT));
+            if (contentDirectory == null)
+                return null;
+
+            UpnpCrawler crawler = new UpnpCrawler(new ClingContentDirectory(upnpService.getControlPoint(), contentDirectory));
+            mCrawlResult = crawler.crawl(getRootFolder(), getRootTitle(), TimeUnit.MINUTES.toMillis(CRAWL_TIMEOUT));
+
+            List<String> urls = new ArrayList<String>();
+            for (UpnpCrawler.Entry item : mCrawlResult.getItems())
+                urls.add(item.getUrl());
+            MizuuApplication.getUpnpAvailabilityChecker().putListing(urls);
         } catch (InterruptedException e) {
             e.printStackTrace();
+        } finally {
+            mContext.unbindService(serviceConnection);
         }
+
+        return mCrawlResult;
     }
 
     public void addToResults(String file, long size, TreeSet<String> results) {
@@ -204,146 +279,21 @@ public class UpnpTvShow extends TvShowFileSource<String> {
     private ServiceConnection serviceConnection = new ServiceConnection() {
         public void onServiceConnected(ComponentName className, IBinder service) {
             mUpnpService = (AndroidUpnpService) service;
-
-            boolean found = false;
-
-            for (Device<?, ?, ?> device : mUpnpService.getRegistry().getDevices()) {
-                try {
-                    if (!TextUtils.isEmpty(device.getDetails().getSerialNumber())) {
-                        if (device.getDetails().getSerialNumber().equals(mFileSource.getUpnpSerialNumber())) {
-                            startBrowse(device);
-                            found = true;
-                        }
-                    } else {
-                        if (device.getIdentity().getUdn().toString().equals(mFileSource.getUpnpSerialNumber())) {
-                            startBrowse(device);
-                            found = true;
-                        }
-                    }
-                } catch (Exception e) {}
-            }
-
-            if (!found) {
-                mUpnpService.getRegistry().addListener(new DeviceListRegistryListener());
-                mUpnpService.getControlPoint().search();
-            }
+            mServiceLatch.countDown();
         }
 
         public void onServiceDisconnected(ComponentName className) {
             mUpnpService = null;
         }
-
-        private void startBrowse(Device<?, ?, ?> device) {
-            Service<?, ?> service = device.findService(new UDAServiceType("ContentDirectory"));
-            browse(service, getRootFolder(), mFileSource.getUpnpName());
-        }
     };
 
-    private int mFolderCount = 0, mScannedCount = 0;
-
-    private class BrowseCallback extends Browse {
-
-        private Service<?, ?> mService;
-        private String mPrefix = "";
-
-        public BrowseCallback(String prefix, Service<?, ?> service, String containerId) {
-            super(service, containerId, BrowseFlag.DIRECT_CHILDREN, "*", 0, null, new SortCriterion(true, "dc:title"));
-            mService = service;
-            mPrefix = mPrefix + prefix + "/";
-        }
-
-        @SuppressWarnings("rawtypes")
-        @Override
-        public void received(ActionInvocation arg0, DIDLContent didl) {
-            try {
-                for (Container childContainer : didl.getContainers()) {
-                    mFolderCount++;
-                    mUpnpService.getControlPoint().execute(new BrowseCallback((mPrefix.startsWith("/") ? mPrefix : "/" + mPrefix) + childContainer.getTitle(), mService, childContainer.getId()));
-                }
-
-                for (Item childItem : didl.getItems()) {
-                    addToResults(mPrefix + childItem.getTitle() + "<MiZ>" + childItem.getFirstResource().getValue(), childItem.getFirstResource().getSize(), results);
-                }
-
-                mScannedCount++;
-
-                if (mFolderCount == mScannedCount) {
-                    mLatch.countDown();
-                    mContext.unbindService(serviceConnection);
-                }
-
-            } catch (Exception e) {}
-        }
-
-        @Override
-        public void updateStatus(Status arg0) {}
-
-        @SuppressWarnings("rawtypes")
-        @Override
-        public void failure(ActionInvocation arg0, UpnpResponse arg1, String arg2) {}
-    }
-
-    public class DeviceListRegistryListener extends DefaultRegistryListener {
-
-        private boolean found = false;
-
-        @Override
-        public void remoteDeviceAdded(Registry registry, RemoteDevice device) {
-            if (device.getType().getNamespace().equals("schemas-upnp-org")
-                    && device.getType().getType().equals("MediaServer")) {
-                if (!found) {
-                    try {
-                        if (!TextUtils.isEmpty(device.getDetails().getSerialNumber())) {
-                            if (device.getDetails().getSerialNumber().equals(mFileSource.getUpnpSerialNumber())) {
-                                startBrowse(device);
-                                found = true;
-                            }
-                        } else {
-                            if (device.getIdentity().getUdn().toString().equals(mFileSource.getUpnpSerialNumber())) {
-                                startBrowse(device);
-                                found = true;
-                            }
-                        }
-                    } catch (Exception e) {}
-                }
-            }
-        }
-
-        @Override
-        public void remoteDeviceRemoved(Registry registry, RemoteDevice device) {}
-
-        @Override
-        public void localDeviceAdded(Registry registry, LocalDevice device) {
-            if (!found) {
-                try {
-                    if (!TextUtils.isEmpty(device.getDetails().getSerialNumber())) {
-                        if (device.getDetails().getSerialNumber().equals(mFileSource.getUpnpSerialNumber())) {
-                            startBrowse(device);
-                            found = true;
-                        }
-                    } else {
-                        if (device.getIdentity().getUdn().toString().equals(mFileSource.getUpnpSerialNumber())) {
-                            startBrowse(device);
-                            found = true;
-                        }
-                    }
-                } catch (Exception e) {}
-            }
-        }
-
-        @Override
-        public void localDeviceRemoved(Registry registry, LocalDevice device) {}
-
-        private void startBrowse(Device<?, ?, ?> device) {
-            mFolderCount++;
-
-            Service<?, ?> service = device.findService(new UDAServiceType("ContentDirectory"));
-            browse(service, getRootFolder(), mFileSource.getFilepath().substring(mFileSource.getFilepath().lastIndexOf("/") + 1, mFileSource.getFilepath().length()));
-        }
-    }
-
-    private void browse(Service<?, ?> service, String containerId, String title) {
-        mUpnpService.getControlPoint().execute(new BrowseCallback(title, service, containerId));
+    /**
+     * Folder name of the root container, used as the first part of all file paths.
+     */
+    private String getRootTitle() {
+        if (!TextUtils.isEmpty(mFileSource.getUpnpName()))
+            return mFileSource.getUpnpName();
+        return mFileSource.getFilepath().substring(mFileSource.getFilepath().lastIndexOf("/") + 1, mFileSource.getFilepath().length());
     }
 
     @Override
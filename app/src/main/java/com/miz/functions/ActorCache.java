@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.functions;
+
+import android.content.Context;
+import android.text.TextUtils;
+
+import com.miz.apis.tmdb.TMDbMovieService;
+import com.miz.apis.tmdb.TMDbTvShowService;
+import com.miz.db.DbAdapterActors;
+import com.miz.mizuu.MizuuApplication;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the cast of movies and TV shows and full actor details from
+ * the database, so detail screens can show them instantly and offline.
+ * Entries are only fetched from TMDb if they haven't been cached yet,
+ * and are refreshed in the background once they're getting old.
+ */
+public class ActorCache {
+
+	private static final long CAST_TIME_TO_LIVE = 14 * 24 * 60 * 60 * 1000L; // 14 days
+	private static final long DETAILS_TIME_TO_LIVE = 3 * 24 * 60 * 60 * 1000L; // 3 days
+
+	private final ExecutorService mRefreshExecutor = Executors.newSingleThreadExecutor();
+	private final HashSet<String> mPendingRefreshes = new HashSet<String>();
+
+	/**
+	 * Returns the cast of a movie or TV show. Must not be called on the UI thread.
+	 * @param contentId TMDb ID of the movie or TV show
+	 * @param contentType {@link MizLib#TYPE_MOVIE} or {@link MizLib#TYPE_SHOWS}
+	 * @return Cast in billing order. Empty if it isn't cached and couldn't be downloaded.
+	 */
+	public List<Actor> getCast(final String contentId, final int contentType) {
+		DbAdapterActors db = MizuuApplication.getActorAdapter();
+
+		List<Actor> actors = db.getCast(contentId, contentType);
+		if (actors.isEmpty())
+			return downloadCast(contentId, contentType);
+
+		if (System.currentTimeMillis() - db.getCastUpdated(contentId, contentType) > CAST_TIME_TO_LIVE) {
+			refreshInBackground("cast_" + contentType + "_" + contentId, new Runnable() {
+				@Override
+				public void run() {
+					downloadCast(contentId, contentType);
+				}
+			});
+		}
+
+		return actors;
+	}
+
+	/**
+	 * Stores the cast of a movie or TV show, i.e. the one that's
+	 * downloaded along with the other details during identification.
+	 */
+	public void putCast(String contentId, int contentType, List<Actor> actors) {
+		if (TextUtils.isEmpty(contentId) || actors == null || actors.isEmpty())
+			return;
+
+		MizuuApplication.getActorAdapter().setCast(contentId, contentType, actors);
+	}
+
+	/**
+	 * Returns the full details of an actor. Must not be called on the UI thread.
+	 * @param actorId TMDb person ID
+	 * @return Actor details. Mostly empty if they aren't cached and couldn't be downloaded.
+	 */
+	public CompleteActor getCompleteActor(final String actorId) {
+		Context context = MizuuApplication.getContext();
+		DbAdapterActors db = MizuuApplication.getActorAdapter();
+
+		JSONObject json = null;
+
+		String details = db.getActorDetails(actorId);
+		if (!TextUtils.isEmpty(details)) {
+			try {
+				json = new JSONObject(details);
+			} catch (JSONException ignored) {}
+		}
+
+		if (json == null) {
+			json = downloadActorDetails(actorId);
+		} else if (System.currentTimeMillis() - db.getActorDetailsUpdated(actorId) > DETAILS_TIME_TO_LIVE) {
+			refreshInBackground("actor_" + actorId, new Runnable() {
+				@Override
+				public void run() {
+					downloadActorDetails(actorId);
+				}
+			});
+		}
+
+		return TMDbMovieService.getInstance(context).getCompleteActorDetails(actorId, json);
+	}
+
+	private List<Actor> downloadCast(String contentId, int contentType) {
+		Context context = MizuuApplication.getContext();
+
+		List<Actor> actors;
+		if (contentType == MizLib.TYPE_MOVIE)
+			actors = TMDbMovieService.getInstance(context).getActors(contentId);
+		else
+			actors = TMDbTvShowService.getInstance(context).getActors(contentId);
+
+		putCast(contentId, contentType, actors);
+
+		return actors;
+	}
+
+	private JSONObject downloadActorDetails(String actorId) {
+		JSONObject json = TMDbMovieService.getInstance(MizuuApplication.getContext()).getActorDetailsJSON(actorId);
+
+		// Only successful responses contain the person ID
+		if (json.has("id"))
+			MizuuApplication.getActorAdapter().setActorDetails(actorId, MizLib.getStringFromJSONObject(json, "name", ""), json.toString());
+
+		return json;
+	}
+
+	private void refreshInBackground(final String key, final Runnable refresh) {
+		synchronized (mPendingRefreshes) {
+			if (!mPendingRefreshes.add(key))
+				return;
+		}
+
+		mRefreshExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if (MizLib.isOnline(MizuuApplication.getContext()))
+						refresh.run();
+				} finally {
+					synchronized (mPendingRefreshes) {
+						mPendingRefreshes.remove(key);
+					}
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.functions;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks the availability of many files at once. SMB files are grouped by
+ * their parent folder and answered from a single listing per folder, which
+ * are probed concurrently on a bounded pool. UPnP files are checked by the
+ * {@link UpnpAvailabilityChecker}. Results are cached for a short while.
+ */
+public class AvailabilityProber {
+
+	private static final int POOL_SIZE = 8;
+	private static final int MAX_CACHED_RESULTS = 10000;
+	private static final long RESULT_TIME_TO_LIVE = 60 * 1000; // 1 minute
+
+	private final SmbSessionManager mSessionManager;
+	private final UpnpAvailabilityChecker mUpnpChecker;
+	private final ThreadPoolExecutor mExecutor;
+	private final LinkedHashMap<String, Result> mResults = new LinkedHashMap<String, Result>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+			return size() > MAX_CACHED_RESULTS;
+		}
+	};
+
+	public AvailabilityProber(SmbSessionManager sessionManager, UpnpAvailabilityChecker upnpChecker) {
+		mSessionManager = sessionManager;
+		mUpnpChecker = upnpChecker;
+		mExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+		mExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Checks if the given files are available.
+	 * @param type {@link MizLib#TYPE_MOVIE} or {@link MizLib#TYPE_SHOWS}
+	 * @param filepaths Local, SMB or UPnP file paths
+	 * @return Map of file paths to their availability. File paths that
+	 * couldn't be checked, i.e. due to a server error or a missing file
+	 * source, aren't included.
+	 */
+	public Map<String, Boolean> probe(int type, Collection<String> filepaths) {
+		final Map<String, Boolean> results = new ConcurrentHashMap<String, Boolean>();
+		HashMap<String, List<String>> smbFolders = new HashMap<String, List<String>>();
+		List<String> upnpFiles = new ArrayList<String>();
+
+		HashMap<String, Boolean> cachedResults = new HashMap<String, Boolean>();
+
+		for (String filepath : filepaths) {
+			Boolean cached = getCachedResult(filepath);
+			if (cached != null) {
+				cachedResults.put(filepath, cached);
+			} else if (filepath.contains("smb://")) {
+				String folder = SmbDirectoryCache.getParentPath(filepath);
+				List<String> files = smbFolders.get(folder);
+				if (files == null) {
+					files = new ArrayList<String>();
+					smbFolders.put(folder, files);
+				}
+				files.add(filepath);
+			} else if (filepath.contains("http://")) {
+				upnpFiles.add(filepath);
+			} else {
+				results.put(filepath, new File(filepath).exists());
+			}
+		}
+
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+		for (final Map.Entry<String, List<String>> folder : smbFolders.entrySet()) {
+			final SmbSessionManager.Session session = mSessionManager.getSession(type, folder.getValue().get(0));
+			if (session == null)
+				continue;
+
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					probeSmbFolder(session, folder.getKey(), folder.getValue(), results);
+					return null;
+				}
+			});
+		}
+
+		if (tasks.size() > 0) {
+			try {
+				mExecutor.invokeAll(tasks);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		if (upnpFiles.size() > 0)
+			results.putAll(mUpnpChecker.check(upnpFiles));
+
+		putCachedResults(results);
+		results.putAll(cachedResults);
+
+		return results;
+	}
+
+	/**
+	 * Convenience method to check a single file.
+	 * @return True if the file is available, false if it's unavailable, null if it couldn't be checked
+	 */
+	public Boolean probe(int type, String filepath) {
+		ArrayList<String> filepaths = new ArrayList<String>();
+		filepaths.add(filepath);
+		return probe(type, filepaths).get(filepath);
+	}
+
+	public synchronized void clear() {
+		mResults.clear();
+	}
+
+	private void probeSmbFolder(SmbSessionManager.Session session, String folder, List<String> filepaths, Map<String, Boolean> results) {
+		try {
+			String[] list = session.list(folder);
+
+			HashSet<String> names = new HashSet<String>();
+			for (String name : list)
+				names.add(name.toLowerCase(Locale.ENGLISH));
+
+			for (String filepath : filepaths)
+				results.put(filepath, names.contains(filepath.substring(folder.length()).toLowerCase(Locale.ENGLISH)));
+		} catch (IOException e) {
+			// The folder couldn't be listed - it may have been removed, or the
+			// server may be down. Fall back to checking each file, which
+			// tells the two cases apart.
+			for (String filepath : filepaths) {
+				try {
+					results.put(filepath, session.exists(filepath));
+				} catch (IOException ignored) {}
+			}
+		}
+	}
+
+	private synchronized Boolean getCachedResult(String filepath) {
+		Result result = mResults.get(filepath);
+		if (result != null && System.currentTimeMillis() - result.mTimestamp < RESULT_TIME_TO_LIVE)
+			return result.mAvailable;
+		return null;
+	}
+
+	private synchronized void putCachedResults(Map<String, Boolean> results) {
+		long now = System.currentTimeMillis();
+		for (Map.Entry<String, Boolean> result : results.entrySet())
+			mResults.put(result.getKey(), new Result(result.getValue(), now));
+	}
+
+	private static class Result {
+
+		private final boolean mAvailable;
+		private final long mTimestamp;
+
+		public Result(boolean available, long timestamp) {
+			mAvailable = available;
+			mTimestamp = timestamp;
+		}
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.functions;
+
+import android.content.Context;
+import android.util.DisplayMetrics;
+
+import com.miz.mizuu.MizuuApplication;
+import com.squareup.picasso.RequestCreator;
+
+import java.io.File;
+
+/**
+ * Loads backdrops and other full-width header images for the detail
+ * screens. Images are decoded with an inSampleSize that matches the size
+ * of the display and kept in a memory cache of their own, so they don't
+ * push cover thumbnails out of the shared Picasso cache, and going back
+ * and forth between detail screens doesn't decode the same image again.
+ */
+public final class BackdropLoader {
+
+	private BackdropLoader() {} // No instantiation
+
+	public static RequestCreator load(Context context, File image) {
+		DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+
+		return MizuuApplication.getBackdropPicasso(context)
+				.load(image)
+				.resize(metrics.widthPixels, metrics.heightPixels)
+				.centerInside()
+				.onlyScaleDown()
+				.config(MizuuApplication.getBitmapConfig());
+	}
+
+	/**
+	 * Size of the backdrop memory cache in bytes, i.e. room
+	 * for a handful of screen-sized backdrops.
+	 */
+	public static int getMemoryCacheSize() {
+		return (int) (Runtime.getRuntime().maxMemory() / 8);
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.functions;
+
+/**
+ * Pure Java blur of ARGB pixel arrays. Three passes of a box blur are
+ * used to approximate a gaussian blur of the same strength, so the
+ * result looks much like the one from {@link MizLib#fastBlur(android.content.Context, android.graphics.Bitmap, int)}.
+ */
+public final class BlurKernel {
+
+	private static final int PASSES = 3;
+
+	private BlurKernel() {} // No instantiation
+
+	/**
+	 * Blurs the pixels in place.
+	 * @param pixels ARGB pixels, row by row, i.e. from {@link android.graphics.Bitmap#getPixels(int[], int, int, int, int, int, int)}
+	 * @param width Width of the image
+	 * @param height Height of the image
+	 * @param radius Blur radius in pixels, as for {@link android.renderscript.ScriptIntrinsicBlur#setRadius(float)}.
+	 * Nothing is done for a radius below 1.
+	 */
+	public static void blur(int[] pixels, int width, int height, int radius) {
+		if (radius < 1 || width < 1 || height < 1)
+			return;
+
+		if (pixels.length < width * height)
+			throw new IllegalArgumentException("Expected " + (width * height) + " pixels, got " + pixels.length);
+
+		int[] buffer = new int[width * height];
+
+		// Each call blurs the rows and writes them as columns, so
+		// two calls blur the image both ways and transpose it back
+		for (int boxRadius : getBoxRadii(getSigma(radius))) {
+			if (boxRadius == 0)
+				continue;
+
+			blurRows(pixels, buffer, width, height, boxRadius);
+			blurRows(buffer, pixels, height, width, boxRadius);
+		}
+	}
+
+	/**
+	 * Returns the standard deviation of the gaussian blur that
+	 * RenderScript uses for a radius.
+	 */
+	private static double getSigma(int radius) {
+		return 0.4 * radius + 0.6;
+	}
+
+	/**
+	 * Returns the half widths of the boxes whose passes combined have the
+	 * same standard deviation as a gaussian blur. The boxes have odd widths,
+	 * the first ones one size smaller than the rest to get close to sigma.
+	 */
+	private static int[] getBoxRadii(double sigma) {
+		double idealWidth = Math.sqrt(12 * sigma * sigma / PASSES + 1);
+
+		int smaller = (int) Math.floor(idealWidth);
+		if (smaller % 2 == 0)
+			smaller--;
+		int larger = smaller + 2;
+
+		// Number of passes that use the smaller box
+		int count = (int) Math.round((12 * sigma * sigma - PASSES * smaller * smaller - 4 * PASSES * smaller - 3 * PASSES) / (-4.0 * smaller - 4));
+
+		int[] radii = new int[PASSES];
+		for (int i = 0; i < PASSES; i++)
+			radii[i] = ((i < count ? smaller : larger) - 1) / 2;
+		return radii;
+	}
+
+	private static void blurRows(int[] in, int[] out, int width, int height, int radius) {
+		final int window = radius * 2 + 1;
+		final int last = width - 1;
+
+		for (int y = 0; y < height; y++) {
+			final int row = y * width;
+			int a = 0, r = 0, g = 0, b = 0;
+
+			// Pixels outside the image repeat the edge pixels
+			for (int i = -radius; i <= radius; i++) {
+				int pixel = in[row + clamp(i, last)];
+				a += pixel >>> 24;
+				r += (pixel >> 16) & 0xff;
+				g += (pixel >> 8) & 0xff;
+				b += pixel & 0xff;
+			}
+
+			for (int x = 0; x < width; x++) {
+				out[x * height + y] = ((a / window) << 24) | ((r / window) << 16) | ((g / window) << 8) | (b / window);
+
+				int added = in[row + clamp(x + radius + 1, last)];
+				int removed = in[row + clamp(x - radius, last)];
+
+				a += (added >>> 24) - (removed >>> 24);
+				r += ((added >> 16) & 0xff) - ((removed >> 16) & 0xff);
+				g += ((added >> 8) & 0xff) - ((removed >> 8) & 0xff);
+				b += (added & 0xff) - (removed & 0xff);
+			}
+		}
+	}
+
+	private static int clamp(int index, int last) {
+		return index < 0 ? 0 : (index > last ? last : index);
+	}
+}
@@ -19,23 +19,30 @@ package com.miz.functions;
 import android.content.Context;
 import android.graphics.Bitmap;
 
+import com.miz.mizuu.MizuuApplication;
 import com.squareup.picasso.Transformation;
 
+/**
+ * Blurs images as they're loaded. The blurred image is stored in the
+ * {@link BlurredImageCache}, so it doesn't have to be blurred again.
+ * Use {@link BlurredImageCache#load(Context, com.squareup.picasso.Picasso, String, int)}
+ * rather than this directly.
+ */
 public class BlurTransformation implements Transformation {
 
 	private final Context mContext;
-	private final String mKey;
+	private final String mSource;
 	private final int mBlurRadius;
 	
-	public BlurTransformation(Context context, String key, int blurRadius) {
+	public BlurTransformation(Context context, String source, int blurRadius) {
 		mContext = context;
-		mKey = key;
+		mSource = source;
 		mBlurRadius = blurRadius;
 	}
 	
 	@Override
 	public String key() {
-		return mKey;
+		return mSource + "-blur-" + mBlurRadius;
 	}
 
 	@Override
@@ -43,6 +50,8 @@ public class BlurTransformation implements Transformation {
 		Bitmap blur = MizLib.fastBlur(mContext, Bitmap.createScaledBitmap(source,
 				source.getWidth() / 2, source.getHeight() / 2, true), mBlurRadius);
         source.recycle();
+
+		MizuuApplication.getBlurredImageCache(mContext).put(mSource, mBlurRadius, blur);
 		
 		return blur;
 	}
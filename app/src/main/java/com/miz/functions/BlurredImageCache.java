@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.functions;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Disk cache of blurred image variants, keyed by the source image and
+ * the blur radius. Local images are blurred when they're downloaded,
+ * remote images the first time they're shown, so showing a blurred
+ * image again only costs the decode of a small JPEG.
+ */
+public class BlurredImageCache {
+
+	/**
+	 * Blur radius of the backdrops on the episode details screen.
+	 */
+	public static final int BACKDROP_BLUR_RADIUS = 4;
+
+	private final File mFolder;
+
+	public BlurredImageCache(File folder) {
+		mFolder = folder;
+		mFolder.mkdirs();
+	}
+
+	/**
+	 * Returns the file of a blurred image variant. The file may not exist.
+	 * @param source File path or URL of the source image
+	 */
+	public File getFile(String source, int radius) {
+		return new File(mFolder, MizLib.md5(source + "_" + radius) + ".jpg");
+	}
+
+	/**
+	 * Returns the blurred image variant, or null if it hasn't been created
+	 * or is older than the local source image.
+	 * @param source File path or URL of the source image
+	 */
+	public File get(String source, int radius) {
+		File blurred = getFile(source, radius);
+		if (!blurred.exists())
+			return null;
+
+		if (!isRemote(source) && new File(source).lastModified() > blurred.lastModified())
+			return null;
+
+		return blurred;
+	}
+
+	/**
+	 * Blurs a local image and stores the result. Must not be called on the UI thread.
+	 * @return The blurred image, or null if the source image couldn't be decoded
+	 */
+	public File generate(File source, int radius) {
+		if (source == null || !source.exists())
+			return null;
+
+		// Images are blurred at half size, just like BlurTransformation
+		// does, and decoding at half size is a lot cheaper as well
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inSampleSize = 2;
+
+		Bitmap bitmap = BitmapFactory.decodeFile(source.getAbsolutePath(), options);
+		if (bitmap == null)
+			return null;
+
+		Bitmap blurred = blur(bitmap, radius);
+		bitmap.recycle();
+
+		try {
+			return put(source.getAbsolutePath(), radius, blurred) ? getFile(source.getAbsolutePath(), radius) : null;
+		} finally {
+			blurred.recycle();
+		}
+	}
+
+	/**
+	 * Stores an already blurred image. The image is written to a temporary
+	 * file first, so a partially written file is never served.
+	 */
+	public boolean put(String source, int radius, Bitmap blurred) {
+		File file = getFile(source, radius);
+		File temp = new File(mFolder, file.getName() + ".tmp");
+
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream(temp);
+			if (!blurred.compress(Bitmap.CompressFormat.JPEG, 85, out))
+				return false;
+			out.close();
+			out = null;
+
+			return temp.renameTo(file);
+		} catch (IOException e) {
+			return false;
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException ignored) {}
+			}
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Returns a Picasso request for the blurred image. The cached variant
+	 * is used if it exists, otherwise the source image is blurred when
+	 * it's loaded and the result is stored for next time.
+	 * @param source File path or URL of the source image
+	 */
+	public RequestCreator load(Context context, Picasso picasso, String source, int radius) {
+		File blurred = get(source, radius);
+		if (blurred != null)
+			return picasso.load(blurred);
+
+		RequestCreator request = isRemote(source) ? picasso.load(source) : picasso.load(new File(source));
+		return request.transform(new BlurTransformation(context, source, radius));
+	}
+
+	public void clear() {
+		File[] files = mFolder.listFiles();
+		if (files != null)
+			for (File file : files)
+				file.delete();
+	}
+
+	/**
+	 * Returns a blurred copy of the bitmap, using {@link BlurKernel}.
+	 */
+	public static Bitmap blur(Bitmap bitmap, int radius) {
+		int width = bitmap.getWidth(), height = bitmap.getHeight();
+		int[] pixels = new int[width * height];
+
+		bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+		BlurKernel.blur(pixels, width, height, radius);
+
+		return Bitmap.createBitmap(pixels, width, height, Bitmap.Config.ARGB_8888);
+	}
+
+	private static boolean isRemote(String source) {
+		return source.startsWith("http://") || source.startsWith("https://");
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.functions;
+
+import org.teleal.cling.controlpoint.ControlPoint;
+import org.teleal.cling.model.action.ActionInvocation;
+import org.teleal.cling.model.message.UpnpResponse;
+import org.teleal.cling.model.meta.Service;
+import org.teleal.cling.support.contentdirectory.callback.Browse;
+import org.teleal.cling.support.model.BrowseFlag;
+import org.teleal.cling.support.model.BrowseResult;
+import org.teleal.cling.support.model.DIDLContent;
+import org.teleal.cling.support.model.Res;
+import org.teleal.cling.support.model.SortCriterion;
+import org.teleal.cling.support.model.container.Container;
+import org.teleal.cling.support.model.item.Item;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Browses the ContentDirectory service of a media server using Cling.
+ * Every Browse action is executed synchronously on the calling thread.
+ */
+public class ClingContentDirectory implements UpnpCrawler.ContentDirectory {
+
+	private final ControlPoint mControlPoint;
+	private final Service<?, ?> mService;
+
+	public ClingContentDirectory(ControlPoint controlPoint, Service<?, ?> service) {
+		mControlPoint = controlPoint;
+		mService = service;
+	}
+
+	@Override
+	public UpnpCrawler.Page browse(String containerId, long startIndex, long maxResults) throws IOException {
+		PageCallback callback = new PageCallback(mService, containerId, startIndex, maxResults);
+		callback.setControlPoint(mControlPoint);
+		callback.run();
+
+		return callback.getPage();
+	}
+
+	private static class PageCallback extends Browse {
+
+		private UpnpCrawler.Page mPage;
+		private long mTotalMatches, mReturned;
+		private String mError;
+
+		public PageCallback(Service<?, ?> service, String containerId, long startIndex, long maxResults) {
+			super(service, containerId, BrowseFlag.DIRECT_CHILDREN, "*", startIndex, maxResults, new SortCriterion(true, "dc:title"));
+		}
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public boolean receivedRaw(ActionInvocation actionInvocation, BrowseResult browseResult) {
+			Long totalMatches = browseResult.getTotalMatchesLong();
+			mTotalMatches = totalMatches != null ? totalMatches : 0;
+			mReturned = browseResult.getCount() != null ? browseResult.getCountLong() : 0;
+			return true;
+		}
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public void received(ActionInvocation actionInvocation, DIDLContent didl) {
+			List<UpnpCrawler.Entry> containers = new ArrayList<UpnpCrawler.Entry>(), items = new ArrayList<UpnpCrawler.Entry>();
+
+			for (Container container : didl.getContainers())
+				containers.add(new UpnpCrawler.Entry(container.getId(), container.getTitle(), null, 0));
+
+			for (Item item : didl.getItems()) {
+				Res resource = item.getFirstResource();
+				if (resource == null || resource.getValue() == null)
+					continue;
+
+				items.add(new UpnpCrawler.Entry(item.getId(), item.getTitle(), resource.getValue(),
+						resource.getSize() != null ? resource.getSize() : 0));
+			}
+
+			// Items without a resource are skipped, but still count towards the
+			// offset of the next page. Some servers don't report NumberReturned.
+			long returned = mReturned > 0 ? mReturned : didl.getContainers().size() + didl.getItems().size();
+			mPage = new UpnpCrawler.Page(containers, items, mTotalMatches, returned);
+		}
+
+		@Override
+		public void updateStatus(Status status) {}
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public void failure(ActionInvocation actionInvocation, UpnpResponse upnpResponse, String error) {
+			mError = error != null ? error : "Browse failed";
+		}
+
+		private UpnpCrawler.Page getPage() throws IOException {
+			if (mError != null || mPage == null)
+				throw new IOException(mError);
+
+			return mPage;
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.functions;
+
+import org.teleal.cling.UpnpService;
+import org.teleal.cling.model.meta.Device;
+import org.teleal.cling.model.meta.LocalDevice;
+import org.teleal.cling.model.meta.RemoteDevice;
+import org.teleal.cling.model.meta.RemoteDeviceIdentity;
+import org.teleal.cling.model.types.UDAServiceType;
+import org.teleal.cling.model.types.UDN;
+import org.teleal.cling.protocol.RetrieveRemoteDescriptors;
+import org.teleal.cling.registry.DefaultRegistryListener;
+import org.teleal.cling.registry.Registry;
+import org.teleal.cling.registry.RegistryListener;
+
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds media servers using Cling. Devices are looked up in the registry
+ * of the UPnP service, which is where retrieved and discovered devices end up.
+ */
+public class ClingNetwork implements UpnpDeviceResolver.Network<Device<?, ?, ?>> {
+
+	public static final UDAServiceType CONTENT_DIRECTORY = new UDAServiceType("ContentDirectory");
+
+	/**
+	 * Time in seconds before a device that was retrieved from its descriptor URL expires from the registry.
+	 */
+	private static final int DESCRIPTOR_MAX_AGE = 1800;
+
+	private final UpnpService mUpnpService;
+
+	public ClingNetwork(UpnpService upnpService) {
+		mUpnpService = upnpService;
+	}
+
+	@Override
+	public Device<?, ?, ?> findDevice(String id) {
+		for (Device<?, ?, ?> device : mUpnpService.getRegistry().getDevices())
+			if (matches(device, id))
+				return device;
+		return null;
+	}
+
+	/**
+	 * The descriptors are retrieved on the calling thread, and the device is
+	 * added to the registry if it responds.
+	 */
+	@Override
+	public void retrieve(UpnpDeviceCache.Entry location) throws Exception {
+		RemoteDevice device = new RemoteDevice(new RemoteDeviceIdentity(UDN.valueOf(location.getUdn()), DESCRIPTOR_MAX_AGE,
+				new URL(location.getDescriptorUrl()), null, null));
+		new RetrieveRemoteDescriptors(mUpnpService, device).run();
+	}
+
+	@Override
+	public Device<?, ?, ?> search(final String id, long timeout) throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(1);
+
+		RegistryListener listener = new DefaultRegistryListener() {
+			@Override
+			public void remoteDeviceAdded(Registry registry, RemoteDevice device) {
+				if (matches(device, id))
+					latch.countDown();
+			}
+
+			@Override
+			public void localDeviceAdded(Registry registry, LocalDevice device) {
+				if (matches(device, id))
+					latch.countDown();
+			}
+		};
+
+		Registry registry = mUpnpService.getRegistry();
+		registry.addListener(listener);
+
+		try {
+			// The device may have been added before the listener
+			Device<?, ?, ?> device = findDevice(id);
+			if (device != null)
+				return device;
+
+			mUpnpService.getControlPoint().search();
+			latch.await(timeout, TimeUnit.MILLISECONDS);
+
+			return findDevice(id);
+		} finally {
+			registry.removeListener(listener);
+		}
+	}
+
+	@Override
+	public UpnpDeviceCache.Entry getLocation(Device<?, ?, ?> device) {
+		if (!(device instanceof RemoteDevice))
+			return null;
+
+		RemoteDeviceIdentity identity = ((RemoteDevice) device).getIdentity();
+		if (identity.getDescriptorURL() == null)
+			return null;
+
+		return new UpnpDeviceCache.Entry(identity.getUdn().getIdentifierString(), identity.getDescriptorURL().toString());
+	}
+
+	/**
+	 * File sources store the serial number of the media server, or its UDN if it hasn't got one.
+	 */
+	private static boolean matches(Device<?, ?, ?> device, String id) {
+		try {
+			String serialNumber = device.getDetails().getSerialNumber();
+			if (serialNumber != null && serialNumber.length() > 0)
+				return serialNumber.equals(id) && device.findService(CONTENT_DIRECTORY) != null;
+			return device.getIdentity().getUdn().toString().equals(id) && device.findService(CONTENT_DIRECTORY) != null;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.functions;
+
+import java.util.HashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor for library loads. Tasks are run by priority, and tasks with
+ * the same priority in the order they were submitted. Tasks can be given
+ * a key, in which case submitting a new task with the same key replaces
+ * the queued one, and cancels the running one, so only the latest load
+ * of a library section is run. Nothing is ever silently dropped:
+ * replaced tasks that are {@link Future}s are cancelled, so their
+ * owners are told about it.
+ */
+public class CoalescingExecutor implements Executor {
+
+	public static final int PRIORITY_LOW = 0, PRIORITY_NORMAL = 1, PRIORITY_HIGH = 2;
+
+	private final ThreadPoolExecutor mExecutor;
+	private final HashMap<String, Entry> mEntries = new HashMap<String, Entry>();
+	private final AtomicLong mSequence = new AtomicLong();
+
+	public CoalescingExecutor(int threads, ThreadFactory threadFactory) {
+		mExecutor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS,
+				new PriorityBlockingQueue<Runnable>(), threadFactory);
+		mExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Runs the task with normal priority. It isn't coalesced with any other task.
+	 */
+	@Override
+	public void execute(Runnable task) {
+		execute(null, PRIORITY_NORMAL, task);
+	}
+
+	/**
+	 * Runs the task once the tasks with a higher priority, and those with
+	 * the same priority that were submitted before it, have been started.
+	 * @param key Tasks with the same key replace each other. Can be null.
+	 * @param priority {@link #PRIORITY_LOW}, {@link #PRIORITY_NORMAL} or {@link #PRIORITY_HIGH}
+	 * @param task The task. If it's a {@link Future}, it's cancelled when it's replaced.
+	 */
+	public void execute(String key, int priority, Runnable task) {
+		Entry entry = new Entry(key, priority, mSequence.getAndIncrement(), task);
+
+		synchronized (this) {
+			if (key != null) {
+				supersede(mEntries.get(key));
+				mEntries.put(key, entry);
+			}
+		}
+
+		mExecutor.execute(entry);
+	}
+
+	/**
+	 * Changes the priority of a queued task, i.e. when the library
+	 * section it's loading becomes visible. Does nothing if the task
+	 * has already been started.
+	 */
+	public void setPriority(String key, int priority) {
+		Entry replacement;
+
+		synchronized (this) {
+			Entry entry = mEntries.get(key);
+			if (entry == null || entry.mPriority == priority || entry.mStarted || !mExecutor.remove(entry))
+				return;
+
+			// Keep the original place in line among tasks with the same priority
+			replacement = new Entry(key, priority, entry.mSequence, entry.mTask);
+			mEntries.put(key, replacement);
+		}
+
+		mExecutor.execute(replacement);
+	}
+
+	/**
+	 * Cancels the queued or running task with the given key.
+	 */
+	public synchronized void cancel(String key) {
+		supersede(mEntries.remove(key));
+	}
+
+	/**
+	 * Returns the number of queued tasks.
+	 */
+	public int getQueueSize() {
+		return mExecutor.getQueue().size();
+	}
+
+	/**
+	 * Stops accepting tasks. Queued tasks are still run. Used for unit testing.
+	 */
+	public void shutdown() {
+		mExecutor.shutdown();
+	}
+
+	/**
+	 * Used for unit testing.
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return mExecutor.awaitTermination(timeout, unit);
+	}
+
+	private void supersede(Entry entry) {
+		if (entry == null)
+			return;
+
+		entry.mCancelled = true;
+		mExecutor.remove(entry);
+
+		if (entry.mTask instanceof Future)
+			((Future<?>) entry.mTask).cancel(true);
+	}
+
+	private synchronized boolean start(Entry entry) {
+		if (entry.mCancelled)
+			return false;
+
+		entry.mStarted = true;
+		return true;
+	}
+
+	private synchronized void finish(Entry entry) {
+		if (entry.mKey != null && mEntries.get(entry.mKey) == entry)
+			mEntries.remove(entry.mKey);
+	}
+
+	private class Entry implements Runnable, Comparable<Entry> {
+
+		private final String mKey;
+		private final int mPriority;
+		private final long mSequence;
+		private final Runnable mTask;
+
+		// Guarded by the executor
+		private boolean mCancelled, mStarted;
+
+		public Entry(String key, int priority, long sequence, Runnable task) {
+			mKey = key;
+			mPriority = priority;
+			mSequence = sequence;
+			mTask = task;
+		}
+
+		@Override
+		public void run() {
+			if (!start(this))
+				return;
+
+			try {
+				mTask.run();
+			} finally {
+				finish(this);
+			}
+		}
+
+		@Override
+		public int compareTo(Entry another) {
+			if (mPriority != another.mPriority)
+				return mPriority > another.mPriority ? -1 : 1;
+			return mSequence < another.mSequence ? -1 : (mSequence == another.mSequence ? 0 : 1);
+		}
+	}
+}
@@ -19,23 +19,27 @@ package com.miz.functions;
 
 public class EpisodeCounter {
 
-	private int mEpisodeCount, mWatchedCount;
-	
-	public EpisodeCounter() {}
-	
-	public void incrementEpisodeCount() {
-		mEpisodeCount++;
+	private final int mEpisodeCount, mWatchedCount;
+	private final boolean mHasCover;
+
+	public EpisodeCounter(int episodeCount, int watchedCount, boolean hasCover) {
+		mEpisodeCount = episodeCount;
+		mWatchedCount = watchedCount;
+		mHasCover = hasCover;
 	}
-	
+
 	public int getEpisodeCount() {
 		return mEpisodeCount;
 	}
-	
-	public void incrementWatchedCount() {
-		mWatchedCount++;
-	}
-	
+
 	public int getWatchedCount() {
 		return mWatchedCount;
 	}
+
+	/**
+	 * @return True if a cover image has been downloaded for the season
+	 */
+	public boolean hasCover() {
+		return mHasCover;
+	}
 }
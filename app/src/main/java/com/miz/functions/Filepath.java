@@ -62,9 +62,16 @@ public class Filepath {
 	}
 
     public String getTypeAsString(Context context) {
-        if (getType() == FileSource.SMB) {
+        return getTypeAsString(context, getType());
+    }
+
+    /**
+     * Returns the name of a file source type, i.e. {@link FileSource#SMB}.
+     */
+    public static String getTypeAsString(Context context, int type) {
+        if (type == FileSource.SMB) {
             return context.getString(R.string.contentLocationSMB_Alternative);
-        } else if (getType() == FileSource.UPNP) {
+        } else if (type == FileSource.UPNP) {
             return context.getString(R.string.contentLocationUPnP_Alternative);
         } else {
             return context.getString(R.string.contentLocationDevice_Alternative);
@@ -0,0 +1,361 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.functions;
+
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads images on a bounded pool. Concurrent requests for the same
+ * URL share a single download, and images that have been downloaded
+ * before are revalidated using their ETag or Last-Modified date, so
+ * unchanged images aren't downloaded again. Images are written to a
+ * temporary file and only replace the existing image once they've been
+ * downloaded completely, so a failed download never leaves a truncated image behind.
+ */
+public class ImageDownloader {
+
+	public enum Result {
+		/**
+		 * The image was downloaded and replaced the existing image, if any.
+		 */
+		DOWNLOADED,
+
+		/**
+		 * The existing image is still up to date.
+		 */
+		NOT_MODIFIED,
+
+		/**
+		 * The image couldn't be downloaded. The existing image, if any, is left untouched.
+		 */
+		FAILED
+	}
+
+	private static final int POOL_SIZE = 4;
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final String KEY_URL = "url";
+	private static final String KEY_ETAG = "etag";
+	private static final String KEY_LAST_MODIFIED = "last_modified";
+	private static final String KEY_LENGTH = "length";
+
+	private final OkHttpClient mClient;
+	private final File mValidatorFolder;
+	private final ThreadPoolExecutor mExecutor;
+	private final HashMap<String, Download> mDownloads = new HashMap<String, Download>();
+
+	/**
+	 * @param client HTTP client used for all downloads
+	 * @param validatorFolder Folder used to store the ETag and Last-Modified date of downloaded images
+	 */
+	public ImageDownloader(OkHttpClient client, File validatorFolder) {
+		mClient = client;
+		mValidatorFolder = validatorFolder;
+		mValidatorFolder.mkdirs();
+
+		mExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+		mExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Downloads an image and waits for it. Must not be called on the UI thread.
+	 */
+	public Result download(String url, File destination) {
+		try {
+			return enqueue(url, destination).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException ignored) {}
+
+		return Result.FAILED;
+	}
+
+	/**
+	 * Queues the download of an image. If the URL is already being
+	 * downloaded, the pending download is shared, and the image is copied
+	 * to the destination once it's done.
+	 */
+	public Future<Result> enqueue(String url, File destination) {
+		synchronized (mDownloads) {
+			Download download = mDownloads.get(url);
+			if (download != null) {
+				if (!download.mDestination.equals(destination) && !download.mCopies.contains(destination))
+					download.mCopies.add(destination);
+				return download.mFuture;
+			}
+
+			download = new Download(url, destination);
+			mDownloads.put(url, download);
+			download.mFuture = mExecutor.submit(download);
+
+			return download.mFuture;
+		}
+	}
+
+	/**
+	 * Returns the number of downloads that are queued or running.
+	 */
+	public int getPendingCount() {
+		synchronized (mDownloads) {
+			return mDownloads.size();
+		}
+	}
+
+	private Result execute(Download download) {
+		Result result = Result.FAILED;
+		List<File> copies;
+
+		try {
+			result = fetch(download.mUrl, download.mDestination);
+		} finally {
+			// New requests for the URL must start a new download from now on
+			synchronized (mDownloads) {
+				mDownloads.remove(download.mUrl);
+				copies = new ArrayList<File>(download.mCopies);
+			}
+		}
+
+		if (result != Result.FAILED) {
+			for (File copy : copies) {
+				if (!copy(download.mDestination, copy))
+					result = Result.FAILED;
+			}
+		}
+
+		Metrics.increment("images." + result.name().toLowerCase(Locale.ENGLISH));
+
+		return result;
+	}
+
+	private Result fetch(String url, File destination) {
+		Properties validators = getValidators(url, destination);
+
+		Request.Builder builder = new Request.Builder().url(url);
+		if (validators != null) {
+			String etag = validators.getProperty(KEY_ETAG), lastModified = validators.getProperty(KEY_LAST_MODIFIED);
+			if (!isEmpty(etag))
+				builder.header("If-None-Match", etag);
+			if (!isEmpty(lastModified))
+				builder.header("If-Modified-Since", lastModified);
+		}
+
+		File temp = new File(destination.getParentFile(), destination.getName() + "." + Integer.toHexString(url.hashCode()) + ".tmp");
+		ResponseBody body = null;
+
+		try {
+			Response response = mClient.newCall(builder.build()).execute();
+			body = response.body();
+
+			if (response.code() == 304 && validators != null)
+				return Result.NOT_MODIFIED;
+
+			if (!response.isSuccessful())
+				return Result.FAILED;
+
+			long expectedLength = body.contentLength();
+			long length = write(body.byteStream(), temp);
+
+			// Verify that the entire image was received
+			if (length == 0 || (expectedLength != -1 && length != expectedLength) || !commit(temp, destination)) {
+				temp.delete();
+				return Result.FAILED;
+			}
+
+			putValidators(url, destination, response.header("ETag"), response.header("Last-Modified"), length);
+
+			return Result.DOWNLOADED;
+		} catch (Exception e) {
+			temp.delete();
+			return Result.FAILED;
+		} finally {
+			if (body != null) {
+				try {
+					body.close();
+				} catch (IOException ignored) {}
+			}
+		}
+	}
+
+	/**
+	 * Writes the stream to the file and makes sure it has reached the disk.
+	 * @return Number of bytes written
+	 */
+	private static long write(InputStream stream, File file) throws IOException {
+		InputStream in = new BufferedInputStream(stream, BUFFER_SIZE);
+		FileOutputStream out = new FileOutputStream(file);
+
+		long total = 0;
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int length;
+			while ((length = in.read(buffer)) != -1) {
+				out.write(buffer, 0, length);
+				total += length;
+			}
+
+			out.flush();
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+
+		return total;
+	}
+
+	/**
+	 * Replaces the destination with the temporary file.
+	 */
+	private static boolean commit(File temp, File destination) {
+		if (temp.renameTo(destination))
+			return true;
+
+		// Some file systems don't allow renaming onto an existing file
+		destination.delete();
+		return temp.renameTo(destination);
+	}
+
+	private static boolean copy(File source, File destination) {
+		File temp = new File(destination.getParentFile(), destination.getName() + ".tmp");
+
+		try {
+			FileInputStream in = new FileInputStream(source);
+			try {
+				write(in, temp);
+			} finally {
+				in.close();
+			}
+
+			if (commit(temp, destination))
+				return true;
+		} catch (IOException ignored) {}
+
+		temp.delete();
+		return false;
+	}
+
+	/**
+	 * Returns the validators of an image, or null if the image should be
+	 * downloaded unconditionally, i.e. because it doesn't exist, it was
+	 * downloaded from another URL or it has been changed since.
+	 */
+	private Properties getValidators(String url, File destination) {
+		if (!destination.exists())
+			return null;
+
+		Properties validators = new Properties();
+
+		try {
+			FileInputStream in = new FileInputStream(getValidatorFile(destination));
+			try {
+				validators.load(in);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return null;
+		}
+
+		if (!url.equals(validators.getProperty(KEY_URL)) ||
+				!String.valueOf(destination.length()).equals(validators.getProperty(KEY_LENGTH)))
+			return null;
+
+		if (isEmpty(validators.getProperty(KEY_ETAG)) && isEmpty(validators.getProperty(KEY_LAST_MODIFIED)))
+			return null;
+
+		return validators;
+	}
+
+	private void putValidators(String url, File destination, String etag, String lastModified, long length) {
+		File file = getValidatorFile(destination);
+
+		if (isEmpty(etag) && isEmpty(lastModified)) {
+			file.delete();
+			return;
+		}
+
+		Properties validators = new Properties();
+		validators.setProperty(KEY_URL, url);
+		validators.setProperty(KEY_LENGTH, String.valueOf(length));
+		if (!isEmpty(etag))
+			validators.setProperty(KEY_ETAG, etag);
+		if (!isEmpty(lastModified))
+			validators.setProperty(KEY_LAST_MODIFIED, lastModified);
+
+		File temp = new File(mValidatorFolder, file.getName() + ".tmp");
+		try {
+			FileOutputStream out = new FileOutputStream(temp);
+			try {
+				validators.store(out, null);
+			} finally {
+				out.close();
+			}
+
+			if (commit(temp, file))
+				return;
+		} catch (IOException ignored) {}
+
+		temp.delete();
+		file.delete();
+	}
+
+	private File getValidatorFile(File destination) {
+		return new File(mValidatorFolder, MizLib.md5(destination.getAbsolutePath()));
+	}
+
+	private static boolean isEmpty(String s) {
+		return s == null || s.length() == 0;
+	}
+
+	private class Download implements Callable<Result> {
+
+		private final String mUrl;
+		private final File mDestination;
+		private final List<File> mCopies = new ArrayList<File>();
+		private Future<Result> mFuture;
+
+		public Download(String url, File destination) {
+			mUrl = url;
+			mDestination = destination;
+		}
+
+		@Override
+		public Result call() {
+			return execute(this);
+		}
+	}
+}
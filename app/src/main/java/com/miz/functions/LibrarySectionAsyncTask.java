@@ -16,20 +16,16 @@
 
 package com.miz.functions;
 
-import android.annotation.TargetApi;
 import android.os.Handler;
 import android.os.Message;
 import android.os.Process;
 
 import java.util.ArrayDeque;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.concurrent.FutureTask;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -46,10 +42,13 @@ import java.util.concurrent.atomic.AtomicInteger;
  * executeOnExecutor() if needed.
  *
  * There are 3 changes in this copy of AsyncTask:
- *    -pre-HC a single thread executor is used for serial operation
- *    (Executors.newSingleThreadExecutor) and is the default
- *    -the default THREAD_POOL_EXECUTOR was changed to use DiscardOldestPolicy
- *    -a new fixed thread pool called DUAL_THREAD_EXECUTOR was added
+ *    -the thread pool is a {@link CoalescingExecutor} with two threads,
+ *    which runs tasks by priority and lets a new load of a library section
+ *    replace the queued or running one (see {@link #executeCoalesced})
+ *    -the default executor still runs tasks one at a time, on the threads
+ *    of that pool
+ *    -cancelling a task through its Future, i.e. when it's replaced by
+ *    the executor, is the same as calling {@link #cancel(boolean)}
  * *************************************
  *
  * <p>AsyncTask enables proper and easy use of the UI thread. This class allows to
@@ -192,14 +191,12 @@ import java.util.concurrent.atomic.AtomicInteger;
  * thread to avoid common application errors caused by parallel execution.</p>
  * <p>If you truly want parallel execution, you can invoke
  * {@link #executeOnExecutor(java.util.concurrent.Executor, Object[])} with
- * {@link #THREAD_POOL_EXECUTOR}.</p>
+ * {@link #LIBRARY_EXECUTOR}.</p>
  */
 public abstract class LibrarySectionAsyncTask<Params, Progress, Result> {
     private static final String LOG_TAG = "AsyncTask";
 
-    private static final int CORE_POOL_SIZE = 2;
-    private static final int MAXIMUM_POOL_SIZE = 2;
-    private static final int KEEP_ALIVE = 1;
+    private static final int POOL_SIZE = 2;
 
     private static final ThreadFactory  sThreadFactory = new ThreadFactory() {
         private final AtomicInteger mCount = new AtomicInteger(1);
@@ -209,16 +206,12 @@ public abstract class LibrarySectionAsyncTask<Params, Progress, Result> {
         }
     };
 
-    private static final BlockingQueue<Runnable> sPoolWorkQueue =
-            new LinkedBlockingQueue<Runnable>(10);
-
     /**
-     * An {@link Executor} that can be used to execute tasks in parallel.
+     * An {@link Executor} that runs library loads by priority, and only
+     * runs the latest of the loads that share a key.
      */
-    public static final Executor THREAD_POOL_EXECUTOR
-            = new ThreadPoolExecutor(CORE_POOL_SIZE, MAXIMUM_POOL_SIZE, KEEP_ALIVE,
-            TimeUnit.SECONDS, sPoolWorkQueue, sThreadFactory,
-            new ThreadPoolExecutor.DiscardOldestPolicy());
+    public static final CoalescingExecutor LIBRARY_EXECUTOR =
+            new CoalescingExecutor(POOL_SIZE, sThreadFactory);
 
     /**
      * An {@link Executor} that executes tasks one at a time in serial
@@ -226,9 +219,6 @@ public abstract class LibrarySectionAsyncTask<Params, Progress, Result> {
      */
     public static final Executor SERIAL_EXECUTOR = new SerialExecutor();
 
-    public static final Executor DUAL_THREAD_EXECUTOR =
-            Executors.newFixedThreadPool(2, sThreadFactory);
-
     private static final int MESSAGE_POST_RESULT = 0x1;
     private static final int MESSAGE_POST_PROGRESS = 0x2;
 
@@ -243,7 +233,6 @@ public abstract class LibrarySectionAsyncTask<Params, Progress, Result> {
     private final AtomicBoolean mCancelled = new AtomicBoolean();
     private final AtomicBoolean mTaskInvoked = new AtomicBoolean();
 
-    @TargetApi(11)
     private static class SerialExecutor implements Executor {
         final ArrayDeque<Runnable> mTasks = new ArrayDeque<Runnable>();
         Runnable mActive;
@@ -265,7 +254,7 @@ public abstract class LibrarySectionAsyncTask<Params, Progress, Result> {
 
         protected synchronized void scheduleNext() {
             if ((mActive = mTasks.poll()) != null) {
-                THREAD_POOL_EXECUTOR.execute(mActive);
+                LIBRARY_EXECUTOR.execute(mActive);
             }
         }
     }
@@ -314,6 +303,13 @@ public abstract class LibrarySectionAsyncTask<Params, Progress, Result> {
         };
 
         mFuture = new FutureTask<Result>(mWorker) {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                // The executor cancels replaced tasks through their Future
+                mCancelled.set(true);
+                return super.cancel(mayInterruptIfRunning);
+            }
+
             @Override
             protected void done() {
                 try {
@@ -537,8 +533,7 @@ public abstract class LibrarySectionAsyncTask<Params, Progress, Result> {
      * executed on a single thread to avoid common application errors caused
      * by parallel execution.  If you truly want parallel execution, you can use
      * the {@link #executeOnExecutor} version of this method
-     * with {@link #THREAD_POOL_EXECUTOR}; however, see commentary there for warnings
-     * on its use.
+     * with your own {@link Executor}.
      *
      * <p>This method must be invoked on the UI thread.
      *
@@ -560,9 +555,7 @@ public abstract class LibrarySectionAsyncTask<Params, Progress, Result> {
      * Executes the task with the specified parameters. The task returns
      * itself (this) so that the caller can keep a reference to it.
      *
-     * <p>This method is typically used with {@link #THREAD_POOL_EXECUTOR} to
-     * allow multiple tasks to run in parallel on a pool of threads managed by
-     * AsyncTask, however you can also use your own {@link Executor} for custom
+     * <p>This method can be used with your own {@link Executor} for custom
      * behavior.
      *
      * <p><em>Warning:</em> Allowing multiple tasks to run in parallel from
@@ -574,12 +567,12 @@ public abstract class LibrarySectionAsyncTask<Params, Progress, Result> {
      * of the data to be over-written by an older one, leading to obscure data
      * loss and stability issues.  Such changes are best
      * executed in serial; to guarantee such work is serialized regardless of
-     * platform version you can use this function with {@link #SERIAL_EXECUTOR}.
+     * platform version you can use this function with a serial executor.
      *
      * <p>This method must be invoked on the UI thread.
      *
-     * @param exec The executor to use.  {@link #THREAD_POOL_EXECUTOR} is available as a
-     *              convenient process-wide thread pool for tasks that are loosely coupled.
+     * @param exec The executor to use.  {@link #LIBRARY_EXECUTOR} is available as a
+     *              process-wide thread pool for library loads.
      * @param params The parameters of the task.
      *
      * @return This instance of AsyncTask.
@@ -614,6 +607,37 @@ public abstract class LibrarySectionAsyncTask<Params, Progress, Result> {
         return this;
     }
 
+    /**
+     * Executes the task on {@link #LIBRARY_EXECUTOR}. Any queued or running
+     * task with the same key is cancelled, so only the latest load of a
+     * library section is run and delivered.
+     *
+     * <p>This method must be invoked on the UI thread.
+     *
+     * @param key Identifies the library section that's being loaded.
+     * @param priority {@link CoalescingExecutor#PRIORITY_HIGH} for the visible section.
+     * @param params The parameters of the task.
+     *
+     * @return This instance of AsyncTask.
+     */
+    public final LibrarySectionAsyncTask<Params, Progress, Result> executeCoalesced(final String key,
+            final int priority, Params... params) {
+        return executeOnExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                LIBRARY_EXECUTOR.execute(key, priority, command);
+            }
+        }, params);
+    }
+
+    /**
+     * Changes the priority of a queued task that was executed with
+     * {@link #executeCoalesced}, i.e. when its library section becomes visible.
+     */
+    public static void setPriority(String key, int priority) {
+        LIBRARY_EXECUTOR.setPriority(key, priority);
+    }
+
     /**
      * Convenience version of {@link #execute(Object...)} for use with
      * a simple Runnable object. See {@link #execute(Object[])} for more
@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.functions;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lightweight counters and latency histograms for the hot paths, i.e.
+ * library updates, identification, library loads and streaming. Metrics
+ * are disabled by default, in which case recording a metric costs a single
+ * volatile read.
+ * <p>
+ * Timing a block of code:
+ * <pre>
+ * long start = Metrics.start();
+ * ...
+ * Metrics.stop("movies.identify.search", start);
+ * </pre>
+ */
+public final class Metrics {
+
+	private static final ConcurrentHashMap<String, AtomicLong> sCounters = new ConcurrentHashMap<String, AtomicLong>();
+	private static final ConcurrentHashMap<String, Histogram> sHistograms = new ConcurrentHashMap<String, Histogram>();
+
+	/**
+	 * Size in bytes beyond which the file written by {@link #dump(File)} is rotated.
+	 */
+	public static final long MAX_DUMP_FILE_SIZE = 256 * 1024;
+
+	private static volatile boolean sEnabled = false;
+
+	private Metrics() {} // No instantiation
+
+	public static void setEnabled(boolean enabled) {
+		sEnabled = enabled;
+	}
+
+	public static boolean isEnabled() {
+		return sEnabled;
+	}
+
+	public static void increment(String name) {
+		add(name, 1);
+	}
+
+	public static void add(String name, long delta) {
+		if (!sEnabled)
+			return;
+
+		AtomicLong counter = sCounters.get(name);
+		if (counter == null) {
+			AtomicLong newCounter = new AtomicLong();
+			counter = sCounters.putIfAbsent(name, newCounter);
+			if (counter == null)
+				counter = newCounter;
+		}
+		counter.addAndGet(delta);
+	}
+
+	/**
+	 * Starts timing a block of code.
+	 * @return Start time to pass to {@link #stop(String, long)}, or 0 if metrics are disabled
+	 */
+	public static long start() {
+		return sEnabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records the time since {@link #start()} was called. Nothing is recorded
+	 * if metrics were disabled when timing started.
+	 */
+	public static void stop(String name, long start) {
+		if (start != 0)
+			record(name, System.nanoTime() - start);
+	}
+
+	/**
+	 * Records a latency.
+	 * @param nanos Latency in nanoseconds
+	 */
+	public static void record(String name, long nanos) {
+		if (!sEnabled)
+			return;
+
+		Histogram histogram = sHistograms.get(name);
+		if (histogram == null) {
+			Histogram newHistogram = new Histogram();
+			histogram = sHistograms.putIfAbsent(name, newHistogram);
+			if (histogram == null)
+				histogram = newHistogram;
+		}
+		histogram.record(nanos);
+	}
+
+	/**
+	 * Returns the value of a counter, or 0 if it hasn't been incremented.
+	 */
+	public static long getCounter(String name) {
+		AtomicLong counter = sCounters.get(name);
+		return counter != null ? counter.get() : 0;
+	}
+
+	/**
+	 * Returns a latency histogram, or null if nothing has been recorded for it.
+	 */
+	public static Histogram getHistogram(String name) {
+		return sHistograms.get(name);
+	}
+
+	/**
+	 * Removes all counters and histograms.
+	 */
+	public static void reset() {
+		sCounters.clear();
+		sHistograms.clear();
+	}
+
+	/**
+	 * Writes all counters and histograms as plain text, sorted by name.
+	 */
+	public static void dump(Writer writer) throws IOException {
+		writer.write("# Metrics at " + new Date() + "\n");
+
+		for (Map.Entry<String, AtomicLong> counter : new TreeMap<String, AtomicLong>(sCounters).entrySet())
+			writer.write(counter.getKey() + " " + counter.getValue().get() + "\n");
+
+		for (Map.Entry<String, Histogram> histogram : new TreeMap<String, Histogram>(sHistograms).entrySet())
+			writer.write(histogram.getKey() + " " + histogram.getValue() + "\n");
+
+		writer.flush();
+	}
+
+	/**
+	 * Appends all counters and histograms to a file, which is rotated
+	 * once it has grown beyond {@link #MAX_DUMP_FILE_SIZE}.
+	 * @return True if the file was written, false otherwise
+	 */
+	public static boolean dump(File file) {
+		return dump(file, MAX_DUMP_FILE_SIZE);
+	}
+
+	/**
+	 * Appends all counters and histograms to a file. A file that has grown
+	 * beyond the maximum size is first moved to the same path with a ".1"
+	 * suffix, replacing the previous one, so at most about twice the
+	 * maximum size is used.
+	 * @param maxSize Maximum size of the file in bytes
+	 * @return True if the file was written, false otherwise
+	 */
+	public static boolean dump(File file, long maxSize) {
+		if (file.length() > maxSize) {
+			File previous = new File(file.getPath() + ".1");
+			previous.delete();
+			if (!file.renameTo(previous))
+				file.delete();
+		}
+
+		Writer writer = null;
+		try {
+			writer = new FileWriter(file, true);
+			dump(writer);
+			writer.write("\n");
+			return true;
+		} catch (IOException e) {
+			return false;
+		} finally {
+			if (writer != null) {
+				try {
+					writer.close();
+				} catch (IOException ignored) {}
+			}
+		}
+	}
+
+	/**
+	 * Latency histogram with power-of-two microsecond buckets, which
+	 * keeps the memory use fixed no matter how many values are recorded.
+	 */
+	public static class Histogram {
+
+		private static final int BUCKETS = 40;
+
+		private final long[] mBuckets = new long[BUCKETS];
+		private long mCount, mTotal, mMin = Long.MAX_VALUE, mMax;
+
+		synchronized void record(long nanos) {
+			if (nanos < 0)
+				nanos = 0;
+
+			mCount++;
+			mTotal += nanos;
+			mMin = Math.min(mMin, nanos);
+			mMax = Math.max(mMax, nanos);
+			mBuckets[getBucket(nanos)]++;
+		}
+
+		/**
+		 * Bucket i holds latencies below 2^i microseconds.
+		 */
+		private static int getBucket(long nanos) {
+			long micros = nanos / 1000;
+			int bucket = 64 - Long.numberOfLeadingZeros(micros);
+			return Math.min(bucket, BUCKETS - 1);
+		}
+
+		public synchronized long getCount() {
+			return mCount;
+		}
+
+		/**
+		 * @return Sum of all recorded latencies in nanoseconds
+		 */
+		public synchronized long getTotal() {
+			return mTotal;
+		}
+
+		public synchronized long getMin() {
+			return mCount > 0 ? mMin : 0;
+		}
+
+		public synchronized long getMax() {
+			return mMax;
+		}
+
+		public synchronized long getMean() {
+			return mCount > 0 ? mTotal / mCount : 0;
+		}
+
+		/**
+		 * Returns an upper bound of the given percentile, i.e. the upper bound
+		 * of the bucket it falls in, but never more than the largest latency.
+		 * @param percentile Between 0 and 100
+		 * @return Latency in nanoseconds
+		 */
+		public synchronized long getPercentile(double percentile) {
+			if (mCount == 0)
+				return 0;
+
+			long rank = (long) Math.ceil(mCount * percentile / 100.0);
+			long seen = 0;
+
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += mBuckets[i];
+				if (seen >= rank && seen > 0)
+					return Math.min((1L << i) * 1000, mMax);
+			}
+
+			return mMax;
+		}
+
+		@Override
+		public synchronized String toString() {
+			return String.format(Locale.US, "count=%d total=%.1fms mean=%.2fms min=%.2fms p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms",
+					mCount, toMillis(mTotal), toMillis(getMean()), toMillis(getMin()), toMillis(getPercentile(50)),
+					toMillis(getPercentile(95)), toMillis(getPercentile(99)), toMillis(mMax));
+		}
+
+		private static double toMillis(long nanos) {
+			return nanos / 1000000.0;
+		}
+	}
+}
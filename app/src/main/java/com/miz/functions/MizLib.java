@@ -73,6 +73,7 @@ import com.miz.service.MovieLibraryUpdate;
 import com.miz.service.TvShowsLibraryUpdate;
 import com.miz.utils.FileUtils;
 import com.miz.utils.ViewUtils;
+import com.squareup.okhttp.Call;
 import com.squareup.okhttp.MediaType;
 import com.squareup.okhttp.OkHttpClient;
 import com.squareup.okhttp.Request;
@@ -82,13 +83,9 @@ import com.squareup.okhttp.Response;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
@@ -769,75 +766,62 @@ public class MizLib {
         }
     }
 
+    private static final Object sRenderScriptLock = new Object();
+    private static RenderScript sRenderScript;
+
     /**
      * Returns a blurred bitmap. It uses a RenderScript to blur the bitmap very fast.
+     * The RenderScript context is shared by all calls, since creating it is expensive.
      * @param context
      * @param originalBitmap
      * @param radius
      * @return
      */
     public static Bitmap fastBlur(Context context, Bitmap originalBitmap, int radius) {
-        final RenderScript rs = RenderScript.create(context);
-
-        final Allocation input = Allocation.createFromBitmap(rs, originalBitmap);
-        final Allocation output = Allocation.createTyped(rs, input.getType());
-        final ScriptIntrinsicBlur script = ScriptIntrinsicBlur.create(rs, Element.U8_4(rs));
-        script.setRadius(radius);
-        script.setInput(input);
-        script.forEach(output);
-        output.copyTo(originalBitmap);
+        synchronized (sRenderScriptLock) {
+            if (sRenderScript == null)
+                sRenderScript = RenderScript.create(context.getApplicationContext());
+
+            final Allocation input = Allocation.createFromBitmap(sRenderScript, originalBitmap);
+            final Allocation output = Allocation.createTyped(sRenderScript, input.getType());
+            final ScriptIntrinsicBlur script = ScriptIntrinsicBlur.create(sRenderScript, Element.U8_4(sRenderScript));
+            script.setRadius(radius);
+            script.setInput(input);
+            script.forEach(output);
+            output.copyTo(originalBitmap);
+
+            input.destroy();
+            output.destroy();
+            script.destroy();
+        }
 
         return originalBitmap;
     }
 
+    /**
+     * Downloads a file using the shared {@link ImageDownloader}. An existing
+     * file is only replaced once the new one has been downloaded completely.
+     * @return True if the file was downloaded or is already up to date
+     */
     public static boolean downloadFile(String url, String savePath) {
         if (TextUtils.isEmpty(url))
             return false;
 
-        InputStream in = null;
-        OutputStream fileos = null;
-
-        try {
-            int bufferSize = 8192;
-            byte[] retVal = null;
-
-            Request request = new Request.Builder()
-                    .url(url)
-                    .build();
-
-            Response response = MizuuApplication.getOkHttpClient().newCall(request).execute();
-            if (!response.isSuccessful())
-                return false;
-
-            fileos = new BufferedOutputStream(new FileOutputStream(savePath));
-            in = new BufferedInputStream(response.body().byteStream(), bufferSize);
-
-            retVal = new byte[bufferSize];
-            int length = 0;
-            while((length = in.read(retVal)) > -1) {
-                fileos.write(retVal, 0, length);
-            }
-        } catch(Exception e) {
-            // The download failed, so let's delete whatever was downloaded
-            deleteFile(new File(savePath));
-
-            return false;
-        } finally {
-            if (fileos != null) {
-                try {
-                    fileos.flush();
-                    fileos.close();
-                } catch (IOException e) {}
-            }
+        return MizuuApplication.getImageDownloader().download(url, new File(savePath)) != ImageDownloader.Result.FAILED;
+    }
 
-            if (in != null) {
-                try {
-                    in.close();
-                } catch (IOException e) {}
-            }
-        }
+    private static final ThreadLocal<Object> sRequestTag = new ThreadLocal<Object>();
 
-        return true;
+    /**
+     * Tags all requests made by {@link #getJSONObject(Context, String)} on the
+     * current thread, so they can be cancelled using {@link OkHttpClient#cancel(Object)}.
+     * @param tag Request tag, or null to stop tagging requests
+     */
+    public static void setRequestTag(Object tag) {
+        if (tag == null)
+            sRequestTag.remove();
+        else
+            sRequestTag.set(tag);
     }
 
     public static JSONObject getJSONObject(Context context, String url) {
@@ -846,12 +830,14 @@ public class MizLib {
         Request request = new Request.Builder()
                 .url(url)
                 .get()
+                .tag(sRequestTag.get())
                 .build();
 
         try {
-            Response response = client.newCall(request).execute();
+            Call call = client.newCall(request);
+            Response response = call.execute();
 
-            if (response.code() >= 429) {
+            if (response.code() >= 429 && !call.isCanceled()) {
                 // HTTP error 429 and above means that we've exceeded the query limit
                 // for TMDb. Sleep for 5 seconds and try again.
                 Thread.sleep(5000);
@@ -982,18 +968,8 @@ public class MizLib {
     }
 
     public static SmbLogin getLoginFromFilepath(int type, String filepath) {
-
-        ArrayList<FileSource> filesources = MizLib.getFileSources(type, true);
-        FileSource source = null;
-
-        for (int i = 0; i < filesources.size(); i++) {
-            if (filepath.contains(filesources.get(i).getFilepath())) {
-                source = filesources.get(i);
-                break;
-            }
-        }
-
-        return getLoginFromFilesource(source);
+        SmbSessionManager.Session session = MizuuApplication.getSmbSessionManager().getSession(type, filepath);
+        return getLoginFromFilesource(session != null ? session.getFileSource() : null);
     }
 
     public static int COVER = 1, BACKDROP = 2;
@@ -1004,24 +980,9 @@ public class MizLib {
 
         String filename = filepath.substring(0, filepath.lastIndexOf(".")).replaceAll("part[1-9]|cd[1-9]", "").trim();
 
-        String[] list = MizuuApplication.getCifsFilesList(parentPath);
-
-        if (list == null) {
-            SmbFile s = new SmbFile(createSmbLoginString(
-                    auth.getDomain(),
-                    auth.getUsername(),
-                    auth.getPassword(),
-                    parentPath,
-                    false));
-
-            try {
-                list = s.list();
-
-                MizuuApplication.putCifsFilesList(parentPath, list);
-            } catch (Exception e) {
-                return null;
-            }
-        }
+        String[] list = MizuuApplication.getSmbDirectoryCache().list(parentPath, auth);
+        if (list == null)
+            return null;
 
         String name = "", absolutePath = "", customCoverArt = "";
 
@@ -1093,7 +1054,7 @@ public class MizLib {
         return null;
     }
 
-    public static String[] subtitleFormats = new String[]{".srt", ".sub", ".ssa", ".ssf", ".smi", ".txt", ".usf", ".ass", ".stp", ".idx", ".aqt", ".cvd", ".dks", ".jss", ".mpl", ".pjs", ".psb", ".rt", ".svcd", ".usf"};
+    public static String[] subtitleFormats = SubtitleFiles.FORMATS;
 
     public static boolean isSubtitleFile(String s) {
         int count = subtitleFormats.length;
@@ -1106,24 +1067,41 @@ public class MizLib {
     public static List<SmbFile> getSubtitleFiles(String filepath, SmbLogin auth) throws MalformedURLException, UnsupportedEncodingException {
         ArrayList<SmbFile> subs = new ArrayList<SmbFile>();
 
-        String fileType = "";
-        if (filepath.contains(".")) {
-            fileType = filepath.substring(filepath.lastIndexOf("."));
-        }
+        String parentPath = SmbDirectoryCache.getParentPath(filepath);
+        String[] list = MizuuApplication.getSmbDirectoryCache().list(parentPath, auth);
+        if (list == null)
+            return subs;
 
-        int count = subtitleFormats.length;
-        for (int i = 0; i < count; i++) {
+        // Match subtitle files with the same name as the video file in a single pass
+        // over the folder listing rather than probing each candidate on the server
+        for (String name : SubtitleFiles.find(filepath.substring(parentPath.length()), list)) {
             subs.add(new SmbFile(createSmbLoginString(
                     auth.getDomain(),
                     auth.getUsername(),
                     auth.getPassword(),
-                    filepath.replace(fileType, subtitleFormats[i]),
+                    parentPath + name,
                     false)));
         }
 
         return subs;
     }
 
+    /**
+     * Finds subtitle files next to a video file on the device, i.e. a local file or an offline copy.
+     */
+    public static List<File> getLocalSubtitleFiles(File file) {
+        ArrayList<File> subs = new ArrayList<File>();
+
+        File parent = file.getParentFile();
+        if (parent == null)
+            return subs;
+
+        for (String name : SubtitleFiles.find(file.getName(), parent.list()))
+            subs.add(new File(parent, name));
+
+        return subs;
+    }
+
     /**
      * A bit of a hack to properly delete files / folders from the OS
      * @param f
@@ -1372,7 +1350,6 @@ public class MizLib {
 
         // Check if scheduled updates are enabled, and schedule the next update if this is the case
         if (settings.getInt(SCHEDULED_UPDATES_MOVIE, ScheduledUpdatesFragment.NOT_ENABLED) > ScheduledUpdatesFragment.AT_LAUNCH) {
-            ScheduledUpdatesAlarmManager.cancelUpdate(ScheduledUpdatesAlarmManager.MOVIES, context);
             long duration = MizLib.HOUR;
             switch (settings.getInt(SCHEDULED_UPDATES_MOVIE, ScheduledUpdatesFragment.NOT_ENABLED)) {
                 case ScheduledUpdatesFragment.EVERY_2_HOURS:
@@ -1403,7 +1380,6 @@ public class MizLib {
 
         // Check if scheduled updates are enabled, and schedule the next update if this is the case
         if (settings.getInt(SCHEDULED_UPDATES_TVSHOWS, ScheduledUpdatesFragment.NOT_ENABLED) > ScheduledUpdatesFragment.AT_LAUNCH) {
-            ScheduledUpdatesAlarmManager.cancelUpdate(ScheduledUpdatesAlarmManager.SHOWS, context);
             long duration = MizLib.HOUR;
             switch (settings.getInt(SCHEDULED_UPDATES_TVSHOWS, ScheduledUpdatesFragment.NOT_ENABLED)) {
                 case ScheduledUpdatesFragment.EVERY_2_HOURS:
@@ -1701,16 +1677,19 @@ public class MizLib {
                     parts.add(temp.getAbsolutePath());
             }
         } else { // It's a network file
-            SmbFile temp;
+            String parentPath = SmbDirectoryCache.getParentPath(filepath);
+            String[] list = MizuuApplication.getSmbDirectoryCache().list(parentPath, auth);
+            if (list == null)
+                return parts;
+
             for (int i = 1; i < 10; i++) {
-                temp = new SmbFile(createSmbLoginString(
-                        auth.getDomain(),
-                        auth.getUsername(),
-                        auth.getPassword(),
-                        filepath + i + fileType,
-                        false));
-                if (temp.exists())
-                    parts.add(temp.getPath());
+                String partName = (filepath + i + fileType).substring(parentPath.length());
+                for (String name : list) {
+                    if (name.equalsIgnoreCase(partName)) {
+                        parts.add(parentPath + name);
+                        break;
+                    }
+                }
             }
         }
 
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.functions;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.support.v7.graphics.Palette;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import com.miz.db.DbAdapterSwatches;
+import com.miz.mizuu.MizuuApplication;
+
+import java.io.File;
+
+/**
+ * Swatch colours of images. Colours are computed once from a small,
+ * downsampled version of the image - ideally right after the image has
+ * been downloaded - and stored in the database. Recently used colours
+ * are kept in a size-bounded memory cache.
+ */
+public class PaletteCache {
+
+	/**
+	 * Palette only looks at about 100 pixels along each side,
+	 * so there's no reason to decode the image any larger.
+	 */
+	public static final int SAMPLE_SIZE = 128;
+
+	private static final int MAX_CACHED_SWATCHES = 200;
+
+	private final LruCache<String, Integer> mSwatches = new LruCache<String, Integer>(MAX_CACHED_SWATCHES);
+
+	/**
+	 * Returns the key of an image, i.e. the file path of local images
+	 * and the URL of remote images.
+	 */
+	public static String getKey(Uri image) {
+		if (TextUtils.isEmpty(image.getScheme()) || "file".equals(image.getScheme()))
+			return image.getPath();
+		return image.toString();
+	}
+
+	/**
+	 * Returns the swatch colour of the image, or null if it hasn't been
+	 * computed yet. Checks the database on a memory cache miss, so it
+	 * shouldn't be called on the UI thread.
+	 */
+	public Integer get(String key) {
+		Integer color = mSwatches.get(key);
+		if (color == null) {
+			color = getDatabase().getSwatch(key);
+			if (color != null)
+				mSwatches.put(key, color);
+		}
+		return color;
+	}
+
+	public void put(String key, int color) {
+		mSwatches.put(key, color);
+		getDatabase().setSwatch(key, color);
+	}
+
+	/**
+	 * Forgets the swatch colour of an image, i.e. when it's been replaced.
+	 */
+	public void remove(String key) {
+		mSwatches.remove(key);
+		getDatabase().deleteSwatch(key);
+	}
+
+	/**
+	 * Computes and stores the swatch colour of a downloaded image.
+	 * Must not be called on the UI thread.
+	 * @return The swatch colour, or null if the image couldn't be decoded or has no suitable swatch
+	 */
+	public Integer generate(File image) {
+		if (image == null || !image.exists())
+			return null;
+
+		Bitmap bitmap = MizLib.decodeSampledBitmapFromFile(image.getAbsolutePath(), SAMPLE_SIZE, SAMPLE_SIZE);
+		if (bitmap == null)
+			return null;
+
+		try {
+			return generate(image.getAbsolutePath(), bitmap);
+		} finally {
+			bitmap.recycle();
+		}
+	}
+
+	/**
+	 * Computes and stores the swatch colour of an already decoded,
+	 * preferably downsampled, image. Must not be called on the UI thread.
+	 * @return The swatch colour, or null if the image has no suitable swatch
+	 */
+	public Integer generate(String key, Bitmap bitmap) {
+		Integer color = null;
+
+		try {
+			color = getSwatchColor(Palette.generate(bitmap));
+		} catch (Exception ignored) {}
+
+		if (color != null)
+			put(key, color);
+
+		return color;
+	}
+
+	/**
+	 * Picks the swatch used to colour the detail screens.
+	 */
+	public static Integer getSwatchColor(Palette palette) {
+		Palette.Swatch sw = palette.getDarkVibrantSwatch();
+
+		if (sw == null)
+			sw = palette.getDarkMutedSwatch();
+
+		if (sw == null)
+			sw = palette.getVibrantSwatch();
+
+		return sw != null ? sw.getRgb() : null;
+	}
+
+	private DbAdapterSwatches getDatabase() {
+		return MizuuApplication.getSwatchesAdapter();
+	}
+}
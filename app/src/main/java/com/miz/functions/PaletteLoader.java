@@ -2,9 +2,9 @@ package com.miz.functions;
 
 import android.animation.ArgbEvaluator;
 import android.animation.ObjectAnimator;
+import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.net.Uri;
-import android.support.v7.graphics.Palette;
 import android.view.View;
 
 import com.melnykov.fab.FloatingActionButton;
@@ -15,7 +15,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-public class PaletteLoader extends AsyncTask<Void, Void, Palette> {
+public class PaletteLoader extends AsyncTask<Void, Void, Integer> {
 
     private final Picasso mPicasso;
     private final String mKey;
@@ -29,7 +29,7 @@ public class PaletteLoader extends AsyncTask<Void, Void, Palette> {
     public PaletteLoader(Picasso picasso, Uri image, OnPaletteLoadedCallback callback) {
         mPicasso = picasso;
         mImage = image;
-        mKey = image.toString();
+        mKey = PaletteCache.getKey(image);
         mViews = new ArrayList<View>();
         mOnPaletteLoadedCallback = callback;
     }
@@ -64,41 +64,39 @@ public class PaletteLoader extends AsyncTask<Void, Void, Palette> {
     }
 
     @Override
-    protected Palette doInBackground(Void... params) {
-        Palette palette = MizuuApplication.getPalette(getPaletteKey());
+    protected Integer doInBackground(Void... params) {
+        PaletteCache cache = MizuuApplication.getPaletteCache();
 
-        if (palette == null) {
+        // Swatches are usually stored when the image is downloaded
+        Integer color = cache.get(getPaletteKey());
+
+        if (color == null) {
             try {
-                palette = Palette.generate(mPicasso.load(getImage()).get());
+                Bitmap bitmap = mPicasso.load(getImage())
+                        .resize(PaletteCache.SAMPLE_SIZE, PaletteCache.SAMPLE_SIZE)
+                        .centerInside()
+                        .onlyScaleDown()
+                        .config(MizuuApplication.getBitmapConfig())
+                        .get();
+
+                if (bitmap != null)
+                    color = cache.generate(getPaletteKey(), bitmap);
             } catch (IOException e) {}
         }
 
-        return palette;
+        return color;
     }
 
     @Override
-    protected void onPostExecute(Palette result) {
+    protected void onPostExecute(Integer result) {
         if (result != null) {
-            // Add it to the Palette cache
-            MizuuApplication.addToPaletteCache(getPaletteKey(), result);
-
-            Palette.Swatch sw = result.getDarkVibrantSwatch();
-
-            if (sw == null)
-                sw = result.getDarkMutedSwatch();
-
-            if (sw == null)
-                sw = result.getVibrantSwatch();
-
-            if (sw != null) {
-                // Set the found color
-                mSwatchColor = sw.getRgb();
+            // Set the found color
+            mSwatchColor = result;
 
-                // Color the views
-                colorViews();
+            // Color the views
+            colorViews();
 
-                mOnPaletteLoadedCallback.onPaletteLoaded(getSwatchColor());
-            }
+            mOnPaletteLoadedCallback.onPaletteLoaded(getSwatchColor());
         }
     }
 
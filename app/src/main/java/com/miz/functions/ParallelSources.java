@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.functions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the same task, i.e. a folder scan, on several file sources at once,
+ * so a library update takes as long as the slowest source rather than the
+ * sum of all of them. Every source is isolated: a source that fails or
+ * doesn't finish in time is left out of the results, and the other sources
+ * aren't affected.
+ */
+public class ParallelSources {
+
+	private ParallelSources() {} // No instantiation
+
+	public interface Task<S, R> {
+		R run(S source) throws Exception;
+	}
+
+	/**
+	 * Runs the task on all sources concurrently, one thread per source, and waits for them to finish.
+	 * @param timeout Time in milliseconds that each source is given to finish
+	 * @return Results of the sources that finished in time, in the order of the sources
+	 */
+	public static <S, R> Result<S, R> run(List<S> sources, final Task<S, R> task, long timeout) {
+		Result<S, R> result = new Result<S, R>();
+		if (sources.size() == 0)
+			return result;
+
+		ExecutorService executor = Executors.newFixedThreadPool(sources.size(), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "ParallelSources");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		try {
+			List<Future<R>> futures = new ArrayList<Future<R>>();
+			for (final S source : sources) {
+				futures.add(executor.submit(new Callable<R>() {
+					@Override
+					public R call() throws Exception {
+						return task.run(source);
+					}
+				}));
+			}
+
+			long deadline = System.currentTimeMillis() + timeout;
+
+			for (int i = 0; i < sources.size(); i++) {
+				S source = sources.get(i);
+				Future<R> future = futures.get(i);
+
+				try {
+					result.mResults.put(source, future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+				} catch (ExecutionException e) {
+					result.mFailed.add(source);
+				} catch (TimeoutException e) {
+					future.cancel(true);
+					result.mTimedOut.add(source);
+				} catch (InterruptedException e) {
+					// Give up on the remaining sources
+					Thread.currentThread().interrupt();
+					for (int j = i; j < sources.size(); j++) {
+						futures.get(j).cancel(true);
+						result.mTimedOut.add(sources.get(j));
+					}
+					break;
+				}
+			}
+		} finally {
+			// Sources that ignore the interrupt are left to finish on their own
+			executor.shutdownNow();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Merges the results of several sources into one map. If more than one
+	 * source has the same key, the value of the first source is kept.
+	 */
+	public static <K, V> LinkedHashMap<K, V> merge(Collection<? extends Map<K, V>> results) {
+		LinkedHashMap<K, V> merged = new LinkedHashMap<K, V>();
+		for (Map<K, V> map : results)
+			for (Map.Entry<K, V> entry : map.entrySet())
+				if (!merged.containsKey(entry.getKey()))
+					merged.put(entry.getKey(), entry.getValue());
+		return merged;
+	}
+
+	public static class Result<S, R> {
+
+		private final LinkedHashMap<S, R> mResults = new LinkedHashMap<S, R>();
+		private final List<S> mFailed = new ArrayList<S>(), mTimedOut = new ArrayList<S>();
+
+		/**
+		 * @return Map of the sources that finished in time to their results
+		 */
+		public LinkedHashMap<S, R> getResults() {
+			return mResults;
+		}
+
+		/**
+		 * @return Sources whose task threw an exception
+		 */
+		public List<S> getFailed() {
+			return mFailed;
+		}
+
+		/**
+		 * @return Sources that didn't finish in time
+		 */
+		public List<S> getTimedOut() {
+			return mTimedOut;
+		}
+
+		public boolean isComplete() {
+			return mFailed.isEmpty() && mTimedOut.isEmpty();
+		}
+	}
+}
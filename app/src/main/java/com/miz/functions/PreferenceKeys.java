@@ -35,6 +35,12 @@ public class PreferenceKeys {
 	public static final String SCHEDULED_UPDATES_TVSHOWS = "scheduleUpdatesShows";
 	public static final String NEXT_SCHEDULED_MOVIE_UPDATE = "nextScheduledMovieUpdate";
 	public static final String NEXT_SCHEDULED_TVSHOWS_UPDATE = "nextScheduledShowsUpdate";
+	public static final String SCHEDULED_MOVIE_UPDATE_INTERVAL = "scheduledMovieUpdateInterval";
+	public static final String SCHEDULED_TVSHOWS_UPDATE_INTERVAL = "scheduledShowsUpdateInterval";
+	public static final String LAST_MOVIE_UPDATE = "lastMovieUpdate";
+	public static final String LAST_TVSHOWS_UPDATE = "lastShowsUpdate";
+	public static final String EMPTY_MOVIE_UPDATES = "emptyMovieUpdates";
+	public static final String EMPTY_TVSHOWS_UPDATES = "emptyShowsUpdates";
 	public static final String INCLUDE_ADULT_CONTENT = "prefsIncludeAdultContent";
 	public static final String TMDB_BASE_URL = "tmdbBaseUrl";
 	public static final String TMDB_BASE_URL_TIME = "tmdbBaseUrlTime";
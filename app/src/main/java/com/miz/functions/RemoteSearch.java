@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.functions;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+import com.miz.mizuu.MizuuApplication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs remote searches for search-as-you-type screens. Searches are
+ * debounced, so a burst of typing results in a single request, starting
+ * a new search cancels the HTTP calls of the previous one, and results
+ * of a search that has been superseded are never delivered. Results are
+ * kept in a small cache that's shared by all searches.
+ * <p>
+ * Must be created and used on the UI thread. Callbacks are delivered on the UI thread.
+ */
+public class RemoteSearch<T> {
+
+	public interface Searcher<T> {
+
+		/**
+		 * Returns a key that identifies the results of the query, i.e.
+		 * the query combined with the selected language. Called on the UI thread.
+		 */
+		String getCacheKey(String query);
+
+		/**
+		 * Performs the actual search. Called on a background thread.
+		 */
+		List<T> search(String query);
+	}
+
+	public interface Callback<T> {
+
+		/**
+		 * Called when a request is about to be made for the query.
+		 * Not called if the results are already cached.
+		 */
+		void onSearchStarted(String query);
+
+		void onSearchFinished(String query, List<T> results);
+	}
+
+	private static final long DEFAULT_DELAY = 400; // milliseconds
+	private static final int MAX_CACHED_QUERIES = 50;
+
+	private static final LruCache<String, List<?>> sResults = new LruCache<String, List<?>>(MAX_CACHED_QUERIES);
+	private static final ExecutorService sExecutor = Executors.newCachedThreadPool();
+
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+	private final Searcher<T> mSearcher;
+	private final Callback<T> mCallback;
+	private final long mDelay;
+
+	private int mGeneration;
+	private Object mRequestTag;
+	private Runnable mPendingSearch;
+
+	public RemoteSearch(Searcher<T> searcher, Callback<T> callback) {
+		this(searcher, callback, DEFAULT_DELAY);
+	}
+
+	public RemoteSearch(Searcher<T> searcher, Callback<T> callback, long delay) {
+		mSearcher = searcher;
+		mCallback = callback;
+		mDelay = delay;
+	}
+
+	/**
+	 * Searches for the query once no other search has been requested for a short while.
+	 */
+	public void search(String query) {
+		schedule(query, mDelay);
+	}
+
+	/**
+	 * Searches for the query right away, i.e. when the user explicitly asks for it.
+	 */
+	public void searchNow(String query) {
+		schedule(query, 0);
+	}
+
+	/**
+	 * Cancels any pending or running search. The callback won't be called for it.
+	 */
+	public void cancel() {
+		mGeneration++;
+
+		if (mPendingSearch != null) {
+			mHandler.removeCallbacks(mPendingSearch);
+			mPendingSearch = null;
+		}
+
+		if (mRequestTag != null) {
+			final Object tag = mRequestTag;
+			mRequestTag = null;
+
+			// Cancelling may block on the connection pool, so keep it off the UI thread
+			sExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					MizuuApplication.getOkHttpClient().cancel(tag);
+				}
+			});
+		}
+	}
+
+	private void schedule(final String query, long delay) {
+		cancel();
+
+		final int generation = mGeneration;
+		final String cacheKey = mSearcher.getCacheKey(query);
+
+		final List<T> cached = getCachedResults(cacheKey);
+		if (cached != null) {
+			mPendingSearch = new Runnable() {
+				@Override
+				public void run() {
+					mPendingSearch = null;
+					mCallback.onSearchFinished(query, new ArrayList<T>(cached));
+				}
+			};
+			mHandler.post(mPendingSearch);
+			return;
+		}
+
+		mPendingSearch = new Runnable() {
+			@Override
+			public void run() {
+				mPendingSearch = null;
+				start(query, cacheKey, generation);
+			}
+		};
+		mHandler.postDelayed(mPendingSearch, delay);
+	}
+
+	private void start(final String query, final String cacheKey, final int generation) {
+		final Object tag = new Object();
+		mRequestTag = tag;
+
+		mCallback.onSearchStarted(query);
+
+		sExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				List<T> results = null;
+
+				MizLib.setRequestTag(tag);
+				try {
+					results = mSearcher.search(query);
+				} catch (Exception ignored) {
+				} finally {
+					MizLib.setRequestTag(null);
+				}
+
+				final List<T> finalResults = results != null ? results : new ArrayList<T>();
+
+				mHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						// A newer search has been started, or this one was cancelled
+						if (generation != mGeneration)
+							return;
+
+						mRequestTag = null;
+
+						// Empty results may be caused by network errors, so don't keep them
+						if (finalResults.size() > 0)
+							sResults.put(cacheKey, new ArrayList<T>(finalResults));
+
+						mCallback.onSearchFinished(query, finalResults);
+					}
+				});
+			}
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<T> getCachedResults(String cacheKey) {
+		return (List<T>) sResults.get(cacheKey);
+	}
+
+	/**
+	 * Clears the cached results of all searches.
+	 */
+	public static void clearCache() {
+		sResults.evictAll();
+	}
+}
@@ -20,61 +20,171 @@ import android.app.AlarmManager;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.Editor;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import android.os.PowerManager;
 import android.preference.PreferenceManager;
+import android.support.v4.net.ConnectivityManagerCompat;
 
 import com.miz.service.MovieLibraryUpdate;
 import com.miz.service.TvShowsLibraryUpdate;
 
+import static com.miz.functions.PreferenceKeys.EMPTY_MOVIE_UPDATES;
+import static com.miz.functions.PreferenceKeys.EMPTY_TVSHOWS_UPDATES;
+import static com.miz.functions.PreferenceKeys.LAST_MOVIE_UPDATE;
+import static com.miz.functions.PreferenceKeys.LAST_TVSHOWS_UPDATE;
 import static com.miz.functions.PreferenceKeys.NEXT_SCHEDULED_MOVIE_UPDATE;
 import static com.miz.functions.PreferenceKeys.NEXT_SCHEDULED_TVSHOWS_UPDATE;
+import static com.miz.functions.PreferenceKeys.SCHEDULED_MOVIE_UPDATE_INTERVAL;
+import static com.miz.functions.PreferenceKeys.SCHEDULED_TVSHOWS_UPDATE_INTERVAL;
 
+/**
+ * Schedules library updates. An alarm wakes the device up when an update
+ * becomes due, and {@link UpdateSchedulePolicy} decides whether it should
+ * start, based on the network, charging state and whether the device is in
+ * use. While a due update waits, it's checked again when the device is
+ * connected to a charger or a network, and by an alarm that doesn't wake
+ * the device up.
+ */
 public class ScheduledUpdatesAlarmManager {
 
-	public static final int MOVIES = 1, SHOWS = 2;
-
-	public static void cancelUpdate(int type, Context context) {
-		try {
-			AlarmManager alarmMan = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+	public static final int MOVIES = UpdateSchedulePolicy.MOVIES, SHOWS = UpdateSchedulePolicy.SHOWS;
 
-			Intent defineIntent = new Intent(context, (type == MOVIES) ? MovieLibraryUpdate.class : TvShowsLibraryUpdate.class);
-			defineIntent.setFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
-			PendingIntent piWakeUp = PendingIntent.getService(context,0, defineIntent, PendingIntent.FLAG_NO_CREATE);
+	private static final int WAKE_UP_REQUEST = 0, RETRY_REQUEST = 1;
 
-			if(piWakeUp != null)
-				alarmMan.cancel(piWakeUp);
-			
+	public static synchronized void cancelUpdate(int type, Context context) {
+		try {
 			SharedPreferences settings = PreferenceManager.getDefaultSharedPreferences(context);
-			Editor editor = settings.edit();
-			editor.putLong((type == MOVIES) ? NEXT_SCHEDULED_MOVIE_UPDATE : NEXT_SCHEDULED_TVSHOWS_UPDATE, 0);
-			editor.apply();
+			UpdateSchedulePolicy policy = loadPolicy(settings);
+			policy.schedule(type, 0, System.currentTimeMillis());
+			savePolicy(settings, policy);
+
+			scheduleCheck(context, policy);
 		} catch (Exception ignored) {}
 	}
 
-	public static void startUpdate(int type, Context context, long when) {
-		AlarmManager alarmMan = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+	/**
+	 * Schedules updates of a type, replacing the current schedule.
+	 * @param when Time between updates in milliseconds
+	 */
+	public static synchronized void startUpdate(int type, Context context, long when) {
+		if (when <= -1)
+			return;
+
+		SharedPreferences settings = PreferenceManager.getDefaultSharedPreferences(context);
+		UpdateSchedulePolicy policy = loadPolicy(settings);
+		policy.schedule(type, when, System.currentTimeMillis());
+		savePolicy(settings, policy);
+
+		scheduleCheck(context, policy);
+	}
+
+	/**
+	 * Starts the updates that are due, if the device allows it, and schedules the next check.
+	 */
+	public static synchronized void checkUpdates(Context context) {
+		SharedPreferences settings = PreferenceManager.getDefaultSharedPreferences(context);
+		UpdateSchedulePolicy policy = loadPolicy(settings);
 
-		if (type == MOVIES) {
-			// We don't want multiple instances of the movie library service to run at the same time
-			if (MizLib.isMovieLibraryBeingUpdated(context))
-				return;
-		} else {
-			// We don't want multiple instances of the TV show library service to run at the same time
-			if (MizLib.isTvShowLibraryBeingUpdated(context))
-				return;
+		long now = System.currentTimeMillis();
+		int due = policy.getDueUpdates(now, getConditions(context));
+
+		// We don't want multiple instances of the library services to run at the same time
+		if ((due & MOVIES) != 0 && !MizLib.isMovieLibraryBeingUpdated(context)) {
+			policy.onUpdateStarted(MOVIES, now);
+			context.startService(new Intent(context, MovieLibraryUpdate.class));
 		}
-		Intent defineIntent = new Intent(context, (type == MOVIES) ? MovieLibraryUpdate.class : TvShowsLibraryUpdate.class);
-		defineIntent.addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
-		PendingIntent piWakeUp = PendingIntent.getService(context,0, defineIntent, PendingIntent.FLAG_UPDATE_CURRENT);
 
-		if (when > -1) {
-			alarmMan.set(AlarmManager.RTC_WAKEUP, System.currentTimeMillis() + when, piWakeUp);
-			
-			SharedPreferences settings = PreferenceManager.getDefaultSharedPreferences(context);
-			Editor editor = settings.edit();
-			editor.putLong((type == MOVIES) ? NEXT_SCHEDULED_MOVIE_UPDATE : NEXT_SCHEDULED_TVSHOWS_UPDATE, System.currentTimeMillis() + when);
-			editor.apply();
+		if ((due & SHOWS) != 0 && !MizLib.isTvShowLibraryBeingUpdated(context)) {
+			policy.onUpdateStarted(SHOWS, now);
+			context.startService(new Intent(context, TvShowsLibraryUpdate.class));
 		}
+
+		savePolicy(settings, policy);
+		scheduleCheck(context, policy);
+	}
+
+	/**
+	 * Called when a library update has finished, whether it was scheduled or not.
+	 * @param newFiles Number of new files the update found
+	 */
+	public static synchronized void onUpdateFinished(int type, Context context, int newFiles) {
+		SharedPreferences settings = PreferenceManager.getDefaultSharedPreferences(context);
+		UpdateSchedulePolicy policy = loadPolicy(settings);
+		policy.onUpdateFinished(type, System.currentTimeMillis(), newFiles);
+		savePolicy(settings, policy);
+
+		scheduleCheck(context, policy);
+	}
+
+	private static void scheduleCheck(Context context, UpdateSchedulePolicy policy) {
+		AlarmManager alarmMan = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+		long now = System.currentTimeMillis();
+
+		Intent defineIntent = new Intent(context, ScheduledUpdatesReceiver.class);
+		PendingIntent piWakeUp = PendingIntent.getBroadcast(context, WAKE_UP_REQUEST, defineIntent, PendingIntent.FLAG_UPDATE_CURRENT);
+		PendingIntent piRetry = PendingIntent.getBroadcast(context, RETRY_REQUEST, defineIntent, PendingIntent.FLAG_UPDATE_CURRENT);
+
+		long wakeUp = policy.getNextWakeUp(now);
+		if (wakeUp > -1)
+			alarmMan.set(AlarmManager.RTC_WAKEUP, wakeUp, piWakeUp);
+		else
+			alarmMan.cancel(piWakeUp);
+
+		// Waiting updates mostly start when the device is connected to a charger or a network,
+		// so the regular checks in between don't wake the device up
+		long retry = policy.getNextCheck(now);
+		if (retry > -1)
+			alarmMan.set(AlarmManager.RTC, retry, piRetry);
+		else
+			alarmMan.cancel(piRetry);
+
+		SharedPreferences settings = PreferenceManager.getDefaultSharedPreferences(context);
+		Editor editor = settings.edit();
+		editor.putLong(NEXT_SCHEDULED_MOVIE_UPDATE, Math.max(0, policy.getDueTime(MOVIES)));
+		editor.putLong(NEXT_SCHEDULED_TVSHOWS_UPDATE, Math.max(0, policy.getDueTime(SHOWS)));
+		editor.apply();
+	}
+
+	private static UpdateSchedulePolicy.Conditions getConditions(Context context) {
+		ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+		NetworkInfo info = cm.getActiveNetworkInfo();
+		boolean unmetered = info != null && info.isConnected() && !ConnectivityManagerCompat.isActiveNetworkMetered(cm);
+
+		Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+		boolean charging = battery != null && battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+
+		// The device is considered idle while the screen is off
+		PowerManager pm = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+		@SuppressWarnings("deprecation")
+		boolean idle = MizLib.hasLollipop() ? !pm.isInteractive() : !pm.isScreenOn();
+
+		return new UpdateSchedulePolicy.Conditions(unmetered, charging, idle);
+	}
+
+	private static UpdateSchedulePolicy loadPolicy(SharedPreferences settings) {
+		UpdateSchedulePolicy policy = new UpdateSchedulePolicy();
+		policy.schedule(MOVIES, settings.getLong(SCHEDULED_MOVIE_UPDATE_INTERVAL, 0), 0);
+		policy.schedule(SHOWS, settings.getLong(SCHEDULED_TVSHOWS_UPDATE_INTERVAL, 0), 0);
+		policy.setLastRun(MOVIES, settings.getLong(LAST_MOVIE_UPDATE, 0));
+		policy.setLastRun(SHOWS, settings.getLong(LAST_TVSHOWS_UPDATE, 0));
+		policy.setEmptyRuns(MOVIES, settings.getInt(EMPTY_MOVIE_UPDATES, 0));
+		policy.setEmptyRuns(SHOWS, settings.getInt(EMPTY_TVSHOWS_UPDATES, 0));
+		return policy;
+	}
+
+	private static void savePolicy(SharedPreferences settings, UpdateSchedulePolicy policy) {
+		Editor editor = settings.edit();
+		editor.putLong(SCHEDULED_MOVIE_UPDATE_INTERVAL, policy.getInterval(MOVIES));
+		editor.putLong(SCHEDULED_TVSHOWS_UPDATE_INTERVAL, policy.getInterval(SHOWS));
+		editor.putLong(LAST_MOVIE_UPDATE, policy.getLastRun(MOVIES));
+		editor.putLong(LAST_TVSHOWS_UPDATE, policy.getLastRun(SHOWS));
+		editor.putInt(EMPTY_MOVIE_UPDATES, policy.getEmptyRuns(MOVIES));
+		editor.putInt(EMPTY_TVSHOWS_UPDATES, policy.getEmptyRuns(SHOWS));
+		editor.apply();
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.functions;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import jcifs.smb.SmbFile;
+
+/**
+ * Size-bounded cache of SMB directory listings. Entries are kept in
+ * least-recently-used order and are revalidated against the directory's
+ * last modified time once they're older than the time-to-live, so a
+ * single listing can serve cover art, subtitle and split part lookups.
+ */
+public class SmbDirectoryCache {
+
+	private static final int DEFAULT_MAX_ENTRIES = 128;
+	private static final long DEFAULT_TIME_TO_LIVE = 60 * 1000; // 1 minute
+
+	private final int mMaxEntries;
+	private final long mTimeToLive;
+	private final LinkedHashMap<String, Entry> mEntries;
+
+	public SmbDirectoryCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_TIME_TO_LIVE);
+	}
+
+	public SmbDirectoryCache(int maxEntries, long timeToLive) {
+		mMaxEntries = maxEntries;
+		mTimeToLive = timeToLive;
+		mEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > mMaxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Returns the file names in the given folder, either from the cache
+	 * or by listing the folder on the server.
+	 * @param parentPath Folder path, i.e. smb://server/share/folder/
+	 * @param auth Login for the file source
+	 * @return File names, or null if the folder couldn't be listed
+	 */
+	public String[] list(String parentPath, SmbLogin auth) {
+		String[] list = getIfFresh(parentPath);
+		if (list != null)
+			return list;
+
+		try {
+			return list(parentPath, new SmbFile(MizLib.createSmbLoginString(
+					auth.getDomain(),
+					auth.getUsername(),
+					auth.getPassword(),
+					normalize(parentPath),
+					true)));
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the file names in the given folder, either from the cache
+	 * or by listing the folder on the server.
+	 * @param parentPath Folder path used as cache key, i.e. smb://server/share/folder/
+	 * @param folder Authenticated folder to list if the cache can't be used
+	 * @return File names
+	 * @throws IOException If the folder couldn't be listed
+	 */
+	public String[] list(String parentPath, SmbFile folder) throws IOException {
+		parentPath = normalize(parentPath);
+
+		Entry entry;
+		synchronized (this) {
+			entry = mEntries.get(parentPath);
+		}
+
+		long now = System.currentTimeMillis();
+		if (entry != null && now - entry.mTimestamp < mTimeToLive)
+			return entry.mList;
+
+		long lastModified = folder.lastModified();
+
+		// The folder hasn't changed since we listed it, so keep the
+		// existing listing and save the round-trip
+		if (entry != null && lastModified > 0 && lastModified == entry.mLastModified) {
+			put(parentPath, new Entry(entry.mList, lastModified, now));
+			return entry.mList;
+		}
+
+		String[] list = folder.list();
+		put(parentPath, new Entry(list, lastModified, now));
+
+		return list;
+	}
+
+	/**
+	 * Returns the cached listing for the given folder if it's still
+	 * within its time-to-live. Never touches the network.
+	 */
+	public synchronized String[] getIfFresh(String parentPath) {
+		Entry entry = mEntries.get(normalize(parentPath));
+		if (entry != null && System.currentTimeMillis() - entry.mTimestamp < mTimeToLive)
+			return entry.mList;
+		return null;
+	}
+
+	public synchronized void invalidate(String parentPath) {
+		mEntries.remove(normalize(parentPath));
+	}
+
+	public synchronized void clear() {
+		mEntries.clear();
+	}
+
+	public synchronized int size() {
+		return mEntries.size();
+	}
+
+	private synchronized void put(String parentPath, Entry entry) {
+		mEntries.put(parentPath, entry);
+	}
+
+	/**
+	 * Returns the parent folder of a file path, including the trailing slash.
+	 */
+	public static String getParentPath(String filepath) {
+		return filepath.substring(0, filepath.lastIndexOf("/") + 1);
+	}
+
+	public static String normalize(String parentPath) {
+		if (!parentPath.endsWith("/"))
+			return parentPath + "/";
+		return parentPath;
+	}
+
+	private static class Entry {
+
+		private final String[] mList;
+		private final long mLastModified, mTimestamp;
+
+		public Entry(String[] list, long lastModified, long timestamp) {
+			mList = list;
+			mLastModified = lastModified;
+			mTimestamp = timestamp;
+		}
+	}
+}
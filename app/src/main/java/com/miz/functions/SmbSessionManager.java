@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.functions;
+
+import android.text.TextUtils;
+import android.util.SparseArray;
+
+import com.miz.mizuu.MizuuApplication;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import jcifs.smb.NtStatus;
+import jcifs.smb.NtlmPasswordAuthentication;
+import jcifs.smb.SmbException;
+import jcifs.smb.SmbFile;
+
+/**
+ * Keeps one pre-authenticated session per SMB file source. Credentials are
+ * resolved once, and the same {@link NtlmPasswordAuthentication} instance is
+ * handed to every {@link SmbFile}, which allows jcifs to reuse its existing
+ * server connections and sessions instead of authenticating again. The number
+ * of concurrent requests per server is limited, and each session keeps track
+ * of whether its server is currently reachable.
+ */
+public class SmbSessionManager {
+
+	private static final int MAX_CONNECTIONS_PER_SERVER = 4;
+	private static final long FAILURE_BACKOFF = 30 * 1000; // 30 seconds
+
+	private final SparseArray<List<Session>> mSessions = new SparseArray<List<Session>>();
+	private final HashMap<String, NtlmPasswordAuthentication> mAuthentications = new HashMap<String, NtlmPasswordAuthentication>();
+	private final HashMap<String, Semaphore> mServerPermits = new HashMap<String, Semaphore>();
+
+	/**
+	 * Returns the session for the file source that contains the given file path.
+	 * @param type {@link MizLib#TYPE_MOVIE} or {@link MizLib#TYPE_SHOWS}
+	 * @param filepath
+	 * @return Session, or null if no SMB file source contains the file path
+	 */
+	public Session getSession(int type, String filepath) {
+		List<Session> sessions = getSessions(type);
+		for (int i = 0; i < sessions.size(); i++)
+			if (filepath.contains(sessions.get(i).getFileSource().getFilepath()))
+				return sessions.get(i);
+		return null;
+	}
+
+	/**
+	 * Returns the sessions for all SMB file sources of the given type.
+	 * File sources are only loaded from the database on first use, or
+	 * after {@link #invalidate()} has been called.
+	 */
+	public synchronized List<Session> getSessions(int type) {
+		List<Session> sessions = mSessions.get(type);
+		if (sessions == null) {
+			sessions = new ArrayList<Session>();
+
+			ArrayList<FileSource> filesources = MizLib.getFileSources(type, true);
+			for (FileSource source : filesources)
+				sessions.add(new Session(source, getAuthentication(source.getDomain(), source.getUser(), source.getPassword()),
+						getServerPermits(source.getFilepath()), MizuuApplication.getSmbDirectoryCache(), FAILURE_BACKOFF));
+
+			mSessions.put(type, sessions);
+		}
+		return sessions;
+	}
+
+	/**
+	 * Returns a shared authentication object for the given credentials.
+	 * An empty user name results in a guest login.
+	 */
+	public synchronized NtlmPasswordAuthentication getAuthentication(String domain, String user, String password) {
+		String key = domain + ";" + user + ":" + password;
+
+		NtlmPasswordAuthentication auth = mAuthentications.get(key);
+		if (auth == null) {
+			if (TextUtils.isEmpty(user))
+				auth = new NtlmPasswordAuthentication(null, null, null); // jcifs default guest login
+			else
+				auth = new NtlmPasswordAuthentication(TextUtils.isEmpty(domain) ? null : domain, user, password);
+			mAuthentications.put(key, auth);
+		}
+
+		return auth;
+	}
+
+	/**
+	 * Drops all sessions. Should be called whenever file sources are added or removed.
+	 */
+	public synchronized void invalidate() {
+		mSessions.clear();
+	}
+
+	private Semaphore getServerPermits(String filepath) {
+		String server = getServer(filepath);
+
+		Semaphore permits = mServerPermits.get(server);
+		if (permits == null) {
+			permits = new Semaphore(MAX_CONNECTIONS_PER_SERVER, true);
+			mServerPermits.put(server, permits);
+		}
+
+		return permits;
+	}
+
+	private static String getServer(String filepath) {
+		String server = filepath.replace("smb://", "");
+		if (server.contains("/"))
+			server = server.substring(0, server.indexOf("/"));
+		return server.toLowerCase();
+	}
+
+	public static class Session {
+
+		private final FileSource mFileSource;
+		private final NtlmPasswordAuthentication mAuth;
+		private final Semaphore mPermits;
+		private final SmbDirectoryCache mDirectoryCache;
+		private final long mFailureBackoff;
+		private volatile long mLastFailure, mLastSuccess;
+
+		/**
+		 * @param permits Limits the number of concurrent requests, shared by all sessions of a server
+		 * @param directoryCache Cache of the folder listings, shared by all sessions
+		 * @param failureBackoff Time in milliseconds that requests fail fast after a request to the server has failed
+		 */
+		protected Session(FileSource fileSource, NtlmPasswordAuthentication auth, Semaphore permits,
+				SmbDirectoryCache directoryCache, long failureBackoff) {
+			mFileSource = fileSource;
+			mAuth = auth;
+			mPermits = permits;
+			mDirectoryCache = directoryCache;
+			mFailureBackoff = failureBackoff;
+		}
+
+		public FileSource getFileSource() {
+			return mFileSource;
+		}
+
+		public NtlmPasswordAuthentication getAuthentication() {
+			return mAuth;
+		}
+
+		public SmbLogin getLogin() {
+			return MizLib.getLoginFromFilesource(mFileSource);
+		}
+
+		public SmbFile getFile(String filepath) throws MalformedURLException {
+			return new SmbFile(filepath, mAuth);
+		}
+
+		/**
+		 * Checks if the file exists on the server. Unlike {@link SmbFile#exists()}, a server
+		 * error results in an exception rather than a false negative, and requests fail fast
+		 * for a while after the server has been found to be unreachable.
+		 * @throws IOException If the server couldn't be reached
+		 */
+		public boolean exists(String filepath) throws IOException {
+			if (!isHealthy())
+				throw new IOException("Server is unavailable: " + mFileSource.getFilepath());
+
+			try {
+				mPermits.acquire();
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+
+			try {
+				boolean exists = getFile(filepath).exists();
+				mLastSuccess = System.currentTimeMillis();
+				return exists;
+			} catch (IOException e) {
+				mLastFailure = System.currentTimeMillis();
+				throw e;
+			} finally {
+				mPermits.release();
+			}
+		}
+
+		/**
+		 * Lists the given folder on the server, using the shared directory cache when possible.
+		 * Like {@link #exists(String)}, requests fail fast for a while after the server has
+		 * been found to be unreachable. A folder that doesn't exist doesn't count as a failure.
+		 * @throws IOException If the folder couldn't be listed
+		 */
+		public String[] list(String folderPath) throws IOException {
+			if (!isHealthy())
+				throw new IOException("Server is unavailable: " + mFileSource.getFilepath());
+
+			folderPath = SmbDirectoryCache.normalize(folderPath);
+
+			try {
+				mPermits.acquire();
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+
+			try {
+				String[] list = mDirectoryCache.list(folderPath, getFile(folderPath));
+				mLastSuccess = System.currentTimeMillis();
+				return list;
+			} catch (IOException e) {
+				if (isNotFound(e))
+					mLastSuccess = System.currentTimeMillis(); // The server did respond
+				else
+					mLastFailure = System.currentTimeMillis();
+				throw e;
+			} finally {
+				mPermits.release();
+			}
+		}
+
+		/**
+		 * Returns true for the errors that {@link SmbFile#exists()} treats as a missing file.
+		 */
+		private static boolean isNotFound(IOException e) {
+			if (!(e instanceof SmbException))
+				return false;
+
+			int status = ((SmbException) e).getNtStatus();
+			return status == NtStatus.NT_STATUS_NO_SUCH_FILE || status == NtStatus.NT_STATUS_OBJECT_NAME_INVALID ||
+					status == NtStatus.NT_STATUS_OBJECT_NAME_NOT_FOUND || status == NtStatus.NT_STATUS_OBJECT_PATH_NOT_FOUND;
+		}
+
+		/**
+		 * Returns false if the last request to the server failed within the back-off period.
+		 */
+		public boolean isHealthy() {
+			return mLastFailure <= mLastSuccess || System.currentTimeMillis() - mLastFailure > mFailureBackoff;
+		}
+
+		public long getLastFailure() {
+			return mLastFailure;
+		}
+
+		public long getLastSuccess() {
+			return mLastSuccess;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.functions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Finds sidecar subtitles of a video file in a listing of its folder, so
+ * candidate names don't have to be probed one by one. Subtitles match if
+ * they have the same name as the video file, optionally followed by tags
+ * such as the language, i.e. "Movie.srt", "Movie.en.srt" or "Movie.English.forced.ass".
+ */
+public class SubtitleFiles {
+
+	private SubtitleFiles() {} // No instantiation
+
+	public static final String[] FORMATS = new String[]{".srt", ".sub", ".ssa", ".ssf", ".smi", ".txt", ".usf", ".ass", ".stp", ".idx", ".aqt", ".cvd", ".dks", ".jss", ".mpl", ".pjs", ".psb", ".rt", ".svcd", ".vtt"};
+
+	/**
+	 * Formats that can be streamed to players, either as they are or converted to WebVTT.
+	 */
+	public static final String[] STREAMABLE_FORMATS = new String[]{".srt", ".ssa", ".ass", ".vtt"};
+
+	/**
+	 * @param videoFilename Name of the video file, with or without extension
+	 * @param listing Names of the files in the folder of the video file
+	 * @return Names of the matching subtitle files, in the order of the listing
+	 */
+	public static List<String> find(String videoFilename, String[] listing) {
+		List<String> subtitles = new ArrayList<String>();
+		if (listing == null)
+			return subtitles;
+
+		String basename = getBasename(videoFilename);
+		for (String name : listing) {
+			if (name.length() <= basename.length() || !name.regionMatches(true, 0, basename, 0, basename.length()))
+				continue;
+
+			// The name must continue with an extension or a tag, i.e. "Movie 2.srt" doesn't belong to "Movie"
+			String rest = name.substring(basename.length());
+			if (rest.charAt(0) == '.' && getFormat(rest, FORMATS) != null)
+				subtitles.add(name);
+		}
+
+		return subtitles;
+	}
+
+	/**
+	 * @return The format of a subtitle file, i.e. ".srt", or null if it isn't one of the given formats
+	 */
+	public static String getFormat(String filename, String[] formats) {
+		String lowerCase = filename.toLowerCase(Locale.ENGLISH);
+		for (String format : formats)
+			if (lowerCase.endsWith(format))
+				return format;
+		return null;
+	}
+
+	public static boolean isStreamable(String filename) {
+		return getFormat(filename, STREAMABLE_FORMATS) != null;
+	}
+
+	/**
+	 * @return The filename without its extension
+	 */
+	public static String getBasename(String filename) {
+		int dot = filename.lastIndexOf('.');
+		return dot > 0 ? filename.substring(0, dot) : filename;
+	}
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.functions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Checkpoint journal of a library update, so an update that is cancelled,
+ * killed or interrupted can pick up where it stopped instead of scanning
+ * every file source again. It records which file sources have been
+ * scanned, the files that were found on them, and the files that have
+ * been identified since.
+ * <p>
+ * Records are appended to the journal file and flushed one by one, so
+ * everything recorded before the process dies is kept. A record that
+ * was only partly written is ignored. The journal is deleted once the
+ * update finishes.
+ */
+public class UpdateJournal {
+
+	private static final String SCANNED = "S", DISCOVERED = "D", IDENTIFIED = "I";
+
+	/**
+	 * Journals older than this are discarded, as the file sources have likely changed since.
+	 */
+	private static final long MAX_AGE = 24 * 60 * 60 * 1000; // 24 hours
+
+	private final File mFile;
+	private final HashMap<String, List<String>> mDiscovered = new HashMap<String, List<String>>();
+	private final HashSet<String> mScanned = new HashSet<String>(), mIdentified = new HashSet<String>();
+	private OutputStream mOut;
+
+	/**
+	 * Loads the journal of an unfinished update from the given file, if there is one.
+	 */
+	public UpdateJournal(File file) {
+		mFile = file;
+
+		if (mFile.exists() && System.currentTimeMillis() - mFile.lastModified() > MAX_AGE)
+			mFile.delete();
+
+		load();
+	}
+
+	/**
+	 * @return ID of a file source in the journal. The path is included,
+	 * so a file source that has been edited since is scanned again.
+	 */
+	public static String getSourceId(long rowId, String filepath) {
+		return rowId + ":" + filepath;
+	}
+
+	/**
+	 * @return True if the journal contains progress of an unfinished update
+	 */
+	public synchronized boolean isResuming() {
+		return mScanned.size() > 0 || mIdentified.size() > 0;
+	}
+
+	/**
+	 * @param sourceId See {@link #getSourceId(long, String)}
+	 */
+	public synchronized boolean isScanned(String sourceId) {
+		return mScanned.contains(sourceId);
+	}
+
+	/**
+	 * @return Files found on a scanned file source, or an empty list if it hasn't been scanned
+	 */
+	public synchronized List<String> getDiscovered(String sourceId) {
+		List<String> filepaths = mDiscovered.get(sourceId);
+		if (filepaths == null || !mScanned.contains(sourceId))
+			return Collections.emptyList();
+		return new ArrayList<String>(filepaths);
+	}
+
+	public synchronized boolean isIdentified(String filepath) {
+		return mIdentified.contains(filepath);
+	}
+
+	/**
+	 * Records that a file source has been scanned. The source only counts
+	 * as scanned once all its files have been written, so a source that
+	 * was interrupted while being recorded is scanned again. The scanned
+	 * record holds the number of files, so files left by the interrupted
+	 * attempt aren't added to those of the next one.
+	 */
+	public synchronized void setScanned(String sourceId, Collection<String> filepaths) {
+		StringBuilder records = new StringBuilder();
+		for (String filepath : filepaths)
+			records.append(DISCOVERED).append(' ').append(escape(sourceId)).append(' ').append(escape(filepath)).append('\n');
+		records.append(SCANNED).append(' ').append(escape(sourceId)).append(' ').append(filepaths.size()).append('\n');
+
+		if (append(records.toString())) {
+			mDiscovered.put(sourceId, new ArrayList<String>(filepaths));
+			mScanned.add(sourceId);
+		}
+	}
+
+	public synchronized void setIdentified(String filepath) {
+		if (append(IDENTIFIED + " " + escape(filepath) + "\n"))
+			mIdentified.add(filepath);
+	}
+
+	/**
+	 * Deletes the journal once the update has finished, or to start over.
+	 */
+	public synchronized void clear() {
+		close();
+
+		mFile.delete();
+		mScanned.clear();
+		mDiscovered.clear();
+		mIdentified.clear();
+	}
+
+	public synchronized void close() {
+		if (mOut != null) {
+			try {
+				mOut.close();
+			} catch (IOException ignored) {}
+			mOut = null;
+		}
+	}
+
+	private boolean append(String records) {
+		try {
+			if (mOut == null)
+				mOut = new FileOutputStream(mFile, true);
+
+			mOut.write(records.getBytes("UTF-8"));
+			mOut.flush();
+			return true;
+		} catch (IOException e) {
+			// Progress just isn't saved, the update itself can go on
+			close();
+			return false;
+		}
+	}
+
+	private void load() {
+		if (!mFile.exists())
+			return;
+
+		byte[] bytes;
+		try {
+			bytes = readFile(mFile);
+		} catch (IOException e) {
+			mFile.delete();
+			return;
+		}
+
+		// Anything after the last line break is a partly written record
+		int end = bytes.length;
+		while (end > 0 && bytes[end - 1] != '\n')
+			end--;
+
+		HashMap<String, List<String>> discovered = new HashMap<String, List<String>>();
+
+		try {
+			String[] lines = new String(bytes, 0, end, "UTF-8").split("\n");
+			for (String line : lines) {
+				String[] fields = line.split(" ");
+
+				if (fields.length == 3 && DISCOVERED.equals(fields[0])) {
+					String sourceId = unescape(fields[1]);
+					List<String> filepaths = discovered.get(sourceId);
+					if (filepaths == null) {
+						filepaths = new ArrayList<String>();
+						discovered.put(sourceId, filepaths);
+					}
+					filepaths.add(unescape(fields[2]));
+				} else if (fields.length == 3 && SCANNED.equals(fields[0])) {
+					String sourceId = unescape(fields[1]);
+					List<String> filepaths = discovered.remove(sourceId);
+					if (filepaths == null)
+						filepaths = new ArrayList<String>();
+
+					int count;
+					try {
+						count = Integer.parseInt(fields[2]);
+					} catch (NumberFormatException e) {
+						continue; // Not a valid record, so the source is scanned again
+					}
+
+					// The files of a scan are written right before its scanned record,
+					// so any files before those are left from an interrupted attempt
+					count = Math.min(count, filepaths.size());
+					mDiscovered.put(sourceId, new ArrayList<String>(filepaths.subList(filepaths.size() - count, filepaths.size())));
+					mScanned.add(sourceId);
+				} else if (fields.length == 2 && IDENTIFIED.equals(fields[0])) {
+					mIdentified.add(unescape(fields[1]));
+				}
+			}
+
+			// Cut off the partly written record, so new records start on a line of their own
+			if (end < bytes.length) {
+				RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+				try {
+					file.setLength(end);
+				} finally {
+					file.close();
+				}
+			}
+		} catch (IOException e) {
+			mFile.delete();
+			mScanned.clear();
+			mDiscovered.clear();
+			mIdentified.clear();
+		}
+	}
+
+	private static byte[] readFile(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+				out.write(buffer, 0, read);
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Escapes the characters that separate fields and records.
+	 */
+	private static String escape(String value) {
+		return value.replace("%", "%25").replace(" ", "%20").replace("\n", "%0A").replace("\r", "%0D");
+	}
+
+	private static String unescape(String value) {
+		return value.replace("%0D", "\r").replace("%0A", "\n").replace("%20", " ").replace("%25", "%");
+	}
+}
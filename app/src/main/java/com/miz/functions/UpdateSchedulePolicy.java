@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.functions;
+
+/**
+ * Decides when scheduled library updates should run. An update is due
+ * once its interval has passed since the last update, but it only starts
+ * while the device is on an unmetered network, charging and idle. An
+ * update that is long overdue only waits for an unmetered network.
+ * <p>
+ * Movie and TV show updates are coalesced: when one of them starts, the
+ * other one starts along with it if it's nearly due anyway. Every update
+ * in a row that finds no new files doubles the interval, up to
+ * {@link #MAX_BACKOFF} times, and an update that finds new files resets it.
+ * <p>
+ * Times are in milliseconds.
+ */
+public class UpdateSchedulePolicy {
+
+	public static final int MOVIES = 1, SHOWS = 2;
+
+	/**
+	 * Number of times the interval is doubled at most, i.e. an eight times longer interval.
+	 */
+	public static final int MAX_BACKOFF = 3;
+
+	/**
+	 * Time between checks while an update is due but waiting for the right conditions.
+	 * These checks don't wake the device up.
+	 */
+	public static final long RETRY_DELAY = 30 * 60 * 1000; // 30 minutes
+
+	private static final int[] TYPES = {MOVIES, SHOWS};
+
+	private final long[] mInterval = new long[2], mLastRun = new long[2];
+	private final int[] mEmptyRuns = new int[2];
+
+	/**
+	 * Enables scheduled updates of a type. Scheduling an update that
+	 * has never run makes it due one interval from now.
+	 * @param interval Time between updates, or 0 to disable scheduled updates
+	 */
+	public void schedule(int type, long interval, long now) {
+		mInterval[index(type)] = Math.max(0, interval);
+
+		if (interval > 0 && mLastRun[index(type)] == 0)
+			mLastRun[index(type)] = now;
+	}
+
+	/**
+	 * @return Interval between updates as scheduled, or 0 if they're disabled
+	 */
+	public long getInterval(int type) {
+		return mInterval[index(type)];
+	}
+
+	public boolean isScheduled(int type) {
+		return mInterval[index(type)] > 0;
+	}
+
+	/**
+	 * @return Interval between updates, including the back-off from updates that found nothing new
+	 */
+	public long getEffectiveInterval(int type) {
+		return mInterval[index(type)] << Math.min(mEmptyRuns[index(type)], MAX_BACKOFF);
+	}
+
+	/**
+	 * @return Time the update becomes due, or -1 if it isn't scheduled
+	 */
+	public long getDueTime(int type) {
+		if (!isScheduled(type))
+			return -1;
+		return mLastRun[index(type)] + getEffectiveInterval(type);
+	}
+
+	/**
+	 * @return The updates that should start now, as a combination of {@link #MOVIES} and {@link #SHOWS}
+	 */
+	public int getDueUpdates(long now, Conditions conditions) {
+		int due = 0;
+		for (int type : TYPES)
+			if (isScheduled(type) && now >= getDueTime(type) && conditions.allow(isOverdue(type, now)))
+				due |= type;
+
+		if (due == 0)
+			return 0;
+
+		// Run nearly due updates along with the ones that are due, instead of waking up again shortly after
+		for (int type : TYPES)
+			if (isScheduled(type) && (due & type) == 0 && getDueTime(type) - now <= getEffectiveInterval(type) / 4)
+				due |= type;
+
+		return due;
+	}
+
+	/**
+	 * @return Time the device should be woken up to check for due updates, or -1 if it doesn't need to be
+	 */
+	public long getNextWakeUp(long now) {
+		long next = -1;
+		for (int type : TYPES) {
+			if (!isScheduled(type))
+				continue;
+
+			// Wake up when an update becomes due, and once more when it becomes overdue and stops
+			// waiting for the device to be charging and idle
+			long wakeUp = getDueTime(type) > now ? getDueTime(type) : getDueTime(type) + getEffectiveInterval(type);
+
+			if (wakeUp > now && (next == -1 || wakeUp < next))
+				next = wakeUp;
+		}
+		return next;
+	}
+
+	/**
+	 * Due updates that are waiting for the right conditions are checked again every now and then,
+	 * but that check shouldn't wake the device up.
+	 * @return Time to check for due updates again, or -1 if no updates are due
+	 */
+	public long getNextCheck(long now) {
+		for (int type : TYPES)
+			if (isScheduled(type) && getDueTime(type) <= now)
+				return now + RETRY_DELAY;
+		return -1;
+	}
+
+	/**
+	 * Starting an update resets its interval, also if the update is cancelled later.
+	 */
+	public void onUpdateStarted(int type, long now) {
+		mLastRun[index(type)] = now;
+	}
+
+	/**
+	 * @param newFiles Number of files that were found and added to the library
+	 */
+	public void onUpdateFinished(int type, long now, int newFiles) {
+		int i = index(type);
+
+		mLastRun[i] = now;
+		mEmptyRuns[i] = newFiles > 0 ? 0 : Math.min(mEmptyRuns[i] + 1, MAX_BACKOFF);
+	}
+
+	public long getLastRun(int type) {
+		return mLastRun[index(type)];
+	}
+
+	public void setLastRun(int type, long lastRun) {
+		mLastRun[index(type)] = lastRun;
+	}
+
+	public int getEmptyRuns(int type) {
+		return mEmptyRuns[index(type)];
+	}
+
+	public void setEmptyRuns(int type, int emptyRuns) {
+		mEmptyRuns[index(type)] = Math.max(0, Math.min(emptyRuns, MAX_BACKOFF));
+	}
+
+	/**
+	 * An update that has waited a whole interval for the device to be charging and idle stops waiting for it.
+	 */
+	private boolean isOverdue(int type, long now) {
+		return now >= getDueTime(type) + getEffectiveInterval(type);
+	}
+
+	private static int index(int type) {
+		if (type == MOVIES)
+			return 0;
+		if (type == SHOWS)
+			return 1;
+		throw new IllegalArgumentException("Unknown update type: " + type);
+	}
+
+	/**
+	 * State of the device when checking for due updates.
+	 */
+	public static class Conditions {
+
+		private final boolean mUnmetered, mCharging, mIdle;
+
+		public Conditions(boolean unmetered, boolean charging, boolean idle) {
+			mUnmetered = unmetered;
+			mCharging = charging;
+			mIdle = idle;
+		}
+
+		public boolean isUnmetered() {
+			return mUnmetered;
+		}
+
+		public boolean isCharging() {
+			return mCharging;
+		}
+
+		public boolean isIdle() {
+			return mIdle;
+		}
+
+		private boolean allow(boolean overdue) {
+			return mUnmetered && (overdue || (mCharging && mIdle));
+		}
+	}
+}
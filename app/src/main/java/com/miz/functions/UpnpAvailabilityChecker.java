@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.functions;
+
+import com.squareup.okhttp.HttpUrl;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks the availability of files on UPnP media servers. Files that
+ * were part of a recent ContentDirectory listing are known to be
+ * available. All other files are probed with HEAD requests, concurrently
+ * and over kept-alive connections, with a limited number of requests per
+ * host. A host that keeps failing to respond is skipped for a while,
+ * so a sleeping media server doesn't stall the check for every one of its files.
+ */
+public class UpnpAvailabilityChecker {
+
+	private static final int POOL_SIZE = 8;
+	private static final int MAX_REQUESTS_PER_HOST = 4;
+
+	/**
+	 * Number of consecutive failed requests after which a host is skipped.
+	 */
+	private static final int MAX_CONSECUTIVE_FAILURES = 3;
+
+	private static final long HOST_RETRY_DELAY = 30 * 1000; // 30 seconds
+	private static final long LISTING_TIME_TO_LIVE = 10 * 60 * 1000; // 10 minutes
+
+	private final OkHttpClient mClient;
+	private final ThreadPoolExecutor mExecutor;
+	private final HashMap<String, Host> mHosts = new HashMap<String, Host>();
+	private final ConcurrentHashMap<String, Long> mListedUrls = new ConcurrentHashMap<String, Long>();
+
+	/**
+	 * @param client HTTP client used for all requests. Its timeouts apply to every probe.
+	 */
+	public UpnpAvailabilityChecker(OkHttpClient client) {
+		mClient = client.clone();
+		mClient.setFollowRedirects(false);
+		mClient.setRetryOnConnectionFailure(false);
+
+		mExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+		mExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Records the file URLs of a ContentDirectory listing. For a while,
+	 * the files are considered available without probing them.
+	 */
+	public void putListing(Collection<String> urls) {
+		Long now = System.currentTimeMillis();
+		for (String url : urls)
+			mListedUrls.put(url, now);
+	}
+
+	/**
+	 * Checks if the given files are available. Must not be called on the UI thread.
+	 * @param urls File URLs, i.e. http://192.168.1.2:8200/MediaItems/42.mkv
+	 * @return Map of URLs to their availability. URLs that couldn't be
+	 * checked, i.e. because their host didn't respond, aren't included.
+	 */
+	public Map<String, Boolean> check(Collection<String> urls) {
+		final Map<String, Boolean> results = new ConcurrentHashMap<String, Boolean>();
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		long now = System.currentTimeMillis();
+
+		for (final String url : urls) {
+			Long listed = mListedUrls.get(url);
+			if (listed != null && now - listed < LISTING_TIME_TO_LIVE) {
+				results.put(url, true);
+				continue;
+			}
+
+			final Host host = getHost(url);
+			if (host == null)
+				continue;
+
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					Boolean available = probe(host, url);
+					if (available != null)
+						results.put(url, available);
+					return null;
+				}
+			});
+		}
+
+		if (tasks.size() > 0) {
+			try {
+				mExecutor.invokeAll(tasks);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Convenience method to check a single file.
+	 * @return True if the file is available, false if it's unavailable, null if it couldn't be checked
+	 */
+	public Boolean check(String url) {
+		ArrayList<String> urls = new ArrayList<String>();
+		urls.add(url);
+		return check(urls).get(url);
+	}
+
+	private Boolean probe(Host host, String url) {
+		try {
+			host.mPermits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+
+		try {
+			if (!host.isAvailable())
+				return null;
+
+			Response response = mClient.newCall(new Request.Builder().url(url).head().build()).execute();
+			response.body().close();
+
+			host.onResponse();
+
+			if (response.isSuccessful())
+				return true;
+			if (response.code() == 404 || response.code() == 410)
+				return false;
+
+			// Other errors, i.e. servers that don't support HEAD, say nothing about the file
+			return null;
+		} catch (IOException e) {
+			host.onFailure();
+			return null;
+		} finally {
+			host.mPermits.release();
+		}
+	}
+
+	private synchronized Host getHost(String url) {
+		HttpUrl parsed = HttpUrl.parse(url);
+		if (parsed == null)
+			return null;
+
+		String key = parsed.host() + ":" + parsed.port();
+		Host host = mHosts.get(key);
+		if (host == null) {
+			host = new Host();
+			mHosts.put(key, host);
+		}
+		return host;
+	}
+
+	private static class Host {
+
+		private final Semaphore mPermits = new Semaphore(MAX_REQUESTS_PER_HOST, true);
+		private int mConsecutiveFailures;
+		private long mRetryTime;
+
+		/**
+		 * Returns false while the host is being skipped. Once the
+		 * retry delay has passed, a single request is let through,
+		 * and the host is skipped again if it fails.
+		 */
+		public synchronized boolean isAvailable() {
+			if (mConsecutiveFailures < MAX_CONSECUTIVE_FAILURES)
+				return true;
+
+			long now = System.currentTimeMillis();
+			if (now < mRetryTime)
+				return false;
+
+			mRetryTime = now + HOST_RETRY_DELAY;
+			return true;
+		}
+
+		public synchronized void onResponse() {
+			mConsecutiveFailures = 0;
+		}
+
+		public synchronized void onFailure() {
+			mConsecutiveFailures++;
+			if (mConsecutiveFailures == MAX_CONSECUTIVE_FAILURES)
+				mRetryTime = System.currentTimeMillis() + HOST_RETRY_DELAY;
+		}
+	}
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.functions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Crawls the container tree of a UPnP ContentDirectory service. Every
+ * container is browsed in pages on a bounded pool, so a large library
+ * never results in a single huge response or an unbounded number of
+ * concurrent requests. The crawl is complete once every container has
+ * been browsed, or has failed after a few attempts.
+ */
+public class UpnpCrawler {
+
+	/**
+	 * A ContentDirectory service, i.e. on a media server.
+	 */
+	public interface ContentDirectory {
+
+		/**
+		 * Browses a page of the direct children of a container. Called concurrently.
+		 * @param startIndex Index of the first child
+		 * @param maxResults Maximum number of children. The server may return fewer.
+		 */
+		Page browse(String containerId, long startIndex, long maxResults) throws Exception;
+	}
+
+	public static final int DEFAULT_PAGE_SIZE = 200;
+	public static final int DEFAULT_CONCURRENCY = 4;
+
+	private static final int MAX_ATTEMPTS = 3;
+
+	private final ContentDirectory mContentDirectory;
+	private final int mPageSize, mConcurrency;
+
+	public UpnpCrawler(ContentDirectory contentDirectory) {
+		this(contentDirectory, DEFAULT_PAGE_SIZE, DEFAULT_CONCURRENCY);
+	}
+
+	public UpnpCrawler(ContentDirectory contentDirectory, int pageSize, int concurrency) {
+		mContentDirectory = contentDirectory;
+		mPageSize = pageSize;
+		mConcurrency = concurrency;
+	}
+
+	/**
+	 * Crawls a container and all of its descendants. Must not be called on the UI thread.
+	 * @param rootId ID of the container to start from
+	 * @param rootTitle Folder name of the container, used as the first part of all folder paths
+	 * @param timeout Maximum duration of the crawl in milliseconds
+	 */
+	public Result crawl(String rootId, String rootTitle, long timeout) throws InterruptedException {
+		Crawl crawl = new Crawl();
+
+		crawl.submit(new Entry(rootId, rootTitle, null, 0), "", -1);
+
+		boolean finished = crawl.mDone.await(timeout, TimeUnit.MILLISECONDS);
+		crawl.mCancelled = true;
+		crawl.mExecutor.shutdownNow();
+
+		return new Result(new ArrayList<Entry>(crawl.mItems), crawl.mFailed.get(), !finished);
+	}
+
+	private class Crawl {
+
+		private final ExecutorService mExecutor = new ThreadPoolExecutor(mConcurrency, mConcurrency, 0, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>());
+		private final ConcurrentLinkedQueue<Entry> mItems = new ConcurrentLinkedQueue<Entry>();
+		private final Set<String> mVisited = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		private final AtomicInteger mPending = new AtomicInteger(), mFailed = new AtomicInteger();
+		private final CountDownLatch mDone = new CountDownLatch(1);
+		private volatile boolean mCancelled;
+
+		/**
+		 * Queues the browsing of a container. Containers that have already
+		 * been queued are skipped, as some servers link to them more than once.
+		 * Containers found by browses that are still running once the crawl has
+		 * timed out are dropped.
+		 */
+		private void submit(final Entry container, String parentFolder, int parentDepth) {
+			if (mCancelled || mExecutor.isShutdown() || !mVisited.add(container.getId()))
+				return;
+
+			final String folder = parentFolder.isEmpty() ? container.getTitle() : parentFolder + "/" + container.getTitle();
+			final int depth = parentDepth + 1;
+
+			// The pending count must be raised before the parent finishes,
+			// otherwise the crawl could be considered done too early
+			mPending.incrementAndGet();
+
+			try {
+				mExecutor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							browse(container.getId(), folder, depth);
+						} finally {
+							if (mPending.decrementAndGet() == 0)
+								mDone.countDown();
+						}
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				// The crawl was stopped between the check above and now
+				mPending.decrementAndGet();
+			}
+		}
+
+		private void browse(String containerId, String folder, int depth) {
+			long start = 0;
+
+			while (!Thread.currentThread().isInterrupted()) {
+				Page page = browsePage(containerId, start);
+				if (page == null) {
+					mFailed.incrementAndGet();
+					return;
+				}
+
+				for (Entry child : page.getContainers())
+					submit(child, folder, depth);
+
+				for (Entry item : page.getItems())
+					mItems.add(new Entry(item.getId(), item.getTitle(), item.getUrl(), item.getSize(), folder, depth));
+
+				// The next page starts after everything the server returned,
+				// not just the entries that were kept
+				long returned = page.getReturned();
+				start += returned;
+
+				// Servers may return fewer results than requested, and some report
+				// zero matches, in which case only an empty page ends the container
+				if (returned == 0 || (page.getTotalMatches() > 0 && start >= page.getTotalMatches()))
+					return;
+			}
+		}
+
+		private Page browsePage(String containerId, long start) {
+			for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+				try {
+					Page page = mContentDirectory.browse(containerId, start, mPageSize);
+					if (page != null)
+						return page;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return null;
+				} catch (Exception ignored) {}
+			}
+
+			return null;
+		}
+	}
+
+	/**
+	 * A container or an item.
+	 */
+	public static class Entry {
+
+		private final String mId, mTitle, mUrl, mFolder;
+		private final long mSize;
+		private final int mDepth;
+
+		/**
+		 * @param url URL of the first resource of an item, or null for a container
+		 * @param size Size of the item in bytes, or 0 if unknown
+		 */
+		public Entry(String id, String title, String url, long size) {
+			this(id, title, url, size, null, 0);
+		}
+
+		private Entry(String id, String title, String url, long size, String folder, int depth) {
+			mId = id;
+			mTitle = title;
+			mUrl = url;
+			mSize = size;
+			mFolder = folder;
+			mDepth = depth;
+		}
+
+		public String getId() {
+			return mId;
+		}
+
+		public String getTitle() {
+			return mTitle;
+		}
+
+		public String getUrl() {
+			return mUrl;
+		}
+
+		public long getSize() {
+			return mSize;
+		}
+
+		/**
+		 * Returns the folder path of a crawled item, i.e. "Server/Movies/Action".
+		 */
+		public String getFolder() {
+			return mFolder;
+		}
+
+		/**
+		 * Returns the number of containers between the root container and a crawled item.
+		 */
+		public int getDepth() {
+			return mDepth;
+		}
+	}
+
+	/**
+	 * A page of the children of a container.
+	 */
+	public static class Page {
+
+		private final List<Entry> mContainers, mItems;
+		private final long mTotalMatches, mReturned;
+
+		/**
+		 * @param totalMatches Total number of children of the container, or 0 if unknown
+		 */
+		public Page(List<Entry> containers, List<Entry> items, long totalMatches) {
+			this(containers, items, totalMatches, containers.size() + items.size());
+		}
+
+		/**
+		 * @param totalMatches Total number of children of the container, or 0 if unknown
+		 * @param returned Number of children returned by the server, including
+		 * those that were left out of the page, i.e. items without a resource
+		 */
+		public Page(List<Entry> containers, List<Entry> items, long totalMatches, long returned) {
+			mContainers = containers;
+			mItems = items;
+			mTotalMatches = totalMatches;
+			mReturned = returned;
+		}
+
+		public List<Entry> getContainers() {
+			return mContainers;
+		}
+
+		public List<Entry> getItems() {
+			return mItems;
+		}
+
+		public long getTotalMatches() {
+			return mTotalMatches;
+		}
+
+		public long getReturned() {
+			return mReturned;
+		}
+	}
+
+	public static class Result {
+
+		private final List<Entry> mItems;
+		private final int mFailedContainers;
+		private final boolean mTimedOut;
+
+		public Result(List<Entry> items, int failedContainers, boolean timedOut) {
+			mItems = items;
+			mFailedContainers = failedContainers;
+			mTimedOut = timedOut;
+		}
+
+		public List<Entry> getItems() {
+			return mItems;
+		}
+
+		/**
+		 * Returns the number of containers that couldn't be browsed completely.
+		 */
+		public int getFailedContainers() {
+			return mFailedContainers;
+		}
+
+		public boolean isTimedOut() {
+			return mTimedOut;
+		}
+
+		/**
+		 * Returns true if the entire tree was crawled.
+		 */
+		public boolean isComplete() {
+			return mFailedContainers == 0 && !mTimedOut;
+		}
+	}
+}
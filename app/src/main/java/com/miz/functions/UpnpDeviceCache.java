@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.functions;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * Remembers the UDN and descriptor URL of media servers, keyed by the
+ * serial number or UDN stored with a file source. The entries are kept
+ * in a file, so a media server can be contacted directly after a restart,
+ * without waiting for it to be discovered.
+ */
+public class UpnpDeviceCache {
+
+	private static final String KEY_UDN = ".udn";
+	private static final String KEY_DESCRIPTOR_URL = ".descriptor_url";
+
+	private final File mFile;
+	private Properties mEntries;
+
+	public UpnpDeviceCache(File file) {
+		mFile = file;
+	}
+
+	/**
+	 * @param id Serial number or UDN of a file source
+	 * @return The last known location of the media server, or null if it's unknown
+	 */
+	public synchronized Entry get(String id) {
+		Properties entries = getEntries();
+
+		String udn = entries.getProperty(id + KEY_UDN), descriptorUrl = entries.getProperty(id + KEY_DESCRIPTOR_URL);
+		if (udn == null || descriptorUrl == null)
+			return null;
+
+		return new Entry(udn, descriptorUrl);
+	}
+
+	public synchronized void put(String id, String udn, String descriptorUrl) {
+		Properties entries = getEntries();
+
+		if (udn.equals(entries.getProperty(id + KEY_UDN)) && descriptorUrl.equals(entries.getProperty(id + KEY_DESCRIPTOR_URL)))
+			return;
+
+		entries.setProperty(id + KEY_UDN, udn);
+		entries.setProperty(id + KEY_DESCRIPTOR_URL, descriptorUrl);
+		save();
+	}
+
+	public synchronized void remove(String id) {
+		Properties entries = getEntries();
+
+		if (entries.remove(id + KEY_UDN) != null | entries.remove(id + KEY_DESCRIPTOR_URL) != null)
+			save();
+	}
+
+	private Properties getEntries() {
+		if (mEntries == null) {
+			mEntries = new Properties();
+
+			try {
+				FileInputStream in = new FileInputStream(mFile);
+				try {
+					mEntries.load(in);
+				} finally {
+					in.close();
+				}
+			} catch (IOException ignored) {}
+		}
+
+		return mEntries;
+	}
+
+	private void save() {
+		File temp = new File(mFile.getPath() + ".tmp");
+
+		try {
+			FileOutputStream out = new FileOutputStream(temp);
+			try {
+				mEntries.store(out, null);
+			} finally {
+				out.close();
+			}
+
+			if (temp.renameTo(mFile))
+				return;
+
+			// Some file systems don't allow renaming onto an existing file
+			mFile.delete();
+			if (temp.renameTo(mFile))
+				return;
+		} catch (IOException ignored) {}
+
+		temp.delete();
+	}
+
+	public static class Entry {
+
+		private final String mUdn, mDescriptorUrl;
+
+		public Entry(String udn, String descriptorUrl) {
+			mUdn = udn;
+			mDescriptorUrl = descriptorUrl;
+		}
+
+		public String getUdn() {
+			return mUdn;
+		}
+
+		public String getDescriptorUrl() {
+			return mDescriptorUrl;
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.functions;
+
+import org.teleal.cling.UpnpService;
+import org.teleal.cling.model.meta.Device;
+import org.teleal.cling.model.meta.Service;
+
+/**
+ * Finds the ContentDirectory service of the media server of a file
+ * source. Servers that are already known to the registry are used right
+ * away. Otherwise the server is contacted at its last known descriptor URL,
+ * and only if that fails, it's searched for on the network.
+ */
+public class UpnpDeviceResolver {
+
+	/**
+	 * The UPnP stack that devices are found with, i.e. {@link ClingNetwork}.
+	 * @param <D> Type of the devices
+	 */
+	public interface Network<D> {
+
+		/**
+		 * @param id Serial number or UDN of a file source
+		 * @return A known media server with a ContentDirectory service, or null if there isn't one
+		 */
+		D findDevice(String id);
+
+		/**
+		 * Retrieves the descriptors of a media server from its descriptor URL.
+		 * The media server is known afterwards if it responded.
+		 */
+		void retrieve(UpnpDeviceCache.Entry location) throws Exception;
+
+		/**
+		 * Searches the network for a media server, until it's found or the timeout runs out.
+		 * @return The media server, or null if it wasn't found
+		 */
+		D search(String id, long timeout) throws InterruptedException;
+
+		/**
+		 * @return The UDN and descriptor URL of a media server, or null if it hasn't got a descriptor URL
+		 */
+		UpnpDeviceCache.Entry getLocation(D device);
+	}
+
+	private final UpnpDeviceCache mCache;
+
+	public UpnpDeviceResolver(UpnpDeviceCache cache) {
+		mCache = cache;
+	}
+
+	/**
+	 * Resolves the ContentDirectory service of a media server. Must not be called on the UI thread.
+	 * @param id Serial number or UDN of the file source, i.e. {@link FileSource#getUpnpSerialNumber()}
+	 * @param timeout Time to wait for the media server to be found on the network, in milliseconds
+	 * @return The ContentDirectory service, or null if the media server couldn't be found
+	 */
+	public Service<?, ?> resolve(UpnpService upnpService, String id, long timeout) throws InterruptedException {
+		Device<?, ?, ?> device = resolve(new ClingNetwork(upnpService), id, timeout);
+		return device != null ? device.findService(ClingNetwork.CONTENT_DIRECTORY) : null;
+	}
+
+	/**
+	 * Resolves a media server. Must not be called on the UI thread.
+	 * @return The media server, or null if it couldn't be found
+	 */
+	public <D> D resolve(Network<D> network, String id, long timeout) throws InterruptedException {
+		D device = network.findDevice(id);
+
+		if (device == null)
+			device = retrieveCachedDevice(network, id);
+
+		if (device == null)
+			device = network.search(id, timeout);
+
+		if (device == null)
+			return null;
+
+		UpnpDeviceCache.Entry location = network.getLocation(device);
+		if (location != null)
+			mCache.put(id, location.getUdn(), location.getDescriptorUrl());
+
+		return device;
+	}
+
+	/**
+	 * Contacts the media server at its last known descriptor URL.
+	 */
+	private <D> D retrieveCachedDevice(Network<D> network, String id) {
+		UpnpDeviceCache.Entry entry = mCache.get(id);
+		if (entry == null)
+			return null;
+
+		try {
+			network.retrieve(entry);
+		} catch (Exception ignored) {}
+
+		D device = network.findDevice(id);
+		if (device == null)
+			mCache.remove(id); // The server has moved or is gone
+
+		return device;
+	}
+}
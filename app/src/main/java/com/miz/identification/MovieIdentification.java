@@ -25,8 +25,10 @@ import com.miz.abstractclasses.MovieApiService;
 import com.miz.apis.tmdb.Movie;
 import com.miz.db.DbAdapterMovieMappings;
 import com.miz.db.DbAdapterMovies;
+import com.miz.functions.Metrics;
 import com.miz.functions.MizLib;
 import com.miz.functions.MovieLibraryUpdateCallback;
+import com.miz.functions.UpdateJournal;
 import com.miz.mizuu.MizuuApplication;
 import com.miz.utils.FileUtils;
 import com.miz.utils.LocalBroadcastUtils;
@@ -50,6 +52,7 @@ public class MovieIdentification {
     private String mMovieId = null, mCurrentMovieId = null, mLocale = null;
     private boolean mCancel = false;
     private int mCount = 0;
+    private UpdateJournal mJournal;
 
     public MovieIdentification(Context context, MovieLibraryUpdateCallback callback, ArrayList<MovieStructure> files) {
         mContext = context;
@@ -105,6 +108,14 @@ public class MovieIdentification {
         mCancel = true;
     }
 
+    /**
+     * Records identified files in the journal of a library update, so they
+     * aren't identified again if the update is resumed.
+     */
+    public void setJournal(UpdateJournal journal) {
+        mJournal = journal;
+    }
+
     public void start() {
 
         // Go through all files
@@ -128,6 +139,8 @@ public class MovieIdentification {
             Movie movie = null;
             List<Movie> results = new ArrayList<Movie>();
 
+            long start = Metrics.start();
+
             if (!overrideMovieId()) {
                 // Check if there's an IMDb ID and attempt to search based on it
                 if (ms.hasImdbId()) {
@@ -155,6 +168,9 @@ public class MovieIdentification {
                 // If there's still no results, search based on the parent folder name only
                 if (results.size() == 0)
                     results = service.search(ms.getDecryptedParentFolderName(), null);
+
+                Metrics.stop("movies.identify.search", start);
+                start = Metrics.start();
             } else {
                 movie = service.get(getMovieId(), mLocale);
             }
@@ -164,11 +180,19 @@ public class MovieIdentification {
                 movie = service.get(results.get(0).getId(), mLocale);
             }
 
+            if (movie != null)
+                Metrics.stop("movies.identify.details", start);
+
             // Last check - is movie still null?
-            if (movie == null)
+            if (movie == null) {
                 movie = new Movie();
+                Metrics.increment("movies.identify.unidentified");
+            }
 
             createMovie(ms, movie);
+
+            if (mJournal != null)
+                mJournal.setIdentified(ms.getFilepath());
         }
     }
 
@@ -180,12 +204,17 @@ public class MovieIdentification {
             downloadCovers = !MizuuApplication.getMovieAdapter().movieExists(movie.getId());
 
         if (downloadCovers) {
+            long start = Metrics.start();
+
             String thumb_filepath = FileUtils.getMovieThumb(mContext, movie.getId()).getAbsolutePath();
 
             // Download the cover image and try again if it fails
             if (!MizLib.downloadFile(movie.getCover(), thumb_filepath))
                 MizLib.downloadFile(movie.getCover(), thumb_filepath);
 
+            // Store the swatch colour, so the detail view doesn't have to decode the cover
+            MizuuApplication.getPaletteCache().generate(new File(thumb_filepath));
+
             // Download the backdrop image and try again if it fails
             if (!TextUtils.isEmpty(movie.getBackdrop())) {
                 String backdropFile = FileUtils.getMovieBackdrop(mContext, movie.getId()).getAbsolutePath();
@@ -201,6 +230,8 @@ public class MovieIdentification {
                 if (!MizLib.downloadFile(movie.getCollectionImage(), collectionImage))
                     MizLib.downloadFile(movie.getCollectionImage(), collectionImage);
             }
+
+            Metrics.stop("movies.identify.images", start);
         }
 
         addToDatabase(ms, movie);
@@ -210,6 +241,8 @@ public class MovieIdentification {
         DbAdapterMovieMappings dbHelperMovieMapping = MizuuApplication.getMovieMappingAdapter();
         DbAdapterMovies dbHelper = MizuuApplication.getMovieAdapter();
 
+        long start = Metrics.start();
+
         // Check if this is manual identification by the user
         if (overrideMovieId()) {
 
@@ -253,6 +286,12 @@ public class MovieIdentification {
                 movie.getReleasedate(), movie.getCertification(), movie.getRuntime(), movie.getTrailer(), movie.getGenres(), "0",
                 movie.getCast(), movie.getCollectionTitle(), movie.getCollectionId(), "0", "0", String.valueOf(System.currentTimeMillis()));
 
+        // Cache the cast, so it's available without a network connection
+        if (!movie.getId().equals(DbAdapterMovies.UNIDENTIFIED_ID))
+            MizuuApplication.getActorCache().putCast(movie.getId(), MizLib.TYPE_MOVIE, movie.getActors());
+
+        Metrics.stop("movies.identify.database", start);
+
         updateNotification(movie);
     }
 
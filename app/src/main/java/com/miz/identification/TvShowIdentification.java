@@ -29,8 +29,11 @@ import com.miz.apis.thetvdb.Episode;
 import com.miz.apis.thetvdb.TvShow;
 import com.miz.db.DbAdapterTvShowEpisodes;
 import com.miz.db.DbAdapterTvShows;
+import com.miz.functions.BlurredImageCache;
+import com.miz.functions.Metrics;
 import com.miz.functions.MizLib;
 import com.miz.functions.TvShowLibraryUpdateCallback;
+import com.miz.functions.UpdateJournal;
 import com.miz.mizuu.MizuuApplication;
 import com.miz.utils.FileUtils;
 import com.miz.utils.LocalBroadcastUtils;
@@ -55,6 +58,7 @@ public class TvShowIdentification {
     private String mShowId = null, mLocale = null;
     private int mSeason = -1, mEpisode = -1;
     private boolean mCancel = false;
+    private UpdateJournal mJournal;
 
     public TvShowIdentification(Context context, TvShowLibraryUpdateCallback callback, ArrayList<ShowStructure> files) {
         mContext = context;
@@ -124,6 +128,14 @@ public class TvShowIdentification {
         mCancel = true;
     }
 
+    /**
+     * Records identified files in the journal of a library update, so they
+     * aren't identified again if the update is resumed.
+     */
+    public void setJournal(UpdateJournal journal) {
+        mJournal = journal;
+    }
+
     public void start() {
 
         // Go through all files
@@ -146,6 +158,7 @@ public class TvShowIdentification {
 
             TvShow show = null;
             List<TvShow> results = new ArrayList<TvShow>();
+            long start = Metrics.start();
             if (!overrideShowId()) {
 
                 // Get the first ShowStructure element
@@ -165,16 +178,23 @@ public class TvShowIdentification {
                 // If there's still no results, search based on the show folder name only
                 if (results.size() == 0)
                     results = service.search(showFolderName, null);
-            } else
+
+                Metrics.stop("shows.identify.search", start);
+            } else {
                 show = service.get(getShowId(), mLocale);
+                Metrics.stop("shows.identify.details", start);
+            }
 
             // Check if the show folder name results in any matches
             // - if it does, use that to identify all files
             if (results.size() > 0 || overrideShowId()) {
 
                 // Get the TV show and create it in the database
-                if (!overrideShowId())
+                if (!overrideShowId()) {
+                    start = Metrics.start();
                     show = service.get(results.get(0).getId(), mLocale);
+                    Metrics.stop("shows.identify.details", start);
+                }
                 createShow(show);
 
                 int episodeCount = 0;
@@ -190,6 +210,8 @@ public class TvShowIdentification {
                         downloadEpisode(show, ep.getSeason(), ep.getEpisode(), ss.getFilepath());
                         episodeCount++;
                     }
+
+                    setIdentified(ss);
                 }
 
                 showAddedShowNotification(show, episodeCount);
@@ -205,6 +227,7 @@ public class TvShowIdentification {
 
                     show = null;
                     results = new ArrayList<TvShow>();
+                    start = Metrics.start();
 
                     // Check if there's an IMDb ID and attempt to search based on it
                     if (ss.hasImdbId())
@@ -221,11 +244,16 @@ public class TvShowIdentification {
                     if (results.size() == 0)
                         results = service.search(ss.getDecryptedFilename(), null);
 
+                    Metrics.stop("shows.identify.search", start);
+
                     if (results.size() == 0) {
                         show = new TvShow();
                         show.setId(DbAdapterTvShows.UNIDENTIFIED_ID);
+                        Metrics.increment("shows.identify.unidentified");
                     } else {
+                        start = Metrics.start();
                         show = service.get(results.get(0).getId(), mLocale);
+                        Metrics.stop("shows.identify.details", start);
                     }
 
                     createShow(show);
@@ -237,12 +265,22 @@ public class TvShowIdentification {
                         downloadEpisode(show, ep.getSeason(), ep.getEpisode(), ss.getFilepath());
                     }
 
+                    setIdentified(ss);
+
                     showAddedShowNotification(show, ss.getEpisodes().size());
                 }
             }
         }
     }
 
+    /**
+     * Files are only recorded once all their episodes have been added.
+     */
+    private void setIdentified(ShowStructure ss) {
+        if (mJournal != null && !mCancel)
+            mJournal.setIdentified(ss.getFilepath());
+    }
+
     private void showAddedShowNotification(TvShow show, int episodeCount) {
         if (show == null)
             return;
@@ -278,6 +316,8 @@ public class TvShowIdentification {
 
         if (downloadCovers) {
             if (!TextUtils.isEmpty(thisShow.getId()) && !thisShow.getId().equals(DbAdapterTvShows.UNIDENTIFIED_ID)) {
+                long start = Metrics.start();
+
                 String thumb_filepath = FileUtils.getTvShowThumb(mContext, thisShow.getId()).getAbsolutePath();
                 String backdrop_filepath = FileUtils.getTvShowBackdrop(mContext, thisShow.getId()).getAbsolutePath();
 
@@ -288,14 +328,28 @@ public class TvShowIdentification {
 
                 MizLib.resizeBitmapFileToCoverSize(mContext, thumb_filepath);
 
+                // Store the swatch colour, so the detail view doesn't have to decode the cover
+                MizuuApplication.getPaletteCache().generate(new File(thumb_filepath));
+
                 // Download the backdrop image file and try again if it fails
                 if (!TextUtils.isEmpty(thisShow.getBackdropUrl()))
                     if (!MizLib.downloadFile(thisShow.getBackdropUrl(), backdrop_filepath))
                         MizLib.downloadFile(thisShow.getBackdropUrl(), backdrop_filepath);
 
+                // Episodes without a screenshot show the blurred backdrop instead
+                MizuuApplication.getBlurredImageCache(mContext).generate(new File(backdrop_filepath), BlurredImageCache.BACKDROP_BLUR_RADIUS);
+
+                Metrics.stop("shows.identify.images", start);
+                start = Metrics.start();
+
                 DbAdapterTvShows dbHelper = MizuuApplication.getTvDbAdapter();
                 dbHelper.createShow(thisShow.getId(), thisShow.getTitle(), thisShow.getDescription(), thisShow.getActors(), thisShow.getGenres(),
                         thisShow.getRating(), thisShow.getCertification(), thisShow.getRuntime(), thisShow.getFirstAired(), "0");
+
+                // Cache the cast, so it's available without a network connection
+                MizuuApplication.getActorCache().putCast(thisShow.getId(), MizLib.TYPE_SHOWS, thisShow.getActorList());
+
+                Metrics.stop("shows.identify.database", start);
             }
         }
     }
@@ -322,11 +376,18 @@ public class TvShowIdentification {
             thisEpisode.setSeason(season);
         }
 
+        long start = Metrics.start();
+
         // Download the episode screenshot file and try again if it fails
         if (!TextUtils.isEmpty(thisEpisode.getScreenshotUrl())) {
             String screenshotFile = FileUtils.getTvShowEpisode(mContext, thisShow.getId(), season, episode).getAbsolutePath();
             if (!MizLib.downloadFile(thisEpisode.getScreenshotUrl(), screenshotFile))
                 MizLib.downloadFile(thisEpisode.getScreenshotUrl(), screenshotFile);
+
+            MizuuApplication.getPaletteCache().generate(new File(screenshotFile));
+
+            // Blur it now, so the episode details don't have to
+            MizuuApplication.getBlurredImageCache(mContext).generate(new File(screenshotFile), BlurredImageCache.BACKDROP_BLUR_RADIUS);
         }
 
         // Download season cover if it hasn't already been downloaded
@@ -336,14 +397,22 @@ public class TvShowIdentification {
                 if (!MizLib.downloadFile(thisShow.getSeason(thisEpisode.getSeason()).getCoverPath(), seasonFile.getAbsolutePath()))
                     MizLib.downloadFile(thisShow.getSeason(thisEpisode.getSeason()).getCoverPath(), seasonFile.getAbsolutePath());
             }
+
+            // Record the cover, so season lists don't have to look for it
+            if (seasonFile.exists())
+                MizuuApplication.getSeasonCoversAdapter().setSeasonCover(thisShow.getId(), MizLib.addIndexZero(season));
         }
 
+        Metrics.stop("episodes.identify.images", start);
+
         addToDatabase(thisShow, thisEpisode, filepath);
     }
 
     private void addToDatabase(TvShow thisShow, Episode ep, String filepath) {
         DbAdapterTvShowEpisodes dbHelper = MizuuApplication.getTvEpisodeDbAdapter();
 
+        long start = Metrics.start();
+
         if (thisShow.getId().equals(DbAdapterTvShows.UNIDENTIFIED_ID)) {
             // If it's an unidentified file, we shouldn't create a episode entry in the database
             MizuuApplication.getTvShowEpisodeMappingsDbAdapter().createFilepathMapping(filepath,
@@ -355,6 +424,8 @@ public class TvShowIdentification {
                     ep.getWriter(), ep.getGueststars(), "0", "0");
         }
 
+        Metrics.stop("episodes.identify.database", start);
+
         updateNotification(thisShow, ep, filepath);
     }
 
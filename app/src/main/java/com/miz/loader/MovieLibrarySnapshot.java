@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.loader;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.text.TextUtils;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.miz.db.DbAdapterMovieMappings;
+import com.miz.db.DbAdapterMovies;
+import com.miz.functions.ColumnIndexCache;
+import com.miz.functions.MediumMovie;
+import com.miz.functions.MizLib;
+import com.miz.mizuu.MizuuApplication;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Immutable view of the entire movie library, shared by all movie library
+ * sections. The snapshot is only rebuilt from the database when the movie
+ * library version has changed since it was built, so switching between
+ * sections or re-loading a section is done in memory.
+ */
+public class MovieLibrarySnapshot {
+
+    private static MovieLibrarySnapshot sSnapshot;
+
+    private final long mVersion;
+    private final List<MediumMovie> mMovies;
+
+    private MovieLibrarySnapshot(long version, List<MediumMovie> movies) {
+        mVersion = version;
+        mMovies = Collections.unmodifiableList(movies);
+    }
+
+    /**
+     * Returns a snapshot of the current movie library. Must not be called on the UI thread.
+     */
+    public static synchronized MovieLibrarySnapshot get() {
+        // Read the version before the movies, so changes made while
+        // building the snapshot cause it to be rebuilt the next time
+        long version = MizuuApplication.getLibraryVersionAdapter().getVersion(MizLib.TYPE_MOVIE);
+
+        if (sSnapshot == null || sSnapshot.mVersion != version || version == -1)
+            sSnapshot = new MovieLibrarySnapshot(version, loadMovies(MizuuApplication.getContext()));
+
+        return sSnapshot;
+    }
+
+    /**
+     * Returns the movies of a library section, sorted by title.
+     * @return New list, which may be modified by the caller.
+     */
+    public ArrayList<MediumMovie> getMovies(MovieLibraryType type) {
+        ArrayList<MediumMovie> movies = new ArrayList<MediumMovie>();
+
+        switch (type) {
+            case ALL_MOVIES:
+                movies.addAll(mMovies);
+                break;
+            case COLLECTIONS:
+                // One movie per collection
+                HashSet<String> collectionIds = new HashSet<String>();
+                for (MediumMovie movie : mMovies)
+                    if (!TextUtils.isEmpty(movie.getCollectionId()) && collectionIds.add(movie.getCollectionId()))
+                        movies.add(movie);
+                break;
+            case FAVORITES:
+                for (MediumMovie movie : mMovies)
+                    if (movie.isFavourite())
+                        movies.add(movie);
+                break;
+            case NEW_RELEASES:
+                String cutoff = getNewReleasesCutoff();
+                for (MediumMovie movie : mMovies)
+                    if (movie.getReleasedate() != null && movie.getReleasedate().compareTo(cutoff) >= 0)
+                        movies.add(movie);
+                break;
+            case UNWATCHED:
+                for (MediumMovie movie : mMovies)
+                    if (!movie.hasWatched())
+                        movies.add(movie);
+                break;
+            case WATCHED:
+                for (MediumMovie movie : mMovies)
+                    if (movie.hasWatched())
+                        movies.add(movie);
+                break;
+            case WATCHLIST:
+                for (MediumMovie movie : mMovies)
+                    if (movie.toWatch())
+                        movies.add(movie);
+                break;
+            default:
+                break;
+        }
+
+        return movies;
+    }
+
+    /**
+     * Same as <code>date('now', '-9 months')</code> in SQLite.
+     */
+    private static String getNewReleasesCutoff() {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+        sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        cal.add(Calendar.MONTH, -9);
+
+        return sdf.format(cal.getTime());
+    }
+
+    private static ArrayList<MediumMovie> loadMovies(Context context) {
+
+        // Normally we'd have to go through each movie and add filepaths mapped to that movie
+        // one by one. This is a hacky approach that gets all filepaths at once and creates a
+        // map of them. That way it's easy to get filepaths for a specific movie - and it's
+        // 2-3x faster with ~750 movies.
+        ArrayListMultimap<String, String> filepaths = ArrayListMultimap.create();
+        Cursor paths = MizuuApplication.getMovieMappingAdapter().getAllFilepaths(false);
+        if (paths != null) {
+            try {
+                while (paths.moveToNext()) {
+                    filepaths.put(paths.getString(paths.getColumnIndex(DbAdapterMovieMappings.KEY_TMDB_ID)),
+                            paths.getString(paths.getColumnIndex(DbAdapterMovieMappings.KEY_FILEPATH)));
+                }
+            } catch (Exception e) {} finally {
+                paths.close();
+                MizuuApplication.setMovieFilepaths(filepaths);
+            }
+        }
+
+        HashMap<String, String> collectionsMap = MizuuApplication.getCollectionsAdapter().getCollectionsMap();
+        ArrayList<MediumMovie> list = new ArrayList<MediumMovie>();
+
+        Cursor cursor = MizuuApplication.getMovieAdapter().getAllMovies();
+        if (cursor != null) {
+            ColumnIndexCache cache = new ColumnIndexCache();
+
+            try {
+                while (cursor.moveToNext()) {
+                    list.add(new MediumMovie(context,
+                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_TITLE)),
+                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_TMDB_ID)),
+                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_RATING)),
+                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_RELEASEDATE)),
+                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_GENRES)),
+                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_FAVOURITE)),
+                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_ACTORS)),
+                            collectionsMap.get(cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_COLLECTION_ID))),
+                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_COLLECTION_ID)),
+                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_TO_WATCH)),
+                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_HAS_WATCHED)),
+                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_DATE_ADDED)),
+                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_CERTIFICATION)),
+                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_RUNTIME))
+                    ));
+                }
+            } catch (Exception e) {} finally {
+                cursor.close();
+                cache.clear();
+            }
+        }
+
+        return list;
+    }
+}
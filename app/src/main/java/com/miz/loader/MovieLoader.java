@@ -21,35 +21,32 @@ import android.app.AlertDialog;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.SharedPreferences;
-import android.database.Cursor;
 import android.preference.PreferenceManager;
 import android.text.TextUtils;
 
-import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Lists;
+import com.miz.db.DbAdapterFacetCounts;
 import com.miz.db.DbAdapterMovieMappings;
-import com.miz.db.DbAdapterMovies;
-import com.miz.functions.ColumnIndexCache;
+import com.miz.functions.CoalescingExecutor;
 import com.miz.functions.FileSource;
 import com.miz.functions.Filepath;
 import com.miz.functions.LibrarySectionAsyncTask;
 import com.miz.functions.MediumMovie;
+import com.miz.functions.Metrics;
 import com.miz.functions.MizLib;
 import com.miz.functions.PreferenceKeys;
 import com.miz.mizuu.MizuuApplication;
 import com.miz.mizuu.R;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.regex.Pattern;
 
-import jcifs.smb.SmbFile;
-
 public class MovieLoader {
 
     // For MovieLibraryType
@@ -81,19 +78,18 @@ public class MovieLoader {
     private final Context mContext;
     private final MovieLibraryType mLibraryType;
     private final OnLoadCompletedCallback mCallback;
-    private final DbAdapterMovies mDatabase;
 
     private MovieSortType mSortType;
     private ArrayList<MediumMovie> mResults = new ArrayList<>();
     private HashSet<MovieFilter> mFilters = new HashSet<>();
     private MovieLoaderAsyncTask mAsyncTask;
+    private int mPriority = CoalescingExecutor.PRIORITY_NORMAL;
     private boolean mShowingSearchResults = false;
 
     public MovieLoader(Context context, MovieLibraryType libraryType, OnLoadCompletedCallback callback) {
         mContext = context;
         mLibraryType = libraryType;
         mCallback = callback;
-        mDatabase = MizuuApplication.getMovieAdapter();
 
         setupSortType();
     }
@@ -223,68 +219,23 @@ public class MovieLoader {
         mShowingSearchResults = !TextUtils.isEmpty(query);
 
         mAsyncTask = new MovieLoaderAsyncTask(query);
-        mAsyncTask.execute();
+        mAsyncTask.executeCoalesced(getTaskKey(), mPriority);
     }
 
     /**
-     * Creates movie objects from a Cursor and adds them to a list.
-     * @param cursor
-     * @return List of movie objects from the supplied Cursor.
+     * Lets loads of the visible library section run before those of the other sections.
+     * @param visible
      */
-    private ArrayList<MediumMovie> listFromCursor(Cursor cursor) {
-
-        // Normally we'd have to go through each movie and add filepaths mapped to that movie
-        // one by one. This is a hacky approach that gets all filepaths at once and creates a
-        // map of them. That way it's easy to get filepaths for a specific movie - and it's
-        // 2-3x faster with ~750 movies.
-        ArrayListMultimap<String, String> filepaths = ArrayListMultimap.create();
-        Cursor paths = MizuuApplication.getMovieMappingAdapter().getAllFilepaths(false);
-        if (paths != null) {
-            try {
-                while (paths.moveToNext()) {
-                    filepaths.put(paths.getString(paths.getColumnIndex(DbAdapterMovieMappings.KEY_TMDB_ID)),
-                            paths.getString(paths.getColumnIndex(DbAdapterMovieMappings.KEY_FILEPATH)));
-                }
-            } catch (Exception e) {} finally {
-                paths.close();
-                MizuuApplication.setMovieFilepaths(filepaths);
-            }
-        }
-
-        HashMap<String, String> collectionsMap = MizuuApplication.getCollectionsAdapter().getCollectionsMap();
-        ArrayList<MediumMovie> list = new ArrayList<MediumMovie>();
-
-        if (cursor != null) {
-            ColumnIndexCache cache = new ColumnIndexCache();
-
-            try {
-                while (cursor.moveToNext()) {
-                    list.add(new MediumMovie(mContext,
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_TITLE)),
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_TMDB_ID)),
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_RATING)),
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_RELEASEDATE)),
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_GENRES)),
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_FAVOURITE)),
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_ACTORS)),
-                            collectionsMap.get(cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_COLLECTION_ID))),
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_COLLECTION_ID)),
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_TO_WATCH)),
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_HAS_WATCHED)),
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_DATE_ADDED)),
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_CERTIFICATION)),
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterMovies.KEY_RUNTIME))
-                    ));
-                }
-            } catch (Exception e) {} finally {
-                cursor.close();
-                cache.clear();
-            }
-        }
-
-        mResults = list;
+    public void setVisible(boolean visible) {
+        mPriority = visible ? CoalescingExecutor.PRIORITY_HIGH : CoalescingExecutor.PRIORITY_NORMAL;
+        LibrarySectionAsyncTask.setPriority(getTaskKey(), mPriority);
+    }
 
-        return list;
+    /**
+     * Loads of this loader replace each other in the library executor.
+     */
+    private String getTaskKey() {
+        return "movies_" + mLibraryType + "_" + System.identityHashCode(this);
     }
 
     /**
@@ -314,33 +265,15 @@ public class MovieLoader {
         @Override
         protected Void doInBackground(Void... params) {
 
-            switch (mLibraryType) {
-                case ALL_MOVIES:
-                    mMovieList.addAll(listFromCursor(mDatabase.getAllMovies()));
-                    break;
-                case COLLECTIONS:
-                    mMovieList.addAll(listFromCursor(mDatabase.getCollections()));
-                    break;
-                case FAVORITES:
-                    mMovieList.addAll(listFromCursor(mDatabase.getFavorites()));
-                    break;
-                case NEW_RELEASES:
-                    mMovieList.addAll(listFromCursor(mDatabase.getNewReleases()));
-                    break;
-                case UNWATCHED:
-                    mMovieList.addAll(listFromCursor(mDatabase.getUnwatched()));
-                    break;
-                case WATCHED:
-                    mMovieList.addAll(listFromCursor(mDatabase.getWatched()));
-                    break;
-                case WATCHLIST:
-                    mMovieList.addAll(listFromCursor(mDatabase.getWatchlist()));
-                    break;
-                default:
-                    break;
-            }
+            long start = Metrics.start();
+
+            // Shared by all library sections and only rebuilt when the library has changed
+            mMovieList.addAll(MovieLibrarySnapshot.get().getMovies(mLibraryType));
+            Metrics.stop("movies.load.snapshot", start);
 
             int totalSize = mMovieList.size();
+            Map<String, Boolean> availability = null;
+            Set<String> offlineMovies = null;
 
             for (MovieFilter filter : getFilters()) {
                 for (int i = 0; i < totalSize; i++) {
@@ -399,66 +332,28 @@ public class MovieLoader {
 
                         case MovieFilter.OFFLINE_FILES:
 
-                            for (Filepath path : mMovieList.get(i).getFilepaths()) {
-                                condition = mMovieList.get(i).hasOfflineCopy(path);
-                                if (condition)
-                                    break;
-                            }
+                            // Look up all movies with offline copies in one go the first time we get here
+                            if (offlineMovies == null)
+                                offlineMovies = MizuuApplication.getOfflineCopiesAdapter().getMoviesWithOfflineCopies();
+
+                            condition = offlineMovies.contains(mMovieList.get(i).getTmdbId());
 
                             break;
 
                         case MovieFilter.AVAILABLE_FILES:
 
-                            ArrayList<FileSource> filesources = MizLib.getFileSources(MizLib.TYPE_MOVIE, true);
+                            // Check all files in one go the first time we get here
+                            if (availability == null)
+                                availability = probeAvailability(mMovieList);
 
                             if (isCancelled())
                                 return null;
 
                             for (Filepath path : mMovieList.get(i).getFilepaths()) {
-                                if (path.isNetworkFile())
-                                    if (mMovieList.get(i).hasOfflineCopy(path)) {
-                                        condition = true;
-                                        break; // break inner loop to continue to the next movie
-                                    } else {
-                                        if (path.getType() == FileSource.SMB) {
-                                            if (MizLib.isWifiConnected(mContext)) {
-                                                FileSource source = null;
-
-                                                for (int j = 0; j < filesources.size(); j++)
-                                                    if (path.getFilepath().contains(filesources.get(j).getFilepath())) {
-                                                        source = filesources.get(j);
-                                                        break;
-                                                    }
-
-                                                if (source == null)
-                                                    continue;
-
-                                                try {
-                                                    final SmbFile file = new SmbFile(
-                                                            MizLib.createSmbLoginString(
-                                                                    source.getDomain(),
-                                                                    source.getUser(),
-                                                                    source.getPassword(),
-                                                                    path.getFilepath(),
-                                                                    false
-                                                            ));
-                                                    if (file.exists()) {
-                                                        condition = true;
-                                                        break; // break inner loop to continue to the next movie
-                                                    }
-                                                } catch (Exception e) {}  // Do nothing - the file isn't available (either MalformedURLException or SmbException)
-                                            }
-                                        } else if (path.getType() == FileSource.UPNP) {
-                                            if (MizLib.exists(path.getFilepath())) {
-                                                condition = true;
-                                                break; // break inner loop to continue to the next movie
-                                            }
-                                        }
-                                    } else {
-                                    if (new File(path.getFilepath()).exists()) {
-                                        condition = true;
-                                        break; // break inner loop to continue to the next movie
-                                    }
+                                if ((path.isNetworkFile() && mMovieList.get(i).hasOfflineCopy(path)) ||
+                                        Boolean.TRUE.equals(availability.get(path.getFilepath()))) {
+                                    condition = true;
+                                    break; // break inner loop to continue to the next movie
                                 }
                             }
 
@@ -547,9 +442,38 @@ public class MovieLoader {
             // Sort
             Collections.sort(mMovieList, getSortType().getComparator());
 
+            Metrics.stop("movies.load", start);
+
             return null;
         }
 
+        /**
+         * Checks the availability of all files for the given movies
+         * concurrently, skipping network files with an offline copy.
+         */
+        private Map<String, Boolean> probeAvailability(ArrayList<MediumMovie> movies) {
+            boolean wifiConnected = MizLib.isWifiConnected(mContext);
+
+            HashSet<String> filepaths = new HashSet<String>();
+            for (MediumMovie movie : movies) {
+                for (Filepath path : movie.getFilepaths()) {
+                    if (path.isNetworkFile() && movie.hasOfflineCopy(path))
+                        continue;
+
+                    if (path.getType() == FileSource.SMB && !wifiConnected)
+                        continue;
+
+                    filepaths.add(path.getFilepath());
+                }
+            }
+
+            long start = Metrics.start();
+            Map<String, Boolean> availability = MizuuApplication.getAvailabilityProber().probe(MizLib.TYPE_MOVIE, filepaths);
+            Metrics.stop("movies.load.availability", start);
+
+            return availability;
+        }
+
         @Override
         protected void onPostExecute(Void result) {
             if (!isCancelled()) {
@@ -566,15 +490,19 @@ public class MovieLoader {
      */
     public void showGenresFilterDialog(Activity activity) {
         final TreeMap<String, Integer> map = new TreeMap<String, Integer>();
-        String[] splitGenres;
-        for (int i = 0; i < mResults.size(); i++) {
-            if (!mResults.get(i).getGenres().isEmpty()) {
-                splitGenres = mResults.get(i).getGenres().split(",");
-                for (int j = 0; j < splitGenres.length; j++) {
-                    if (map.containsKey(splitGenres[j].trim())) {
-                        map.put(splitGenres[j].trim(), map.get(splitGenres[j].trim()) + 1);
-                    } else {
-                        map.put(splitGenres[j].trim(), 1);
+        if (useFacetCounts()) {
+            map.putAll(getFacetCounts(DbAdapterFacetCounts.FACET_GENRE));
+        } else {
+            String[] splitGenres;
+            for (int i = 0; i < mResults.size(); i++) {
+                if (!mResults.get(i).getGenres().isEmpty()) {
+                    splitGenres = mResults.get(i).getGenres().split(",");
+                    for (int j = 0; j < splitGenres.length; j++) {
+                        if (map.containsKey(splitGenres[j].trim())) {
+                            map.put(splitGenres[j].trim(), map.get(splitGenres[j].trim()) + 1);
+                        } else {
+                            map.put(splitGenres[j].trim(), 1);
+                        }
                     }
                 }
             }
@@ -589,13 +517,17 @@ public class MovieLoader {
      */
     public void showCertificationsFilterDialog(Activity activity) {
         final TreeMap<String, Integer> map = new TreeMap<String, Integer>();
-        for (int i = 0; i < mResults.size(); i++) {
-            String certification = mResults.get(i).getCertification();
-            if (!TextUtils.isEmpty(certification)) {
-                if (map.containsKey(certification.trim())) {
-                    map.put(certification.trim(), map.get(certification.trim()) + 1);
-                } else {
-                    map.put(certification.trim(), 1);
+        if (useFacetCounts()) {
+            map.putAll(getFacetCounts(DbAdapterFacetCounts.FACET_CERTIFICATION));
+        } else {
+            for (int i = 0; i < mResults.size(); i++) {
+                String certification = mResults.get(i).getCertification();
+                if (!TextUtils.isEmpty(certification)) {
+                    if (map.containsKey(certification.trim())) {
+                        map.put(certification.trim(), map.get(certification.trim()) + 1);
+                    } else {
+                        map.put(certification.trim(), 1);
+                    }
                 }
             }
         }
@@ -609,13 +541,17 @@ public class MovieLoader {
      */
     public void showReleaseYearFilterDialog(Activity activity) {
         final TreeMap<String, Integer> map = new TreeMap<String, Integer>();
-        for (int i = 0; i < mResults.size(); i++) {
-            String year = mResults.get(i).getReleaseYear().trim();
-            if (!TextUtils.isEmpty(year)) {
-                if (map.containsKey(year)) {
-                    map.put(year, map.get(year) + 1);
-                } else {
-                    map.put(year, 1);
+        if (useFacetCounts()) {
+            map.putAll(getFacetCounts(DbAdapterFacetCounts.FACET_RELEASE_YEAR));
+        } else {
+            for (int i = 0; i < mResults.size(); i++) {
+                String year = mResults.get(i).getReleaseYear().trim();
+                if (!TextUtils.isEmpty(year)) {
+                    if (map.containsKey(year)) {
+                        map.put(year, map.get(year) + 1);
+                    } else {
+                        map.put(year, 1);
+                    }
                 }
             }
         }
@@ -630,13 +566,17 @@ public class MovieLoader {
     public void showFileSourcesFilterDialog(Activity activity) {
         final TreeMap<String, Integer> map = new TreeMap<String, Integer>();
 
-        for (int i = 0; i < mResults.size(); i++) {
-            for (Filepath path : mResults.get(i).getFilepaths()) {
-                String type = path.getTypeAsString(activity);
-                if (map.containsKey(type)) {
-                    map.put(type, map.get(type) + 1);
-                } else {
-                    map.put(type, 1);
+        if (useFacetCounts()) {
+            map.putAll(getFacetCounts(DbAdapterFacetCounts.FACET_FILE_SOURCE));
+        } else {
+            for (int i = 0; i < mResults.size(); i++) {
+                for (Filepath path : mResults.get(i).getFilepaths()) {
+                    String type = path.getTypeAsString(activity);
+                    if (map.containsKey(type)) {
+                        map.put(type, map.get(type) + 1);
+                    } else {
+                        map.put(type, 1);
+                    }
                 }
             }
         }
@@ -666,6 +606,32 @@ public class MovieLoader {
         createAndShowAlertDialog(activity, setupItemArray(map), R.string.selectFolder, MovieFilter.FOLDER);
     }
 
+    /**
+     * The facet counts are maintained by the database for the entire library,
+     * so they can only be used while the entire library is shown unfiltered.
+     * Otherwise the counts are taken from the current results.
+     */
+    private boolean useFacetCounts() {
+        return getType() == MovieLibraryType.ALL_MOVIES && mFilters.isEmpty() && !mShowingSearchResults;
+    }
+
+    private TreeMap<String, Integer> getFacetCounts(String facet) {
+        TreeMap<String, Integer> counts = MizuuApplication.getFacetCountsAdapter().getCounts(MizLib.TYPE_MOVIE, facet);
+
+        if (facet.equals(DbAdapterFacetCounts.FACET_RELEASE_YEAR)) {
+            Integer unknown = counts.remove("");
+            if (unknown != null)
+                counts.put(mContext.getString(R.string.unknownYear), unknown);
+        } else if (facet.equals(DbAdapterFacetCounts.FACET_FILE_SOURCE)) {
+            TreeMap<String, Integer> types = new TreeMap<String, Integer>();
+            for (Map.Entry<String, Integer> count : counts.entrySet())
+                types.put(Filepath.getTypeAsString(mContext, Integer.parseInt(count.getKey())), count.getValue());
+            counts = types;
+        }
+
+        return counts;
+    }
+
     /**
      * Used to set up an array of items for the alert dialog.
      * @param map
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.loader;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import com.miz.db.DbAdapterTvShowEpisodes;
+import com.miz.db.DbAdapterTvShows;
+import com.miz.functions.ColumnIndexCache;
+import com.miz.functions.MizLib;
+import com.miz.mizuu.MizuuApplication;
+import com.miz.mizuu.TvShow;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Immutable view of the entire TV show library, shared by all TV show
+ * library sections. The snapshot is only rebuilt from the database when the
+ * TV show library version has changed since it was built, so switching
+ * between sections or re-loading a section is done in memory.
+ */
+public class TvShowLibrarySnapshot {
+
+    private static TvShowLibrarySnapshot sSnapshot;
+
+    private final long mVersion;
+    private final List<TvShow> mShows;
+    private final Set<String> mShowsWithUnwatchedEpisodes;
+
+    private TvShowLibrarySnapshot(long version, List<TvShow> shows, Set<String> showsWithUnwatchedEpisodes) {
+        mVersion = version;
+        mShows = Collections.unmodifiableList(shows);
+        mShowsWithUnwatchedEpisodes = Collections.unmodifiableSet(showsWithUnwatchedEpisodes);
+    }
+
+    /**
+     * Returns a snapshot of the current TV show library. Must not be called on the UI thread.
+     */
+    public static synchronized TvShowLibrarySnapshot get() {
+        // Read the version before the shows, so changes made while
+        // building the snapshot cause it to be rebuilt the next time
+        long version = MizuuApplication.getLibraryVersionAdapter().getVersion(MizLib.TYPE_SHOWS);
+
+        if (sSnapshot == null || sSnapshot.mVersion != version || version == -1)
+            sSnapshot = load(version, MizuuApplication.getContext());
+
+        return sSnapshot;
+    }
+
+    /**
+     * Returns the TV shows of a library section, sorted by title.
+     * @return New list, which may be modified by the caller.
+     */
+    public ArrayList<TvShow> getShows(TvShowLibraryType type) {
+        ArrayList<TvShow> shows = new ArrayList<TvShow>();
+
+        switch (type) {
+            case ALL_SHOWS:
+                shows.addAll(mShows);
+                break;
+            case FAVORITES:
+                for (TvShow show : mShows)
+                    if (show.isFavorite())
+                        shows.add(show);
+                break;
+            case RECENTLY_AIRED:
+                long now = System.currentTimeMillis();
+
+                Calendar cal = Calendar.getInstance();
+                SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+
+                for (TvShow show : mShows) {
+                    try {
+                        cal.setTime(sdf.parse(show.getLatestEpisodeAirdate()));
+                        cal.add(Calendar.MONTH, 3);
+                        if (cal.getTimeInMillis() >= now)
+                            shows.add(show);
+                    } catch (ParseException ignored) {}
+                }
+                break;
+            case UNWATCHED:
+                for (TvShow show : mShows)
+                    if (mShowsWithUnwatchedEpisodes.contains(show.getId()))
+                        shows.add(show);
+                break;
+            case WATCHED:
+                for (TvShow show : mShows)
+                    if (!mShowsWithUnwatchedEpisodes.contains(show.getId()))
+                        shows.add(show);
+                break;
+            default:
+                break;
+        }
+
+        return shows;
+    }
+
+    private static TvShowLibrarySnapshot load(long version, Context context) {
+        DbAdapterTvShowEpisodes episodeDb = MizuuApplication.getTvEpisodeDbAdapter();
+
+        // Look up the latest air date and watched status of all shows in one go,
+        // rather than running two queries for each show
+        HashMap<String, String> latestAirdates = episodeDb.getLatestEpisodeAirdates();
+        HashSet<String> showsWithUnwatchedEpisodes = episodeDb.getShowsWithUnwatchedEpisodes();
+
+        ArrayList<TvShow> list = new ArrayList<TvShow>();
+
+        Cursor cursor = MizuuApplication.getTvDbAdapter().getAllShows();
+        if (cursor != null) {
+            ColumnIndexCache cache = new ColumnIndexCache();
+
+            try {
+                while (cursor.moveToNext()) {
+                    String showId = cursor.getString(cache.getColumnIndex(cursor, DbAdapterTvShows.KEY_SHOW_ID));
+                    String latestAirdate = latestAirdates.get(showId);
+
+                    list.add(new TvShow(
+                            context,
+                            showId,
+                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterTvShows.KEY_SHOW_TITLE)),
+                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterTvShows.KEY_SHOW_PLOT)),
+                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterTvShows.KEY_SHOW_RATING)),
+                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterTvShows.KEY_SHOW_GENRES)),
+                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterTvShows.KEY_SHOW_ACTORS)),
+                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterTvShows.KEY_SHOW_CERTIFICATION)),
+                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterTvShows.KEY_SHOW_FIRST_AIRDATE)),
+                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterTvShows.KEY_SHOW_RUNTIME)),
+                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterTvShows.KEY_SHOW_FAVOURITE)),
+                            latestAirdate != null ? latestAirdate : ""
+                    ));
+                }
+            } catch (Exception e) {
+            } finally {
+                cursor.close();
+                cache.clear();
+            }
+        }
+
+        return new TvShowLibrarySnapshot(version, list, showsWithUnwatchedEpisodes);
+    }
+}
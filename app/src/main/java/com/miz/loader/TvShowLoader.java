@@ -19,17 +19,16 @@ import android.app.AlertDialog;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.SharedPreferences;
-import android.database.Cursor;
 import android.preference.PreferenceManager;
 import android.text.TextUtils;
 
 import com.google.common.collect.Lists;
-import com.miz.db.DbAdapterTvShowEpisodes;
-import com.miz.db.DbAdapterTvShows;
-import com.miz.functions.ColumnIndexCache;
+import com.miz.db.DbAdapterFacetCounts;
+import com.miz.functions.CoalescingExecutor;
 import com.miz.functions.FileSource;
 import com.miz.functions.Filepath;
 import com.miz.functions.LibrarySectionAsyncTask;
+import com.miz.functions.Metrics;
 import com.miz.functions.MizLib;
 import com.miz.functions.PreferenceKeys;
 import com.miz.mizuu.MizuuApplication;
@@ -37,13 +36,12 @@ import com.miz.mizuu.R;
 import com.miz.mizuu.TvShow;
 
 import java.io.File;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.regex.Pattern;
 
@@ -77,21 +75,18 @@ public class TvShowLoader {
     private final Context mContext;
     private final TvShowLibraryType mLibraryType;
     private final OnLoadCompletedCallback mCallback;
-    private final DbAdapterTvShows mTvShowDatabase;
-    private final DbAdapterTvShowEpisodes mTvShowEpisodeDatabase;
 
     private TvShowSortType mSortType;
     private ArrayList<TvShow> mResults = new ArrayList<>();
     private HashSet<TvShowFilter> mFilters = new HashSet<>();
     private TvShowLoaderAsyncTask mAsyncTask;
+    private int mPriority = CoalescingExecutor.PRIORITY_NORMAL;
     private boolean mShowingSearchResults = false;
 
     public TvShowLoader(Context context, TvShowLibraryType libraryType, OnLoadCompletedCallback callback) {
         mContext = context;
         mLibraryType = libraryType;
         mCallback = callback;
-        mTvShowDatabase = MizuuApplication.getTvDbAdapter();
-        mTvShowEpisodeDatabase = MizuuApplication.getTvEpisodeDbAdapter();
 
         setupSortType();
     }
@@ -212,7 +207,23 @@ public class TvShowLoader {
         mShowingSearchResults = !TextUtils.isEmpty(query);
 
         mAsyncTask = new TvShowLoaderAsyncTask(query);
-        mAsyncTask.execute();
+        mAsyncTask.executeCoalesced(getTaskKey(), mPriority);
+    }
+
+    /**
+     * Lets loads of the visible library section run before those of the other sections.
+     * @param visible
+     */
+    public void setVisible(boolean visible) {
+        mPriority = visible ? CoalescingExecutor.PRIORITY_HIGH : CoalescingExecutor.PRIORITY_NORMAL;
+        LibrarySectionAsyncTask.setPriority(getTaskKey(), mPriority);
+    }
+
+    /**
+     * Loads of this loader replace each other in the library executor.
+     */
+    private String getTaskKey() {
+        return "tvshows_" + mLibraryType + "_" + System.identityHashCode(this);
     }
 
     /**
@@ -232,46 +243,6 @@ public class TvShowLoader {
         return mResults;
     }
 
-    /**
-     * Creates TV show objects from a Cursor and adds them to a list.
-     * @param cursor
-     * @return List of TV show objects from the supplied Cursor.
-     */
-    private ArrayList<TvShow> listFromCursor(Cursor cursor) {
-        ArrayList<TvShow> list = new ArrayList<>();
-
-        if (cursor != null) {
-            ColumnIndexCache cache = new ColumnIndexCache();
-
-            try {
-                while (cursor.moveToNext()) {
-                    list.add(new TvShow(
-                            mContext,
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterTvShows.KEY_SHOW_ID)),
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterTvShows.KEY_SHOW_TITLE)),
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterTvShows.KEY_SHOW_PLOT)),
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterTvShows.KEY_SHOW_RATING)),
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterTvShows.KEY_SHOW_GENRES)),
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterTvShows.KEY_SHOW_ACTORS)),
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterTvShows.KEY_SHOW_CERTIFICATION)),
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterTvShows.KEY_SHOW_FIRST_AIRDATE)),
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterTvShows.KEY_SHOW_RUNTIME)),
-                            cursor.getString(cache.getColumnIndex(cursor, DbAdapterTvShows.KEY_SHOW_FAVOURITE)),
-                            mTvShowEpisodeDatabase.getLatestEpisodeAirdate(cursor.getString(cache.getColumnIndex(cursor, DbAdapterTvShows.KEY_SHOW_ID)))
-                    ));
-                }
-            } catch (Exception e) {
-            } finally {
-                cursor.close();
-                cache.clear();
-            }
-        }
-
-        mResults = list;
-
-        return list;
-    }
-
     /**
      * Handles everything related to loading, filtering, sorting
      * and delivering the callback when everything is finished.
@@ -291,75 +262,14 @@ public class TvShowLoader {
         @Override
         protected Void doInBackground(Void... params) {
 
-            switch (mLibraryType) {
-                case ALL_SHOWS:
-                    mTvShowList.addAll(listFromCursor(mTvShowDatabase.getAllShows()));
-                    break;
-                case FAVORITES:
-                    mTvShowList.addAll(listFromCursor(mTvShowDatabase.getAllFavorites()));
-                    break;
-                case RECENTLY_AIRED:
-                    mTvShowList.addAll(listFromCursor(mTvShowDatabase.getAllShows()));
-
-                    int listSize = mTvShowList.size();
-
-                    long now = System.currentTimeMillis();
+            long start = Metrics.start();
 
-                    Calendar cal = Calendar.getInstance();
-                    SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-
-                    for (int i = 0; i < listSize; i++) {
-                        String latestEpisode = mTvShowEpisodeDatabase.getLatestEpisodeAirdate(mTvShowList.get(i).getId());
-
-                        try {
-                            cal.setTime(sdf.parse(latestEpisode));
-                            cal.add(Calendar.MONTH, 3);
-                            if (cal.getTimeInMillis() < now) {
-                                mTvShowList.remove(i);
-                                i--;
-                                listSize--;
-                            }
-                        } catch (ParseException e) {
-                            mTvShowList.remove(i);
-                            i--;
-                            listSize--;
-                        }
-                    }
-
-                    break;
-                case UNWATCHED:
-                    mTvShowList.addAll(listFromCursor(mTvShowDatabase.getAllShows()));
-
-                    int size = mTvShowList.size();
-
-                    for (int i = 0; i < size; i++) {
-                        if (!mTvShowEpisodeDatabase.hasUnwatchedEpisodes(mTvShowList.get(i).getId())) {
-                            mTvShowList.remove(i);
-                            i--;
-                            size--;
-                        }
-                    }
-
-                    break;
-                case WATCHED:
-                    mTvShowList.addAll(listFromCursor(mTvShowDatabase.getAllShows()));
-
-                    int totalSize = mTvShowList.size();
-
-                    for (int i = 0; i < totalSize; i++) {
-                        if (mTvShowEpisodeDatabase.hasUnwatchedEpisodes(mTvShowList.get(i).getId())) {
-                            mTvShowList.remove(i);
-                            i--;
-                            totalSize--;
-                        }
-                    }
-
-                    break;
-                default:
-                    break;
-            }
+            // Shared by all library sections and only rebuilt when the library has changed
+            mTvShowList.addAll(TvShowLibrarySnapshot.get().getShows(mLibraryType));
+            Metrics.stop("shows.load.snapshot", start);
 
             int totalSize = mTvShowList.size();
+            Set<String> offlineShows = null;
 
             for (TvShowFilter filter : getFilters()) {
                 for (int i = 0; i < totalSize; i++) {
@@ -424,11 +334,11 @@ public class TvShowLoader {
 
                         case TvShowFilter.OFFLINE_FILES:
 
-                            for (Filepath path : paths) {
-                                condition = mTvShowList.get(i).hasOfflineCopy(path);
-                                if (condition)
-                                    break;
-                            }
+                            // Look up all TV shows with offline copies in one go the first time we get here
+                            if (offlineShows == null)
+                                offlineShows = MizuuApplication.getOfflineCopiesAdapter().getShowsWithOfflineCopies();
+
+                            condition = offlineShows.contains(mTvShowList.get(i).getId());
 
                             break;
 
@@ -547,6 +457,8 @@ public class TvShowLoader {
             // Sort
             Collections.sort(mTvShowList, getSortType().getComparator());
 
+            Metrics.stop("shows.load", start);
+
             return null;
         }
 
@@ -566,15 +478,19 @@ public class TvShowLoader {
      */
     public void showGenresFilterDialog(Activity activity) {
         final TreeMap<String, Integer> map = new TreeMap<String, Integer>();
-        String[] splitGenres;
-        for (int i = 0; i < mResults.size(); i++) {
-            if (!mResults.get(i).getGenres().isEmpty()) {
-                splitGenres = mResults.get(i).getGenres().split(",");
-                for (int j = 0; j < splitGenres.length; j++) {
-                    if (map.containsKey(splitGenres[j].trim())) {
-                        map.put(splitGenres[j].trim(), map.get(splitGenres[j].trim()) + 1);
-                    } else {
-                        map.put(splitGenres[j].trim(), 1);
+        if (useFacetCounts()) {
+            map.putAll(getFacetCounts(DbAdapterFacetCounts.FACET_GENRE));
+        } else {
+            String[] splitGenres;
+            for (int i = 0; i < mResults.size(); i++) {
+                if (!mResults.get(i).getGenres().isEmpty()) {
+                    splitGenres = mResults.get(i).getGenres().split(",");
+                    for (int j = 0; j < splitGenres.length; j++) {
+                        if (map.containsKey(splitGenres[j].trim())) {
+                            map.put(splitGenres[j].trim(), map.get(splitGenres[j].trim()) + 1);
+                        } else {
+                            map.put(splitGenres[j].trim(), 1);
+                        }
                     }
                 }
             }
@@ -589,13 +505,17 @@ public class TvShowLoader {
      */
     public void showCertificationsFilterDialog(Activity activity) {
         final TreeMap<String, Integer> map = new TreeMap<String, Integer>();
-        for (int i = 0; i < mResults.size(); i++) {
-            String certification = mResults.get(i).getCertification();
-            if (!TextUtils.isEmpty(certification)) {
-                if (map.containsKey(certification.trim())) {
-                    map.put(certification.trim(), map.get(certification.trim()) + 1);
-                } else {
-                    map.put(certification.trim(), 1);
+        if (useFacetCounts()) {
+            map.putAll(getFacetCounts(DbAdapterFacetCounts.FACET_CERTIFICATION));
+        } else {
+            for (int i = 0; i < mResults.size(); i++) {
+                String certification = mResults.get(i).getCertification();
+                if (!TextUtils.isEmpty(certification)) {
+                    if (map.containsKey(certification.trim())) {
+                        map.put(certification.trim(), map.get(certification.trim()) + 1);
+                    } else {
+                        map.put(certification.trim(), 1);
+                    }
                 }
             }
         }
@@ -609,13 +529,17 @@ public class TvShowLoader {
      */
     public void showReleaseYearFilterDialog(Activity activity) {
         final TreeMap<String, Integer> map = new TreeMap<String, Integer>();
-        for (int i = 0; i < mResults.size(); i++) {
-            String year = mResults.get(i).getReleaseYear().trim();
-            if (!TextUtils.isEmpty(year)) {
-                if (map.containsKey(year)) {
-                    map.put(year, map.get(year) + 1);
-                } else {
-                    map.put(year, 1);
+        if (useFacetCounts()) {
+            map.putAll(getFacetCounts(DbAdapterFacetCounts.FACET_RELEASE_YEAR));
+        } else {
+            for (int i = 0; i < mResults.size(); i++) {
+                String year = mResults.get(i).getReleaseYear().trim();
+                if (!TextUtils.isEmpty(year)) {
+                    if (map.containsKey(year)) {
+                        map.put(year, map.get(year) + 1);
+                    } else {
+                        map.put(year, 1);
+                    }
                 }
             }
         }
@@ -630,19 +554,23 @@ public class TvShowLoader {
     public void showFileSourcesFilterDialog(Activity activity) {
         final TreeMap<String, Integer> map = new TreeMap<String, Integer>();
 
-        for (int i = 0; i < mResults.size(); i++) {
-            ArrayList<Filepath> paths = new ArrayList<>();
-            for (String s : MizuuApplication.getTvShowEpisodeMappingsDbAdapter()
-                    .getFilepathsForShow(mResults.get(i).getId())) {
-                paths.add(new Filepath(s));
-            }
+        if (useFacetCounts()) {
+            map.putAll(getFacetCounts(DbAdapterFacetCounts.FACET_FILE_SOURCE));
+        } else {
+            for (int i = 0; i < mResults.size(); i++) {
+                ArrayList<Filepath> paths = new ArrayList<>();
+                for (String s : MizuuApplication.getTvShowEpisodeMappingsDbAdapter()
+                        .getFilepathsForShow(mResults.get(i).getId())) {
+                    paths.add(new Filepath(s));
+                }
 
-            for (Filepath path : paths) {
-                String type = path.getTypeAsString(activity);
-                if (map.containsKey(type)) {
-                    map.put(type, map.get(type) + 1);
-                } else {
-                    map.put(type, 1);
+                for (Filepath path : paths) {
+                    String type = path.getTypeAsString(activity);
+                    if (map.containsKey(type)) {
+                        map.put(type, map.get(type) + 1);
+                    } else {
+                        map.put(type, 1);
+                    }
                 }
             }
         }
@@ -678,6 +606,32 @@ public class TvShowLoader {
         createAndShowAlertDialog(activity, setupItemArray(map, true), R.string.selectFolder, TvShowFilter.FOLDER);
     }
 
+    /**
+     * The facet counts are maintained by the database for the entire library,
+     * so they can only be used while the entire library is shown unfiltered.
+     * Otherwise the counts are taken from the current results.
+     */
+    private boolean useFacetCounts() {
+        return getType() == TvShowLibraryType.ALL_SHOWS && mFilters.isEmpty() && !mShowingSearchResults;
+    }
+
+    private TreeMap<String, Integer> getFacetCounts(String facet) {
+        TreeMap<String, Integer> counts = MizuuApplication.getFacetCountsAdapter().getCounts(MizLib.TYPE_SHOWS, facet);
+
+        if (facet.equals(DbAdapterFacetCounts.FACET_RELEASE_YEAR)) {
+            Integer unknown = counts.remove("");
+            if (unknown != null)
+                counts.put(mContext.getString(R.string.unknownYear), unknown);
+        } else if (facet.equals(DbAdapterFacetCounts.FACET_FILE_SOURCE)) {
+            TreeMap<String, Integer> types = new TreeMap<String, Integer>();
+            for (Map.Entry<String, Integer> count : counts.entrySet())
+                types.put(Filepath.getTypeAsString(mContext, Integer.parseInt(count.getKey())), count.getValue());
+            counts = types;
+        }
+
+        return counts;
+    }
+
     /**
      * Used to set up an array of items for the alert dialog.
      * @param map
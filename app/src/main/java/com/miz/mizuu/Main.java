@@ -51,8 +51,7 @@ import android.widget.ListView;
 import android.widget.TextView;
 
 import com.miz.base.MizActivity;
-import com.miz.db.DbAdapterMovies;
-import com.miz.db.DbAdapterTvShows;
+import com.miz.db.DbAdapterFacetCounts;
 import com.miz.functions.MenuItem;
 import com.miz.functions.MizLib;
 import com.miz.mizuu.fragments.AccountsFragment;
@@ -79,8 +78,7 @@ public class Main extends MizActivity {
     private DrawerLayout mDrawerLayout;
     protected ListView mDrawerList;
     private ActionBarDrawerToggle mDrawerToggle;
-    private DbAdapterMovies mDbHelper;
-    private DbAdapterTvShows mDbHelperTv;
+    private DbAdapterFacetCounts mDbFacetCounts;
     private ArrayList<MenuItem> mMenuItems = new ArrayList<MenuItem>();
     private Picasso mPicasso;
 
@@ -100,8 +98,7 @@ public class Main extends MizActivity {
         SharedPreferences settings = PreferenceManager.getDefaultSharedPreferences(this);
         mStartup = Integer.valueOf(settings.getString(STARTUP_SELECTION, "1"));
 
-        mDbHelper = MizuuApplication.getMovieAdapter();
-        mDbHelperTv = MizuuApplication.getTvDbAdapter();
+        mDbFacetCounts = MizuuApplication.getFacetCountsAdapter();
 
         mTfMedium = TypefaceUtils.getRobotoMedium(getApplicationContext());
         mTfRegular = TypefaceUtils.getRoboto(getApplicationContext());
@@ -257,23 +254,12 @@ public class Main extends MizActivity {
     }
 
     private void updateLibraryCounts() {
-        new Thread() {
-            @Override
-            public void run() {
-                try {
-                    mNumMovies = mDbHelper.count();
-                    mNumShows = mDbHelperTv.count();
-
-                    runOnUiThread(new Runnable() {
-                        @Override
-                        public void run() {
-                            setupMenuItems();
-                            ((BaseAdapter) mDrawerList.getAdapter()).notifyDataSetChanged();
-                        }
-                    });
-                } catch (Exception e) {}
-            }
-        }.start();
+        // The counts are maintained by the database, so reading them is cheap
+        mNumMovies = mDbFacetCounts.getLibraryCount(MizLib.TYPE_MOVIE);
+        mNumShows = mDbFacetCounts.getLibraryCount(MizLib.TYPE_SHOWS);
+
+        setupMenuItems();
+        ((BaseAdapter) mDrawerList.getAdapter()).notifyDataSetChanged();
     }
 
     @Override
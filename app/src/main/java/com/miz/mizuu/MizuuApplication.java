@@ -21,23 +21,42 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Typeface;
 import android.preference.PreferenceManager;
-import android.support.v7.graphics.Palette;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.miz.abstractclasses.MovieApiService;
 import com.miz.abstractclasses.TvShowApiService;
 import com.miz.apis.tmdb.TMDbMovieService;
 import com.miz.apis.tmdb.TMDbTvShowService;
+import com.miz.db.DbAdapterActors;
 import com.miz.db.DbAdapterCollections;
+import com.miz.db.DbAdapterFacetCounts;
+import com.miz.db.DbAdapterLibraryVersion;
 import com.miz.db.DbAdapterMovieMappings;
 import com.miz.db.DbAdapterMovies;
+import com.miz.db.DbAdapterOfflineCopies;
+import com.miz.db.DbAdapterSeasonCovers;
 import com.miz.db.DbAdapterSources;
+import com.miz.db.DbAdapterSwatches;
 import com.miz.db.DbAdapterTvShowEpisodeMappings;
 import com.miz.db.DbAdapterTvShowEpisodes;
 import com.miz.db.DbAdapterTvShows;
+import com.miz.functions.ActorCache;
+import com.miz.functions.AvailabilityProber;
+import com.miz.functions.BackdropLoader;
+import com.miz.functions.BlurredImageCache;
+import com.miz.functions.ImageDownloader;
+import com.miz.functions.Metrics;
+import com.miz.functions.PaletteCache;
+import com.miz.functions.SmbDirectoryCache;
+import com.miz.functions.SmbSessionManager;
+import com.miz.functions.UpnpAvailabilityChecker;
+import com.miz.functions.UpnpDeviceCache;
+import com.miz.functions.UpnpDeviceResolver;
+import com.miz.utils.FileUtils;
 import com.squareup.okhttp.Cache;
 import com.squareup.okhttp.OkHttpClient;
 import com.squareup.otto.Bus;
+import com.squareup.picasso.LruCache;
 import com.squareup.picasso.Picasso;
 import com.squareup.picasso.PicassoTools;
 
@@ -45,6 +64,7 @@ import java.io.File;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 import static com.miz.functions.PreferenceKeys.LANGUAGE_PREFERENCE;
 
@@ -57,10 +77,23 @@ public class MizuuApplication extends Application {
 	private static DbAdapterMovies sDbMovies;
 	private static DbAdapterMovieMappings sDbMovieMapping;
 	private static DbAdapterCollections sDbCollections;
-	private static HashMap<String, String[]> sMap = new HashMap<String, String[]>();
-	private static Picasso sPicasso;
+	private static DbAdapterActors sDbActors;
+	private static DbAdapterOfflineCopies sDbOfflineCopies;
+	private static DbAdapterSwatches sDbSwatches;
+	private static DbAdapterLibraryVersion sDbLibraryVersion;
+	private static DbAdapterFacetCounts sDbFacetCounts;
+	private static DbAdapterSeasonCovers sDbSeasonCovers;
+	private static ActorCache sActorCache = new ActorCache();
+	private static SmbDirectoryCache sSmbDirectoryCache = new SmbDirectoryCache();
+	private static SmbSessionManager sSmbSessionManager = new SmbSessionManager();
+	private static UpnpAvailabilityChecker sUpnpAvailabilityChecker = new UpnpAvailabilityChecker(createUpnpHttpClient());
+	private static AvailabilityProber sAvailabilityProber = new AvailabilityProber(sSmbSessionManager, sUpnpAvailabilityChecker);
+	private static Picasso sPicasso, sBackdropPicasso;
 	private static HashMap<String, Typeface> sTypefaces = new HashMap<String, Typeface>();
-	private static HashMap<String, Palette> sPalettes = new HashMap<String, Palette>();
+	private static PaletteCache sPaletteCache = new PaletteCache();
+	private static BlurredImageCache sBlurredImageCache;
+	private static ImageDownloader sImageDownloader;
+	private static UpnpDeviceResolver sUpnpDeviceResolver;
 	private static Bus sBus;
 	private static File sBaseAppFolder, sMovieThumbFolder, sMovieBackdropFolder, sTvShowThumbFolder, sTvShowBackdropFolder, sTvShowEpisodeFolder, sTvShowSeasonFolder, sAvailableOfflineFolder, sCacheFolder;
 	private static Context mInstance;
@@ -75,6 +108,9 @@ public class MizuuApplication extends Application {
 
 		jcifs.Config.setProperty("jcifs.smb.client.disablePlainTextPasswords", "false");
 
+		// Record performance metrics in debug builds
+		Metrics.setEnabled(BuildConfig.DEBUG);
+
 		// Initialize the preferences
 		initializePreferences();
 
@@ -86,6 +122,12 @@ public class MizuuApplication extends Application {
 		sDbTvShowEpisodeMappings = new DbAdapterTvShowEpisodeMappings(this);
 		sDbSources = new DbAdapterSources(this);
 		sDbCollections = new DbAdapterCollections(this);
+		sDbActors = new DbAdapterActors(this);
+		sDbOfflineCopies = new DbAdapterOfflineCopies(this);
+		sDbSwatches = new DbAdapterSwatches(this);
+		sDbLibraryVersion = new DbAdapterLibraryVersion(this);
+		sDbFacetCounts = new DbAdapterFacetCounts(this);
+		sDbSeasonCovers = new DbAdapterSeasonCovers(this);
 
 		getMovieThumbFolder(this);
 		getMovieBackdropFolder(this);
@@ -95,6 +137,14 @@ public class MizuuApplication extends Application {
 		getTvShowSeasonFolder(this);
 		getAvailableOfflineFolder(this);
 
+		// Bring the offline copy registry in sync with the offline folder
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				FileUtils.reconcileOfflineCopies(getContext());
+			}
+		}).start();
+
 		transitionLocalizationPreference();
 	}
 
@@ -108,6 +158,12 @@ public class MizuuApplication extends Application {
 		sDbMovies.close();
 		sDbMovieMapping.close();
 		sDbCollections.close();
+		sDbActors.close();
+		sDbOfflineCopies.close();
+		sDbSwatches.close();
+		sDbLibraryVersion.close();
+		sDbFacetCounts.close();
+		sDbSeasonCovers.close();
 	}
 
 	public static Context getContext() {
@@ -164,13 +220,88 @@ public class MizuuApplication extends Application {
 		return sDbCollections;
 	}
 
-	public static String[] getCifsFilesList(String parentPath) {
-		return sMap.get(parentPath);
+	public static DbAdapterActors getActorAdapter() {
+		return sDbActors;
+	}
+
+	public static DbAdapterOfflineCopies getOfflineCopiesAdapter() {
+		return sDbOfflineCopies;
+	}
+
+	public static DbAdapterSwatches getSwatchesAdapter() {
+		return sDbSwatches;
+	}
+
+	public static DbAdapterLibraryVersion getLibraryVersionAdapter() {
+		return sDbLibraryVersion;
+	}
+
+	public static DbAdapterFacetCounts getFacetCountsAdapter() {
+		return sDbFacetCounts;
+	}
+
+	public static DbAdapterSeasonCovers getSeasonCoversAdapter() {
+		return sDbSeasonCovers;
+	}
+
+	/**
+	 * Cache of actors and cast, backed by the database.
+	 * @return
+	 */
+	public static ActorCache getActorCache() {
+		return sActorCache;
+	}
+
+	/**
+	 * Shared, size-bounded cache of SMB directory listings.
+	 * @return
+	 */
+	public static SmbDirectoryCache getSmbDirectoryCache() {
+		return sSmbDirectoryCache;
+	}
+
+	/**
+	 * Pre-authenticated SMB sessions for all network file sources.
+	 * @return
+	 */
+	public static SmbSessionManager getSmbSessionManager() {
+		return sSmbSessionManager;
+	}
+
+	/**
+	 * Concurrent, short-lived cache backed availability checks for files.
+	 * @return
+	 */
+	public static AvailabilityProber getAvailabilityProber() {
+		return sAvailabilityProber;
+	}
+
+	/**
+	 * Availability checks for files on UPnP media servers.
+	 * @return
+	 */
+	public static UpnpAvailabilityChecker getUpnpAvailabilityChecker() {
+		return sUpnpAvailabilityChecker;
+	}
+
+	/**
+	 * Resolves media servers from their last known location before searching for them.
+	 * @return
+	 */
+	public static synchronized UpnpDeviceResolver getUpnpDeviceResolver() {
+		if (sUpnpDeviceResolver == null)
+			sUpnpDeviceResolver = new UpnpDeviceResolver(new UpnpDeviceCache(new File(getCacheFolder(getContext()), "upnp_devices")));
+		return sUpnpDeviceResolver;
 	}
 
-	public static void putCifsFilesList(String parentPath, String[] list) {
-		if (!sMap.containsKey(parentPath))
-			sMap.put(parentPath, list);
+	/**
+	 * Media servers are on the local network, so they either respond quickly or not at all.
+	 */
+	private static OkHttpClient createUpnpHttpClient() {
+		OkHttpClient client = new OkHttpClient();
+		client.setConnectTimeout(5, TimeUnit.SECONDS);
+		client.setReadTimeout(10, TimeUnit.SECONDS);
+		return client;
 	}
 
 	public static Picasso getPicasso(Context context) {
@@ -179,6 +310,19 @@ public class MizuuApplication extends Application {
 		return sPicasso;
 	}
 
+	/**
+	 * Picasso instance for backdrops with a memory cache of its own.
+	 * Use {@link BackdropLoader} rather than this directly.
+	 * @return
+	 */
+	public static synchronized Picasso getBackdropPicasso(Context context) {
+		if (sBackdropPicasso == null)
+			sBackdropPicasso = new Picasso.Builder(context.getApplicationContext())
+					.memoryCache(new LruCache(BackdropLoader.getMemoryCacheSize()))
+					.build();
+		return sBackdropPicasso;
+	}
+
 	public static Bitmap.Config getBitmapConfig() {
 		return Bitmap.Config.RGB_565;
 	}
@@ -189,12 +333,32 @@ public class MizuuApplication extends Application {
 		return sTypefaces.get(key);
 	}
 
-	public static Palette getPalette(String key) {
-		return sPalettes.get(key);
+	/**
+	 * Swatch colours of images, backed by the database.
+	 * @return
+	 */
+	public static PaletteCache getPaletteCache() {
+		return sPaletteCache;
+	}
+
+	/**
+	 * Disk cache of blurred images.
+	 * @return
+	 */
+	public static synchronized BlurredImageCache getBlurredImageCache(Context context) {
+		if (sBlurredImageCache == null)
+			sBlurredImageCache = new BlurredImageCache(new File(getCacheFolder(context), "blurred"));
+		return sBlurredImageCache;
 	}
 
-	public static void addToPaletteCache(String key, Palette palette) {
-		sPalettes.put(key, palette);
+	/**
+	 * Downloader used for covers, backdrops and other images, backed by the shared HTTP client.
+	 * @return
+	 */
+	public static synchronized ImageDownloader getImageDownloader() {
+		if (sImageDownloader == null)
+			sImageDownloader = new ImageDownloader(getOkHttpClient(), new File(getCacheFolder(getContext()), "image_validators"));
+		return sImageDownloader;
 	}
 
 	public static void setupTheme(Context context) {
@@ -307,6 +471,13 @@ public class MizuuApplication extends Application {
 		return sCacheFolder;
 	}
 
+	/**
+	 * Performance metrics are appended to this file after each library update.
+	 */
+	public static File getMetricsFile(Context c) {
+		return new File(getCacheFolder(c), "metrics.txt");
+	}
+
 	public static TvShowApiService getTvShowService(Context context) {
 		return TMDbTvShowService.getInstance(context);
 	}
@@ -347,5 +518,6 @@ public class MizuuApplication extends Application {
 
 	public static void clearPicassoCache(Context context) {
 		PicassoTools.clearCache(getPicasso(context));
+		PicassoTools.clearCache(getBackdropPicasso(context));
 	}
 }
\ No newline at end of file
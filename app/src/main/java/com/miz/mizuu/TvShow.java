@@ -228,7 +228,7 @@ public class TvShow implements Comparable<TvShow> {
 	}
 
     public boolean hasOfflineCopy(Filepath path) {
-        return getOfflineCopyFile(path).exists();
+        return FileUtils.hasOfflineCopy(mContext, path);
     }
 
     public File getOfflineCopyFile(Filepath path) {
@@ -168,7 +168,7 @@ public class TvShowEpisode implements Comparable<TvShowEpisode> {
 	}
 
 	public boolean hasOfflineCopy(Filepath path) {
-		return getOfflineCopyFile(path).exists();
+		return FileUtils.hasOfflineCopy(mContext, path);
 	}
 
 	public String getOfflineCopyUri(Filepath path) {
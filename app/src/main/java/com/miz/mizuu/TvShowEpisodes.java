@@ -37,7 +37,6 @@ import com.miz.mizuu.fragments.TvShowEpisodesFragment;
 import com.miz.utils.FileUtils;
 import com.miz.utils.ViewUtils;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -147,11 +146,9 @@ public class TvShowEpisodes extends MizActivity {
 		protected Void doInBackground(Void... params) {
 			HashMap<String, EpisodeCounter> seasons = MizuuApplication.getTvEpisodeDbAdapter().getSeasons(mShowId);
 
-			File temp;
 			for (String key : seasons.keySet()) {
-				temp = FileUtils.getTvShowSeason(mContext, mShowId, key);				
 				mItems.add(new GridSeason(mContext, mShowId, Integer.valueOf(key), seasons.get(key).getEpisodeCount(), seasons.get(key).getWatchedCount(),
-						temp.exists() ? temp :
+						seasons.get(key).hasCover() ? FileUtils.getTvShowSeason(mContext, mShowId, key) :
 							FileUtils.getTvShowThumb(mContext, mShowId)));
 			}
 
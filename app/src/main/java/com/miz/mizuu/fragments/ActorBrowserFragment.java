@@ -35,9 +35,9 @@ import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
-import com.miz.abstractclasses.MovieApiService;
 import com.miz.functions.Actor;
 import com.miz.functions.CoverItem;
+import com.miz.functions.MizLib;
 import com.miz.mizuu.MizuuApplication;
 import com.miz.mizuu.R;
 import com.miz.utils.IntentUtils;
@@ -231,8 +231,7 @@ public class ActorBrowserFragment extends Fragment {
 
 		@Override
 		protected Void doInBackground(Void... params) {
-			MovieApiService service = MizuuApplication.getMovieService(mContext);
-			mActors = new ArrayList<Actor>(service.getActors(mMovieId));
+			mActors = new ArrayList<Actor>(MizuuApplication.getActorCache().getCast(mMovieId, MizLib.TYPE_MOVIE));
 
 			return null;
 		}
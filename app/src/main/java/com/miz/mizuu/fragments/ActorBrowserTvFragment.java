@@ -35,9 +35,9 @@ import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
-import com.miz.apis.tmdb.TMDbTvShowService;
 import com.miz.functions.Actor;
 import com.miz.functions.CoverItem;
+import com.miz.functions.MizLib;
 import com.miz.mizuu.MizuuApplication;
 import com.miz.mizuu.R;
 import com.miz.utils.IntentUtils;
@@ -230,8 +230,7 @@ public class ActorBrowserTvFragment extends Fragment {
 		@Override
 		protected String doInBackground(String... params) {
 			try {
-				TMDbTvShowService service = TMDbTvShowService.getInstance(mContext);
-				mActors = service.getActors(mId);
+				mActors = MizuuApplication.getActorCache().getCast(mId, MizLib.TYPE_SHOWS);
 				
 				mLoaded = true;
 			} catch (Exception e) {} // If the fragment is no longer attached to the Activity
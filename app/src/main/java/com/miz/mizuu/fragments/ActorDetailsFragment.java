@@ -35,9 +35,7 @@ import android.widget.ImageView;
 import android.widget.ScrollView;
 import android.widget.TextView;
 
-import com.miz.apis.tmdb.TMDbMovieService;
 import com.miz.base.MizActivity;
-import com.miz.functions.BlurTransformation;
 import com.miz.functions.CompleteActor;
 import com.miz.functions.MizLib;
 import com.miz.functions.PaletteLoader;
@@ -352,7 +350,7 @@ public class ActorDetailsFragment extends Fragment {
 
         if (!MizLib.isPortrait(mContext)) {
             String backdropImage = mActor.getBackdropImage();
-            mPicasso.load(backdropImage).placeholder(R.drawable.bg).error(R.drawable.bg).transform(new BlurTransformation(mContext, backdropImage, 2)).into(mBackdrop);
+            MizuuApplication.getBlurredImageCache(mContext).load(mContext, mPicasso, backdropImage, 2).placeholder(R.drawable.bg).error(R.drawable.bg).into(mBackdrop);
             mBackdrop.setColorFilter(Color.parseColor("#88181818"), android.graphics.PorterDuff.Mode.SRC_OVER);
         }
     }
@@ -375,8 +373,7 @@ public class ActorDetailsFragment extends Fragment {
         protected Void doInBackground(Void... params) {
 
             // Load the actor details
-            TMDbMovieService service = TMDbMovieService.getInstance(mContext);
-            mActor = service.getCompleteActorDetails(mActorId);
+            mActor = MizuuApplication.getActorCache().getCompleteActor(mActorId);
 
             for (int i = 0; i < mActor.getMovies().size(); i++) {
                 String id = mActor.getMovies().get(i).getId();
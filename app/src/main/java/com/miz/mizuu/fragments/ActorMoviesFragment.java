@@ -39,7 +39,6 @@ import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
-import com.miz.apis.tmdb.TMDbMovieService;
 import com.miz.functions.CompleteActor;
 import com.miz.functions.CoverItem;
 import com.miz.functions.MizLib;
@@ -259,7 +258,7 @@ public class ActorMoviesFragment extends Fragment {
 
 		@Override
 		protected Void doInBackground(Void... params) {
-			mActor = TMDbMovieService.getInstance(mContext).getCompleteActorDetails(mActorId);
+			mActor = MizuuApplication.getActorCache().getCompleteActor(mActorId);
 
 			for (int i = 0; i < mActor.getMovies().size(); i++) {
 				String id = mActor.getMovies().get(i).getId();
@@ -32,7 +32,6 @@ import android.widget.GridView;
 import android.widget.ImageView;
 import android.widget.ProgressBar;
 
-import com.miz.apis.tmdb.TMDbMovieService;
 import com.miz.functions.CompleteActor;
 import com.miz.functions.CoverItem;
 import com.miz.mizuu.MizuuApplication;
@@ -190,7 +189,7 @@ public class ActorPhotosFragment extends Fragment {
 
 		@Override
 		protected Void doInBackground(Void... params) {
-			mActor = TMDbMovieService.getInstance(mContext).getCompleteActorDetails(mActorId);
+			mActor = MizuuApplication.getActorCache().getCompleteActor(mActorId);
 
 			return null;
 		}
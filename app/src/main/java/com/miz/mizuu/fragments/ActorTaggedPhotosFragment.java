@@ -31,7 +31,6 @@ import android.widget.GridView;
 import android.widget.ImageView;
 import android.widget.ProgressBar;
 
-import com.miz.apis.tmdb.TMDbMovieService;
 import com.miz.functions.CompleteActor;
 import com.miz.functions.CoverItem;
 import com.miz.mizuu.MizuuApplication;
@@ -173,7 +172,7 @@ public class ActorTaggedPhotosFragment extends Fragment {
 
 		@Override
 		protected Void doInBackground(Void... params) {
-			mActor = TMDbMovieService.getInstance(mContext).getCompleteActorDetails(mActorId);
+			mActor = MizuuApplication.getActorCache().getCompleteActor(mActorId);
 
 			return null;
 		}
@@ -36,14 +36,15 @@ import android.widget.ProgressBar;
 
 import com.miz.abstractclasses.TvShowApiService;
 import com.miz.apis.tmdb.TMDbTvShowService;
-import com.miz.functions.AsyncTask;
 import com.miz.functions.CoverItem;
+import com.miz.functions.RemoteSearch;
 import com.miz.mizuu.MizuuApplication;
 import com.miz.mizuu.R;
 import com.miz.service.DownloadImageService;
 import com.squareup.picasso.Picasso;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class CoverSearchFragmentTv extends Fragment {
 
@@ -53,6 +54,7 @@ public class CoverSearchFragmentTv extends Fragment {
 	private GridView mGridView = null;
 	private String mShowId;
 	private ProgressBar mProgressBar;
+	private RemoteSearch<String> mCoverSearch;
 	private Picasso mPicasso;
 	private Config mConfig;
 
@@ -84,7 +86,42 @@ public class CoverSearchFragmentTv extends Fragment {
 		mPicasso = MizuuApplication.getPicasso(getActivity());
 		mConfig = MizuuApplication.getBitmapConfig();
 
-		new GetCoverImages().execute(mShowId);
+		final Context context = getActivity().getApplicationContext();
+		mCoverSearch = new RemoteSearch<String>(new RemoteSearch.Searcher<String>() {
+			@Override
+			public String getCacheKey(String showId) {
+				return "tvshow_covers|" + showId;
+			}
+
+			@Override
+			public List<String> search(String showId) {
+				TvShowApiService service = TMDbTvShowService.getInstance(context);
+				return service.getCovers(showId);
+			}
+		}, new RemoteSearch.Callback<String>() {
+			@Override
+			public void onSearchStarted(String showId) {}
+
+			@Override
+			public void onSearchFinished(String showId, List<String> results) {
+				mImages.clear();
+				mImages.addAll(results);
+
+				if (isAdded() && mAdapter != null) {
+					mProgressBar.setVisibility(View.GONE);
+					mAdapter.notifyDataSetChanged();
+				}
+			}
+		});
+		mCoverSearch.searchNow(mShowId);
+	}
+
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+
+		// Cancel the request if it's still running
+		mCoverSearch.cancel();
 	}
 
 	@Override
@@ -193,26 +230,6 @@ public class CoverSearchFragmentTv extends Fragment {
 		}
 	}
 
-	protected class GetCoverImages extends AsyncTask<String, String, String> {
-		@Override
-		protected String doInBackground(String... params) {
-			String id = params[0];
-
-			TvShowApiService service = TMDbTvShowService.getInstance(getActivity());
-			mImages.addAll(service.getCovers(id));
-
-			return null;
-		}
-
-		@Override
-		protected void onPostExecute(String result) {
-			if (isAdded()) {
-				mProgressBar.setVisibility(View.GONE);
-				mAdapter.notifyDataSetChanged();
-			}
-		}
-	}
-
 	@Override
 	public boolean onOptionsItemSelected(MenuItem item) {
 		if (item.getItemId() == android.R.id.home) {
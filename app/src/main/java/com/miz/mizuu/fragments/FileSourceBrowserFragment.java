@@ -284,12 +284,11 @@ public class FileSourceBrowserFragment extends Fragment {
 			mBrowser = new BrowserFile(Environment.getExternalStorageDirectory());
 			break;
 		case FileSource.SMB:
-			mBrowser = new BrowserSmb(new SmbFile(MizLib.createSmbLoginString(
-					getArguments().getString(DOMAIN),
-					getArguments().getString(USER),
-					getArguments().getString(PASSWORD),
-					getArguments().getString(SERVER),
-					true)));
+			mBrowser = new BrowserSmb(new SmbFile(MizLib.createSmbLoginString("", "", "", getArguments().getString(SERVER), true),
+					MizuuApplication.getSmbSessionManager().getAuthentication(
+							getArguments().getString(DOMAIN),
+							getArguments().getString(USER),
+							getArguments().getString(PASSWORD))));
 			break;
 		case FileSource.UPNP:
 			if (mBrowser == null)
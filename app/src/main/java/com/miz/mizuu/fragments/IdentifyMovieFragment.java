@@ -53,8 +53,8 @@ import android.widget.Toast;
 import com.miz.abstractclasses.MovieApiService;
 import com.miz.apis.tmdb.Movie;
 import com.miz.base.MizActivity;
-import com.miz.functions.AsyncTask;
 import com.miz.functions.MizLib;
+import com.miz.functions.RemoteSearch;
 import com.miz.identification.MovieStructure;
 import com.miz.mizuu.Main;
 import com.miz.mizuu.MizuuApplication;
@@ -83,7 +83,7 @@ public class IdentifyMovieFragment extends Fragment {
     private String mFilepath, mLocale, mCurrentMovieId;
     private ListAdapter mAdapter;
     private LanguageAdapter mSpinnerAdapter;
-    private MovieSearch mMovieSearch;
+    private RemoteSearch<Movie> mMovieSearch;
     private MovieStructure mMovieStructure;
     private Toolbar mToolbar;
 
@@ -119,6 +119,40 @@ public class IdentifyMovieFragment extends Fragment {
         mConfig = MizuuApplication.getBitmapConfig();
 
         mAdapter = new ListAdapter(getActivity());
+
+        final Context context = getActivity().getApplicationContext();
+        mMovieSearch = new RemoteSearch<Movie>(new RemoteSearch.Searcher<Movie>() {
+            @Override
+            public String getCacheKey(String query) {
+                return "movie|" + getSelectedLanguage() + "|" + query;
+            }
+
+            @Override
+            public List<Movie> search(String query) {
+                MovieApiService service = MizuuApplication.getMovieService(context);
+                return service.search(query, getSelectedLanguage());
+            }
+        }, new RemoteSearch.Callback<Movie>() {
+            @Override
+            public void onSearchStarted(String query) {
+                if (isAdded())
+                    showProgressBar();
+            }
+
+            @Override
+            public void onSearchFinished(String query, List<Movie> results) {
+                if (isAdded())
+                    showResults(results);
+            }
+        });
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+
+        // Cancel any pending or running search
+        mMovieSearch.cancel();
     }
 
     @Override
@@ -158,7 +192,7 @@ public class IdentifyMovieFragment extends Fragment {
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
                 mLocale = mSpinnerAdapter.getItem(position).getLanguage();
-                searchForMovies();
+                searchForMovies(true);
             }
 
             @Override
@@ -181,11 +215,12 @@ public class IdentifyMovieFragment extends Fragment {
             @Override
             public void afterTextChanged(Editable s) {
                 if (s.toString().length() > 0)
-                    searchForMovies();
+                    searchForMovies(false);
                 else {
-                    mMovieSearch.cancel(true);
+                    mMovieSearch.cancel();
                     mAdapter.clearItems();
                     mAdapter.notifyDataSetChanged();
+                    hideProgressBar();
                 }
             }
         });
@@ -193,25 +228,24 @@ public class IdentifyMovieFragment extends Fragment {
             @Override
             public boolean onEditorAction(TextView v, int actionId, KeyEvent event) {
                 if (actionId == EditorInfo.IME_NULL && event.getAction() == KeyEvent.ACTION_DOWN || actionId == EditorInfo.IME_ACTION_SEARCH)
-                    searchForMovies();
+                    searchForMovies(true);
                 return true;
             }
         });
-
-        if (mMovieSearch == null) {
-            if (MizLib.isOnline(getActivity())) {
-                mMovieSearch = new MovieSearch(getActivity(), mQuery.getText().toString());
-            } else {
-                Toast.makeText(getActivity(), getString(R.string.noInternet), Toast.LENGTH_SHORT).show();
-            }
-        }
     }
 
-    private void searchForMovies() {
+    /**
+     * Searches for the current query.
+     * @param immediately False to wait until the user has stopped typing
+     */
+    private void searchForMovies(boolean immediately) {
         if (MizLib.isOnline(getActivity())) {
-            if (!mQuery.getText().toString().isEmpty()) {
-                mMovieSearch.cancel(true);
-                mMovieSearch = new MovieSearch(getActivity(), mQuery.getText().toString());
+            String query = mQuery.getText().toString();
+            if (!query.isEmpty()) {
+                if (immediately)
+                    mMovieSearch.searchNow(query);
+                else
+                    mMovieSearch.search(query);
             } else {
                 mAdapter.notifyDataSetChanged();
             }
@@ -248,71 +282,31 @@ public class IdentifyMovieFragment extends Fragment {
         return mLocale;
     }
 
-    protected class MovieSearch extends AsyncTask<Void, Boolean, Boolean> {
-
-        private final Context mContext;
-        private final String mQueryText;
-        private ArrayList<Result> mResults = new ArrayList<Result>();
-
-        public MovieSearch(Context context, String query) {
-            mContext = context;
-            mQueryText = query;
-
-            // Execute the AsyncTask
-            execute();
-        }
-
-        @Override
-        protected void onPreExecute() {
-            showProgressBar();
-        }
-
-        @Override
-        protected Boolean doInBackground(Void... params) {
-            try {
-                if (isCancelled())
-                    return false;
-
-                MovieApiService service = MizuuApplication.getMovieService(mContext);
-                List<Movie> movieResults = service.search(mQueryText, getSelectedLanguage());
-
-                if (isCancelled())
-                    return false;
-
-                int count = movieResults.size();
-                for (int i = 0; i < count; i++) {
-                    mResults.add(new Result(
-                                    movieResults.get(i).getTitle(),
-                                    movieResults.get(i).getOriginalTitle(),
-                                    movieResults.get(i).getId(),
-                                    movieResults.get(i).getCover(),
-                                    movieResults.get(i).getRating(),
-                                    movieResults.get(i).getReleasedate())
-                    );
-                }
-
-                return !isCancelled();
-            } catch (Exception e) {}
-
-            return false;
-        }
+    private void showResults(List<Movie> movieResults) {
+        hideProgressBar();
+
+        if (mQuery.getText().toString().length() > 0) {
+            ArrayList<Result> results = new ArrayList<Result>();
+
+            int count = movieResults.size();
+            for (int i = 0; i < count; i++) {
+                results.add(new Result(
+                                movieResults.get(i).getTitle(),
+                                movieResults.get(i).getOriginalTitle(),
+                                movieResults.get(i).getId(),
+                                movieResults.get(i).getCover(),
+                                movieResults.get(i).getRating(),
+                                movieResults.get(i).getReleasedate())
+                );
+            }
 
-        @Override
-        protected void onPostExecute(Boolean result) {
-            if (!result)
-                return;
-
-            hideProgressBar();
-
-            if (mQuery.getText().toString().length() > 0) {
-                if (mListView.getAdapter() == null) {
-                    mAdapter = new ListAdapter(mContext);
-                    mAdapter.setList(mResults);
-                    mListView.setAdapter(mAdapter);
-                } else {
-                    mAdapter.setList(mResults);
-                    mAdapter.notifyDataSetChanged();
-                }
+            if (mListView.getAdapter() == null) {
+                mAdapter = new ListAdapter(getActivity());
+                mAdapter.setList(results);
+                mListView.setAdapter(mAdapter);
+            } else {
+                mAdapter.setList(results);
+                mAdapter.notifyDataSetChanged();
             }
         }
     }
@@ -55,8 +55,8 @@ import android.widget.Toast;
 import com.miz.abstractclasses.ApiService;
 import com.miz.apis.thetvdb.TvShow;
 import com.miz.base.MizActivity;
-import com.miz.functions.AsyncTask;
 import com.miz.functions.MizLib;
+import com.miz.functions.RemoteSearch;
 import com.miz.mizuu.MizuuApplication;
 import com.miz.mizuu.R;
 import com.miz.service.IdentifyTvShowService;
@@ -83,7 +83,7 @@ public class IdentifyTvShowFragment extends Fragment {
     private String mShowId, mShowTitle, mLocale;
     private ListAdapter mAdapter;
     private LanguageAdapter mSpinnerAdapter;
-    private TvShowSearch mTvShowSearch;
+    private RemoteSearch<TvShow> mTvShowSearch;
     private Toolbar mToolbar;
 
     /**
@@ -116,6 +116,40 @@ public class IdentifyTvShowFragment extends Fragment {
         mConfig = MizuuApplication.getBitmapConfig();
 
         mAdapter = new ListAdapter(getActivity());
+
+        final Context context = getActivity().getApplicationContext();
+        mTvShowSearch = new RemoteSearch<TvShow>(new RemoteSearch.Searcher<TvShow>() {
+            @Override
+            public String getCacheKey(String query) {
+                return "tvshow|" + getSelectedLanguage() + "|" + query;
+            }
+
+            @Override
+            public List<TvShow> search(String query) {
+                ApiService<TvShow> service = MizuuApplication.getTvShowService(context);
+                return service.search(query, getSelectedLanguage());
+            }
+        }, new RemoteSearch.Callback<TvShow>() {
+            @Override
+            public void onSearchStarted(String query) {
+                if (isAdded())
+                    showProgressBar();
+            }
+
+            @Override
+            public void onSearchFinished(String query, List<TvShow> results) {
+                if (isAdded())
+                    showResults(results);
+            }
+        });
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+
+        // Cancel any pending or running search
+        mTvShowSearch.cancel();
     }
 
     @Override
@@ -155,7 +189,7 @@ public class IdentifyTvShowFragment extends Fragment {
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
                 mLocale = mSpinnerAdapter.getItem(position).getLanguage();
-                searchForShows();
+                searchForShows(true);
             }
 
             @Override
@@ -178,11 +212,12 @@ public class IdentifyTvShowFragment extends Fragment {
             @Override
             public void afterTextChanged(Editable s) {
                 if (s.toString().length() > 0)
-                    searchForShows();
+                    searchForShows(false);
                 else {
-                    mTvShowSearch.cancel(true);
+                    mTvShowSearch.cancel();
                     mAdapter.clearItems();
                     mAdapter.notifyDataSetChanged();
+                    hideProgressBar();
                 }
             }
         });
@@ -190,25 +225,24 @@ public class IdentifyTvShowFragment extends Fragment {
             @Override
             public boolean onEditorAction(TextView v, int actionId, KeyEvent event) {
                 if (actionId == EditorInfo.IME_NULL && event.getAction() == KeyEvent.ACTION_DOWN || actionId == EditorInfo.IME_ACTION_SEARCH)
-                    searchForShows();
+                    searchForShows(true);
                 return true;
             }
         });
-
-        if (mTvShowSearch == null) {
-            if (MizLib.isOnline(getActivity())) {
-                mTvShowSearch = new TvShowSearch(getActivity(), mQuery.getText().toString());
-            } else {
-                Toast.makeText(getActivity(), getString(R.string.noInternet), Toast.LENGTH_SHORT).show();
-            }
-        }
     }
 
-    private void searchForShows() {
+    /**
+     * Searches for the current query.
+     * @param immediately False to wait until the user has stopped typing
+     */
+    private void searchForShows(boolean immediately) {
         if (MizLib.isOnline(getActivity())) {
-            if (!mQuery.getText().toString().isEmpty()) {
-                mTvShowSearch.cancel(true);
-                mTvShowSearch = new TvShowSearch(getActivity(), mQuery.getText().toString());
+            String query = mQuery.getText().toString();
+            if (!query.isEmpty()) {
+                if (immediately)
+                    mTvShowSearch.searchNow(query);
+                else
+                    mTvShowSearch.search(query);
             } else {
                 mAdapter.notifyDataSetChanged();
             }
@@ -240,80 +274,39 @@ public class IdentifyTvShowFragment extends Fragment {
         return mLocale;
     }
 
-    protected class TvShowSearch extends AsyncTask<Void, Boolean, Boolean> {
-
-        private final Context mContext;
-        private final String mQueryText;
-        private ArrayList<Result> mResults = new ArrayList<Result>();
-
-        public TvShowSearch(Context context, String query) {
-            mContext = context;
-            mQueryText = query;
-
-            // Execute the AsyncTask
-            execute();
-        }
-
-        @Override
-        protected void onPreExecute() {
-            showProgressBar();
-        }
-
-        @Override
-        protected Boolean doInBackground(Void... params) {
-            try {
-                if (isCancelled())
-                    return false;
-
-                ApiService<TvShow> service = MizuuApplication.getTvShowService(mContext);
-                List<TvShow> results = service.search(mQueryText, getSelectedLanguage());
-
-                if (isCancelled())
-                    return false;
-
-                // TheTVDb always includes the English entry for a show,
-                // so this can result in duplicates. We don't want that.
-                HashSet<String> addedIds = new HashSet<String>();
-
-                int count = results.size();
-                for (int i = 0; i < count; i++) {
-                    if (!addedIds.contains(results.get(i).getId())) {
-                        mResults.add(new Result(
-                                        results.get(i).getTitle(),
-                                        results.get(i).getOriginalTitle(),
-                                        results.get(i).getId(),
-                                        results.get(i).getCoverUrl(),
-                                        results.get(i).getDescription(),
-                                        results.get(i).getFirstAired(),
-                                        results.get(i).getRating())
-                        );
-                        addedIds.add(results.get(i).getId());
-                    }
+    private void showResults(List<TvShow> showResults) {
+        hideProgressBar();
+
+        if (mQuery.getText().toString().length() > 0) {
+            ArrayList<Result> results = new ArrayList<Result>();
+
+            // TheTVDb always includes the English entry for a show,
+            // so this can result in duplicates. We don't want that.
+            HashSet<String> addedIds = new HashSet<String>();
+
+            int count = showResults.size();
+            for (int i = 0; i < count; i++) {
+                if (!addedIds.contains(showResults.get(i).getId())) {
+                    results.add(new Result(
+                                    showResults.get(i).getTitle(),
+                                    showResults.get(i).getOriginalTitle(),
+                                    showResults.get(i).getId(),
+                                    showResults.get(i).getCoverUrl(),
+                                    showResults.get(i).getDescription(),
+                                    showResults.get(i).getFirstAired(),
+                                    showResults.get(i).getRating())
+                    );
+                    addedIds.add(showResults.get(i).getId());
                 }
+            }
 
-                return !isCancelled();
-
-            } catch (Exception e) {}
-
-            return false;
-        }
-
-        @Override
-        protected void onPostExecute(Boolean result) {
-            if (!result)
-                return;
-
-            hideProgressBar();
-
-            if (mQuery.getText().toString().length() > 0) {
-                if (mListView.getAdapter() == null) {
-                    mAdapter = new ListAdapter(mContext);
-                    mAdapter.setList(mResults);
-                    mListView.setAdapter(mAdapter);
-                } else {
-                    mAdapter.setList(mResults);
-                    mAdapter.notifyDataSetChanged();
-                }
+            if (mListView.getAdapter() == null) {
+                mAdapter = new ListAdapter(getActivity());
+                mAdapter.setList(results);
+                mListView.setAdapter(mAdapter);
+            } else {
+                mAdapter.setList(results);
+                mAdapter.notifyDataSetChanged();
             }
         }
     }
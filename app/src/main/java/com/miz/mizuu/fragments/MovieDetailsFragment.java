@@ -56,11 +56,11 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.melnykov.fab.FloatingActionButton;
-import com.miz.abstractclasses.MovieApiService;
 import com.miz.apis.trakt.Trakt;
 import com.miz.base.MizActivity;
 import com.miz.db.DbAdapterMovies;
 import com.miz.functions.Actor;
+import com.miz.functions.BackdropLoader;
 import com.miz.functions.FileSource;
 import com.miz.functions.Filepath;
 import com.miz.functions.IntentKeys;
@@ -404,8 +404,7 @@ public class MovieDetailsFragment extends Fragment {
 
             @Override
             protected Void doInBackground(Void... params) {
-                MovieApiService service = MizuuApplication.getMovieService(mContext);
-                mActors = service.getActors(mMovie.getTmdbId());
+                mActors = MizuuApplication.getActorCache().getCast(mMovie.getTmdbId(), MizLib.TYPE_MOVIE);
 
                 return null;
             }
@@ -454,14 +453,14 @@ public class MovieDetailsFragment extends Fragment {
         });
 
         if (!MizLib.isPortrait(mContext)) {
-            mPicasso.load(mMovie.getBackdrop()).skipMemoryCache().error(R.drawable.bg).placeholder(R.drawable.bg).into(mBackground);
+            BackdropLoader.load(mContext, mMovie.getBackdrop()).error(R.drawable.bg).placeholder(R.drawable.bg).into(mBackground);
         } else {
-            mPicasso.load(mMovie.getBackdrop()).skipMemoryCache().placeholder(R.drawable.bg).into(mBackground, new Callback() {
+            BackdropLoader.load(mContext, mMovie.getBackdrop()).placeholder(R.drawable.bg).into(mBackground, new Callback() {
                 @Override
                 public void onError() {
                     if (!isAdded())
                         return;
-                    mPicasso.load(mMovie.getThumbnail()).skipMemoryCache().placeholder(R.drawable.bg).error(R.drawable.bg).into(mBackground);
+                    BackdropLoader.load(mContext, mMovie.getThumbnail()).placeholder(R.drawable.bg).error(R.drawable.bg).into(mBackground);
                 }
 
                 @Override
@@ -139,6 +139,15 @@ public class MovieLibraryFragment extends Fragment implements SharedPreferences.
         LocalBroadcastManager.getInstance(getActivity()).registerReceiver(mMessageReceiver, new IntentFilter("mizuu-movie-actor-search"));
     }
 
+    @Override
+    public void setUserVisibleHint(boolean isVisibleToUser) {
+        super.setUserVisibleHint(isVisibleToUser);
+
+        // Load the visible library section first
+        if (mMovieLoader != null)
+            mMovieLoader.setVisible(isVisibleToUser);
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
@@ -261,6 +270,7 @@ public class MovieLibraryFragment extends Fragment implements SharedPreferences.
         }
 
         mMovieLoader = new MovieLoader(mContext, MovieLibraryType.fromInt(getArguments().getInt("type")), mCallback);
+        mMovieLoader.setVisible(getUserVisibleHint());
         mMovieLoader.load();
         showProgressBar();
 
@@ -50,13 +50,13 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.melnykov.fab.FloatingActionButton;
-import com.miz.apis.tmdb.TMDbTvShowService;
 import com.miz.apis.trakt.Trakt;
 import com.miz.base.MizActivity;
 import com.miz.db.DbAdapterTvShowEpisodeMappings;
 import com.miz.db.DbAdapterTvShowEpisodes;
 import com.miz.db.DbAdapterTvShows;
 import com.miz.functions.Actor;
+import com.miz.functions.BackdropLoader;
 import com.miz.functions.EpisodeCounter;
 import com.miz.functions.FileSource;
 import com.miz.functions.Filepath;
@@ -85,7 +85,6 @@ import com.squareup.otto.Bus;
 import com.squareup.picasso.Callback;
 import com.squareup.picasso.Picasso;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -427,15 +426,15 @@ public class TvShowDetailsFragment extends Fragment {
         });
 
         if (!MizLib.isPortrait(getActivity())) {
-            mPicasso.load(thisShow.getBackdrop()).skipMemoryCache().error(R.drawable.bg).placeholder(R.drawable.bg).into(background);
+            BackdropLoader.load(getActivity(), thisShow.getBackdrop()).error(R.drawable.bg).placeholder(R.drawable.bg).into(background);
         } else {
-            mPicasso.load(thisShow.getBackdrop()).skipMemoryCache().placeholder(R.drawable.bg).into(background, new Callback() {
+            BackdropLoader.load(getActivity(), thisShow.getBackdrop()).placeholder(R.drawable.bg).into(background, new Callback() {
                 @Override
                 public void onError() {
                     if (!isAdded())
                         return;
 
-                    mPicasso.load(thisShow.getThumbnail()).skipMemoryCache().placeholder(R.drawable.bg).error(R.drawable.bg).into(background);
+                    BackdropLoader.load(getActivity(), thisShow.getThumbnail()).placeholder(R.drawable.bg).error(R.drawable.bg).into(background);
                 }
 
                 @Override
@@ -451,8 +450,7 @@ public class TvShowDetailsFragment extends Fragment {
 
             @Override
             protected Void doInBackground(Void... params) {
-                TMDbTvShowService service = TMDbTvShowService.getInstance(mContext);
-                mActors = service.getActors(thisShow.getId());
+                mActors = MizuuApplication.getActorCache().getCast(thisShow.getId(), MizLib.TYPE_SHOWS);
 
                 return null;
             }
@@ -475,9 +473,8 @@ public class TvShowDetailsFragment extends Fragment {
                 HashMap<String, EpisodeCounter> seasons = MizuuApplication.getTvEpisodeDbAdapter().getSeasons(thisShow.getId());
 
                 for (String key : seasons.keySet()) {
-                    File temp = FileUtils.getTvShowSeason(mContext, thisShow.getId(), key);
                     mSeasons.add(new GridSeason(mContext, thisShow.getId(), Integer.valueOf(key), seasons.get(key).getEpisodeCount(), seasons.get(key).getWatchedCount(),
-                            temp.exists() ? temp :
+                            seasons.get(key).hasCover() ? FileUtils.getTvShowSeason(mContext, thisShow.getId(), key) :
                                     FileUtils.getTvShowThumb(mContext, thisShow.getId())));
                 }
 
@@ -53,7 +53,8 @@ import android.widget.Toast;
 import com.melnykov.fab.FloatingActionButton;
 import com.miz.apis.trakt.Trakt;
 import com.miz.db.DbAdapterTvShowEpisodes;
-import com.miz.functions.BlurTransformation;
+import com.miz.functions.BackdropLoader;
+import com.miz.functions.BlurredImageCache;
 import com.miz.functions.FileSource;
 import com.miz.functions.Filepath;
 import com.miz.functions.MizLib;
@@ -254,7 +255,7 @@ import static com.miz.functions.PreferenceKeys.SHOW_FILE_LOCATION;
 
         loadData();
 
-        mPicasso.load(mEpisode.getEpisodePhoto()).placeholder(R.drawable.bg).config(MizuuApplication.getBitmapConfig()).into(mEpisodePhoto, new Callback() {
+        BackdropLoader.load(mContext, mEpisode.getEpisodePhoto()).placeholder(R.drawable.bg).into(mEpisodePhoto, new Callback() {
             @Override
             public void onError() {
                 if (!isAdded())
@@ -293,12 +294,12 @@ import static com.miz.functions.PreferenceKeys.SHOW_FILE_LOCATION;
         });
 
         if (!MizLib.isPortrait(getActivity()))
-            mPicasso.load(mEpisode.getEpisodePhoto()).placeholder(R.drawable.bg).error(R.drawable.bg).transform(new BlurTransformation(getActivity().getApplicationContext(), mEpisode.getEpisodePhoto().getAbsolutePath() + "-blur", 4)).into(mBackdrop, new Callback() {
+            MizuuApplication.getBlurredImageCache(getActivity()).load(getActivity().getApplicationContext(), mPicasso, mEpisode.getEpisodePhoto().getAbsolutePath(), BlurredImageCache.BACKDROP_BLUR_RADIUS).placeholder(R.drawable.bg).error(R.drawable.bg).into(mBackdrop, new Callback() {
                 @Override public void onError() {
                     if (!isAdded())
                         return;
 
-                    mPicasso.load(mEpisode.getTvShowBackdrop()).placeholder(R.drawable.bg).error(R.drawable.nobackdrop).transform(new BlurTransformation(getActivity().getApplicationContext(), mEpisode.getTvShowBackdrop().getAbsolutePath() + "-blur", 4)).into(mBackdrop, new Callback() {
+                    MizuuApplication.getBlurredImageCache(getActivity()).load(getActivity().getApplicationContext(), mPicasso, mEpisode.getTvShowBackdrop().getAbsolutePath(), BlurredImageCache.BACKDROP_BLUR_RADIUS).placeholder(R.drawable.bg).error(R.drawable.nobackdrop).into(mBackdrop, new Callback() {
                         @Override
                         public void onError() {}
 
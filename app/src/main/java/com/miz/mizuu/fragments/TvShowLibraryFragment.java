@@ -140,6 +140,15 @@ public class TvShowLibraryFragment extends Fragment implements SharedPreferences
         LocalBroadcastManager.getInstance(getActivity()).registerReceiver(mMessageReceiver, new IntentFilter("mizuu-shows-actor-search"));
     }
 
+    @Override
+    public void setUserVisibleHint(boolean isVisibleToUser) {
+        super.setUserVisibleHint(isVisibleToUser);
+
+        // Load the visible library section first
+        if (mTvShowLoader != null)
+            mTvShowLoader.setVisible(isVisibleToUser);
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
@@ -251,6 +260,7 @@ public class TvShowLibraryFragment extends Fragment implements SharedPreferences
         });
 
         mTvShowLoader = new TvShowLoader(mContext, TvShowLibraryType.fromInt(getArguments().getInt("type")), mCallback);
+        mTvShowLoader.setVisible(getUserVisibleHint());
         mTvShowLoader.load();
         showProgressBar();
 
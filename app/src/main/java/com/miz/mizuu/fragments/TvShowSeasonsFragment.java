@@ -66,7 +66,6 @@ import com.squareup.otto.Bus;
 import com.squareup.otto.Subscribe;
 import com.squareup.picasso.Picasso;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -415,11 +414,9 @@ public class TvShowSeasonsFragment extends Fragment {
         protected Void doInBackground(Void... params) {
             HashMap<String, EpisodeCounter> seasons = MizuuApplication.getTvEpisodeDbAdapter().getSeasons(mShowId);
 
-            File temp;
             for (String key : seasons.keySet()) {
-                temp = FileUtils.getTvShowSeason(mContext, mShowId, key);
                 mItems.add(new GridSeason(mContext, mShowId, Integer.valueOf(key), seasons.get(key).getEpisodeCount(), seasons.get(key).getWatchedCount(),
-                        temp.exists() ? temp :
+                        seasons.get(key).hasCover() ? FileUtils.getTvShowSeason(mContext, mShowId, key) :
                                 FileUtils.getTvShowThumb(mContext, mShowId)));
             }
 
@@ -24,10 +24,13 @@ import android.widget.Toast;
 
 import com.miz.functions.FileSource;
 import com.miz.functions.MizLib;
+import com.miz.functions.SmbDirectoryCache;
+import com.miz.mizuu.MizuuApplication;
 import com.miz.mizuu.R;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.List;
 
 import jcifs.smb.SmbFile;
 
@@ -70,29 +73,14 @@ public class DeleteFile extends IntentService {
 						smbFile.delete();
 					
 					// Delete subtitles as well
-					ArrayList<SmbFile> subs = new ArrayList<SmbFile>();
-
-					String fileType = "";
-					if (file.contains(".")) {
-						fileType = file.substring(file.lastIndexOf("."));
-					}
-
-					int count = MizLib.subtitleFormats.length;
-					for (int i = 0; i < count; i++) {
-						subs.add(new SmbFile(
-								MizLib.createSmbLoginString(
-										source.getDomain(),
-										source.getUser(),
-										source.getPassword(),
-										file.replace(fileType, MizLib.subtitleFormats[i]),
-										false
-										)));
-					}
-					
+					List<SmbFile> subs = MizLib.getSubtitleFiles(file, MizLib.getLoginFromFilesource(source));
 					for (int i = 0; i < subs.size(); i++) {
 						if (subs.get(i).exists())
 							subs.get(i).delete();
 					}
+
+					// The folder has changed, so its cached listing is no longer valid
+					MizuuApplication.getSmbDirectoryCache().invalidate(SmbDirectoryCache.getParentPath(file));
 					
 				} catch (Exception e) {
 				}  // the file isn't available (either MalformedURLException or SmbException)
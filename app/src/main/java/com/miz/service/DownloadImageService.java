@@ -27,6 +27,7 @@ import android.os.Looper;
 import android.support.v4.app.NotificationCompat;
 import android.widget.Toast;
 
+import com.miz.functions.BlurredImageCache;
 import com.miz.functions.MizLib;
 import com.miz.mizuu.MizuuApplication;
 import com.miz.mizuu.R;
@@ -97,6 +98,9 @@ public class DownloadImageService extends IntentService {
 		// Resize the image
 		resize();
 
+		// Update the swatch colour or blurred variant of the new image
+		updateImageCaches();
+
 		// Broadcast and update widgets
 		update();
 
@@ -162,10 +166,8 @@ public class DownloadImageService extends IntentService {
 	}
 
 	private void download() {
-		// Delete the old file
-		new File(mDownloadPath).delete();
-		
-		// Download the new file
+		// Download the new file. The old file is only replaced
+		// once the new one has been downloaded completely.
 		MizLib.downloadFile(mImageUrl, mDownloadPath);
 	}
 
@@ -176,6 +178,21 @@ public class DownloadImageService extends IntentService {
 		MizLib.resizeBitmapFileToCoverSize(this, mDownloadPath);
 	}
 
+	private void updateImageCaches() {
+		if (mImageType == IMAGE_TYPE_TVSHOW_BACKDROP) {
+			// Replace the blurred backdrop used on the episode details screen
+			MizuuApplication.getBlurredImageCache(this).generate(new File(mDownloadPath), BlurredImageCache.BACKDROP_BLUR_RADIUS);
+			return;
+		}
+
+		if (mImageType != IMAGE_TYPE_MOVIE_COVER && mImageType != IMAGE_TYPE_TVSHOW_COVER)
+			return;
+
+		File image = new File(mDownloadPath);
+		if (MizuuApplication.getPaletteCache().generate(image) == null)
+			MizuuApplication.getPaletteCache().remove(image.getAbsolutePath());
+	}
+
 	private void update() {
 		LocalBroadcastUtils.clearImageCache(this);
 	}
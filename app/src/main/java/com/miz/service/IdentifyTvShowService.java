@@ -138,6 +138,7 @@ public class IdentifyTvShowService extends IntentService implements TvShowLibrar
 			FileUtils.getTvShowBackdrop(this, mOldShowId).delete();
 
 			// Delete season photos
+			MizuuApplication.getSeasonCoversAdapter().deleteSeasonCovers(mOldShowId);
 			File[] seasonPhotos = MizuuApplication.getTvShowSeasonFolder(this).listFiles();
 			for (int i = 0; i < seasonPhotos.length; i++) {
 				if (seasonPhotos[i].getName().startsWith(mOldShowId + "_S"))
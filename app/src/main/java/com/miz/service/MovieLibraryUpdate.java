@@ -40,8 +40,11 @@ import com.miz.filesources.FileMovie;
 import com.miz.filesources.SmbMovie;
 import com.miz.filesources.UpnpMovie;
 import com.miz.functions.FileSource;
+import com.miz.functions.Metrics;
 import com.miz.functions.MizLib;
 import com.miz.functions.MovieLibraryUpdateCallback;
+import com.miz.functions.ScheduledUpdatesAlarmManager;
+import com.miz.functions.UpdateJournal;
 import com.miz.identification.MovieIdentification;
 import com.miz.identification.MovieStructure;
 import com.miz.mizuu.BuildConfig;
@@ -52,6 +55,7 @@ import com.miz.mizuu.R;
 import com.miz.utils.LocalBroadcastUtils;
 import com.miz.utils.MovieDatabaseUtils;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -73,6 +77,8 @@ public class MovieLibraryUpdate extends IntentService implements MovieLibraryUpd
 	private NotificationManager mNotificationManager;
 	private NotificationCompat.Builder mBuilder;
 	private MovieIdentification mMovieIdentification;
+	private UpdateJournal mJournal;
+	private long mUpdateStart;
 
 	public MovieLibraryUpdate() {
 		super("MovieLibraryUpdate");
@@ -94,11 +100,24 @@ public class MovieLibraryUpdate extends IntentService implements MovieLibraryUpd
 		mNotificationManager.cancel(NOTIFICATION_ID);
 
 		reloadLibrary();
+
+		// Progress of a cancelled update is kept, so the next update can resume it
+		if (mJournal != null)
+			mJournal.close();
 		
+		// Keep track of where the update spent its time
+		Metrics.stop("movies.update", mUpdateStart);
+		if (Metrics.isEnabled())
+			Metrics.dump(MizuuApplication.getMetricsFile(this));
+
 		showPostUpdateNotification();
 
 		LocalBroadcastManager.getInstance(this).unregisterReceiver(mMessageReceiver);
 
+		// Updates that find nothing new are scheduled less often
+		if (!mStopUpdate)
+			ScheduledUpdatesAlarmManager.onUpdateFinished(ScheduledUpdatesAlarmManager.MOVIES, this, mTotalFiles);
+
 		MizLib.scheduleMovieUpdate(this);
 
 		if (Trakt.hasTraktAccount(this) && mSyncLibraries && mCount > 0) {
@@ -109,6 +128,8 @@ public class MovieLibraryUpdate extends IntentService implements MovieLibraryUpd
 	@Override
 	protected void onHandleIntent(Intent intent) {
 
+		mUpdateStart = Metrics.start();
+
 		log("clear()");
 
 		// Clear and set up all variables
@@ -119,6 +140,11 @@ public class MovieLibraryUpdate extends IntentService implements MovieLibraryUpd
 		// Set up Notification, variables, etc.
 		setup();
 
+		log("setupJournal()");
+
+		// Load the progress of an unfinished update, if any
+		setupJournal();
+
 		log("loadFileSources()");
 
 		// Load all file sources from the database
@@ -134,8 +160,9 @@ public class MovieLibraryUpdate extends IntentService implements MovieLibraryUpd
 
 		log("removeUnidentifiedFiles()");
 
-		// Remove unavailable movies, so we can try to identify them again
-		if (!mClearLibrary)
+		// Remove unavailable movies, so we can try to identify them again.
+		// An update that's resumed has already done this.
+		if (!mClearLibrary && !mJournal.isResuming())
 			removeUnidentifiedFiles();
 
 		if (mStopUpdate)
@@ -190,6 +217,12 @@ public class MovieLibraryUpdate extends IntentService implements MovieLibraryUpd
 			// Start the actual movie update / identification task
 			updateMovies();
 		}
+
+		if (mStopUpdate)
+			return;
+
+		// The update has finished, so the next one starts from scratch
+		mJournal.clear();
 	}
 	
 	private void reloadLibrary() {
@@ -254,15 +287,46 @@ public class MovieLibraryUpdate extends IntentService implements MovieLibraryUpd
 		}
 	}
 
+	private void setupJournal() {
+		mJournal = new UpdateJournal(new File(MizuuApplication.getCacheFolder(this), "movie_update.journal"));
+
+		// Nothing from an earlier update is left after the library has been cleared
+		if (mClearLibrary)
+			mJournal.clear();
+	}
+
 	private void searchFolders() {
 		// Temporary collections
 		List<String> tempList = null;
 
 		for (int j = 0; j < mMovieFileSources.size(); j++) {
-			updateMovieScaningNotification(mMovieFileSources.get(j).toString());
-			tempList = mMovieFileSources.get(j).searchFolder();
+			if (mStopUpdate)
+				return;
+
+			FileSource fileSource = mMovieFileSources.get(j).getFileSource();
+			String sourceId = UpdateJournal.getSourceId(fileSource.getRowId(), fileSource.getFilepath());
+
+			if (mJournal.isScanned(sourceId)) {
+				// Scanned by an update that didn't finish
+				tempList = mJournal.getDiscovered(sourceId);
+				Metrics.increment("movies.scan.resumed");
+			} else {
+				updateMovieScaningNotification(mMovieFileSources.get(j).toString());
+				long start = Metrics.start();
+				tempList = mMovieFileSources.get(j).searchFolder();
+				Metrics.stop("movies.scan." + mMovieFileSources.get(j).getClass().getSimpleName(), start);
+				Metrics.add("movies.scan.files", tempList.size());
+
+				// A source that was interrupted while being scanned may be incomplete
+				if (mStopUpdate)
+					return;
+
+				mJournal.setScanned(sourceId, tempList);
+			}
+
 			for (int i = 0; i < tempList.size(); i++) {
-				mMovieQueue.add(new MovieStructure(tempList.get(i)));
+				if (!mJournal.isIdentified(tempList.get(i)))
+					mMovieQueue.add(new MovieStructure(tempList.get(i)));
 			}
 		}
 
@@ -324,6 +388,7 @@ public class MovieLibraryUpdate extends IntentService implements MovieLibraryUpd
 
 	private void updateMovies() {
 		mMovieIdentification = new MovieIdentification(getApplicationContext(), this, mMovieQueue);
+		mMovieIdentification.setJournal(mJournal);
 		mMovieIdentification.start();
 	}
 
@@ -332,6 +397,7 @@ public class MovieLibraryUpdate extends IntentService implements MovieLibraryUpd
 		mFileSources = new ArrayList<FileSource>();
 		mMovieFileSources = new ArrayList<MovieFileSource<?>>();
 		mMovieQueue = new ArrayList<MovieStructure>();
+		mJournal = null;
 
 		// Booleans
 		mClearLibrary = false;
@@ -239,10 +239,11 @@ public class TraktMoviesSyncService extends IntentService {
 				try {
 					String tmdbId = String.valueOf(jsonArray.getJSONObject(i).get("tmdb_id"));
 					mWatchedMovies.add(tmdbId);
-					mMovieDatabase.updateMovieSingleItem(tmdbId, DbAdapterMovies.KEY_HAS_WATCHED, "1");
 				} catch (Exception e) {}
 			}
 		}
+
+		mMovieDatabase.updateMoviesSingleItem(mWatchedMovies, DbAdapterMovies.KEY_HAS_WATCHED, "1");
 	}
 
 	private void updateWatchedMovies() {
@@ -271,10 +272,11 @@ public class TraktMoviesSyncService extends IntentService {
 				try {
 					String tmdbId = String.valueOf(jsonArray.getJSONObject(i).get("tmdb_id"));
 					mMovieFavorites.add(tmdbId);
-					mMovieDatabase.updateMovieSingleItem(tmdbId, DbAdapterMovies.KEY_FAVOURITE, "1");
 				} catch (Exception e) {}
 			}
 		}
+
+		mMovieDatabase.updateMoviesSingleItem(mMovieFavorites, DbAdapterMovies.KEY_FAVOURITE, "1");
 	}
 
 	private void updateMovieFavorites() {
@@ -303,10 +305,11 @@ public class TraktMoviesSyncService extends IntentService {
 				try {
 					String tmdbId = String.valueOf(jsonArray.getJSONObject(i).get("tmdb_id"));
 					mWatchlist.add(tmdbId);
-					mMovieDatabase.updateMovieSingleItem(tmdbId, DbAdapterMovies.KEY_TO_WATCH, "1");
 				} catch (Exception e) {}
 			}
 		}
+
+		mMovieDatabase.updateMoviesSingleItem(mWatchlist, DbAdapterMovies.KEY_TO_WATCH, "1");
 	}
 
 	private void updateWatchlist() {
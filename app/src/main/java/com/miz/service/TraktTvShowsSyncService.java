@@ -289,6 +289,7 @@ public class TraktTvShowsSyncService extends IntentService {
 
 	private void downloadWatchedTvShows() {
 		JSONArray jsonArray = Trakt.getTvShowLibrary(this, Trakt.WATCHED);
+		ArrayList<String[]> watchedEpisodes = new ArrayList<String[]>();
 		if (jsonArray.length() > 0) {
 			for (int i = 0; i < jsonArray.length(); i++) {
 				try {
@@ -312,13 +313,15 @@ public class TraktTvShowsSyncService extends IntentService {
 							String seasonNumber = MizLib.addIndexZero(String.valueOf(season.get("season")));
 							JSONArray seasonEpisodes = season.getJSONArray("episodes");
 							for (int k = 0; k < seasonEpisodes.length(); k++) {
-								mEpisodeDatabase.updateEpisode(showId, seasonNumber, MizLib.addIndexZero(String.valueOf(seasonEpisodes.get(k))), DbAdapterTvShowEpisodes.KEY_HAS_WATCHED, "1");
+								watchedEpisodes.add(new String[]{showId, seasonNumber, MizLib.addIndexZero(String.valueOf(seasonEpisodes.get(k)))});
 							}
 						}
 					}
 				} catch (Exception e) {}
 			}
 		}
+
+		mEpisodeDatabase.updateEpisodes(watchedEpisodes, DbAdapterTvShowEpisodes.KEY_HAS_WATCHED, "1");
 	}
 
 	private void updateWatchedTvShows() {
@@ -31,6 +31,7 @@ import android.graphics.Bitmap;
 import android.preference.PreferenceManager;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.content.LocalBroadcastManager;
+import android.text.TextUtils;
 import android.util.Log;
 
 import com.miz.abstractclasses.TvShowFileSource;
@@ -42,8 +43,12 @@ import com.miz.filesources.FileTvShow;
 import com.miz.filesources.SmbTvShow;
 import com.miz.filesources.UpnpTvShow;
 import com.miz.functions.FileSource;
+import com.miz.functions.Metrics;
 import com.miz.functions.MizLib;
+import com.miz.functions.ParallelSources;
+import com.miz.functions.ScheduledUpdatesAlarmManager;
 import com.miz.functions.TvShowLibraryUpdateCallback;
+import com.miz.functions.UpdateJournal;
 import com.miz.identification.ShowStructure;
 import com.miz.identification.TvShowIdentification;
 import com.miz.mizuu.CancelLibraryUpdate;
@@ -53,8 +58,10 @@ import com.miz.mizuu.R;
 import com.miz.utils.FileUtils;
 import com.miz.utils.LocalBroadcastUtils;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 
 import static com.miz.functions.PreferenceKeys.CLEAR_LIBRARY_TVSHOWS;
@@ -64,9 +71,16 @@ import static com.miz.functions.PreferenceKeys.SYNC_WITH_TRAKT;
 public class TvShowsLibraryUpdate extends IntentService implements TvShowLibraryUpdateCallback {
 
 	public static final String STOP_TVSHOW_LIBRARY_UPDATE = "mizuu-stop-tvshow-library-update";
+
+	/**
+	 * Time that each file source is given to be scanned or cleaned up
+	 */
+	private static final long SOURCE_TIMEOUT = 15 * 60 * 1000; // 15 minutes
+
 	private boolean mDebugging = true;
 	private ArrayList<FileSource> mFileSources;
 	private ArrayList<TvShowFileSource<?>> mTvShowFileSources;
+	private long mUpdateStart;
 	private ArrayList<ShowStructure> mFiles;
 	private HashSet<String> mUniqueShowIds = new HashSet<String>();
 	private boolean mClearLibrary, mClearUnavailable, mSyncLibraries, mStopUpdate;
@@ -77,6 +91,7 @@ public class TvShowsLibraryUpdate extends IntentService implements TvShowLibrary
 	private NotificationManager mNotificationManager;
 	private NotificationCompat.Builder mBuilder;
 	private TvShowIdentification mIdentification;
+	private UpdateJournal mJournal;
 
 	public TvShowsLibraryUpdate() {
 		super("TvShowsLibraryUpdate");
@@ -99,10 +114,23 @@ public class TvShowsLibraryUpdate extends IntentService implements TvShowLibrary
 
 		LocalBroadcastUtils.updateTvShowLibrary(this);
 
+		// Progress of a cancelled update is kept, so the next update can resume it
+		if (mJournal != null)
+			mJournal.close();
+
+		// Keep track of where the update spent its time
+		Metrics.stop("shows.update", mUpdateStart);
+		if (Metrics.isEnabled())
+			Metrics.dump(MizuuApplication.getMetricsFile(this));
+
 		showPostUpdateNotification();
 
 		LocalBroadcastManager.getInstance(this).unregisterReceiver(mMessageReceiver);
 
+		// Updates that find nothing new are scheduled less often
+		if (!mStopUpdate)
+			ScheduledUpdatesAlarmManager.onUpdateFinished(ScheduledUpdatesAlarmManager.SHOWS, this, mTotalFiles);
+
 		MizLib.scheduleShowsUpdate(this);
 
 		if (Trakt.hasTraktAccount(this) && mSyncLibraries && (mEpisodeCount > 0)) {
@@ -113,6 +141,8 @@ public class TvShowsLibraryUpdate extends IntentService implements TvShowLibrary
 	@Override
 	protected void onHandleIntent(Intent intent) {
 
+		mUpdateStart = Metrics.start();
+
 		log("clear()");
 
 		// Clear and set up all variables
@@ -123,6 +153,11 @@ public class TvShowsLibraryUpdate extends IntentService implements TvShowLibrary
 		// Set up Notification, variables, etc.
 		setup();
 
+		log("setupJournal()");
+
+		// Load the progress of an unfinished update, if any
+		setupJournal();
+
 		log("loadFileSources()");
 
 		// Load all file sources from the database
@@ -138,8 +173,9 @@ public class TvShowsLibraryUpdate extends IntentService implements TvShowLibrary
 
 		log("removeUnidentifiedFiles()");
 
-		// Remove unavailable TV show files, so we can try to identify them again
-		if (!mClearLibrary)
+		// Remove unavailable TV show files, so we can try to identify them again.
+		// An update that's resumed has already done this.
+		if (!mClearLibrary && !mJournal.isResuming())
 			removeUnidentifiedFiles();
 
 		if (mStopUpdate)
@@ -173,6 +209,16 @@ public class TvShowsLibraryUpdate extends IntentService implements TvShowLibrary
 			removeUnavailableFiles();
 		}
 
+		if (mStopUpdate)
+			return;
+
+		if (!mClearLibrary) {
+			log("deleteRemovedEpisodes()");
+
+			// Purge episodes whose files have all been removed or ignored
+			MizuuApplication.getTvEpisodeDbAdapter().deleteRemovedEpisodes();
+		}
+
 		log("searchFolders()");
 
 		if (mStopUpdate)
@@ -192,6 +238,12 @@ public class TvShowsLibraryUpdate extends IntentService implements TvShowLibrary
 			// Start the actual TV shows update / identification task
 			updateTvShows();
 		}
+
+		if (mStopUpdate)
+			return;
+
+		// The update has finished, so the next one starts from scratch
+		mJournal.clear();
 	}
 
 	private void loadFileSources() {
@@ -235,9 +287,13 @@ public class TvShowsLibraryUpdate extends IntentService implements TvShowLibrary
 	}
 
 	private void removeUnidentifiedFiles() {
-		for (TvShowFileSource<?> tvShowFileSource : mTvShowFileSources) {
-			tvShowFileSource.removeUnidentifiedFiles();
-		}
+		runOnSources("removeUnidentifiedFiles()", new ParallelSources.Task<TvShowFileSource<?>, Void>() {
+			@Override
+			public Void run(TvShowFileSource<?> source) {
+				source.removeUnidentifiedFiles();
+				return null;
+			}
+		});
 	}
 
 	private void removeTvShowsFromDatabase() {
@@ -249,6 +305,7 @@ public class TvShowsLibraryUpdate extends IntentService implements TvShowLibrary
 		dbEpisodes.deleteAllEpisodes();
 		
 		MizuuApplication.getTvShowEpisodeMappingsDbAdapter().deleteAllFilepaths();
+		MizuuApplication.getSeasonCoversAdapter().deleteAllSeasonCovers();
 
 		// Delete all downloaded images files from the device
 		FileUtils.deleteRecursive(MizuuApplication.getTvShowThumbFolder(this), false);
@@ -258,26 +315,62 @@ public class TvShowsLibraryUpdate extends IntentService implements TvShowLibrary
 	}
 
 	private void removeUnavailableFiles() {
-		for (TvShowFileSource<?> tvShowFileSource : mTvShowFileSources) {
-			tvShowFileSource.removeUnavailableFiles();
-		}
+		runOnSources("removeUnavailableFiles()", new ParallelSources.Task<TvShowFileSource<?>, Void>() {
+			@Override
+			public Void run(TvShowFileSource<?> source) {
+				source.removeUnavailableFiles();
+				return null;
+			}
+		});
 	}
 
-	private void searchFolders() {
-		// Temporary collection
-		List<String> tempList = null;
-
-		for (int j = 0; j < mTvShowFileSources.size(); j++) {
-			updateTvShowScanningNotification(mTvShowFileSources.get(j).toString());
-			tempList = mTvShowFileSources.get(j).searchFolder();
-			for (int i = 0; i < tempList.size(); i++) {
-				mFiles.add(new ShowStructure(tempList.get(i)));
-			}
-		}
+	private void setupJournal() {
+		mJournal = new UpdateJournal(new File(MizuuApplication.getCacheFolder(this), "tvshow_update.journal"));
+
+		// Nothing from an earlier update is left after the library has been cleared
+		if (mClearLibrary)
+			mJournal.clear();
+	}
 
-		// Clean up...
-		if (tempList != null)
-			tempList.clear();
+	/**
+	 * Scans all file sources concurrently. Each source parses its own
+	 * files, and files found by more than one source are only added once.
+	 * Sources that were scanned by an unfinished update aren't scanned again.
+	 */
+	private void searchFolders() {
+		updateTvShowScanningNotification(TextUtils.join(", ", mTvShowFileSources));
+
+		ParallelSources.Result<TvShowFileSource<?>, LinkedHashMap<String, ShowStructure>> result = runOnSources("searchFolders()",
+				new ParallelSources.Task<TvShowFileSource<?>, LinkedHashMap<String, ShowStructure>>() {
+					@Override
+					public LinkedHashMap<String, ShowStructure> run(TvShowFileSource<?> source) {
+						FileSource fileSource = source.getFileSource();
+						String sourceId = UpdateJournal.getSourceId(fileSource.getRowId(), fileSource.getFilepath());
+
+						List<String> filepaths;
+						if (mJournal.isScanned(sourceId)) {
+							filepaths = mJournal.getDiscovered(sourceId);
+							Metrics.increment("shows.scan.resumed");
+						} else {
+							long start = Metrics.start();
+							filepaths = source.searchFolder();
+							Metrics.stop("shows.scan." + source.getClass().getSimpleName(), start);
+							Metrics.add("shows.scan.files", filepaths.size());
+
+							// A source that was interrupted while being scanned may be incomplete
+							if (!mStopUpdate && !Thread.currentThread().isInterrupted())
+								mJournal.setScanned(sourceId, filepaths);
+						}
+
+						LinkedHashMap<String, ShowStructure> files = new LinkedHashMap<String, ShowStructure>();
+						for (String filepath : filepaths)
+							if (!mJournal.isIdentified(filepath))
+								files.put(filepath, new ShowStructure(filepath));
+						return files;
+					}
+				});
+
+		mFiles.addAll(ParallelSources.merge(result.getResults().values()).values());
 
 		int episodeCount = 0;
 		for (ShowStructure ss : mFiles)
@@ -286,6 +379,21 @@ public class TvShowsLibraryUpdate extends IntentService implements TvShowLibrary
 		mTotalFiles = episodeCount;
 	}
 
+	/**
+	 * Runs a step on all file sources concurrently. A source that fails
+	 * or times out is logged and skipped, without affecting the others.
+	 */
+	private <R> ParallelSources.Result<TvShowFileSource<?>, R> runOnSources(String step, ParallelSources.Task<TvShowFileSource<?>, R> task) {
+		ParallelSources.Result<TvShowFileSource<?>, R> result = ParallelSources.run(mTvShowFileSources, task, SOURCE_TIMEOUT);
+
+		for (TvShowFileSource<?> source : result.getFailed())
+			log(step + " failed for " + source);
+		for (TvShowFileSource<?> source : result.getTimedOut())
+			log(step + " timed out for " + source);
+
+		return result;
+	}
+
 	private void setup() {
 		if (!MizLib.isOnline(this)) {
 			mStopUpdate = true;
@@ -345,6 +453,7 @@ public class TvShowsLibraryUpdate extends IntentService implements TvShowLibrary
 		showTvShowAnalyzingNotification();
 		
 		mIdentification = new TvShowIdentification(getApplicationContext(), this, mFiles);
+		mIdentification.setJournal(mJournal);
 		mIdentification.start();
 	}
 
@@ -354,6 +463,7 @@ public class TvShowsLibraryUpdate extends IntentService implements TvShowLibrary
 		mTvShowFileSources = new ArrayList<TvShowFileSource<?>>();
 		mFiles = new ArrayList<ShowStructure>();
 		mUniqueShowIds = new HashSet<String>();
+		mJournal = null;
 
 		// Booleans
 		mClearLibrary = false;
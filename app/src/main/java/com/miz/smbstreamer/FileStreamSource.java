@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.smbstreamer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Streams a file on the device, i.e. a local file or an offline copy.
+ * The file is sent to the client with {@link FileChannel#transferTo(long, long, WritableByteChannel)},
+ * so the data doesn't have to be copied through the Java heap.
+ */
+public class FileStreamSource extends StreamSource {
+
+	private final File mFile;
+	private FileChannel mChannel;
+
+	public FileStreamSource(File file) {
+		super(file.getName(), file.length());
+		mFile = file;
+	}
+
+	@Override
+	public void open() throws IOException {
+		FileInputStream in = new FileInputStream(mFile);
+		input = in;
+		mChannel = in.getChannel();
+	}
+
+	@Override
+	public int read(byte[] bytes, int start, int offs) throws IOException {
+		if (fp >= end)
+			return -1;
+
+		int read = mChannel.read(ByteBuffer.wrap(bytes, start, (int) Math.min(offs, end - fp)), fp);
+		if (read > 0)
+			fp += read;
+		return read;
+	}
+
+	@Override
+	public void writeTo(Socket socket, int bufferSize) throws IOException {
+		WritableByteChannel target = socket.getChannel() != null ? socket.getChannel() : Channels.newChannel(socket.getOutputStream());
+
+		while (fp < end) {
+			long sent = mChannel.transferTo(fp, end - fp, target);
+			if (sent <= 0)
+				break; // The file has been truncated since the request
+			fp += sent;
+		}
+	}
+}
@@ -16,21 +16,24 @@
 
 package com.miz.smbstreamer;
 
-import android.net.Uri;
-import android.util.Log;
+import com.miz.functions.Metrics;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Locale;
 import java.util.Properties;
 import java.util.StringTokenizer;
@@ -38,22 +41,53 @@ import java.util.TimeZone;
 
 import static com.miz.smbstreamer.Response.HTTP_BADREQUEST;
 import static com.miz.smbstreamer.Response.HTTP_INTERNALERROR;
+import static com.miz.smbstreamer.Response.HTTP_OK;
+import static com.miz.smbstreamer.Response.HTTP_PARTIALCONTENT;
+import static com.miz.smbstreamer.Response.HTTP_RANGE_NOT_SATISFIABLE;
 
 public abstract class StreamServer {
 
 	public static final String MIME_PLAINTEXT = "text/plain";
+	public static final String MIME_DEFAULT_BINARY = "application/octet-stream";
+
+	private static final HashMap<String, String> sMimeTypes = new HashMap<String, String>();
+	static
+	{
+		sMimeTypes.put("3gp", "video/3gpp");
+		sMimeTypes.put("avi", "video/x-msvideo");
+		sMimeTypes.put("divx", "video/divx");
+		sMimeTypes.put("flv", "video/x-flv");
+		sMimeTypes.put("m2ts", "video/mp2t");
+		sMimeTypes.put("m4v", "video/x-m4v");
+		sMimeTypes.put("mkv", "video/x-matroska");
+		sMimeTypes.put("mov", "video/quicktime");
+		sMimeTypes.put("mp4", "video/mp4");
+		sMimeTypes.put("mpeg", "video/mpeg");
+		sMimeTypes.put("mpg", "video/mpeg");
+		sMimeTypes.put("ogv", "video/ogg");
+		sMimeTypes.put("ts", "video/mp2t");
+		sMimeTypes.put("webm", "video/webm");
+		sMimeTypes.put("wmv", "video/x-ms-wmv");
+		sMimeTypes.put("srt", "application/x-subrip");
+		sMimeTypes.put("ssa", "text/x-ssa");
+		sMimeTypes.put("ass", "text/x-ssa");
+		sMimeTypes.put("vtt", "text/vtt");
+	}
 
 	private int mTcpPort;
 	private final ServerSocket mServerSocket;
 	private Thread mServerThread;
 	private int mBufferSize = 8192 * 2;
 
-	private static java.text.SimpleDateFormat sGmtFormat;
-	static
-	{
-		sGmtFormat = new java.text.SimpleDateFormat( "E, d MMM yyyy HH:mm:ss 'GMT'", Locale.US);
-		sGmtFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
-	}
+	// SimpleDateFormat isn't thread-safe, and responses are sent from a thread per connection
+	private static final ThreadLocal<java.text.SimpleDateFormat> sGmtFormat = new ThreadLocal<java.text.SimpleDateFormat>() {
+		@Override
+		protected java.text.SimpleDateFormat initialValue() {
+			java.text.SimpleDateFormat format = new java.text.SimpleDateFormat( "E, d MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+			format.setTimeZone(TimeZone.getTimeZone("GMT"));
+			return format;
+		}
+	};
 
 	public void setBufferSize(int size) {
 		mBufferSize = size;
@@ -72,6 +106,81 @@ public abstract class StreamServer {
 	 */
 	public abstract Response serve(String uri, String method, Properties header, Properties parms, Properties files);
 
+	/**
+	 * Serves a stream source, or the byte range of it that the client asked for.
+	 * The source must have been created for this request only.
+	 */
+	protected Response serveSource(StreamSource source, Properties header) {
+		long length = source.length();
+		long[] range = parseRange(header.getProperty("range"), length);
+
+		Response res;
+		if (range == null) {
+			source.reset();
+			res = new Response(HTTP_OK, source.getMimeType(), source);
+			res.addHeader("Content-Length", String.valueOf(length));
+		} else if (range.length == 0) {
+			res = new Response(HTTP_RANGE_NOT_SATISFIABLE, MIME_PLAINTEXT, null);
+			res.addHeader("Content-Range", "bytes */" + length);
+		} else {
+			source.setRange(range[0], range[1]);
+			res = new Response(HTTP_PARTIALCONTENT, source.getMimeType(), source);
+			res.addHeader("Content-Length", String.valueOf(range[1] - range[0] + 1));
+			res.addHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + length);
+		}
+
+		// Announce that the file server accepts partial content requests
+		res.addHeader("Accept-Ranges", "bytes");
+		return res;
+	}
+
+	/**
+	 * Parses a single byte range, i.e. "bytes=500-999", "bytes=500-" or "bytes=-500".
+	 * @return First and last byte of the range, an empty array if the range
+	 * can't be satisfied, or null if the whole file should be served instead
+	 */
+	public static long[] parseRange(String range, long length) {
+		if (range == null || !range.startsWith("bytes=") || range.indexOf(',') >= 0)
+			return null;
+
+		String spec = range.substring("bytes=".length()).trim();
+		int minus = spec.indexOf('-');
+		if (minus < 0)
+			return null;
+
+		long start, end;
+		try {
+			if (minus == 0) {
+				long suffix = Long.parseLong(spec.substring(1));
+				if (suffix <= 0)
+					return new long[0];
+				start = Math.max(0, length - suffix);
+				end = length - 1;
+			} else {
+				start = Long.parseLong(spec.substring(0, minus));
+				end = minus == spec.length() - 1 ? length - 1 : Math.min(Long.parseLong(spec.substring(minus + 1)), length - 1);
+				if (end < start && start < length)
+					return null;
+			}
+		} catch (NumberFormatException nfe) {
+			return null;
+		}
+
+		if (start >= length)
+			return new long[0];
+
+		return new long[]{start, end};
+	}
+
+	/**
+	 * @return MIME type based on the file extension
+	 */
+	public static String getMimeType(String filename) {
+		int dot = filename.lastIndexOf('.');
+		String mimeType = dot >= 0 ? sMimeTypes.get(filename.substring(dot + 1).toLowerCase(Locale.ENGLISH)) : null;
+		return mimeType != null ? mimeType : MIME_DEFAULT_BINARY;
+	}
+
 	// ==================================================
 	// Socket & server code
 	// ==================================================
@@ -83,7 +192,10 @@ public abstract class StreamServer {
 
 	public StreamServer( int port, File wwwroot ) throws IOException {
 		mTcpPort = port;
-		mServerSocket = new ServerSocket(mTcpPort);
+
+		// Sockets of a server socket channel let file sources transfer data without copying it
+		mServerSocket = ServerSocketChannel.open().socket();
+		mServerSocket.bind(new InetSocketAddress(mTcpPort));
 		mServerThread = new Thread(new Runnable() {
 			public void run() {
 				try {
@@ -99,6 +211,13 @@ public abstract class StreamServer {
 		mServerThread.start();
 	}
 
+	/**
+	 * @return The port the server listens on, also if it was started on port 0
+	 */
+	public int getPort() {
+		return mServerSocket.getLocalPort();
+	}
+
 	/**
 	 * Stops the server.
 	 */
@@ -157,21 +276,18 @@ public abstract class StreamServer {
 
 				// Decode the header into params and header java properties
 				decodeHeader(hin, pre, params, header);
-				
-				// Logging!
-				Log.d("Streamer", pre.toString());
-				Log.d("Streamer", "Params: " + params.toString());
-				Log.d("Streamer", "Header: " + header.toString());
-				
+
 				String method = pre.getProperty("method");
 				String uri = pre.getProperty("uri");
 
 				// Ok, now do the serve()
+				long start = Metrics.start();
 				Response r = serve(uri, method, header, params, files);
+				Metrics.stop("stream.serve", start);
 				if (r == null)
 					sendError(socket, HTTP_INTERNALERROR, "SERVER INTERNAL ERROR: Serve() returned a null response." );
 				else
-					sendResponse(socket, r.status, r.mimeType, r.header, r.data );
+					sendResponse(socket, r.status, r.mimeType, r.header, "HEAD".equals(method) ? null : r.data);
 
 			} catch (IOException ioe) {
 				try {
@@ -208,7 +324,7 @@ public abstract class StreamServer {
 					decodeParams(uri.substring(qmi + 1), params);
 					uri = decodePercent(uri.substring(0, qmi));
 				} else
-					uri = Uri.decode(uri);//decodePercent(uri);
+					uri = decodePath(uri);
 
 				// If there's another token, it's protocol version,
 				// followed by HTTP headers. Ignore version but parse headers.
@@ -259,6 +375,33 @@ public abstract class StreamServer {
 			}
 		}
 
+		/**
+		 * Decodes a percent-encoded UTF-8 path. Unlike {@link #decodePercent(String)},
+		 * "+" is kept, as it only means space in parameters.
+		 */
+		private String decodePath(String str) throws InterruptedException {
+			try {
+				ByteArrayOutputStream out = new ByteArrayOutputStream(str.length());
+				int i = 0;
+				while (i < str.length()) {
+					int percent = str.indexOf('%', i);
+					if (percent < 0)
+						percent = str.length();
+
+					byte[] bytes = str.substring(i, percent).getBytes("UTF-8");
+					out.write(bytes, 0, bytes.length);
+
+					if (percent < str.length())
+						out.write(Integer.parseInt(str.substring(percent + 1, percent + 3), 16));
+					i = percent + 3;
+				}
+				return new String(out.toByteArray(), "UTF-8");
+			} catch (Exception e) {
+				sendError(socket, HTTP_BADREQUEST, "BAD REQUEST: Bad percent-encoding.");
+				return null;
+			}
+		}
+
 		/**
 		 * Decodes parameters in percent-encoded URI-format
 		 * ( e.g. "name=Jack%20Daniels&pass=Single%20Malt" ) and
@@ -299,10 +442,10 @@ public abstract class StreamServer {
 				OutputStream out = socket.getOutputStream();
 				PrintWriter pw = new PrintWriter(out);
 				pw.print("HTTP/1.0 " + status + "\r\n");
-				pw.print("Content-Type: video/*\r\n");
+				pw.print("Content-Type: " + (mime != null ? mime : MIME_PLAINTEXT) + "\r\n");
 
 				if (header == null || header.getProperty("Date") == null)
-					pw.print("Date: " + sGmtFormat.format(new Date()) + "\r\n");
+					pw.print("Date: " + sGmtFormat.get().format(new Date()) + "\r\n");
 
 				if (header != null) {
 					Enumeration<Object> e = header.keys();
@@ -317,19 +460,24 @@ public abstract class StreamServer {
 				pw.flush();
 
 				if (data != null) {
-					data.open();
-					byte[] buff = new byte[mBufferSize];
-					int read = 0;
-					while ((read = data.read(buff)) > 0) {
-						out.write( buff, 0, read );
+					long start = Metrics.start();
+					long available = data.available();
+
+					try {
+						data.open();
+						data.writeTo(socket, mBufferSize);
+					} finally {
+						data.close();
+
+						// Players often close the connection when seeking, so count those too.
+						// Throughput is stream.bytes divided by the total of stream.transfer.
+						Metrics.stop("stream.transfer", start);
+						Metrics.add("stream.bytes", available - data.available());
 					}
 				}
 
 				out.flush();
 				out.close();
-
-				if (data != null)
-					data.close();
 			} catch (IOException ioe) { // Couldn't write? No can do.
 				try { socket.close(); } catch (Throwable t) {}
 			}
@@ -18,25 +18,36 @@ package com.miz.smbstreamer;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
 
 import jcifs.smb.SmbException;
 import jcifs.smb.SmbFile;
 import jcifs.smb.SmbFileInputStreamOld;
 
+/**
+ * Data served by the stream server. The source is read from the file
+ * pointer up to the end of the requested range, or the end of the file.
+ */
 public class StreamSource {
 
 	protected String mime, name;
-	protected long fp, len;
+	protected long fp, len, end;
 	protected int bufferSize;
 	protected SmbFile file;
 	protected InputStream input;
 
 	public StreamSource(SmbFile file) throws SmbException{
-		fp = 0;
-		len = file.length();
-		mime = "video/*";
-		name = file.getName();
+		this(file.getName(), file.length());
 		this.file = file;
+	}
+
+	protected StreamSource(String name, long length) {
+		fp = 0;
+		len = length;
+		end = length;
+		mime = StreamServer.getMimeType(name);
+		this.name = name;
 		bufferSize = 16 * 1024;
 	}
 
@@ -55,17 +66,45 @@ public class StreamSource {
 	}
 
 	public int read(byte[] bytes, int start, int offs) throws IOException {
-		int read =  input.read(bytes, start, offs);
-		fp += read;
+		if (fp >= end)
+			return -1;
+
+		int read =  input.read(bytes, start, (int) Math.min(offs, end - fp));
+		if (read > 0)
+			fp += read;
 		return read;
 	}
 
+	/**
+	 * Writes the rest of the source to a client.
+	 */
+	public void writeTo(Socket socket, int bufferSize) throws IOException {
+		OutputStream out = socket.getOutputStream();
+		byte[] buff = new byte[bufferSize];
+		int read;
+		while ((read = read(buff)) > 0)
+			out.write(buff, 0, read);
+	}
+
 	public long moveTo(long position) throws IOException {
 		fp = position;
 		return fp;
 	}
 
+	/**
+	 * Limits the source to a byte range.
+	 * @param first First byte of the range
+	 * @param last Last byte of the range, inclusive
+	 */
+	public void setRange(long first, long last) {
+		fp = first;
+		end = Math.min(last + 1, len);
+	}
+
 	public void close() {
+		if (input == null)
+			return;
+
 		try {
 			input.close();
 		} catch (IOException e) {
@@ -86,11 +125,12 @@ public class StreamSource {
 	}
 
 	public long available(){
-		return len - fp;
+		return end - fp;
 	}
 
 	public void reset(){
 		fp = 0;
+		end = len;
 	}
 
 	public SmbFile getFile(){
@@ -16,13 +16,16 @@
 
 package com.miz.smbstreamer;
 
-import android.util.Log;
+import android.net.Uri;
 
+import com.miz.functions.SubtitleFiles;
 import com.miz.utils.NetworkUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Properties;
 
 import jcifs.smb.SmbFile;
@@ -30,16 +33,17 @@ import jcifs.smb.SmbFile;
 import static com.miz.smbstreamer.Response.HTTP_FORBIDDEN;
 import static com.miz.smbstreamer.Response.HTTP_NOTFOUND;
 import static com.miz.smbstreamer.Response.HTTP_OK;
-import static com.miz.smbstreamer.Response.HTTP_PARTIALCONTENT;
-import static com.miz.smbstreamer.Response.HTTP_RANGE_NOT_SATISFIABLE;
 
 public class Streamer extends StreamServer {
 
 	public static final int PORT = 50002;
+	public static final String SUBTITLES_PATH = "/subtitles/";
 	private String mUrl = "http://127.0.0.1:" + PORT;
 	
 	private SmbFile mFile;
 	private List<SmbFile> mExtras; // subtitles, etc.
+	private File mLocalFile;
+	private List<File> mLocalExtras;
 	private static Streamer sInstance;
 
 	protected Streamer(int port) throws IOException {
@@ -65,79 +69,135 @@ public class Streamer extends StreamServer {
 	public void setStreamSrc(SmbFile file,List<SmbFile> extraFiles) {
 		mFile = file;
 		mExtras = extraFiles;
+		mLocalFile = null;
+		mLocalExtras = null;
     }
 
+	/**
+	 * Streams a file on the device, i.e. for casting targets or players that only accept HTTP.
+	 */
+	public void setStreamSrc(File file, List<File> extraFiles) {
+		mLocalFile = file;
+		mLocalExtras = extraFiles;
+		mFile = null;
+		mExtras = null;
+	}
+
+	/**
+	 * @return URLs of the subtitles of the current stream that players can
+	 * fetch. SRT subtitles are also available as WebVTT.
+	 */
+	public List<String> getSubtitleUrls() {
+		List<String> urls = new ArrayList<String>();
+		for (String name : getExtraNames()) {
+			if (!SubtitleFiles.isStreamable(name))
+				continue;
+
+			urls.add(mUrl + SUBTITLES_PATH + Uri.encode(name));
+			if (".srt".equals(SubtitleFiles.getFormat(name, SubtitleFiles.STREAMABLE_FORMATS)))
+				urls.add(mUrl + SUBTITLES_PATH + Uri.encode(SubtitleFiles.getBasename(name) + ".vtt"));
+		}
+		return urls;
+	}
+
 	@Override
 	public Response serve(String uri, String method, Properties header, Properties parms, Properties files) {
-		Response res = null;
+		if (uri != null && uri.startsWith(SUBTITLES_PATH))
+			return serveSubtitle(uri.substring(SUBTITLES_PATH.length()), header);
+
+		String name = getNameFromPath(uri);
+
 		try {
-			SmbFile sourceFile = null;
-			String name = getNameFromPath(uri);
-			if (mFile != null && mFile.getName().equals(name))
-				sourceFile = mFile;
-			else if (mExtras != null){
-				for (SmbFile i : mExtras){
-					if (i != null && i.getName().equals(name)){
-						sourceFile = i;
-						break;
-					}
-				}
-			}
-			if (sourceFile == null)
-				res = new Response(HTTP_NOTFOUND, MIME_PLAINTEXT, null);
-			else {
-				long startFrom = 0;
-				long endAt = -1;
-				String range = header.getProperty("range");
-				if (range != null) {
-					if (range.startsWith("bytes=")) {
-						range = range.substring("bytes=".length());
-						int minus = range.indexOf('-');
-						try {
-							if (minus > 0) {
-								startFrom = Long.parseLong(range.substring(0, minus));
-								endAt = Long.parseLong(range.substring(minus + 1));
-							}
-						} catch (NumberFormatException nfe) {}						
-					}
-				}
-				Log.d("Streamer", "Request: " + range + " from: " + startFrom + ", to: " + endAt);
-
-				// Change return code and add Content-Range header when skipping is requested
-				final StreamSource source = new StreamSource(sourceFile);
-				long fileLen = source.length();
-				if (range != null && startFrom > 0) {
-					if (startFrom >= fileLen) {
-						res = new Response(HTTP_RANGE_NOT_SATISFIABLE, MIME_PLAINTEXT, null);
-						res.addHeader("Content-Range", "bytes 0-0/" + fileLen);
-					} else {
-						if (endAt < 0)
-							endAt = fileLen - 1;
-						long newLen = fileLen - startFrom;
-						if (newLen < 0)
-							newLen = 0;
-						Log.d("Streamer", "start=" + startFrom + ", endAt=" + endAt + ", newLen=" + newLen);
-						final long dataLen = newLen;
-						source.moveTo(startFrom);
-						Log.d("Streamer", "Skipped " + startFrom + " bytes");
-
-						res = new Response(HTTP_PARTIALCONTENT, source.getMimeType(), source);
-						res.addHeader("Content-length", "" + dataLen);
-						res.addHeader("Content-Range", "bytes " + startFrom + "-" + endAt + "/" + fileLen);
+			SmbFile smbFile = findSmbFile(name);
+			if (smbFile != null)
+				return serveSource(new StreamSource(smbFile), header);
+
+			File localFile = findLocalFile(name);
+			if (localFile != null)
+				return serveSource(new FileStreamSource(localFile), header);
+		} catch (IOException ioe) {
+			return new Response(HTTP_FORBIDDEN, MIME_PLAINTEXT, null);
+		}
+
+		return new Response(HTTP_NOTFOUND, MIME_PLAINTEXT, null);
+	}
+
+	/**
+	 * Serves a subtitle file of the current stream. A WebVTT file that
+	 * doesn't exist is converted from the SRT file with the same name.
+	 */
+	private Response serveSubtitle(String name, Properties header) {
+		if (!SubtitleFiles.isStreamable(name))
+			return new Response(HTTP_NOTFOUND, MIME_PLAINTEXT, null);
+
+		try {
+			StreamSource source = getExtraSource(name);
+			if (source != null)
+				return serveSource(source, header);
+
+			if (name.toLowerCase(Locale.ENGLISH).endsWith(".vtt")) {
+				String basename = SubtitleFiles.getBasename(name);
+				for (String extra : getExtraNames()) {
+					if (extra.toLowerCase(Locale.ENGLISH).endsWith(".srt") && SubtitleFiles.getBasename(extra).equals(basename)) {
+						StreamSource vtt = new WebVttStreamSource(getExtraSource(extra));
+						return new Response(HTTP_OK, vtt.getMimeType(), vtt);
 					}
-				} else {
-					source.reset();
-					res = new Response(HTTP_OK, source.getMimeType(), source);
-					res.addHeader("Content-Length", "" + fileLen);
 				}
 			}
 		} catch (IOException ioe) {
-			res = new Response(HTTP_FORBIDDEN, MIME_PLAINTEXT, null);
+			return new Response(HTTP_FORBIDDEN, MIME_PLAINTEXT, null);
 		}
 
-		// Announce that the file server accepts partial content requestes
-		res.addHeader("Accept-Ranges", "bytes");
-		return res;
+		return new Response(HTTP_NOTFOUND, MIME_PLAINTEXT, null);
+	}
+
+	private List<String> getExtraNames() {
+		List<String> names = new ArrayList<String>();
+		if (mExtras != null)
+			for (SmbFile i : mExtras)
+				if (i != null)
+					names.add(i.getName());
+		if (mLocalExtras != null)
+			for (File i : mLocalExtras)
+				if (i != null)
+					names.add(i.getName());
+		return names;
+	}
+
+	private StreamSource getExtraSource(String name) throws IOException {
+		if (mExtras != null)
+			for (SmbFile i : mExtras)
+				if (i != null && i.getName().equals(name))
+					return new StreamSource(i);
+		if (mLocalExtras != null)
+			for (File i : mLocalExtras)
+				if (i != null && i.getName().equals(name))
+					return new FileStreamSource(i);
+		return null;
+	}
+
+	private SmbFile findSmbFile(String name) {
+		if (mFile != null && mFile.getName().equals(name))
+			return mFile;
+
+		if (mExtras != null)
+			for (SmbFile i : mExtras)
+				if (i != null && i.getName().equals(name))
+					return i;
+
+		return null;
+	}
+
+	private File findLocalFile(String name) {
+		if (mLocalFile != null && mLocalFile.getName().equals(name))
+			return mLocalFile;
+
+		if (mLocalExtras != null)
+			for (File i : mLocalExtras)
+				if (i != null && i.getName().equals(name))
+					return i;
+
+		return null;
 	}
 
 	public static String getNameFromPath(String path) {
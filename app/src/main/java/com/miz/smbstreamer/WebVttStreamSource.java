@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miz.smbstreamer;
+
+import com.miz.functions.SubtitleFiles;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Converts a SRT subtitle source to WebVTT while it's being streamed.
+ * The source is converted one line at a time, so memory use is bounded
+ * by the buffer sizes, regardless of the size of the subtitle file.
+ * Subtitles that aren't valid UTF-8 are read as Windows-1252, line by line,
+ * as most older SRT files use it.
+ */
+public class WebVttStreamSource extends StreamSource {
+
+	/**
+	 * Lines that are longer than this are passed on in pieces.
+	 */
+	private static final int MAX_LINE_LENGTH = 4096;
+
+	private static final Pattern TIMESTAMPS = Pattern.compile("^\\s*(\\d+):(\\d{1,2}):(\\d{1,2})[,.](\\d{1,3})\\s*-->\\s*(\\d+):(\\d{1,2}):(\\d{1,2})[,.](\\d{1,3})");
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8"), WINDOWS_1252 = Charset.forName("windows-1252");
+
+	private final StreamSource mSource;
+	private final CharsetDecoder mDecoder = UTF_8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPORT)
+			.onUnmappableCharacter(CodingErrorAction.REPORT);
+	private final byte[] mInput = new byte[8192], mLine = new byte[MAX_LINE_LENGTH];
+	private int mInputPosition, mInputLength, mLineLength;
+	private byte[] mOutput;
+	private int mOutputPosition;
+	private boolean mFirstLine, mEndOfSource;
+
+	/**
+	 * @param source The SRT source. It's opened and closed along with this source.
+	 */
+	public WebVttStreamSource(StreamSource source) {
+		super(SubtitleFiles.getBasename(source.getName()) + ".vtt", -1);
+		mSource = source;
+
+		// The length of the converted subtitles isn't known in advance
+		end = Long.MAX_VALUE;
+	}
+
+	@Override
+	public void open() throws IOException {
+		mSource.reset();
+		mSource.open();
+
+		mInputPosition = mInputLength = mLineLength = 0;
+		mOutput = "WEBVTT\n\n".getBytes(UTF_8.name());
+		mOutputPosition = 0;
+		mFirstLine = true;
+		mEndOfSource = false;
+	}
+
+	@Override
+	public int read(byte[] bytes, int start, int offs) throws IOException {
+		while (mOutputPosition >= mOutput.length) {
+			if (!nextLine())
+				return -1;
+		}
+
+		int read = Math.min(offs, mOutput.length - mOutputPosition);
+		System.arraycopy(mOutput, mOutputPosition, bytes, start, read);
+		mOutputPosition += read;
+		fp += read;
+		return read;
+	}
+
+	@Override
+	public void close() {
+		mSource.close();
+	}
+
+	/**
+	 * Reads and converts the next line of the source.
+	 * @return False at the end of the source
+	 */
+	private boolean nextLine() throws IOException {
+		boolean complete = false;
+		mLineLength = 0;
+
+		while (!complete && mLineLength < MAX_LINE_LENGTH) {
+			if (mInputPosition >= mInputLength) {
+				if (mEndOfSource || !fillInput())
+					break;
+			}
+
+			byte b = mInput[mInputPosition++];
+			if (b == '\n')
+				complete = true;
+			else
+				mLine[mLineLength++] = b;
+		}
+
+		if (!complete && mLineLength == 0)
+			return false;
+
+		int offset = 0, length = mLineLength;
+		if (length > 0 && mLine[length - 1] == '\r')
+			length--;
+
+		// Skip the byte order mark
+		if (mFirstLine && length >= 3 && (mLine[0] & 0xFF) == 0xEF && (mLine[1] & 0xFF) == 0xBB && (mLine[2] & 0xFF) == 0xBF) {
+			offset = 3;
+			length -= 3;
+		}
+		mFirstLine = false;
+
+		String line = convert(decode(mLine, offset, length));
+		mOutput = (complete ? line + "\n" : line).getBytes(UTF_8.name());
+		mOutputPosition = 0;
+		return true;
+	}
+
+	private boolean fillInput() throws IOException {
+		int read;
+		do {
+			read = mSource.read(mInput, 0, mInput.length);
+		} while (read == 0);
+
+		if (read < 0) {
+			mEndOfSource = true;
+			return false;
+		}
+
+		mInputPosition = 0;
+		mInputLength = read;
+		return true;
+	}
+
+	private String decode(byte[] bytes, int offset, int length) {
+		try {
+			return mDecoder.decode(ByteBuffer.wrap(bytes, offset, length)).toString();
+		} catch (CharacterCodingException e) {
+			return new String(bytes, offset, length, WINDOWS_1252);
+		}
+	}
+
+	/**
+	 * Converts SRT timing lines, i.e. "00:01:02,5 --> 00:01:04,250 X1:10", to
+	 * WebVTT timing lines without SRT coordinates, i.e. "00:01:02.500 --> 00:01:04.250".
+	 * All other lines are kept as they are.
+	 */
+	private static String convert(String line) {
+		Matcher matcher = TIMESTAMPS.matcher(line);
+		if (!matcher.find())
+			return line;
+
+		return formatTimestamp(matcher, 1) + " --> " + formatTimestamp(matcher, 5);
+	}
+
+	private static String formatTimestamp(Matcher matcher, int group) {
+		String fraction = (matcher.group(group + 3) + "00").substring(0, 3);
+		return String.format(Locale.US, "%02d:%02d:%02d.%s", Integer.parseInt(matcher.group(group)),
+				Integer.parseInt(matcher.group(group + 1)), Integer.parseInt(matcher.group(group + 2)), fraction);
+	}
+}
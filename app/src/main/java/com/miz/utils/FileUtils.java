@@ -19,6 +19,7 @@ package com.miz.utils;
 import android.content.Context;
 
 import com.miz.db.DatabaseHelper;
+import com.miz.db.DbAdapterOfflineCopies;
 import com.miz.functions.Filepath;
 import com.miz.functions.MizLib;
 import com.miz.mizuu.MizuuApplication;
@@ -29,6 +30,10 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 public class FileUtils {
 
@@ -102,12 +107,66 @@ public class FileUtils {
 		return new File(MizuuApplication.getAvailableOfflineFolder(c), MizLib.md5(filepath) + "." + StringUtils.getExtension(filepath));
 	}
 
+    /**
+     * Checks the offline copy registry rather than the file system,
+     * so it's cheap enough to call for every file in the library.
+     */
     public static boolean hasOfflineCopy(Context c, Filepath path) {
-        return getOfflineCopyFile(c, path).exists();
+        return hasOfflineCopy(c, path.getFilepath());
     }
 
-    private static File getOfflineCopyFile(Context c, Filepath path) {
-        return getOfflineFile(c, path.getFilepath());
+    public static boolean hasOfflineCopy(Context c, String filepath) {
+        return MizuuApplication.getOfflineCopiesAdapter().hasOfflineCopy(filepath);
+    }
+
+    /**
+     * Registers an offline copy that has been created for the given file path.
+     */
+    public static void addOfflineCopy(Context c, String filepath) {
+        MizuuApplication.getOfflineCopiesAdapter().addOfflineCopy(filepath);
+    }
+
+    /**
+     * Deletes the offline copy of the given file path and removes it from the registry.
+     */
+    public static boolean deleteOfflineCopy(Context c, String filepath) {
+        DbAdapterOfflineCopies db = MizuuApplication.getOfflineCopiesAdapter();
+
+        // Keeps the registry from being reconciled between the two steps
+        synchronized (db) {
+            db.removeOfflineCopy(filepath);
+            return getOfflineFile(c, filepath).delete();
+        }
+    }
+
+    /**
+     * Brings the offline copy registry in sync with the contents of the
+     * offline folder, i.e. if copies have been deleted outside the app.
+     * This lists the folder once rather than checking every file.
+     */
+    public static void reconcileOfflineCopies(Context c) {
+        DbAdapterOfflineCopies db = MizuuApplication.getOfflineCopiesAdapter();
+        Set<String> libraryFilepaths = db.getLibraryFilepaths();
+
+        // Copies that are added or deleted while the folder is being
+        // compared to the registry would otherwise be overwritten
+        synchronized (db) {
+            String[] list = MizuuApplication.getAvailableOfflineFolder(c).list();
+
+            HashSet<String> names = new HashSet<String>();
+            if (list != null)
+                Collections.addAll(names, list);
+
+            ArrayList<String> offlineCopies = new ArrayList<String>();
+            if (names.size() > 0) {
+                for (String filepath : libraryFilepaths) {
+                    if (names.contains(getOfflineFile(c, filepath).getName()))
+                        offlineCopies.add(filepath);
+                }
+            }
+
+            db.setOfflineCopies(offlineCopies);
+        }
     }
 
     public static String copyDatabase(Context context) {
@@ -23,6 +23,7 @@ import android.widget.Toast;
 import com.miz.apis.trakt.Trakt;
 import com.miz.db.DbAdapterMovies;
 import com.miz.functions.MediumMovie;
+import com.miz.functions.MizLib;
 import com.miz.mizuu.MizuuApplication;
 import com.miz.mizuu.R;
 
@@ -46,6 +47,10 @@ public class MovieDatabaseUtils {
 		// Delete all movie collections
 		MizuuApplication.getCollectionsAdapter().deleteAllCollections();
 
+		// Delete the cached cast of all movies
+		MizuuApplication.getActorAdapter().deleteAllCast(MizLib.TYPE_MOVIE);
+		MizuuApplication.getActorAdapter().deleteUnusedActors();
+
 		// Delete all downloaded image files from the device
 		FileUtils.deleteRecursive(MizuuApplication.getMovieThumbFolder(context), false);
 		FileUtils.deleteRecursive(MizuuApplication.getMovieBackdropFolder(context), false);
@@ -70,6 +75,9 @@ public class MovieDatabaseUtils {
         if (MizuuApplication.getCollectionsAdapter().getMovieCount(collectionId) == 1)
             MizuuApplication.getCollectionsAdapter().deleteCollection(collectionId);
 
+        // Delete the cached cast
+        MizuuApplication.getActorAdapter().deleteCast(tmdbId, MizLib.TYPE_MOVIE);
+
         // Finally, delete all filepath mappings to this movie ID
         MizuuApplication.getMovieMappingAdapter().deleteMovie(tmdbId);
     }
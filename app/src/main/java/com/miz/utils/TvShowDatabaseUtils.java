@@ -52,6 +52,13 @@ public class TvShowDatabaseUtils {
         // Delete all episode filepath mappings
         MizuuApplication.getTvShowEpisodeMappingsDbAdapter().deleteAllFilepaths();
 
+        // Delete all season cover records
+        MizuuApplication.getSeasonCoversAdapter().deleteAllSeasonCovers();
+
+        // Delete the cached cast of all TV shows
+        MizuuApplication.getActorAdapter().deleteAllCast(MizLib.TYPE_SHOWS);
+        MizuuApplication.getActorAdapter().deleteUnusedActors();
+
         // Delete all downloaded image files from the device
         FileUtils.deleteRecursive(MizuuApplication.getTvShowThumbFolder(context), false);
         FileUtils.deleteRecursive(MizuuApplication.getTvShowBackdropFolder(context), false);
@@ -86,12 +93,16 @@ public class TvShowDatabaseUtils {
 
 		// Remove season image
 		FileUtils.getTvShowSeason(context, showId, season).delete();
+		MizuuApplication.getSeasonCoversAdapter().deleteSeasonCover(showId, MizLib.addIndexZero(season));
 
 		// Check if we've removed all episodes for the given TV show
 		if (episodeAdapter.getEpisodeCount(showId) == 0) {
 			// Remove the TV show from the TV show database
 			showAdapter.deleteShow(showId);
 
+			// Remove the cached cast
+			MizuuApplication.getActorAdapter().deleteCast(showId, MizLib.TYPE_SHOWS);
+
 			// Remove the TV show thumbnail image
 			FileUtils.getTvShowThumb(context, showId).delete();
 
@@ -130,6 +141,7 @@ public class TvShowDatabaseUtils {
 
 							// Remove season image
 							FileUtils.getTvShowSeason(context, showId, season).delete();
+							MizuuApplication.getSeasonCoversAdapter().deleteSeasonCover(showId, season);
 						}
 					}
 				}
@@ -144,6 +156,9 @@ public class TvShowDatabaseUtils {
 			// Remove the TV show from the TV show database
 			showAdapter.deleteShow(showId);
 
+			// Remove the cached cast
+			MizuuApplication.getActorAdapter().deleteCast(showId, MizLib.TYPE_SHOWS);
+
 			// Remove the TV show thumbnail image
 			FileUtils.getTvShowThumb(context, showId).delete();
 
@@ -177,6 +192,7 @@ public class TvShowDatabaseUtils {
 
             // Remove season image
             FileUtils.getTvShowSeason(context, showId, season).delete();
+            MizuuApplication.getSeasonCoversAdapter().deleteSeasonCover(showId, MizLib.addIndexZero(season));
         }
 
 		// Check if we've removed all episodes for the given TV show
@@ -185,6 +201,9 @@ public class TvShowDatabaseUtils {
 			// Remove the TV show from the TV show database
 			showAdapter.deleteShow(showId);
 
+			// Remove the cached cast
+			MizuuApplication.getActorAdapter().deleteCast(showId, MizLib.TYPE_SHOWS);
+
 			// Remove the TV show thumbnail image
 			FileUtils.getTvShowThumb(context, showId).delete();
 
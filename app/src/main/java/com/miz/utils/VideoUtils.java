@@ -29,7 +29,9 @@ import com.miz.functions.Filepath;
 import com.miz.functions.MizLib;
 import com.miz.functions.Movie;
 import com.miz.functions.SmbLogin;
+import com.miz.functions.SmbSessionManager;
 import com.miz.functions.TmdbTrailerSearch;
+import com.miz.mizuu.MizuuApplication;
 import com.miz.mizuu.R;
 import com.miz.mizuu.TvShowEpisode;
 import com.miz.smbstreamer.Streamer;
@@ -37,6 +39,7 @@ import com.miz.smbstreamer.Streamer;
 import java.io.File;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
+import java.util.List;
 
 import jcifs.smb.SmbFile;
 
@@ -57,14 +60,37 @@ public class VideoUtils {
 			try { // Attempt to launch intent with the video MIME wildcard
 				activity.startActivity(getVideoIntent(filepath, videoObject));
 			} catch (Exception e) {
-				playbackStarted = false;
-				Toast.makeText(activity, activity.getString(R.string.noVideoPlayerFound), Toast.LENGTH_LONG).show();
+				// Some players only accept HTTP URLs, so try serving the file instead
+				if (!playLocalFileOverHttp(activity, filepath, videoObject)) {
+					playbackStarted = false;
+					Toast.makeText(activity, activity.getString(R.string.noVideoPlayerFound), Toast.LENGTH_LONG).show();
+				}
 			}
 		}
 
 		return playbackStarted;
 	}
 
+	/**
+	 * Plays a file on the device, i.e. an offline copy, through the {@link Streamer}.
+	 * @return True if a player was started
+	 */
+	private static boolean playLocalFileOverHttp(Activity activity, String filepath, Object videoObject) {
+		if (!MizLib.isWifiConnected(activity) || !new File(filepath).isFile())
+			return false;
+
+		String url = startLocalServer(activity, filepath);
+		if (TextUtils.isEmpty(url))
+			return false;
+
+		try {
+			activity.startActivity(putSubtitleExtras(getVideoIntent(Uri.parse(url), videoObject), Streamer.getInstance().getSubtitleUrls()));
+			return true;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
 	private static boolean playNetworkFile(final Activity activity, final String filepath, final Object videoObject) {
 		if (!MizLib.isWifiConnected(activity)) {
 			Toast.makeText(activity, activity.getString(R.string.noConnection), Toast.LENGTH_LONG).show();
@@ -86,13 +112,14 @@ public class VideoUtils {
 		}
 
 		int contentType = (videoObject instanceof Movie) ? MizLib.TYPE_MOVIE : MizLib.TYPE_SHOWS;
-		final SmbLogin auth = MizLib.getLoginFromFilepath(contentType, filepath);
+		final SmbSessionManager.Session session = MizuuApplication.getSmbSessionManager().getSession(contentType, filepath);
+		final SmbLogin auth = MizLib.getLoginFromFilesource(session != null ? session.getFileSource() : null);
 
 		new Thread(){
 			public void run(){
 				try{
-					final SmbFile file = new SmbFile(
-							MizLib.createSmbLoginString(
+					final SmbFile file = session != null ? session.getFile(filepath) :
+							new SmbFile(MizLib.createSmbLoginString(
 									auth.getDomain(),
 									auth.getUsername(),
 									auth.getPassword(),
@@ -101,15 +128,16 @@ public class VideoUtils {
 							));
 
 					s.setStreamSrc(file, MizLib.getSubtitleFiles(filepath, auth)); //the second argument can be a list of subtitle files
+					final List<String> subtitleUrls = s.getSubtitleUrls();
 					activity.runOnUiThread(new Runnable(){
 						public void run(){
 							try{
 								Uri uri = Uri.parse(s.getUrl() + Uri.fromFile(new File(Uri.parse(filepath).getPath())).getEncodedPath());
-								activity.startActivity(getVideoIntent(uri, videoObject));
+								activity.startActivity(putSubtitleExtras(getVideoIntent(uri, videoObject), subtitleUrls));
 							} catch (Exception e) {
 								try { // Attempt to launch intent based on wildcard MIME type
 									Uri uri = Uri.parse(s.getUrl() + Uri.fromFile(new File(Uri.parse(filepath).getPath())).getEncodedPath());
-									activity.startActivity(getVideoIntent(uri, "video/*", videoObject));
+									activity.startActivity(putSubtitleExtras(getVideoIntent(uri, "video/*", videoObject), subtitleUrls));
 								} catch (Exception e2) {
 									Toast.makeText(activity, activity.getString(R.string.noVideoPlayerFound), Toast.LENGTH_LONG).show();
 								}
@@ -146,13 +174,14 @@ public class VideoUtils {
 		}
 
 		int contentType = (videoObject instanceof Movie) ? MizLib.TYPE_MOVIE : MizLib.TYPE_SHOWS;
-		final SmbLogin auth = MizLib.getLoginFromFilepath(contentType, filepath);
+		final SmbSessionManager.Session session = MizuuApplication.getSmbSessionManager().getSession(contentType, filepath);
+		final SmbLogin auth = MizLib.getLoginFromFilesource(session != null ? session.getFileSource() : null);
 
 		new Thread(){
 			public void run(){
 				try{
-					final SmbFile file = new SmbFile(
-							MizLib.createSmbLoginString(
+					final SmbFile file = session != null ? session.getFile(filepath) :
+							new SmbFile(MizLib.createSmbLoginString(
 									auth.getDomain(),
 									auth.getUsername(),
 									auth.getPassword(),
@@ -170,6 +199,28 @@ public class VideoUtils {
 		return Uri.parse(s.getUrl() + Uri.fromFile(new File(Uri.parse(filepath).getPath())).getEncodedPath()).toString();
 	}
 
+	/**
+	 * Serves a file on the device, i.e. a local file or an offline copy, over HTTP.
+	 * @return URL of the file, or an empty String if it can't be served
+	 */
+	public static String startLocalServer(final Activity activity, final String filepath) {
+		if (!MizLib.isWifiConnected(activity)) {
+			Toast.makeText(activity, activity.getString(R.string.noConnection), Toast.LENGTH_LONG).show();
+			return "";
+		}
+
+		final Streamer s = Streamer.getInstance();
+		if (s == null) {
+			Toast.makeText(activity, activity.getString(R.string.errorOccured), Toast.LENGTH_SHORT).show();
+			return "";
+		}
+
+		File file = new File(filepath);
+		s.setStreamSrc(file, MizLib.getLocalSubtitleFiles(file));
+
+		return Uri.parse(s.getUrl() + Uri.fromFile(file).getEncodedPath()).toString();
+	}
+
 	public static void playTrailer(final Activity activity, final Movie movie) {
 		String localTrailer = "";
 		for (Filepath path : movie.getFilepaths()) {
@@ -236,6 +287,28 @@ public class VideoUtils {
 		return videoIntent;
 	}
 
+	/**
+	 * Adds the subtitles served by the {@link Streamer} to a video intent, using the
+	 * extras of MX Player and VLC. Other players simply ignore them.
+	 */
+	public static Intent putSubtitleExtras(Intent videoIntent, List<String> subtitleUrls) {
+		if (subtitleUrls.isEmpty())
+			return videoIntent;
+
+		Uri[] subtitles = new Uri[subtitleUrls.size()];
+		String[] names = new String[subtitleUrls.size()];
+		for (int i = 0; i < subtitles.length; i++) {
+			subtitles[i] = Uri.parse(subtitleUrls.get(i));
+			names[i] = subtitles[i].getLastPathSegment();
+		}
+
+		videoIntent.putExtra("subs", subtitles);
+		videoIntent.putExtra("subs.name", names);
+		videoIntent.putExtra("subtitles_location", subtitleUrls.get(0));
+
+		return videoIntent;
+	}
+
 	private static Bundle getVideoIntentBundle(Object videoObject) {
 		Bundle b = new Bundle();
 		String title = "";
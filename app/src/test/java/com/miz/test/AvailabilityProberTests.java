@@ -0,0 +1,194 @@
+package com.miz.test;/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.miz.functions.AvailabilityProber;
+import com.miz.functions.FileSource;
+import com.miz.functions.SmbDirectoryCache;
+import com.miz.functions.SmbSessionManager;
+import com.miz.functions.UpnpAvailabilityChecker;
+import com.squareup.okhttp.OkHttpClient;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import jcifs.smb.NtlmPasswordAuthentication;
+
+/**
+ * Tests how the prober maps the answers of the file sources to the
+ * availability of each file, using a simulated SMB server.
+ */
+public class AvailabilityProberTests extends TestCase {
+
+	private static final int TYPE = 0;
+	private static final String SOURCE = "smb://nas/Movies/";
+
+	private FakeSession mSession;
+	private AvailabilityProber mProber;
+	private File mLocalFile;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		mSession = new FakeSession();
+		mSession.mFolders.put(SOURCE, new String[]{"Alien (1979).mkv", "HEAT (1995).MKV"});
+
+		OkHttpClient client = new OkHttpClient();
+		client.setConnectTimeout(1, TimeUnit.SECONDS);
+		mProber = new AvailabilityProber(new FakeSessionManager(mSession), new UpnpAvailabilityChecker(client));
+
+		mLocalFile = File.createTempFile("availability_prober_test", ".mkv");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mLocalFile.delete();
+
+		super.tearDown();
+	}
+
+	/**
+	 * SMB files should be answered from the listing of their folder, ignoring the case of the names.
+	 */
+	public void testFilesInListedFolder() {
+		Map<String, Boolean> results = mProber.probe(TYPE, Arrays.asList(SOURCE + "Alien (1979).mkv",
+				SOURCE + "Heat (1995).mkv", SOURCE + "Ronin (1998).mkv"));
+
+		assertEquals(3, results.size());
+		assertEquals(Boolean.TRUE, results.get(SOURCE + "Alien (1979).mkv"));
+		assertEquals(Boolean.TRUE, results.get(SOURCE + "Heat (1995).mkv"));
+		assertEquals(Boolean.FALSE, results.get(SOURCE + "Ronin (1998).mkv"));
+		assertEquals(1, mSession.mListings);
+		assertEquals(0, mSession.mChecks);
+	}
+
+	/**
+	 * Files in a folder that can't be listed should be checked one by one,
+	 * and files that can't be checked either should be left out.
+	 */
+	public void testFolderThatCantBeListed() {
+		mSession.mFiles.put(SOURCE + "Gone/Alien (1979).mkv", true);
+		mSession.mFiles.put(SOURCE + "Gone/Heat (1995).mkv", false);
+
+		Map<String, Boolean> results = mProber.probe(TYPE, Arrays.asList(SOURCE + "Gone/Alien (1979).mkv",
+				SOURCE + "Gone/Heat (1995).mkv", SOURCE + "Gone/Ronin (1998).mkv"));
+
+		assertEquals(2, results.size());
+		assertEquals(Boolean.TRUE, results.get(SOURCE + "Gone/Alien (1979).mkv"));
+		assertEquals(Boolean.FALSE, results.get(SOURCE + "Gone/Heat (1995).mkv"));
+		assertNull(results.get(SOURCE + "Gone/Ronin (1998).mkv"));
+		assertEquals(3, mSession.mChecks);
+	}
+
+	/**
+	 * Files without a file source, or on a server that doesn't respond, should be left out.
+	 */
+	public void testFilesThatCantBeChecked() {
+		Map<String, Boolean> results = mProber.probe(TYPE, Arrays.asList("smb://other/Movies/Alien (1979).mkv",
+				"http://127.0.0.1:1/MediaItems/1.mkv"));
+
+		assertTrue(results.toString(), results.isEmpty());
+		assertNull(mProber.probe(TYPE, "smb://other/Movies/Alien (1979).mkv"));
+	}
+
+	/**
+	 * Local files should be checked on the file system, and listed UPnP files
+	 * should be available without being probed.
+	 */
+	public void testLocalAndUpnpFiles() {
+		UpnpAvailabilityChecker checker = new UpnpAvailabilityChecker(new OkHttpClient());
+		checker.putListing(new HashSet<String>(Arrays.asList("http://127.0.0.1:1/MediaItems/1.mkv")));
+		AvailabilityProber prober = new AvailabilityProber(new FakeSessionManager(mSession), checker);
+
+		Map<String, Boolean> results = prober.probe(TYPE, Arrays.asList(mLocalFile.getAbsolutePath(),
+				mLocalFile.getAbsolutePath() + ".missing", "http://127.0.0.1:1/MediaItems/1.mkv"));
+
+		assertEquals(3, results.size());
+		assertEquals(Boolean.TRUE, results.get(mLocalFile.getAbsolutePath()));
+		assertEquals(Boolean.FALSE, results.get(mLocalFile.getAbsolutePath() + ".missing"));
+		assertEquals(Boolean.TRUE, results.get("http://127.0.0.1:1/MediaItems/1.mkv"));
+	}
+
+	/**
+	 * Results should be cached, until the cache is cleared.
+	 */
+	public void testResultsAreCached() {
+		assertEquals(Boolean.TRUE, mProber.probe(TYPE, SOURCE + "Alien (1979).mkv"));
+		mSession.mFolders.put(SOURCE, new String[0]);
+
+		assertEquals(Boolean.TRUE, mProber.probe(TYPE, SOURCE + "Alien (1979).mkv"));
+		assertEquals(1, mSession.mListings);
+
+		mProber.clear();
+		assertEquals(Boolean.FALSE, mProber.probe(TYPE, SOURCE + "Alien (1979).mkv"));
+		assertEquals(2, mSession.mListings);
+	}
+
+	private static class FakeSessionManager extends SmbSessionManager {
+
+		private final Session mSession;
+
+		public FakeSessionManager(Session session) {
+			mSession = session;
+		}
+
+		@Override
+		public Session getSession(int type, String filepath) {
+			return filepath.startsWith(SOURCE) ? mSession : null;
+		}
+	}
+
+	/**
+	 * Folders that aren't known can't be listed. Files that aren't known can't be checked.
+	 */
+	private static class FakeSession extends SmbSessionManager.Session {
+
+		private final Map<String, String[]> mFolders = new HashMap<String, String[]>();
+		private final Map<String, Boolean> mFiles = new HashMap<String, Boolean>();
+		private volatile int mListings, mChecks;
+
+		public FakeSession() {
+			super(new FileSource(1, SOURCE, FileSource.SMB, "", "", "", "movie"),
+					new NtlmPasswordAuthentication(null, null, null), new Semaphore(4), new SmbDirectoryCache(), 30000);
+		}
+
+		@Override
+		public synchronized String[] list(String folderPath) throws IOException {
+			mListings++;
+			String[] list = mFolders.get(folderPath);
+			if (list == null)
+				throw new IOException("Couldn't list folder: " + folderPath);
+			return list;
+		}
+
+		@Override
+		public synchronized boolean exists(String filepath) throws IOException {
+			mChecks++;
+			Boolean exists = mFiles.get(filepath);
+			if (exists == null)
+				throw new IOException("Server is unavailable");
+			return exists;
+		}
+	}
+}
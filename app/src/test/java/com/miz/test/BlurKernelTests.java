@@ -0,0 +1,140 @@
+package com.miz.test;/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.miz.functions.BlurKernel;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the pure Java blur kernel.
+ */
+public class BlurKernelTests extends TestCase {
+
+	public void testUniformImageIsUnchanged() {
+		int[] pixels = new int[8 * 6];
+		for (int i = 0; i < pixels.length; i++)
+			pixels[i] = 0xFF336699;
+
+		BlurKernel.blur(pixels, 8, 6, 3);
+
+		for (int pixel : pixels)
+			assertEquals(0xFF336699, pixel);
+	}
+
+	public void testZeroRadiusIsUnchanged() {
+		int[] pixels = new int[]{0xFF000000, 0xFFFFFFFF, 0xFF000000, 0xFFFFFFFF};
+
+		BlurKernel.blur(pixels, 2, 2, 0);
+
+		assertEquals(0xFF000000, pixels[0]);
+		assertEquals(0xFFFFFFFF, pixels[1]);
+		assertEquals(0xFF000000, pixels[2]);
+		assertEquals(0xFFFFFFFF, pixels[3]);
+	}
+
+	public void testSinglePixelSpreadsSymmetrically() {
+		int width = 21, height = 21;
+		int[] pixels = new int[width * height];
+		for (int i = 0; i < pixels.length; i++)
+			pixels[i] = 0xFF000000;
+		pixels[10 * width + 10] = 0xFFFFFFFF;
+
+		BlurKernel.blur(pixels, width, height, 2);
+
+		int center = red(pixels[10 * width + 10]);
+
+		// The bright pixel should have been spread out...
+		assertTrue(center < 255);
+		assertTrue(red(pixels[10 * width + 11]) > 0);
+
+		// ... evenly in all directions ...
+		assertEquals(red(pixels[10 * width + 9]), red(pixels[10 * width + 11]));
+		assertEquals(red(pixels[9 * width + 10]), red(pixels[11 * width + 10]));
+		assertEquals(red(pixels[10 * width + 9]), red(pixels[9 * width + 10]));
+
+		// ... and fade out with the distance to the center
+		assertTrue(center >= red(pixels[10 * width + 12]));
+		assertTrue(red(pixels[10 * width + 12]) >= red(pixels[10 * width + 14]));
+		assertEquals(0, red(pixels[0]));
+
+		// Alpha should be left alone
+		for (int pixel : pixels)
+			assertEquals(0xFF, pixel >>> 24);
+	}
+
+	public void testNonSquareImage() {
+		int width = 10, height = 3;
+		int[] pixels = new int[width * height];
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				pixels[y * width + x] = x < width / 2 ? 0xFF000000 : 0xFFFFFFFF;
+
+		BlurKernel.blur(pixels, width, height, 1);
+
+		// Edges stay close to their colours, the middle is blended
+		assertTrue(red(pixels[0]) < 64);
+		assertTrue(red(pixels[width - 1]) > 192);
+		assertTrue(red(pixels[width / 2]) > 0 && red(pixels[width / 2]) < 255);
+
+		// Every row is the same, so they should still be the same
+		for (int y = 1; y < height; y++)
+			for (int x = 0; x < width; x++)
+				assertEquals(pixels[x], pixels[y * width + x]);
+	}
+
+	/**
+	 * A vertical edge should be blurred like a gaussian blur with the
+	 * standard deviation that RenderScript uses for the same radius.
+	 */
+	public void testMatchesGaussianBlur() {
+		for (int radius : new int[]{2, 4, 10, 25}) {
+			int width = 201, height = 3;
+			int[] pixels = new int[width * height];
+			for (int y = 0; y < height; y++)
+				for (int x = 0; x < width; x++)
+					pixels[y * width + x] = x <= width / 2 ? 0xFF000000 : 0xFFFFFFFF;
+
+			BlurKernel.blur(pixels, width, height, radius);
+
+			double sigma = 0.4 * radius + 0.6;
+			for (int x = 0; x < width; x++) {
+				// Sum of the gaussian weights of the white pixels, which is the expected brightness
+				double white = 0, total = 0;
+				for (int i = 0; i < width; i++) {
+					double weight = Math.exp(-(x - i) * (x - i) / (2 * sigma * sigma));
+					total += weight;
+					if (i > width / 2)
+						white += weight;
+				}
+
+				int expected = (int) Math.round(255 * white / total);
+				int actual = red(pixels[width + x]);
+				assertTrue("Radius " + radius + " at " + x + ": expected " + expected + ", got " + actual, Math.abs(expected - actual) <= 5);
+			}
+		}
+	}
+
+	public void testTooFewPixels() {
+		try {
+			BlurKernel.blur(new int[4], 3, 3, 1);
+			fail("Expected an IllegalArgumentException");
+		} catch (IllegalArgumentException expected) {}
+	}
+
+	private static int red(int pixel) {
+		return (pixel >> 16) & 0xff;
+	}
+}
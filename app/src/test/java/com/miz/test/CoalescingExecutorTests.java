@@ -0,0 +1,266 @@
+package com.miz.test;/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.miz.functions.CoalescingExecutor;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the library load executor with bursts of tasks.
+ */
+public class CoalescingExecutorTests extends TestCase {
+
+	/**
+	 * Only the latest of a burst of tasks with the same key should run.
+	 */
+	public void testBurstIsCoalesced() throws Exception {
+		CoalescingExecutor executor = newExecutor(1);
+		CountDownLatch blocker = block(executor);
+
+		final AtomicInteger runs = new AtomicInteger();
+		final AtomicInteger lastValue = new AtomicInteger(-1);
+
+		List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>();
+		for (int i = 0; i < 100; i++) {
+			final int value = i;
+			FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+				@Override
+				public Void call() {
+					runs.incrementAndGet();
+					lastValue.set(value);
+					return null;
+				}
+			});
+			tasks.add(task);
+			executor.execute("movies", CoalescingExecutor.PRIORITY_NORMAL, task);
+		}
+
+		// Only the latest task should be queued
+		assertEquals(1, executor.getQueueSize());
+
+		blocker.countDown();
+		finish(executor);
+
+		assertEquals(1, runs.get());
+		assertEquals(99, lastValue.get());
+
+		// Every replaced task should have been cancelled, not dropped
+		for (int i = 0; i < 99; i++)
+			assertTrue(tasks.get(i).isCancelled());
+		assertFalse(tasks.get(99).isCancelled());
+		assertTrue(tasks.get(99).isDone());
+	}
+
+	/**
+	 * Tasks should run by priority, and in order within the same priority.
+	 */
+	public void testPriorityOrder() throws Exception {
+		CoalescingExecutor executor = newExecutor(1);
+		CountDownLatch blocker = block(executor);
+
+		List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+		executor.execute("low", CoalescingExecutor.PRIORITY_LOW, record(order, "low"));
+		executor.execute("normal1", CoalescingExecutor.PRIORITY_NORMAL, record(order, "normal1"));
+		executor.execute("high", CoalescingExecutor.PRIORITY_HIGH, record(order, "high"));
+		executor.execute("normal2", CoalescingExecutor.PRIORITY_NORMAL, record(order, "normal2"));
+		executor.execute(record(order, "normal3"));
+
+		blocker.countDown();
+		finish(executor);
+
+		assertEquals(5, order.size());
+		assertEquals("high", order.get(0));
+		assertEquals("normal1", order.get(1));
+		assertEquals("normal2", order.get(2));
+		assertEquals("normal3", order.get(3));
+		assertEquals("low", order.get(4));
+	}
+
+	/**
+	 * Making a queued task visible should move it to the front.
+	 */
+	public void testSetPriority() throws Exception {
+		CoalescingExecutor executor = newExecutor(1);
+		CountDownLatch blocker = block(executor);
+
+		List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+		executor.execute("favorites", CoalescingExecutor.PRIORITY_NORMAL, record(order, "favorites"));
+		executor.execute("watchlist", CoalescingExecutor.PRIORITY_NORMAL, record(order, "watchlist"));
+		executor.execute("watched", CoalescingExecutor.PRIORITY_NORMAL, record(order, "watched"));
+
+		executor.setPriority("watched", CoalescingExecutor.PRIORITY_HIGH);
+		executor.setPriority("unknown", CoalescingExecutor.PRIORITY_HIGH);
+
+		assertEquals(3, executor.getQueueSize());
+
+		blocker.countDown();
+		finish(executor);
+
+		assertEquals(3, order.size());
+		assertEquals("watched", order.get(0));
+		assertEquals("favorites", order.get(1));
+		assertEquals("watchlist", order.get(2));
+	}
+
+	/**
+	 * A running task should be cancelled when it's replaced.
+	 */
+	public void testRunningTaskIsCancelled() throws Exception {
+		CoalescingExecutor executor = newExecutor(2);
+
+		final CountDownLatch started = new CountDownLatch(1);
+		FutureTask<Void> running = new FutureTask<Void>(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				started.countDown();
+				Thread.sleep(10000);
+				return null;
+			}
+		});
+
+		executor.execute("shows", CoalescingExecutor.PRIORITY_NORMAL, running);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		List<String> order = Collections.synchronizedList(new ArrayList<String>());
+		executor.execute("shows", CoalescingExecutor.PRIORITY_NORMAL, record(order, "latest"));
+
+		assertTrue(running.isCancelled());
+
+		finish(executor);
+
+		assertEquals(1, order.size());
+	}
+
+	/**
+	 * Many threads submitting bursts for a few keys at once. The latest
+	 * task of each key must run, and replaced tasks must be cancelled.
+	 */
+	public void testConcurrentBursts() throws Exception {
+		final CoalescingExecutor executor = newExecutor(2);
+		final int keys = 7, threads = 8, tasksPerThread = 500;
+
+		final AtomicInteger runs = new AtomicInteger();
+		final List<FutureTask<Void>> submitted = Collections.synchronizedList(new ArrayList<FutureTask<Void>>());
+		final FutureTask<?>[] latest = new FutureTask<?>[keys];
+
+		final CountDownLatch go = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+
+		for (int t = 0; t < threads; t++) {
+			final int thread = t;
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						go.await();
+						for (int i = 0; i < tasksPerThread; i++) {
+							int key = (thread + i) % keys;
+							FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+								@Override
+								public Void call() {
+									runs.incrementAndGet();
+									return null;
+								}
+							});
+							submitted.add(task);
+
+							// Keep track of the latest task of each key
+							synchronized (latest) {
+								executor.execute("key" + key, i % 3, task);
+								latest[key] = task;
+							}
+						}
+					} catch (InterruptedException ignored) {
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+
+		go.countDown();
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		finish(executor);
+
+		for (FutureTask<?> task : latest) {
+			assertTrue(task.isDone());
+			assertFalse(task.isCancelled());
+		}
+
+		// Every task was either run or cancelled
+		int cancelled = 0;
+		for (FutureTask<Void> task : submitted) {
+			assertTrue(task.isDone());
+			if (task.isCancelled())
+				cancelled++;
+		}
+
+		assertEquals(threads * tasksPerThread, submitted.size());
+		assertTrue(runs.get() >= keys);
+		assertTrue(runs.get() + cancelled >= submitted.size());
+	}
+
+	private static CoalescingExecutor newExecutor(int threads) {
+		return new CoalescingExecutor(threads, Executors.defaultThreadFactory());
+	}
+
+	/**
+	 * Occupies all threads of the executor until the returned latch is released.
+	 */
+	private static CountDownLatch block(CoalescingExecutor executor) throws InterruptedException {
+		final CountDownLatch blocker = new CountDownLatch(1);
+		final CountDownLatch started = new CountDownLatch(1);
+
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					blocker.await();
+				} catch (InterruptedException ignored) {}
+			}
+		});
+
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		return blocker;
+	}
+
+	private static Runnable record(final List<String> order, final String name) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				order.add(name);
+			}
+		};
+	}
+
+	private static void finish(CoalescingExecutor executor) throws InterruptedException {
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,278 @@
+package com.miz.test;/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.miz.functions.ImageDownloader;
+import com.squareup.okhttp.OkHttpClient;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the image downloader against a small local HTTP server.
+ */
+public class ImageDownloaderTests extends TestCase {
+
+	private static final String IMAGE = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+	private TestServer mServer;
+	private File mFolder;
+	private ImageDownloader mDownloader;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		mServer = new TestServer();
+
+		mFolder = new File(System.getProperty("java.io.tmpdir"), "image_downloader_test_" + System.nanoTime());
+		mFolder.mkdirs();
+
+		mDownloader = new ImageDownloader(new OkHttpClient(), new File(mFolder, "validators"));
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mServer.close();
+		delete(mFolder);
+
+		super.tearDown();
+	}
+
+	/**
+	 * A downloaded image should be revalidated using its ETag,
+	 * and left untouched if the server hasn't got a newer one.
+	 */
+	public void testRevalidation() throws Exception {
+		File image = new File(mFolder, "cover.jpg");
+
+		mServer.enqueue(200, IMAGE, "ETag: \"v1\"");
+		assertEquals(ImageDownloader.Result.DOWNLOADED, mDownloader.download(mServer.getUrl("/cover.jpg"), image));
+		assertEquals(IMAGE, read(image));
+		assertNull(mServer.takeRequest().get("if-none-match"));
+
+		mServer.enqueue(304, null);
+		assertEquals(ImageDownloader.Result.NOT_MODIFIED, mDownloader.download(mServer.getUrl("/cover.jpg"), image));
+		assertEquals("\"v1\"", mServer.takeRequest().get("if-none-match"));
+		assertEquals(IMAGE, read(image));
+	}
+
+	/**
+	 * An image that has been changed since it was downloaded must be downloaded unconditionally.
+	 */
+	public void testChangedImageIsNotRevalidated() throws Exception {
+		File image = new File(mFolder, "cover.jpg");
+
+		mServer.enqueue(200, IMAGE, "ETag: \"v1\"");
+		assertEquals(ImageDownloader.Result.DOWNLOADED, mDownloader.download(mServer.getUrl("/cover.jpg"), image));
+		mServer.takeRequest();
+
+		write(image, "resized");
+
+		mServer.enqueue(200, IMAGE, "ETag: \"v1\"");
+		assertEquals(ImageDownloader.Result.DOWNLOADED, mDownloader.download(mServer.getUrl("/cover.jpg"), image));
+		assertNull(mServer.takeRequest().get("if-none-match"));
+		assertEquals(IMAGE, read(image));
+	}
+
+	/**
+	 * A truncated or failed download must leave the existing image untouched.
+	 */
+	public void testFailedDownloadKeepsExistingImage() throws Exception {
+		File image = new File(mFolder, "cover.jpg");
+		write(image, "old");
+
+		mServer.enqueueTruncated(IMAGE);
+		assertEquals(ImageDownloader.Result.FAILED, mDownloader.download(mServer.getUrl("/cover.jpg"), image));
+		assertEquals("old", read(image));
+
+		mServer.enqueue(404, "Not found");
+		assertEquals(ImageDownloader.Result.FAILED, mDownloader.download(mServer.getUrl("/cover.jpg"), image));
+		assertEquals("old", read(image));
+
+		// No temporary files should be left behind
+		String[] files = mFolder.list();
+		for (String file : files)
+			assertFalse(file, file.endsWith(".tmp"));
+	}
+
+	/**
+	 * Concurrent requests for the same URL should result in a single request.
+	 */
+	public void testConcurrentRequestsAreCoalesced() throws Exception {
+		CountDownLatch release = mServer.block();
+		mServer.enqueue(200, IMAGE);
+
+		List<Future<ImageDownloader.Result>> results = new ArrayList<Future<ImageDownloader.Result>>();
+		for (int i = 0; i < 10; i++)
+			results.add(mDownloader.enqueue(mServer.getUrl("/cover.jpg"), new File(mFolder, "cover.jpg")));
+		results.add(mDownloader.enqueue(mServer.getUrl("/cover.jpg"), new File(mFolder, "copy.jpg")));
+
+		release.countDown();
+
+		for (Future<ImageDownloader.Result> result : results)
+			assertEquals(ImageDownloader.Result.DOWNLOADED, result.get(10, TimeUnit.SECONDS));
+
+		assertEquals(1, mServer.getRequestCount());
+		assertEquals(0, mDownloader.getPendingCount());
+		assertEquals(IMAGE, read(new File(mFolder, "cover.jpg")));
+		assertEquals(IMAGE, read(new File(mFolder, "copy.jpg")));
+	}
+
+	private static String read(File file) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			return reader.readLine();
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static void write(File file, String content) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null)
+			for (File child : files)
+				delete(child);
+		file.delete();
+	}
+
+	/**
+	 * Serves queued responses, one per connection, and records the request headers.
+	 */
+	private static class TestServer implements Runnable {
+
+		private final ServerSocket mSocket;
+		private final BlockingQueue<String> mResponses = new LinkedBlockingQueue<String>();
+		private final BlockingQueue<Map<String, String>> mRequests = new LinkedBlockingQueue<Map<String, String>>();
+		private final List<Map<String, String>> mAllRequests = Collections.synchronizedList(new ArrayList<Map<String, String>>());
+		private volatile CountDownLatch mBlocker = new CountDownLatch(0);
+
+		public TestServer() throws IOException {
+			mSocket = new ServerSocket(0);
+
+			Thread thread = new Thread(this);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		public String getUrl(String path) {
+			return "http://127.0.0.1:" + mSocket.getLocalPort() + path;
+		}
+
+		/**
+		 * Queues a response. Header lines are added as they are.
+		 */
+		public void enqueue(int code, String body, String... headers) {
+			StringBuilder response = new StringBuilder("HTTP/1.1 " + code + " Status\r\nConnection: close\r\n");
+			for (String header : headers)
+				response.append(header).append("\r\n");
+			response.append("Content-Length: ").append(body != null ? body.length() : 0).append("\r\n\r\n");
+			if (body != null)
+				response.append(body);
+			mResponses.add(response.toString());
+		}
+
+		/**
+		 * Queues a response that announces the full body, but only sends half of it.
+		 */
+		public void enqueueTruncated(String body) {
+			mResponses.add("HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: " + body.length() + "\r\n\r\n" +
+					body.substring(0, body.length() / 2));
+		}
+
+		/**
+		 * Holds back all responses until the returned latch is released.
+		 */
+		public CountDownLatch block() {
+			mBlocker = new CountDownLatch(1);
+			return mBlocker;
+		}
+
+		public Map<String, String> takeRequest() throws InterruptedException {
+			return mRequests.poll(10, TimeUnit.SECONDS);
+		}
+
+		public int getRequestCount() {
+			return mAllRequests.size();
+		}
+
+		public void close() throws IOException {
+			mSocket.close();
+		}
+
+		@Override
+		public void run() {
+			while (!mSocket.isClosed()) {
+				try {
+					Socket socket = mSocket.accept();
+					try {
+						BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+
+						HashMap<String, String> request = new HashMap<String, String>();
+						request.put("", reader.readLine());
+
+						String line;
+						while ((line = reader.readLine()) != null && line.length() > 0) {
+							int colon = line.indexOf(':');
+							request.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+						}
+
+						mAllRequests.add(request);
+						mRequests.add(request);
+
+						mBlocker.await(10, TimeUnit.SECONDS);
+
+						String response = mResponses.poll(10, TimeUnit.SECONDS);
+						if (response != null) {
+							OutputStream out = socket.getOutputStream();
+							out.write(response.getBytes("UTF-8"));
+							out.flush();
+						}
+					} finally {
+						socket.close();
+					}
+				} catch (Exception ignored) {}
+			}
+		}
+	}
+}
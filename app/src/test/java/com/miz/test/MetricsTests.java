@@ -0,0 +1,153 @@
+package com.miz.test;/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import com.miz.functions.Metrics;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * Tests the metrics counters and histograms.
+ */
+public class MetricsTests extends TestCase {
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		Metrics.reset();
+		Metrics.setEnabled(true);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		Metrics.setEnabled(false);
+		Metrics.reset();
+		super.tearDown();
+	}
+
+	public void testDisabledRecordsNothing() {
+		Metrics.setEnabled(false);
+
+		long start = Metrics.start();
+		assertEquals(0, start);
+
+		Metrics.increment("test.counter");
+		Metrics.stop("test.timer", start);
+		Metrics.record("test.timer", 1000);
+
+		assertEquals(0, Metrics.getCounter("test.counter"));
+		assertNull(Metrics.getHistogram("test.timer"));
+	}
+
+	public void testCounters() {
+		Metrics.increment("test.counter");
+		Metrics.increment("test.counter");
+		Metrics.add("test.counter", 40);
+
+		assertEquals(42, Metrics.getCounter("test.counter"));
+		assertEquals(0, Metrics.getCounter("test.missing"));
+	}
+
+	public void testHistogram() {
+		for (int i = 1; i <= 100; i++)
+			Metrics.record("test.timer", i * 1000000L); // 1 to 100 ms
+
+		Metrics.Histogram histogram = Metrics.getHistogram("test.timer");
+		assertEquals(100, histogram.getCount());
+		assertEquals(5050 * 1000000L, histogram.getTotal());
+		assertEquals(1000000L, histogram.getMin());
+		assertEquals(100000000L, histogram.getMax());
+		assertEquals(50500000L, histogram.getMean());
+
+		// Percentiles are upper bounds of power-of-two microsecond buckets
+		long p50 = histogram.getPercentile(50);
+		assertTrue(p50 >= 50000000L);
+		assertTrue(p50 <= 2 * 50000000L);
+		assertEquals(100000000L, histogram.getPercentile(100));
+	}
+
+	public void testStartAndStop() throws InterruptedException {
+		long start = Metrics.start();
+		Thread.sleep(5);
+		Metrics.stop("test.timer", start);
+
+		Metrics.Histogram histogram = Metrics.getHistogram("test.timer");
+		assertEquals(1, histogram.getCount());
+		assertTrue(histogram.getMax() >= 5000000L);
+	}
+
+	public void testConcurrentCounters() throws InterruptedException {
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 1000; j++) {
+						Metrics.increment("test.counter");
+						Metrics.record("test.timer", j);
+					}
+				}
+			});
+			threads[i].start();
+		}
+
+		for (Thread thread : threads)
+			thread.join();
+
+		assertEquals(8000, Metrics.getCounter("test.counter"));
+		assertEquals(8000, Metrics.getHistogram("test.timer").getCount());
+	}
+
+	public void testDump() throws IOException {
+		Metrics.add("test.bytes", 1024);
+		Metrics.record("test.timer", 2000000L);
+
+		StringWriter writer = new StringWriter();
+		Metrics.dump(writer);
+
+		String dump = writer.toString();
+		assertTrue(dump.contains("test.bytes 1024\n"));
+		assertTrue(dump.contains("test.timer count=1"));
+	}
+
+	/**
+	 * The dump file should be rotated once it's too large, keeping only the previous file.
+	 */
+	public void testDumpFileIsRotated() {
+		File file = new File(System.getProperty("java.io.tmpdir"), "metrics_test_" + System.nanoTime() + ".txt");
+		File previous = new File(file.getPath() + ".1");
+
+		try {
+			Metrics.increment("test.rotated");
+
+			for (int i = 0; i < 50; i++) {
+				assertTrue(Metrics.dump(file, 1024));
+				assertTrue(file.length() < 2048);
+			}
+
+			assertTrue(previous.exists());
+			assertTrue(previous.length() > 1024 && previous.length() < 2048);
+			assertFalse(new File(file.getPath() + ".1.1").exists());
+		} finally {
+			file.delete();
+			previous.delete();
+		}
+	}
+}
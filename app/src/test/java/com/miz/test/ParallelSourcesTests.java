@@ -0,0 +1,147 @@
+package com.miz.test;/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.miz.functions.ParallelSources;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests the concurrent file source runner with fake sources that
+ * take a given time to scan.
+ */
+public class ParallelSourcesTests extends TestCase {
+
+	private static final ParallelSources.Task<FakeSource, LinkedHashMap<String, String>> SCAN =
+			new ParallelSources.Task<FakeSource, LinkedHashMap<String, String>>() {
+				@Override
+				public LinkedHashMap<String, String> run(FakeSource source) throws Exception {
+					return source.scan();
+				}
+			};
+
+	/**
+	 * Scanning should take as long as the slowest source, not the sum of all sources.
+	 */
+	public void testSourcesAreScannedConcurrently() {
+		List<FakeSource> sources = Arrays.asList(new FakeSource("nas", 600, "/nas/a.mkv", "/nas/b.mkv"),
+				new FakeSource("upnp", 600, "/upnp/a.mkv"), new FakeSource("local", 600, "/local/a.mkv"));
+
+		long start = System.currentTimeMillis();
+		ParallelSources.Result<FakeSource, LinkedHashMap<String, String>> result = ParallelSources.run(sources, SCAN, 10000);
+		long duration = System.currentTimeMillis() - start;
+
+		assertTrue(result.isComplete());
+		assertEquals(4, ParallelSources.merge(result.getResults().values()).size());
+
+		// Serial scans would take at least 1800 ms
+		assertTrue("Took " + duration + " ms", duration < 1200);
+	}
+
+	/**
+	 * A failing source must not affect the other sources.
+	 */
+	public void testFailingSourceIsIsolated() {
+		FakeSource failing = new FakeSource("nas", 100);
+		failing.mFail = true;
+
+		List<FakeSource> sources = Arrays.asList(failing, new FakeSource("local", 200, "/local/a.mkv"));
+		ParallelSources.Result<FakeSource, LinkedHashMap<String, String>> result = ParallelSources.run(sources, SCAN, 10000);
+
+		assertFalse(result.isComplete());
+		assertEquals(Arrays.asList(failing), result.getFailed());
+		assertEquals(1, result.getResults().size());
+		assertTrue(result.getResults().get(sources.get(1)).containsKey("/local/a.mkv"));
+	}
+
+	/**
+	 * A source that hangs is given up on after the timeout, and the other results are kept.
+	 */
+	public void testHangingSourceTimesOut() {
+		FakeSource hanging = new FakeSource("upnp", 60000, "/upnp/a.mkv");
+
+		List<FakeSource> sources = Arrays.asList(new FakeSource("nas", 100, "/nas/a.mkv"), hanging);
+
+		long start = System.currentTimeMillis();
+		ParallelSources.Result<FakeSource, LinkedHashMap<String, String>> result = ParallelSources.run(sources, SCAN, 500);
+		long duration = System.currentTimeMillis() - start;
+
+		assertEquals(Arrays.asList(hanging), result.getTimedOut());
+		assertEquals(1, result.getResults().size());
+		assertTrue("Took " + duration + " ms", duration < 2000);
+	}
+
+	/**
+	 * Files found by several sources are only returned once, in the order of the sources.
+	 */
+	public void testResultsAreMergedAndDeduplicated() {
+		List<FakeSource> sources = Arrays.asList(new FakeSource("first", 300, "/shared/a.mkv", "/first/b.mkv"),
+				new FakeSource("second", 0, "/second/c.mkv", "/shared/a.mkv"));
+
+		ParallelSources.Result<FakeSource, LinkedHashMap<String, String>> result = ParallelSources.run(sources, SCAN, 10000);
+		Map<String, String> merged = ParallelSources.merge(result.getResults().values());
+
+		assertEquals(Arrays.asList("/shared/a.mkv", "/first/b.mkv", "/second/c.mkv"), new ArrayList<String>(merged.keySet()));
+		assertEquals("first", merged.get("/shared/a.mkv"));
+	}
+
+	public void testNoSources() {
+		ParallelSources.Result<FakeSource, LinkedHashMap<String, String>> result =
+				ParallelSources.run(new ArrayList<FakeSource>(), SCAN, 1000);
+
+		assertTrue(result.isComplete());
+		assertEquals(0, result.getResults().size());
+	}
+
+	/**
+	 * File source that returns a fixed set of files after an injected latency.
+	 */
+	private static class FakeSource {
+
+		private final String mName;
+		private final long mLatency;
+		private final String[] mFiles;
+		private boolean mFail;
+
+		public FakeSource(String name, long latency, String... files) {
+			mName = name;
+			mLatency = latency;
+			mFiles = files;
+		}
+
+		public LinkedHashMap<String, String> scan() throws Exception {
+			Thread.sleep(mLatency);
+
+			if (mFail)
+				throw new IllegalStateException("Share not reachable");
+
+			LinkedHashMap<String, String> files = new LinkedHashMap<String, String>();
+			for (String file : mFiles)
+				files.put(file, mName);
+			return files;
+		}
+
+		@Override
+		public String toString() {
+			return mName;
+		}
+	}
+}
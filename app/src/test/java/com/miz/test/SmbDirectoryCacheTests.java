@@ -0,0 +1,160 @@
+package com.miz.test;/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.miz.functions.SmbDirectoryCache;
+
+import junit.framework.TestCase;
+
+import java.net.MalformedURLException;
+import java.util.Arrays;
+
+import jcifs.smb.NtStatus;
+import jcifs.smb.SmbException;
+import jcifs.smb.SmbFile;
+
+/**
+ * Tests when the directory cache lists a folder again, using folders
+ * that count how often they're contacted instead of a real server.
+ */
+public class SmbDirectoryCacheTests extends TestCase {
+
+	private static final long TIME_TO_LIVE = 100;
+	private static final String FOLDER = "smb://nas/Movies/Alien (1979)/";
+
+	/**
+	 * A listing within its time-to-live should be used without contacting the server.
+	 */
+	public void testFreshListingIsCached() throws Exception {
+		SmbDirectoryCache cache = new SmbDirectoryCache(10, TIME_TO_LIVE);
+		FakeFolder folder = new FakeFolder(1000, "Alien.mkv", "Alien.srt");
+
+		assertEquals(Arrays.asList("Alien.mkv", "Alien.srt"), Arrays.asList(cache.list(FOLDER, folder)));
+		assertEquals(Arrays.asList("Alien.mkv", "Alien.srt"), Arrays.asList(cache.list("smb://nas/Movies/Alien (1979)", folder)));
+		assertEquals(Arrays.asList("Alien.mkv", "Alien.srt"), Arrays.asList(cache.getIfFresh(FOLDER)));
+
+		assertEquals(1, folder.mListings);
+		assertEquals(1, folder.mLastModifiedChecks);
+	}
+
+	/**
+	 * An expired listing of a folder that hasn't changed should be kept, and be fresh again.
+	 */
+	public void testUnchangedFolderIsRevalidated() throws Exception {
+		SmbDirectoryCache cache = new SmbDirectoryCache(10, TIME_TO_LIVE);
+		FakeFolder folder = new FakeFolder(1000, "Alien.mkv");
+
+		cache.list(FOLDER, folder);
+		Thread.sleep(TIME_TO_LIVE + 50);
+		assertNull(cache.getIfFresh(FOLDER));
+
+		assertEquals(Arrays.asList("Alien.mkv"), Arrays.asList(cache.list(FOLDER, folder)));
+		assertEquals(1, folder.mListings);
+		assertEquals(2, folder.mLastModifiedChecks);
+		assertNotNull(cache.getIfFresh(FOLDER));
+	}
+
+	/**
+	 * An expired listing of a folder that has changed, or whose modification
+	 * time is unknown, should be replaced by a new listing.
+	 */
+	public void testChangedFolderIsListedAgain() throws Exception {
+		SmbDirectoryCache cache = new SmbDirectoryCache(10, TIME_TO_LIVE);
+		FakeFolder folder = new FakeFolder(1000, "Alien.mkv");
+
+		cache.list(FOLDER, folder);
+		Thread.sleep(TIME_TO_LIVE + 50);
+
+		folder.mLastModified = 2000;
+		folder.mNames = new String[]{"Alien.mkv", "Alien.srt"};
+		assertEquals(Arrays.asList("Alien.mkv", "Alien.srt"), Arrays.asList(cache.list(FOLDER, folder)));
+		assertEquals(2, folder.mListings);
+
+		Thread.sleep(TIME_TO_LIVE + 50);
+
+		folder.mLastModified = 0;
+		cache.list(FOLDER, folder);
+		assertEquals(3, folder.mListings);
+	}
+
+	/**
+	 * A folder that couldn't be listed should not be cached.
+	 */
+	public void testFailedListingIsNotCached() throws Exception {
+		SmbDirectoryCache cache = new SmbDirectoryCache(10, TIME_TO_LIVE);
+		FakeFolder folder = new FakeFolder(1000, "Alien.mkv");
+		folder.mFail = true;
+
+		try {
+			cache.list(FOLDER, folder);
+			fail("Expected an SmbException");
+		} catch (SmbException expected) {}
+		assertNull(cache.getIfFresh(FOLDER));
+		assertEquals(0, cache.size());
+
+		folder.mFail = false;
+		assertEquals(Arrays.asList("Alien.mkv"), Arrays.asList(cache.list(FOLDER, folder)));
+	}
+
+	/**
+	 * The least recently used listings should be dropped once the cache is full, and invalidated ones right away.
+	 */
+	public void testLeastRecentlyUsedListingsAreDropped() throws Exception {
+		SmbDirectoryCache cache = new SmbDirectoryCache(2, 60000);
+
+		cache.list("smb://nas/a/", new FakeFolder(1000, "a.mkv"));
+		cache.list("smb://nas/b/", new FakeFolder(1000, "b.mkv"));
+		cache.getIfFresh("smb://nas/a/");
+		cache.list("smb://nas/c/", new FakeFolder(1000, "c.mkv"));
+
+		assertEquals(2, cache.size());
+		assertNotNull(cache.getIfFresh("smb://nas/a/"));
+		assertNull(cache.getIfFresh("smb://nas/b/"));
+		assertNotNull(cache.getIfFresh("smb://nas/c/"));
+
+		cache.invalidate("smb://nas/c");
+		assertNull(cache.getIfFresh("smb://nas/c/"));
+	}
+
+	private static class FakeFolder extends SmbFile {
+
+		private volatile long mLastModified;
+		private volatile String[] mNames;
+		private volatile boolean mFail;
+		private int mListings, mLastModifiedChecks;
+
+		public FakeFolder(long lastModified, String... names) throws MalformedURLException {
+			super(FOLDER);
+			mLastModified = lastModified;
+			mNames = names;
+		}
+
+		@Override
+		public long lastModified() throws SmbException {
+			mLastModifiedChecks++;
+			if (mFail)
+				throw new SmbException(NtStatus.NT_STATUS_UNSUCCESSFUL, false);
+			return mLastModified;
+		}
+
+		@Override
+		public String[] list() throws SmbException {
+			mListings++;
+			if (mFail)
+				throw new SmbException(NtStatus.NT_STATUS_UNSUCCESSFUL, false);
+			return mNames;
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package com.miz.test;/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.miz.functions.FileSource;
+import com.miz.functions.SmbDirectoryCache;
+import com.miz.functions.SmbSessionManager;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.concurrent.Semaphore;
+
+import jcifs.smb.NtStatus;
+import jcifs.smb.NtlmPasswordAuthentication;
+import jcifs.smb.SmbException;
+import jcifs.smb.SmbFile;
+
+/**
+ * Tests that a session backs off from a server that can't be reached,
+ * and that it recovers once the server responds again.
+ */
+public class SmbSessionManagerTests extends TestCase {
+
+	private static final long BACKOFF = 200;
+	private static final String FOLDER = "smb://nas/Movies/", FILE = FOLDER + "Alien (1979).mkv";
+
+	public void testSuccessfulRequests() throws Exception {
+		FakeSession session = new FakeSession();
+
+		assertTrue(session.exists(FILE));
+		session.mExists = false;
+		assertFalse(session.exists(FILE));
+
+		assertTrue(session.isHealthy());
+		assertEquals(2, session.mRequests);
+		assertEquals(0, session.getLastFailure());
+		assertTrue(session.getLastSuccess() > 0);
+	}
+
+	/**
+	 * Requests should fail without contacting the server during the back-off
+	 * after a failure, and the server should be contacted again after it.
+	 */
+	public void testBackoffAndRecovery() throws Exception {
+		FakeSession session = new FakeSession();
+		session.mReachable = false;
+
+		assertExistsFails(session);
+		assertFalse(session.isHealthy());
+		assertEquals(1, session.mRequests);
+
+		// Fails fast while backing off, even though the server is back
+		session.mReachable = true;
+		assertExistsFails(session);
+		assertEquals(1, session.mRequests);
+
+		Thread.sleep(BACKOFF + 50);
+		assertTrue(session.isHealthy());
+
+		assertTrue(session.exists(FILE));
+		assertEquals(2, session.mRequests);
+		assertTrue(session.isHealthy());
+		assertTrue(session.getLastSuccess() >= session.getLastFailure());
+	}
+
+	/**
+	 * A server that is still unreachable after the back-off should be backed off from again.
+	 */
+	public void testRepeatedFailure() throws Exception {
+		FakeSession session = new FakeSession();
+		session.mReachable = false;
+
+		assertExistsFails(session);
+		Thread.sleep(BACKOFF + 50);
+
+		assertExistsFails(session);
+		assertEquals(2, session.mRequests);
+		assertFalse(session.isHealthy());
+
+		assertExistsFails(session);
+		assertEquals(2, session.mRequests);
+	}
+
+	/**
+	 * A folder that can't be listed because the server is unreachable should
+	 * back off the session, just like a failed check of a single file.
+	 */
+	public void testFailedListingBacksOff() throws Exception {
+		FakeSession session = new FakeSession();
+		session.mReachable = false;
+
+		assertListFails(session);
+		assertFalse(session.isHealthy());
+		assertEquals(1, session.mRequests);
+
+		session.mReachable = true;
+		assertListFails(session);
+		assertExistsFails(session);
+		assertEquals(1, session.mRequests);
+
+		Thread.sleep(BACKOFF + 50);
+
+		assertEquals(1, session.list(FOLDER).length);
+		assertTrue(session.isHealthy());
+	}
+
+	/**
+	 * A folder that doesn't exist says nothing about the server, which did respond.
+	 */
+	public void testMissingFolderDoesntBackOff() throws Exception {
+		FakeSession session = new FakeSession();
+		session.mExists = false;
+
+		assertListFails(session);
+		assertTrue(session.isHealthy());
+		assertTrue(session.getLastSuccess() > 0);
+
+		assertFalse(session.exists(FILE));
+		assertEquals(2, session.mRequests);
+	}
+
+	private static void assertListFails(SmbSessionManager.Session session) {
+		try {
+			session.list(FOLDER);
+			fail("Expected an IOException");
+		} catch (IOException expected) {}
+	}
+
+	private static void assertExistsFails(SmbSessionManager.Session session) {
+		try {
+			session.exists(FILE);
+			fail("Expected an IOException");
+		} catch (IOException expected) {}
+	}
+
+	/**
+	 * A session with a server that is simulated by its files.
+	 */
+	private static class FakeSession extends SmbSessionManager.Session {
+
+		private volatile boolean mReachable = true, mExists = true;
+		private volatile int mRequests;
+
+		public FakeSession() {
+			super(new FileSource(1, FOLDER, FileSource.SMB, "", "", "", "movie"),
+					new NtlmPasswordAuthentication(null, null, null), new Semaphore(4), new SmbDirectoryCache(), BACKOFF);
+		}
+
+		@Override
+		public SmbFile getFile(String filepath) throws MalformedURLException {
+			return new SmbFile(filepath) {
+				@Override
+				public boolean exists() throws SmbException {
+					mRequests++;
+					if (!mReachable)
+						throw new SmbException(NtStatus.NT_STATUS_UNSUCCESSFUL, false);
+					return mExists;
+				}
+
+				@Override
+				public long lastModified() throws SmbException {
+					return 0;
+				}
+
+				@Override
+				public String[] list() throws SmbException {
+					mRequests++;
+					if (!mReachable)
+						throw new SmbException(NtStatus.NT_STATUS_UNSUCCESSFUL, false);
+					if (!mExists)
+						throw new SmbException(NtStatus.NT_STATUS_OBJECT_NAME_NOT_FOUND, false);
+					return new String[]{"Alien (1979).mkv"};
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package com.miz.test;/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.miz.smbstreamer.FileStreamSource;
+import com.miz.smbstreamer.Response;
+import com.miz.smbstreamer.StreamServer;
+import com.miz.smbstreamer.WebVttStreamSource;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Streams a local file through the stream server and checks the responses to range requests.
+ */
+public class StreamServerTests extends TestCase {
+
+	private static final int FILE_SIZE = 4 * 1024 * 1024 + 123;
+
+	private File mFile, mSubtitles;
+	private byte[] mData;
+	private StreamServer mServer;
+	private OkHttpClient mClient;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		mFile = new File(System.getProperty("java.io.tmpdir"), "stream_server_test_" + System.nanoTime() + ".mkv");
+		mData = new byte[FILE_SIZE];
+		new Random(7).nextBytes(mData);
+
+		FileOutputStream out = new FileOutputStream(mFile);
+		try {
+			out.write(mData);
+		} finally {
+			out.close();
+		}
+
+		mSubtitles = new File(mFile.getPath().replace(".mkv", ".srt"));
+		out = new FileOutputStream(mSubtitles);
+		try {
+			out.write("1\r\n00:00:01,000 --> 00:00:02,000\r\nHello\r\n".getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+
+		mServer = new StreamServer(0, new File(".")) {
+			@Override
+			public Response serve(String uri, String method, Properties header, Properties parms, Properties files) {
+				if (uri.endsWith(".vtt"))
+					return new Response(Response.HTTP_OK, "text/vtt", new WebVttStreamSource(new FileStreamSource(mSubtitles)));
+				if (!uri.equals("/" + mFile.getName()))
+					return new Response(Response.HTTP_NOTFOUND, MIME_PLAINTEXT, null);
+				return serveSource(new FileStreamSource(mFile), header);
+			}
+		};
+		mClient = new OkHttpClient();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mServer.stop();
+		mFile.delete();
+		mSubtitles.delete();
+
+		super.tearDown();
+	}
+
+	public void testWholeFile() throws Exception {
+		com.squareup.okhttp.Response response = get(null);
+
+		assertEquals(200, response.code());
+		assertEquals("video/x-matroska", response.header("Content-Type"));
+		assertEquals("bytes", response.header("Accept-Ranges"));
+		assertEquals(String.valueOf(FILE_SIZE), response.header("Content-Length"));
+		assertTrue(Arrays.equals(mData, response.body().bytes()));
+
+		response = mClient.newCall(new Request.Builder().url(getUrl()).head().build()).execute();
+		assertEquals(200, response.code());
+		assertEquals(String.valueOf(FILE_SIZE), response.header("Content-Length"));
+	}
+
+	public void testRanges() throws Exception {
+		assertRange("bytes=100-199", 100, 199);
+		assertRange("bytes=1000000-", 1000000, FILE_SIZE - 1);
+		assertRange("bytes=-500", FILE_SIZE - 500, FILE_SIZE - 1);
+		assertRange("bytes=0-", 0, FILE_SIZE - 1);
+		assertRange("bytes=" + (FILE_SIZE - 10) + "-" + (FILE_SIZE + 1000), FILE_SIZE - 10, FILE_SIZE - 1);
+
+		com.squareup.okhttp.Response response = get("bytes=" + FILE_SIZE + "-");
+		assertEquals(416, response.code());
+		assertEquals("bytes */" + FILE_SIZE, response.header("Content-Range"));
+		response.body().close();
+	}
+
+	/**
+	 * Several players or casting targets may read different parts of the file at the same time.
+	 */
+	public void testConcurrentClients() throws Exception {
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		List<Thread> threads = new ArrayList<Thread>();
+
+		for (int i = 0; i < 8; i++) {
+			final int first = i * (FILE_SIZE / 8);
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for (int j = 0; j < 5; j++)
+							assertRange("bytes=" + (first + j * 1000) + "-", first + j * 1000, FILE_SIZE - 1);
+					} catch (Throwable t) {
+						error.set(t);
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+
+		for (Thread thread : threads)
+			thread.join();
+
+		if (error.get() != null)
+			throw new AssertionError(error.get());
+	}
+
+	/**
+	 * SRT subtitles are converted to WebVTT while being streamed.
+	 */
+	public void testWebVttSubtitles() throws Exception {
+		com.squareup.okhttp.Response response = mClient.newCall(new Request.Builder().url(getUrl().replace(".mkv", ".vtt")).build()).execute();
+
+		assertEquals(200, response.code());
+		assertEquals("text/vtt", response.header("Content-Type"));
+		assertEquals("WEBVTT\n\n1\n00:00:01.000 --> 00:00:02.000\nHello\n", response.body().string());
+	}
+
+	public void testUnknownFile() throws Exception {
+		com.squareup.okhttp.Response response = mClient.newCall(new Request.Builder().url("http://127.0.0.1:" + mServer.getPort() + "/other.mkv").build()).execute();
+		assertEquals(404, response.code());
+		response.body().close();
+	}
+
+	public void testParseRange() {
+		assertNull(StreamServer.parseRange(null, 1000));
+		assertNull(StreamServer.parseRange("bytes=0-10,20-30", 1000));
+		assertNull(StreamServer.parseRange("bytes=abc-", 1000));
+		assertNull(StreamServer.parseRange("bytes=50-10", 1000));
+		assertEquals(0, StreamServer.parseRange("bytes=1000-", 1000).length);
+		assertEquals(0, StreamServer.parseRange("bytes=-0", 1000).length);
+		assertTrue(Arrays.equals(new long[]{0, 999}, StreamServer.parseRange("bytes=-5000", 1000)));
+	}
+
+	public void testMimeTypes() {
+		assertEquals("video/mp4", StreamServer.getMimeType("Movie.MP4"));
+		assertEquals("application/x-subrip", StreamServer.getMimeType("Movie.en.srt"));
+		assertEquals("text/vtt", StreamServer.getMimeType("Movie.vtt"));
+		assertEquals(StreamServer.MIME_DEFAULT_BINARY, StreamServer.getMimeType("Movie"));
+	}
+
+	private void assertRange(String range, long first, long last) throws IOException {
+		com.squareup.okhttp.Response response = get(range);
+
+		assertEquals(206, response.code());
+		assertEquals("bytes " + first + "-" + last + "/" + FILE_SIZE, response.header("Content-Range"));
+		assertEquals(String.valueOf(last - first + 1), response.header("Content-Length"));
+		assertTrue(range, Arrays.equals(Arrays.copyOfRange(mData, (int) first, (int) last + 1), response.body().bytes()));
+	}
+
+	private com.squareup.okhttp.Response get(String range) throws IOException {
+		Request.Builder builder = new Request.Builder().url(getUrl());
+		if (range != null)
+			builder.header("Range", range);
+		return mClient.newCall(builder.build()).execute();
+	}
+
+	private String getUrl() {
+		return "http://127.0.0.1:" + mServer.getPort() + "/" + mFile.getName();
+	}
+}
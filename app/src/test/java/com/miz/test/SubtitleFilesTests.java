@@ -0,0 +1,143 @@
+package com.miz.test;/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.miz.functions.SubtitleFiles;
+import com.miz.smbstreamer.FileStreamSource;
+import com.miz.smbstreamer.StreamSource;
+import com.miz.smbstreamer.WebVttStreamSource;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class SubtitleFilesTests extends TestCase {
+
+	private File mFile;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		mFile = new File(System.getProperty("java.io.tmpdir"), "subtitle_test_" + System.nanoTime() + ".srt");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mFile.delete();
+
+		super.tearDown();
+	}
+
+	/**
+	 * Subtitles with the same name as the video, optionally with a language tag, must be found in the listing.
+	 */
+	public void testFind() {
+		String[] listing = {"Heat (1995).mkv", "Heat (1995).srt", "heat (1995).en.srt", "Heat (1995).Danish.forced.ass",
+				"Heat (1995).nfo", "Heat (1995) 2.srt", "Heat (1995).vtt", "Alien (1979).srt", "Heat.srt"};
+
+		assertEquals(Arrays.asList("Heat (1995).srt", "heat (1995).en.srt", "Heat (1995).Danish.forced.ass", "Heat (1995).vtt"),
+				SubtitleFiles.find("Heat (1995).mkv", listing));
+
+		assertTrue(SubtitleFiles.find("Aliens (1986).mkv", listing).isEmpty());
+		assertTrue(SubtitleFiles.find("Heat (1995).mkv", null).isEmpty());
+
+		assertTrue(SubtitleFiles.isStreamable("Heat (1995).en.SRT"));
+		assertFalse(SubtitleFiles.isStreamable("Heat (1995).idx"));
+	}
+
+	public void testConvertToWebVtt() throws Exception {
+		write("\uFEFF1\r\n00:00:01,000 --> 00:00:04,5 X1:100 X2:200\r\n<i>Hello</i>\r\n\r\n2\r\n0:01:02,250 --> 0:01:03,000\r\nWorld\r\n".getBytes("UTF-8"));
+
+		assertEquals("WEBVTT\n\n1\n00:00:01.000 --> 00:00:04.500\n<i>Hello</i>\n\n2\n00:01:02.250 --> 00:01:03.000\nWorld\n", convert());
+	}
+
+	/**
+	 * Subtitles that aren't UTF-8 are usually Windows-1252, and must be converted to UTF-8.
+	 */
+	public void testConvertWindows1252() throws Exception {
+		write("1\n00:00:01,000 --> 00:00:02,000\nK\u00F8benhavn, caf\u00E9\n".getBytes("windows-1252"));
+
+		assertEquals("WEBVTT\n\n1\n00:00:01.000 --> 00:00:02.000\nK\u00F8benhavn, caf\u00E9\n", convert());
+	}
+
+	/**
+	 * Large subtitle files are converted in one pass, with the same buffers
+	 * throughout, and a line without line breaks mustn't be read into memory at once.
+	 */
+	public void testConvertLargeFile() throws Exception {
+		FileOutputStream out = new FileOutputStream(mFile);
+		try {
+			for (int i = 0; i < 20000; i++)
+				out.write((i + "\n00:00:01,000 --> 00:00:02,000\nLine " + i + "\n\n").getBytes("UTF-8"));
+
+			byte[] line = new byte[1024 * 1024];
+			Arrays.fill(line, (byte) 'x');
+			out.write(line);
+		} finally {
+			out.close();
+		}
+
+		StreamSource source = new WebVttStreamSource(new FileStreamSource(mFile));
+		source.open();
+
+		long total = 0, cues = 0;
+		byte[] buffer = new byte[4096];
+		int read;
+		try {
+			while ((read = source.read(buffer)) > 0) {
+				total += read;
+				for (int i = 0; i < read - 4; i++)
+					if (buffer[i] == '.' && buffer[i + 1] == '0' && buffer[i + 2] == '0' && buffer[i + 3] == '0' && buffer[i + 4] == ' ')
+						cues++;
+			}
+		} finally {
+			source.close();
+		}
+
+		assertEquals(mFile.length() + "WEBVTT\n\n".length(), total);
+		assertTrue("Found " + cues + " cues", cues >= 19000);
+	}
+
+	private void write(byte[] data) throws IOException {
+		FileOutputStream out = new FileOutputStream(mFile);
+		try {
+			out.write(data);
+		} finally {
+			out.close();
+		}
+	}
+
+	private String convert() throws IOException {
+		StreamSource source = new WebVttStreamSource(new FileStreamSource(mFile));
+		assertEquals("text/vtt", source.getMimeType());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		source.open();
+		try {
+			byte[] buffer = new byte[7];
+			int read;
+			while ((read = source.read(buffer)) > 0)
+				out.write(buffer, 0, read);
+		} finally {
+			source.close();
+		}
+		return new String(out.toByteArray(), "UTF-8");
+	}
+}
@@ -0,0 +1,244 @@
+package com.miz.test;/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.miz.functions.UpdateJournal;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests that a library update can be resumed from its journal after
+ * being killed at any point, including in the middle of a record.
+ */
+public class UpdateJournalTests extends TestCase {
+
+	private File mFile;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		mFile = new File(System.getProperty("java.io.tmpdir"), "update_journal_test_" + System.nanoTime());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mFile.delete();
+
+		super.tearDown();
+	}
+
+	/**
+	 * Scanned sources, discovered files and identified files must survive a restart,
+	 * also for paths with characters that are special to the file format.
+	 */
+	public void testProgressIsPersisted() {
+		UpdateJournal journal = new UpdateJournal(mFile);
+		assertFalse(journal.isResuming());
+
+		String sourceId = UpdateJournal.getSourceId(3, "smb://nas/Movies 100%/");
+		journal.setScanned(sourceId, Arrays.asList("smb://nas/Movies 100%/Alien (1979).mkv", "smb://nas/Movies 100%/Heat\n1995.mkv"));
+		journal.setIdentified("smb://nas/Movies 100%/Alien (1979).mkv");
+
+		journal = new UpdateJournal(mFile);
+		assertTrue(journal.isResuming());
+		assertTrue(journal.isScanned(sourceId));
+		assertFalse(journal.isScanned(UpdateJournal.getSourceId(4, "smb://nas/Movies 100%/")));
+		assertEquals(Arrays.asList("smb://nas/Movies 100%/Alien (1979).mkv", "smb://nas/Movies 100%/Heat\n1995.mkv"), journal.getDiscovered(sourceId));
+		assertTrue(journal.isIdentified("smb://nas/Movies 100%/Alien (1979).mkv"));
+		assertFalse(journal.isIdentified("smb://nas/Movies 100%/Heat\n1995.mkv"));
+
+		journal.clear();
+		assertFalse(mFile.exists());
+		assertFalse(new UpdateJournal(mFile).isResuming());
+	}
+
+	/**
+	 * A partly written record must be ignored, and must not corrupt the records written after it.
+	 */
+	public void testTornRecordIsIgnored() throws Exception {
+		UpdateJournal journal = new UpdateJournal(mFile);
+		journal.setScanned("1:/movies/", Arrays.asList("/movies/a.mkv", "/movies/b.mkv"));
+		journal.setIdentified("/movies/a.mkv");
+
+		// The process died while the second source was being recorded
+		append("D 2:/other/ /other/c.mkv\nD 2:/oth");
+
+		journal = new UpdateJournal(mFile);
+		assertTrue(journal.isScanned("1:/movies/"));
+		assertFalse(journal.isScanned("2:/other/"));
+		assertTrue(journal.getDiscovered("2:/other/").isEmpty());
+
+		journal.setIdentified("/movies/b.mkv");
+
+		journal = new UpdateJournal(mFile);
+		assertTrue(journal.isIdentified("/movies/a.mkv"));
+		assertTrue(journal.isIdentified("/movies/b.mkv"));
+	}
+
+	/**
+	 * Files recorded by a scan that was cut short must not be added to those
+	 * of the scan that is done when the update is resumed.
+	 */
+	public void testRescanReplacesInterruptedScan() throws Exception {
+		// The process died after some of the files of a source had been written
+		append("D 2:/other/ /other/c.mkv\nD 2:/other/ /other/d.mkv\n");
+
+		UpdateJournal journal = new UpdateJournal(mFile);
+		assertFalse(journal.isScanned("2:/other/"));
+		journal.setScanned("2:/other/", Arrays.asList("/other/c.mkv", "/other/d.mkv", "/other/e.mkv"));
+
+		journal = new UpdateJournal(mFile);
+		assertTrue(journal.isScanned("2:/other/"));
+		assertEquals(Arrays.asList("/other/c.mkv", "/other/d.mkv", "/other/e.mkv"), journal.getDiscovered("2:/other/"));
+	}
+
+	/**
+	 * Kills a simulated update loop at random points and resumes it until
+	 * it finishes. Every file must end up identified, a scanned source must
+	 * never be scanned again, and at most the file that was being identified
+	 * when the update was killed may be identified twice.
+	 */
+	public void testResumeAfterKill() throws Exception {
+		Random random = new Random(42);
+
+		for (int trial = 0; trial < 200; trial++) {
+			mFile.delete();
+
+			LinkedHashMap<String, List<String>> sources = new LinkedHashMap<String, List<String>>();
+			int sourceCount = 1 + random.nextInt(4);
+			for (int i = 0; i < sourceCount; i++) {
+				List<String> filepaths = new ArrayList<String>();
+				int fileCount = random.nextInt(15);
+				for (int j = 0; j < fileCount; j++)
+					filepaths.add("smb://nas/source " + i + "/file " + j + ".mkv");
+				sources.put(UpdateJournal.getSourceId(i, "smb://nas/source " + i + "/"), filepaths);
+			}
+
+			Update update = new Update(sources);
+			int kills = 0;
+
+			while (true) {
+				// Kill the update after a random number of steps, or let it finish
+				update.mStepsLeft = random.nextInt(4) == 0 ? Integer.MAX_VALUE : random.nextInt(20);
+
+				try {
+					update.run(new UpdateJournal(mFile));
+					break;
+				} catch (KilledException e) {
+					kills++;
+
+					// The process may have died in the middle of a record
+					if (random.nextBoolean())
+						append(random.nextBoolean() ? "I smb://nas/sou" : "D " + sources.keySet().iterator().next() + " smb:");
+				}
+			}
+
+			String message = "Trial " + trial;
+			for (String sourceId : sources.keySet()) {
+				assertEquals(message, Integer.valueOf(1), update.mScans.get(sourceId));
+				for (String filepath : sources.get(sourceId))
+					assertTrue(message, update.mIdentified.containsKey(filepath));
+			}
+
+			int duplicates = 0;
+			for (Integer count : update.mIdentified.values())
+				duplicates += count - 1;
+			assertTrue(message + ": " + duplicates + " duplicates after " + kills + " kills", duplicates <= kills);
+
+			assertFalse(message, mFile.exists());
+		}
+	}
+
+	private void append(String data) throws Exception {
+		FileOutputStream out = new FileOutputStream(mFile, true);
+		try {
+			out.write(data.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+	}
+
+	private static class KilledException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * Mirrors the library update services: sources are scanned unless the
+	 * journal has them, and files that haven't been identified yet are
+	 * identified one by one. The journal is abandoned without being closed
+	 * when the update is killed, as it would be if the process died.
+	 */
+	private static class Update {
+
+		private final Map<String, List<String>> mSources;
+		private final HashMap<String, Integer> mScans = new HashMap<String, Integer>(), mIdentified = new HashMap<String, Integer>();
+		private int mStepsLeft;
+
+		public Update(Map<String, List<String>> sources) {
+			mSources = sources;
+		}
+
+		public void run(UpdateJournal journal) {
+			List<String> queue = new ArrayList<String>();
+			HashSet<String> queued = new HashSet<String>();
+
+			for (String sourceId : mSources.keySet()) {
+				List<String> filepaths;
+				if (journal.isScanned(sourceId)) {
+					filepaths = journal.getDiscovered(sourceId);
+				} else {
+					step();
+					increment(mScans, sourceId);
+					filepaths = mSources.get(sourceId);
+					journal.setScanned(sourceId, filepaths);
+				}
+
+				for (String filepath : filepaths)
+					if (!journal.isIdentified(filepath) && queued.add(filepath))
+						queue.add(filepath);
+			}
+
+			for (String filepath : queue) {
+				increment(mIdentified, filepath);
+				step();
+				journal.setIdentified(filepath);
+			}
+
+			journal.clear();
+		}
+
+		private void step() {
+			if (mStepsLeft-- == 0)
+				throw new KilledException();
+		}
+
+		private static void increment(Map<String, Integer> counts, String key) {
+			Integer count = counts.get(key);
+			counts.put(key, count == null ? 1 : count + 1);
+		}
+	}
+}
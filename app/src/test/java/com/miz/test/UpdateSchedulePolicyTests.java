@@ -0,0 +1,166 @@
+package com.miz.test;/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.miz.functions.UpdateSchedulePolicy;
+import com.miz.functions.UpdateSchedulePolicy.Conditions;
+
+import junit.framework.TestCase;
+
+import static com.miz.functions.UpdateSchedulePolicy.MOVIES;
+import static com.miz.functions.UpdateSchedulePolicy.SHOWS;
+
+public class UpdateSchedulePolicyTests extends TestCase {
+
+	private static final long HOUR = 60 * 60 * 1000;
+
+	private static final Conditions IDEAL = new Conditions(true, true, true),
+			METERED = new Conditions(false, true, true),
+			IN_USE = new Conditions(true, false, false);
+
+	private UpdateSchedulePolicy mPolicy;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		mPolicy = new UpdateSchedulePolicy();
+	}
+
+	/**
+	 * An update must not start before its interval has passed, nor while the device is on a metered network.
+	 */
+	public void testUpdateWaitsForInterval() {
+		mPolicy.schedule(MOVIES, 6 * HOUR, 0);
+
+		assertEquals(0, mPolicy.getDueUpdates(5 * HOUR, IDEAL));
+		assertEquals(6 * HOUR, mPolicy.getNextWakeUp(5 * HOUR));
+		assertEquals(-1, mPolicy.getNextCheck(5 * HOUR));
+
+		assertEquals(0, mPolicy.getDueUpdates(6 * HOUR, METERED));
+		assertEquals(MOVIES, mPolicy.getDueUpdates(6 * HOUR, IDEAL));
+
+		mPolicy.schedule(MOVIES, 0, 0);
+		assertEquals(0, mPolicy.getDueUpdates(7 * HOUR, IDEAL));
+		assertEquals(-1, mPolicy.getNextWakeUp(7 * HOUR));
+		assertEquals(-1, mPolicy.getNextCheck(7 * HOUR));
+	}
+
+	/**
+	 * A due update waits for the device to be charging and idle, and is checked
+	 * again regularly without waking the device up. Once it's overdue, it only
+	 * waits for an unmetered network.
+	 */
+	public void testUpdateWaitsForConditions() {
+		mPolicy.schedule(SHOWS, 2 * HOUR, 0);
+
+		assertEquals(0, mPolicy.getDueUpdates(2 * HOUR, IN_USE));
+		assertEquals(2 * HOUR + UpdateSchedulePolicy.RETRY_DELAY, mPolicy.getNextCheck(2 * HOUR));
+		assertEquals(4 * HOUR, mPolicy.getNextWakeUp(2 * HOUR));
+
+		assertEquals(0, mPolicy.getDueUpdates(4 * HOUR - 1, IN_USE));
+		assertEquals(SHOWS, mPolicy.getDueUpdates(4 * HOUR, IN_USE));
+		assertEquals(0, mPolicy.getDueUpdates(10 * HOUR, METERED));
+		assertEquals(-1, mPolicy.getNextWakeUp(10 * HOUR));
+		assertEquals(10 * HOUR + UpdateSchedulePolicy.RETRY_DELAY, mPolicy.getNextCheck(10 * HOUR));
+	}
+
+	/**
+	 * An update that's nearly due starts along with one that is due.
+	 */
+	public void testUpdatesAreCoalesced() {
+		mPolicy.schedule(MOVIES, 4 * HOUR, 0);
+		mPolicy.schedule(SHOWS, 4 * HOUR, HOUR / 2);
+		mPolicy.setLastRun(SHOWS, HOUR / 2);
+
+		assertEquals(MOVIES | SHOWS, mPolicy.getDueUpdates(4 * HOUR, IDEAL));
+
+		mPolicy.onUpdateStarted(MOVIES, 4 * HOUR);
+		mPolicy.onUpdateStarted(SHOWS, 4 * HOUR);
+		assertEquals(8 * HOUR, mPolicy.getDueTime(MOVIES));
+		assertEquals(8 * HOUR, mPolicy.getDueTime(SHOWS));
+
+		// Two hours early is too early to be coalesced
+		mPolicy.setLastRun(SHOWS, 6 * HOUR);
+		assertEquals(MOVIES, mPolicy.getDueUpdates(8 * HOUR, IDEAL));
+	}
+
+	/**
+	 * Updates that find nothing new double the interval, up to a limit,
+	 * and an update that finds new files resets it.
+	 */
+	public void testBackOff() {
+		mPolicy.schedule(MOVIES, HOUR, 0);
+
+		long now = 0;
+		long[] expected = {2 * HOUR, 4 * HOUR, 8 * HOUR, 8 * HOUR, 8 * HOUR};
+		for (long interval : expected) {
+			now = mPolicy.getDueTime(MOVIES);
+			assertEquals(MOVIES, mPolicy.getDueUpdates(now, IDEAL));
+
+			mPolicy.onUpdateStarted(MOVIES, now);
+			mPolicy.onUpdateFinished(MOVIES, now, 0);
+			assertEquals(interval, mPolicy.getEffectiveInterval(MOVIES));
+		}
+		assertEquals(UpdateSchedulePolicy.MAX_BACKOFF, mPolicy.getEmptyRuns(MOVIES));
+
+		mPolicy.onUpdateFinished(MOVIES, now, 3);
+		assertEquals(HOUR, mPolicy.getEffectiveInterval(MOVIES));
+		assertEquals(now + HOUR, mPolicy.getDueTime(MOVIES));
+	}
+
+	/**
+	 * Simulates a week of hourly checks for both libraries on a device that
+	 * is only charging and idle at night. Updates must never start outside
+	 * the allowed conditions before being overdue, and the empty library
+	 * must back off.
+	 */
+	public void testSimulatedWeek() {
+		mPolicy.schedule(MOVIES, 2 * HOUR, 0);
+		mPolicy.schedule(SHOWS, 2 * HOUR, 0);
+
+		int movieRuns = 0, showRuns = 0;
+		for (long now = 0; now < 7 * 24 * HOUR; now += HOUR / 4) {
+			long hourOfDay = (now / HOUR) % 24;
+			boolean night = hourOfDay < 6;
+			Conditions conditions = new Conditions(true, night, night);
+
+			int due = mPolicy.getDueUpdates(now, conditions);
+			// During the day, updates only start when one of them is overdue
+			if (due != 0 && !night)
+				assertTrue("Started at " + now, isOverdue(MOVIES, now) || isOverdue(SHOWS, now));
+
+			if ((due & MOVIES) != 0) {
+				movieRuns++;
+				mPolicy.onUpdateStarted(MOVIES, now);
+				mPolicy.onUpdateFinished(MOVIES, now, 1); // New movies all the time
+			}
+
+			if ((due & SHOWS) != 0) {
+				showRuns++;
+				mPolicy.onUpdateStarted(SHOWS, now);
+				mPolicy.onUpdateFinished(SHOWS, now, 0); // Nothing new
+			}
+		}
+
+		assertTrue("Movies updated " + movieRuns + " times", movieRuns >= 14);
+		assertTrue("Shows updated " + showRuns + " times", showRuns < movieRuns);
+		assertEquals(UpdateSchedulePolicy.MAX_BACKOFF, mPolicy.getEmptyRuns(SHOWS));
+	}
+
+	private boolean isOverdue(int type, long now) {
+		return now >= mPolicy.getDueTime(type) + mPolicy.getEffectiveInterval(type);
+	}
+}
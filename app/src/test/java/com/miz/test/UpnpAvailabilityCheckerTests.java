@@ -0,0 +1,213 @@
+package com.miz.test;/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.miz.functions.UpnpAvailabilityChecker;
+import com.squareup.okhttp.OkHttpClient;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the UPnP availability checker against a small local HTTP server
+ * with keep-alive connections and an injected response latency.
+ */
+public class UpnpAvailabilityCheckerTests extends TestCase {
+
+	private TestServer mServer;
+	private UpnpAvailabilityChecker mChecker;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		OkHttpClient client = new OkHttpClient();
+		client.setConnectTimeout(1, TimeUnit.SECONDS);
+		client.setReadTimeout(500, TimeUnit.MILLISECONDS);
+
+		mServer = new TestServer();
+		mChecker = new UpnpAvailabilityChecker(client);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mServer.close();
+
+		super.tearDown();
+	}
+
+	/**
+	 * Files in a recent listing should be considered available without requesting them.
+	 */
+	public void testListedFilesAreNotRequested() throws Exception {
+		List<String> urls = getUrls("/file", 20);
+		mChecker.putListing(urls);
+
+		Map<String, Boolean> results = mChecker.check(urls);
+
+		assertEquals(20, results.size());
+		for (String url : urls)
+			assertEquals(Boolean.TRUE, results.get(url));
+		assertEquals(0, mServer.mRequests.get());
+	}
+
+	/**
+	 * Files should be probed concurrently, over a few reused connections.
+	 */
+	public void testConcurrentProbes() throws Exception {
+		mServer.mLatency = 100;
+
+		List<String> urls = getUrls("/file", 20);
+		List<String> missing = getUrls("/missing", 20);
+		urls.addAll(missing);
+
+		long start = System.currentTimeMillis();
+		Map<String, Boolean> results = mChecker.check(urls);
+		long duration = System.currentTimeMillis() - start;
+
+		assertEquals(40, results.size());
+		for (String url : urls)
+			assertEquals(url, Boolean.valueOf(!missing.contains(url)), results.get(url));
+
+		// Serial requests would take at least four seconds, four at a time one second
+		assertTrue("Took " + duration + " ms", duration < 3000);
+		assertTrue(mServer.mMaxConcurrent.get() <= 4);
+		assertEquals(40, mServer.mRequests.get());
+		assertTrue("Opened " + mServer.mConnections.get() + " connections", mServer.mConnections.get() <= 8);
+	}
+
+	/**
+	 * A host that doesn't respond should be skipped after a few failed
+	 * requests, and files on it must not be reported as unavailable.
+	 */
+	public void testUnresponsiveHostIsSkipped() throws Exception {
+		mServer.mLatency = 5000;
+
+		List<String> urls = getUrls("/file", 50);
+
+		long start = System.currentTimeMillis();
+		Map<String, Boolean> results = mChecker.check(urls);
+		long duration = System.currentTimeMillis() - start;
+
+		assertEquals(0, results.size());
+
+		// Probing every file would take at least 50 * 500 / 4 ms
+		assertTrue("Took " + duration + " ms", duration < 3000);
+		assertTrue("Sent " + mServer.mRequests.get() + " requests", mServer.mRequests.get() <= 8);
+
+		// The host is still skipped for subsequent checks
+		assertNull(mChecker.check(mServer.getUrl("/other")));
+		assertTrue(mServer.mRequests.get() <= 8);
+	}
+
+	private List<String> getUrls(String prefix, int count) {
+		List<String> urls = new ArrayList<String>();
+		for (int i = 0; i < count; i++)
+			urls.add(mServer.getUrl(prefix + i + ".mkv"));
+		return urls;
+	}
+
+	/**
+	 * Answers HEAD requests on kept-alive connections. Paths starting with
+	 * "/missing" return 404, all other paths return 200.
+	 */
+	private static class TestServer implements Runnable {
+
+		private final ServerSocket mSocket;
+		private final AtomicInteger mConnections = new AtomicInteger(), mRequests = new AtomicInteger(),
+				mConcurrent = new AtomicInteger(), mMaxConcurrent = new AtomicInteger();
+		private volatile long mLatency;
+
+		public TestServer() throws IOException {
+			mSocket = new ServerSocket(0);
+
+			Thread thread = new Thread(this);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		public String getUrl(String path) {
+			return "http://127.0.0.1:" + mSocket.getLocalPort() + path;
+		}
+
+		public void close() throws IOException {
+			mSocket.close();
+		}
+
+		@Override
+		public void run() {
+			while (!mSocket.isClosed()) {
+				try {
+					final Socket socket = mSocket.accept();
+					mConnections.incrementAndGet();
+
+					Thread thread = new Thread(new Runnable() {
+						@Override
+						public void run() {
+							serve(socket);
+						}
+					});
+					thread.setDaemon(true);
+					thread.start();
+				} catch (IOException ignored) {}
+			}
+		}
+
+		private void serve(Socket socket) {
+			try {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+				OutputStream out = socket.getOutputStream();
+
+				String requestLine;
+				while ((requestLine = reader.readLine()) != null) {
+					String line;
+					while ((line = reader.readLine()) != null && line.length() > 0);
+
+					mRequests.incrementAndGet();
+					int concurrent = mConcurrent.incrementAndGet();
+					int max;
+					while ((max = mMaxConcurrent.get()) < concurrent && !mMaxConcurrent.compareAndSet(max, concurrent));
+
+					try {
+						Thread.sleep(mLatency);
+					} finally {
+						mConcurrent.decrementAndGet();
+					}
+
+					String path = requestLine.split(" ")[1];
+					String status = path.startsWith("/missing") ? "404 Not Found" : "200 OK";
+					out.write(("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\n\r\n").getBytes("UTF-8"));
+					out.flush();
+				}
+			} catch (Exception ignored) {
+			} finally {
+				try {
+					socket.close();
+				} catch (IOException ignored) {}
+			}
+		}
+	}
+}
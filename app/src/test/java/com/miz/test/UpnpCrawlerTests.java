@@ -0,0 +1,274 @@
+package com.miz.test;/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.miz.functions.UpnpCrawler;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the UPnP crawler against an in-process ContentDirectory that
+ * serves a synthetic tree of 50 folders with 10 sub folders of 100 items each.
+ */
+public class UpnpCrawlerTests extends TestCase {
+
+	private static final int FOLDERS = 50, SUB_FOLDERS = 10, ITEMS = 100;
+	private static final int TOTAL_ITEMS = FOLDERS * SUB_FOLDERS * ITEMS;
+	private static final long TIMEOUT = 60000;
+
+	/**
+	 * All items should be found exactly once, with their folder path,
+	 * using paged requests and no more concurrent requests than allowed.
+	 */
+	public void testCrawlsEntireTree() throws Exception {
+		SyntheticServer server = new SyntheticServer(Integer.MAX_VALUE, true);
+		UpnpCrawler.Result result = new UpnpCrawler(server, 64, 4).crawl("0", "Server", TIMEOUT);
+
+		assertTrue(result.isComplete());
+		assertEquals(TOTAL_ITEMS, result.getItems().size());
+
+		Set<String> paths = new HashSet<String>();
+		for (UpnpCrawler.Entry item : result.getItems()) {
+			assertEquals(2, item.getDepth());
+			assertTrue(item.getFolder(), item.getFolder().startsWith("Server/Folder "));
+			assertEquals("http://server/" + item.getId(), item.getUrl());
+			paths.add(item.getFolder() + "/" + item.getTitle());
+		}
+		assertEquals(TOTAL_ITEMS, paths.size());
+
+		assertTrue(server.mMaxConcurrent.get() <= 4);
+		assertTrue(server.mMaxRequested.get() <= 64);
+		assertEquals(1 + FOLDERS + FOLDERS * SUB_FOLDERS * 2, server.mRequests.get());
+	}
+
+	/**
+	 * Servers may return fewer results than requested, and some don't report the total number of matches.
+	 */
+	public void testCappedPagesWithoutTotalMatches() throws Exception {
+		SyntheticServer server = new SyntheticServer(30, false);
+		UpnpCrawler.Result result = new UpnpCrawler(server, 200, 4).crawl("0", "Server", TIMEOUT);
+
+		assertTrue(result.isComplete());
+		assertEquals(TOTAL_ITEMS, result.getItems().size());
+		assertTrue(server.mMaxRequested.get() <= 200);
+	}
+
+	/**
+	 * A failing container should be retried, and reported if it keeps failing, without affecting the rest of the crawl.
+	 */
+	public void testFailingContainers() throws Exception {
+		SyntheticServer server = new SyntheticServer(Integer.MAX_VALUE, true);
+		server.mFailures.put("0/1/1", 2); // Succeeds on the third attempt
+		server.mFailures.put("0/2/2", Integer.MAX_VALUE);
+
+		UpnpCrawler.Result result = new UpnpCrawler(server).crawl("0", "Server", TIMEOUT);
+
+		assertFalse(result.isComplete());
+		assertFalse(result.isTimedOut());
+		assertEquals(1, result.getFailedContainers());
+		assertEquals(TOTAL_ITEMS - ITEMS, result.getItems().size());
+	}
+
+	/**
+	 * Items that are left out of a page, i.e. because they don't have a resource,
+	 * must still move the offset of the next page, so no children are fetched twice.
+	 */
+	public void testSkippedItemsAdvanceOffset() throws Exception {
+		SyntheticServer server = new SyntheticServer(Integer.MAX_VALUE, true);
+		server.mSkipEveryTenthItem = true;
+
+		UpnpCrawler.Result result = new UpnpCrawler(server, 64, 4).crawl("0", "Server", TIMEOUT);
+
+		assertTrue(result.isComplete());
+		assertEquals(TOTAL_ITEMS - TOTAL_ITEMS / 10, result.getItems().size());
+
+		Set<String> ids = new HashSet<String>();
+		for (UpnpCrawler.Entry item : result.getItems())
+			ids.add(item.getId());
+		assertEquals(result.getItems().size(), ids.size());
+
+		assertEquals(1 + FOLDERS + FOLDERS * SUB_FOLDERS * 2, server.mRequests.get());
+	}
+
+	/**
+	 * Containers that link back to one of their parents must only be crawled once.
+	 */
+	public void testCyclesAreCrawledOnce() throws Exception {
+		SyntheticServer server = new SyntheticServer(Integer.MAX_VALUE, true);
+		server.mLinkToRoot = true;
+
+		UpnpCrawler.Result result = new UpnpCrawler(server).crawl("0", "Server", TIMEOUT);
+
+		assertTrue(result.isComplete());
+		assertEquals(TOTAL_ITEMS, result.getItems().size());
+	}
+
+	/**
+	 * A server that stops responding must not block the crawl beyond its timeout.
+	 */
+	public void testTimeout() throws Exception {
+		final CountDownLatch blocker = new CountDownLatch(1);
+		UpnpCrawler.ContentDirectory server = new UpnpCrawler.ContentDirectory() {
+			@Override
+			public UpnpCrawler.Page browse(String containerId, long startIndex, long maxResults) throws Exception {
+				blocker.await();
+				return null;
+			}
+		};
+
+		long start = System.currentTimeMillis();
+		UpnpCrawler.Result result = new UpnpCrawler(server).crawl("0", "Server", 500);
+
+		assertTrue(result.isTimedOut());
+		assertEquals(0, result.getItems().size());
+		assertTrue(System.currentTimeMillis() - start < 5000);
+	}
+
+	/**
+	 * Browses that are still in flight when the crawl times out may find more
+	 * containers, which must be dropped rather than fail on the stopped pool.
+	 */
+	public void testTimeoutWithBrowsesInFlight() throws Exception {
+		final CountDownLatch returned = new CountDownLatch(4);
+		UpnpCrawler.ContentDirectory server = new UpnpCrawler.ContentDirectory() {
+			@Override
+			public UpnpCrawler.Page browse(String containerId, long startIndex, long maxResults) throws Exception {
+				if (startIndex > 0)
+					return new UpnpCrawler.Page(new ArrayList<UpnpCrawler.Entry>(), new ArrayList<UpnpCrawler.Entry>(), 0);
+
+				// Keep responding slowly, even once the crawl has been interrupted
+				long end = System.currentTimeMillis() + 300;
+				while (System.currentTimeMillis() < end) {
+					try {
+						Thread.sleep(end - System.currentTimeMillis());
+					} catch (InterruptedException ignored) {}
+				}
+
+				List<UpnpCrawler.Entry> containers = new ArrayList<UpnpCrawler.Entry>();
+				for (int i = 0; i < 4; i++)
+					containers.add(new UpnpCrawler.Entry(containerId + "/" + i, "Folder " + i, null, 0));
+
+				if (containerId.contains("/"))
+					returned.countDown();
+				return new UpnpCrawler.Page(containers, new ArrayList<UpnpCrawler.Entry>(), 0);
+			}
+		};
+
+		final List<Throwable> errors = new CopyOnWriteArrayList<Throwable>();
+		Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+		Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+			@Override
+			public void uncaughtException(Thread thread, Throwable e) {
+				errors.add(e);
+			}
+		});
+
+		try {
+			// The root responds before the timeout, its four children after it
+			UpnpCrawler.Result result = new UpnpCrawler(server, 200, 4).crawl("0", "Server", 450);
+			assertTrue(result.isTimedOut());
+
+			assertTrue(returned.await(5, TimeUnit.SECONDS));
+			Thread.sleep(200);
+			assertEquals(errors.toString(), 0, errors.size());
+		} finally {
+			Thread.setDefaultUncaughtExceptionHandler(previous);
+		}
+	}
+
+	/**
+	 * Serves a synthetic tree. Container IDs are the path of indexes, i.e. "0/3/7".
+	 */
+	private static class SyntheticServer implements UpnpCrawler.ContentDirectory {
+
+		private final int mServerPageSize;
+		private final boolean mReportTotalMatches;
+		private final ConcurrentHashMap<String, Integer> mFailures = new ConcurrentHashMap<String, Integer>();
+		private final AtomicInteger mConcurrent = new AtomicInteger(), mMaxConcurrent = new AtomicInteger(),
+				mMaxRequested = new AtomicInteger(), mRequests = new AtomicInteger();
+		private volatile boolean mLinkToRoot, mSkipEveryTenthItem;
+
+		public SyntheticServer(int serverPageSize, boolean reportTotalMatches) {
+			mServerPageSize = serverPageSize;
+			mReportTotalMatches = reportTotalMatches;
+		}
+
+		@Override
+		public UpnpCrawler.Page browse(String containerId, long startIndex, long maxResults) throws Exception {
+			int concurrent = mConcurrent.incrementAndGet();
+			try {
+				mRequests.incrementAndGet();
+				updateMax(mMaxConcurrent, concurrent);
+				updateMax(mMaxRequested, (int) maxResults);
+
+				Integer failures = mFailures.get(containerId);
+				if (failures != null && failures > 0) {
+					mFailures.put(containerId, failures - 1);
+					throw new Exception("Failure");
+				}
+
+				// Give other threads a chance to run concurrently
+				Thread.yield();
+
+				int depth = containerId.split("/").length - 1;
+				List<UpnpCrawler.Entry> children = new ArrayList<UpnpCrawler.Entry>();
+
+				if (depth == 0) {
+					for (int i = 0; i < FOLDERS; i++)
+						children.add(new UpnpCrawler.Entry(containerId + "/" + i, "Folder " + i, null, 0));
+				} else if (depth == 1) {
+					for (int i = 0; i < SUB_FOLDERS; i++)
+						children.add(new UpnpCrawler.Entry(containerId + "/" + i, "Sub folder " + i, null, 0));
+					if (mLinkToRoot)
+						children.add(new UpnpCrawler.Entry("0", "Root", null, 0));
+				} else {
+					for (int i = 0; i < ITEMS; i++)
+						children.add(new UpnpCrawler.Entry(containerId + "/" + i, "Item " + i + ".mkv", "http://server/" + containerId + "/" + i, 1000));
+				}
+
+				int from = (int) Math.min(startIndex, children.size());
+				int to = (int) Math.min(children.size(), from + Math.min(maxResults, mServerPageSize));
+
+				List<UpnpCrawler.Entry> containers = new ArrayList<UpnpCrawler.Entry>(), items = new ArrayList<UpnpCrawler.Entry>();
+				for (int i = from; i < to; i++) {
+					UpnpCrawler.Entry child = children.get(i);
+					if (child.getUrl() == null)
+						containers.add(child);
+					else if (!mSkipEveryTenthItem || i % 10 != 9) // Like an item without a resource
+						items.add(child);
+				}
+
+				return new UpnpCrawler.Page(containers, items, mReportTotalMatches ? children.size() : 0, to - from);
+			} finally {
+				mConcurrent.decrementAndGet();
+			}
+		}
+
+		private static void updateMax(AtomicInteger max, int value) {
+			int current;
+			while ((current = max.get()) < value && !max.compareAndSet(current, value));
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package com.miz.test;/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.miz.functions.UpnpDeviceCache;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+
+public class UpnpDeviceCacheTests extends TestCase {
+
+	private File mFile;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		mFile = new File(System.getProperty("java.io.tmpdir"), "upnp_device_cache_test_" + System.nanoTime());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mFile.delete();
+
+		super.tearDown();
+	}
+
+	/**
+	 * Entries must survive a restart, also for IDs with characters that are special to the file format.
+	 */
+	public void testEntriesArePersisted() {
+		UpnpDeviceCache cache = new UpnpDeviceCache(mFile);
+		assertNull(cache.get("uuid:4d696e69-444c-164e-9d41-001c42f2b1ce"));
+
+		cache.put("uuid:4d696e69-444c-164e-9d41-001c42f2b1ce", "4d696e69-444c-164e-9d41-001c42f2b1ce", "http://192.168.1.2:8200/rootDesc.xml");
+		cache.put("SN = 1234", "5f3e1a2b", "http://192.168.1.3:9000/description.xml");
+
+		cache = new UpnpDeviceCache(mFile);
+
+		UpnpDeviceCache.Entry entry = cache.get("uuid:4d696e69-444c-164e-9d41-001c42f2b1ce");
+		assertEquals("4d696e69-444c-164e-9d41-001c42f2b1ce", entry.getUdn());
+		assertEquals("http://192.168.1.2:8200/rootDesc.xml", entry.getDescriptorUrl());
+
+		entry = cache.get("SN = 1234");
+		assertEquals("5f3e1a2b", entry.getUdn());
+		assertEquals("http://192.168.1.3:9000/description.xml", entry.getDescriptorUrl());
+	}
+
+	/**
+	 * A server that has moved must be forgotten, and can then be stored with its new location.
+	 */
+	public void testRemoveAndUpdate() {
+		UpnpDeviceCache cache = new UpnpDeviceCache(mFile);
+		cache.put("1234", "5f3e1a2b", "http://192.168.1.3:9000/description.xml");
+
+		cache.remove("1234");
+		assertNull(new UpnpDeviceCache(mFile).get("1234"));
+
+		cache.put("1234", "5f3e1a2b", "http://192.168.1.4:9000/description.xml");
+		assertEquals("http://192.168.1.4:9000/description.xml", new UpnpDeviceCache(mFile).get("1234").getDescriptorUrl());
+	}
+}
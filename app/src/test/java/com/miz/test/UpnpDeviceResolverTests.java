@@ -0,0 +1,162 @@
+package com.miz.test;/*
+ * Copyright (C) 2014 Michell Bak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.miz.functions.UpnpDeviceCache;
+import com.miz.functions.UpnpDeviceResolver;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Tests the order in which the resolver looks for a media server, and
+ * how it keeps the last known location of the server up to date.
+ */
+public class UpnpDeviceResolverTests extends TestCase {
+
+	private static final String ID = "SN1234";
+	private static final UpnpDeviceCache.Entry OLD_LOCATION = new UpnpDeviceCache.Entry("udn-1", "http://192.168.1.2:8200/rootDesc.xml"),
+			NEW_LOCATION = new UpnpDeviceCache.Entry("udn-1", "http://192.168.1.7:8200/rootDesc.xml");
+
+	private File mFile;
+	private UpnpDeviceCache mCache;
+	private UpnpDeviceResolver mResolver;
+	private FakeNetwork mNetwork;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		mFile = new File(System.getProperty("java.io.tmpdir"), "upnp_device_resolver_test_" + System.nanoTime());
+		mCache = new UpnpDeviceCache(mFile);
+		mResolver = new UpnpDeviceResolver(mCache);
+		mNetwork = new FakeNetwork();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mFile.delete();
+
+		super.tearDown();
+	}
+
+	/**
+	 * A server that is already known should be used without contacting it or searching for it.
+	 */
+	public void testKnownDevice() throws Exception {
+		mNetwork.mKnown.put(ID, NEW_LOCATION);
+		mCache.put(ID, OLD_LOCATION.getUdn(), OLD_LOCATION.getDescriptorUrl());
+
+		assertEquals(ID, mResolver.resolve(mNetwork, ID, 1000));
+		assertEquals(Arrays.asList("find"), mNetwork.mCalls);
+		assertEquals(NEW_LOCATION.getDescriptorUrl(), mCache.get(ID).getDescriptorUrl());
+	}
+
+	/**
+	 * A server that isn't known should be contacted at its last known location before searching for it.
+	 */
+	public void testCachedDevice() throws Exception {
+		mNetwork.mReachable.put(OLD_LOCATION.getDescriptorUrl(), ID);
+		mCache.put(ID, OLD_LOCATION.getUdn(), OLD_LOCATION.getDescriptorUrl());
+
+		assertEquals(ID, mResolver.resolve(mNetwork, ID, 1000));
+		assertEquals(Arrays.asList("find", "retrieve " + OLD_LOCATION.getDescriptorUrl(), "find"), mNetwork.mCalls);
+		assertEquals(OLD_LOCATION.getDescriptorUrl(), mCache.get(ID).getDescriptorUrl());
+	}
+
+	/**
+	 * A server that has moved should be searched for, and its new location remembered.
+	 */
+	public void testStaleCachedDevice() throws Exception {
+		mNetwork.mSearchable.put(ID, NEW_LOCATION);
+		mCache.put(ID, OLD_LOCATION.getUdn(), OLD_LOCATION.getDescriptorUrl());
+
+		assertEquals(ID, mResolver.resolve(mNetwork, ID, 1000));
+		assertEquals(Arrays.asList("find", "retrieve " + OLD_LOCATION.getDescriptorUrl(), "find", "search"), mNetwork.mCalls);
+		assertEquals(NEW_LOCATION.getDescriptorUrl(), mCache.get(ID).getDescriptorUrl());
+	}
+
+	/**
+	 * A server that is gone should be forgotten, also if contacting it fails with an exception.
+	 */
+	public void testUnreachableDevice() throws Exception {
+		mNetwork.mFailRetrieve = true;
+		mCache.put(ID, OLD_LOCATION.getUdn(), OLD_LOCATION.getDescriptorUrl());
+
+		assertNull(mResolver.resolve(mNetwork, ID, 1000));
+		assertEquals(Arrays.asList("find", "retrieve " + OLD_LOCATION.getDescriptorUrl(), "find", "search"), mNetwork.mCalls);
+		assertNull(mCache.get(ID));
+	}
+
+	/**
+	 * A server without a known location should be searched for right away.
+	 */
+	public void testUncachedDevice() throws Exception {
+		mNetwork.mSearchable.put(ID, NEW_LOCATION);
+
+		assertEquals(ID, mResolver.resolve(mNetwork, ID, 1000));
+		assertEquals(Arrays.asList("find", "search"), mNetwork.mCalls);
+		assertEquals(NEW_LOCATION.getDescriptorUrl(), mCache.get(ID).getDescriptorUrl());
+	}
+
+	/**
+	 * Devices are their IDs. Devices become known when they're retrieved or found by a search.
+	 */
+	private static class FakeNetwork implements UpnpDeviceResolver.Network<String> {
+
+		private final HashMap<String, UpnpDeviceCache.Entry> mKnown = new HashMap<String, UpnpDeviceCache.Entry>(),
+				mSearchable = new HashMap<String, UpnpDeviceCache.Entry>();
+		private final HashMap<String, String> mReachable = new HashMap<String, String>();
+		private final List<String> mCalls = new ArrayList<String>();
+		private boolean mFailRetrieve;
+
+		@Override
+		public String findDevice(String id) {
+			mCalls.add("find");
+			return mKnown.containsKey(id) ? id : null;
+		}
+
+		@Override
+		public void retrieve(UpnpDeviceCache.Entry location) throws Exception {
+			mCalls.add("retrieve " + location.getDescriptorUrl());
+			if (mFailRetrieve)
+				throw new Exception("Connection refused");
+
+			String id = mReachable.get(location.getDescriptorUrl());
+			if (id != null)
+				mKnown.put(id, location);
+		}
+
+		@Override
+		public String search(String id, long timeout) {
+			mCalls.add("search");
+			if (!mSearchable.containsKey(id))
+				return null;
+
+			mKnown.put(id, mSearchable.get(id));
+			return id;
+		}
+
+		@Override
+		public UpnpDeviceCache.Entry getLocation(String device) {
+			return mKnown.get(device);
+		}
+	}
+}